@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class BinaryProjectFormatTest extends TestCase {
+
+    /**
+     * Records what a handler is given as one string per element start, end
+     * and run of text. Text that is only white space is left out unless it
+     * is all there is in an element.
+     */
+    private static class Recorder extends DefaultHandler {
+        final List<String> events = new ArrayList<String>();
+        private final StringBuilder text = new StringBuilder();
+        private boolean lastWasStart;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            flushText(false);
+            StringBuilder sb = new StringBuilder("start " + qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                sb.append(' ').append(attributes.getQName(i)).append('=').append(attributes.getValue(i));
+            }
+            events.add(sb.toString());
+            lastWasStart = true;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            flushText(lastWasStart);
+            events.add("end " + qName);
+            lastWasStart = false;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        private void flushText(boolean keepWhiteSpace) {
+            if (keepWhiteSpace || text.toString().trim().length() > 0) {
+                events.add("text " + text);
+            }
+            text.setLength(0);
+        }
+    }
+
+    private static final String PROJECT =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<architect-project version=\"1.0\" appversion=\"1.0.8\">\n" +
+        " <project-name>a &amp; b</project-name>\n" +
+        " <!-- a comment with a > in it -->\n" +
+        " <project-data-sources>\n" +
+        "  <data-source id=\"DS0\">\n" +
+        "   <property key=\"Name\" value=\"&quot;quoted&quot; &lt;name&gt;\" />\n" +
+        "   <property key='Multi' value=\"line&#10;one\r\nline two\" />\n" +
+        "  </data-source>\n" +
+        " </project-data-sources>\n" +
+        " <target-database id=\"ppdb\" dbcs-ref=\"DS0\">\n" +
+        "  <remarks>  </remarks>\n" +
+        "  <remarks><![CDATA[<not a tag>]]> &#x41;\\u0001</remarks>\n" +
+        "  <table id=\"TAB1\" name=\"customers\" remarks=\"\"/>\n" +
+        " </target-database>\n" +
+        "</architect-project>\n";
+
+    private static List<String> parseXML(InputStream xml) throws Exception {
+        Recorder recorder = new Recorder();
+        SAXParserFactory.newInstance().newSAXParser().parse(xml, recorder);
+        return recorder.events;
+    }
+
+    private static List<String> parseBinary(byte[] binary) throws Exception {
+        Recorder recorder = new Recorder();
+        new BinaryProjectReader(new ByteArrayInputStream(binary)).parse(recorder);
+        return recorder.events;
+    }
+
+    private static byte[] writeBinary(String xml) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintWriter pw = new PrintWriter(new BinaryProjectWriter(out));
+        pw.print(xml);
+        pw.close();
+        assertFalse(pw.checkError());
+        return out.toByteArray();
+    }
+
+    public void testWriterHoldsWhatParserReads() throws Exception {
+        List<String> expected = parseXML(new ByteArrayInputStream(PROJECT.getBytes("UTF-8")));
+        assertTrue(expected.contains("text a & b"));
+        assertTrue(expected.contains("text   "));
+        assertEquals(expected, parseBinary(writeBinary(PROJECT)));
+    }
+
+    public void testConvertersRoundTrip() throws Exception {
+        List<String> expected = parseXML(new ByteArrayInputStream(PROJECT.getBytes("UTF-8")));
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryProjectFormat.toBinary(new ByteArrayInputStream(PROJECT.getBytes("UTF-8")), binary);
+        assertEquals(expected, parseBinary(binary.toByteArray()));
+
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        BinaryProjectFormat.toXML(new ByteArrayInputStream(binary.toByteArray()), xml);
+        assertEquals(expected, parseXML(new ByteArrayInputStream(xml.toByteArray())));
+    }
+
+    public void testIsBinary() throws Exception {
+        InputStream binary = new BufferedInputStream(new ByteArrayInputStream(writeBinary(PROJECT)));
+        assertTrue(BinaryProjectFormat.isBinary(binary));
+        assertEquals(0x89, binary.read());
+
+        InputStream xml = new BufferedInputStream(new ByteArrayInputStream(PROJECT.getBytes("UTF-8")));
+        assertFalse(BinaryProjectFormat.isBinary(xml));
+        assertEquals('<', xml.read());
+
+        assertFalse(BinaryProjectFormat.isBinary(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    }
+
+    /**
+     * Large projects are split into several sections, and the string table
+     * carries on from one section to the next.
+     */
+    public void testManySections() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<architect-project version=\"1.0\" appversion=\"1.0.8\">\n");
+        sb.append(" <target-database id=\"ppdb\">\n");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("  <column id=\"COL").append(i).append("\" name=\"column").append(i % 100)
+                .append("\" type=\"12\" remarks=\"").append(i).append(" is a fairly long remark that is not put in the string table\"/>\n");
+        }
+        sb.append(" </target-database>\n");
+        sb.append("</architect-project>\n");
+        String xml = sb.toString();
+
+        byte[] binary = writeBinary(xml);
+        assertTrue(binary.length < xml.length() / 4);
+        assertEquals(parseXML(new ByteArrayInputStream(xml.getBytes("UTF-8"))), parseBinary(binary));
+    }
+
+    public void testTruncatedFile() throws Exception {
+        byte[] binary = writeBinary(PROJECT);
+        byte[] truncated = new byte[binary.length - 4];
+        System.arraycopy(binary, 0, truncated, 0, truncated.length);
+        try {
+            parseBinary(truncated);
+            fail("A truncated file should not load");
+        } catch (java.io.IOException e) {
+            // expected
+        }
+    }
+}
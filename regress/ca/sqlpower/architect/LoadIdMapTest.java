@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class LoadIdMapTest extends TestCase {
+
+    private LoadIdMap<String> map;
+
+    @Override
+    protected void setUp() throws Exception {
+        map = new LoadIdMap<String>();
+    }
+
+    public void testIndexOf() throws Exception {
+        assertEquals(12, LoadIdMap.indexOf("TAB12"));
+        assertEquals(0, LoadIdMap.indexOf("COL0"));
+        assertEquals(-1, LoadIdMap.indexOf("ppdb"));
+        assertEquals(-1, LoadIdMap.indexOf("TAB12.pk"));
+        assertEquals(-1, LoadIdMap.indexOf("COL123456789"));
+        assertEquals(-1, LoadIdMap.indexOf(new Integer(3)));
+    }
+
+    public void testPutAndGet() throws Exception {
+        assertNull(map.put("TAB1", "table"));
+        assertNull(map.put("COL2000", "column"));
+        assertEquals("table", map.get("TAB1"));
+        assertEquals("column", map.get("COL2000"));
+        assertNull(map.get("TAB2"));
+        assertEquals("table", map.put("TAB1", "other table"));
+        assertEquals("other table", map.get("TAB1"));
+        assertEquals(2, map.size());
+    }
+
+    public void testIdsWithSameNumber() throws Exception {
+        map.put("DS1", "data source");
+        map.put("TAB1", "table");
+        map.put("TAB1.pk", "table by pk");
+        map.put("ppdb", "play pen");
+        assertEquals("data source", map.get("DS1"));
+        assertEquals("table", map.get("TAB1"));
+        assertEquals("table by pk", map.get("TAB1.pk"));
+        assertEquals("play pen", map.get("ppdb"));
+        assertTrue(map.containsKey("TAB1"));
+        assertFalse(map.containsKey("COL1"));
+        assertEquals(4, map.size());
+    }
+
+    public void testRemove() throws Exception {
+        map.put("TAB1", "table");
+        map.put("COL1", "column");
+        assertEquals("table", map.remove("TAB1"));
+        assertNull(map.get("TAB1"));
+        assertEquals("column", map.get("COL1"));
+        assertEquals("column", map.remove("COL1"));
+        assertTrue(map.isEmpty());
+    }
+
+    public void testEntries() throws Exception {
+        Map<String, String> expected = new HashMap<String, String>();
+        for (int i = 0; i < 200; i++) {
+            expected.put("COL" + i, "column " + i);
+        }
+        expected.put("TAB5", "table");
+        expected.put("ppdb", "play pen");
+        map.putAll(expected);
+        assertEquals(expected, new HashMap<String, String>(map));
+        assertEquals(expected, map);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+}
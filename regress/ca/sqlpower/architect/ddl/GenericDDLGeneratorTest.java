@@ -19,14 +19,22 @@
 
 package ca.sqlpower.architect.ddl;
 
+import java.beans.PropertyChangeEvent;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.TestCase;
+import ca.sqlpower.object.AbstractSPListener;
 import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLIndex;
+import ca.sqlpower.sqlobject.SQLRelationship;
 import ca.sqlpower.sqlobject.SQLTable;
 import ca.sqlpower.sqlobject.SQLType;
 import ca.sqlpower.sqlobject.SQLTypePhysicalPropertiesProvider.PropertyType;
+import ca.sqlpower.util.SQLPowerUtils;
 
 public class GenericDDLGeneratorTest extends TestCase {
 
@@ -87,4 +95,165 @@ public class GenericDDLGeneratorTest extends TestCase {
 		assertEquals("NCLOB", ddl.columnType(col3));
 
 	}
+
+	/**
+	 * Rendering the tables on several threads must give exactly the same
+	 * statements, in the same order, as rendering them on one.
+	 */
+	public void testParallelGenerationMatchesSequential() throws Exception {
+		SQLDatabase ppdb = new SQLDatabase();
+		ppdb.setPlayPenDatabase(true);
+		ppdb.setPopulated(true);
+		List<SQLTable> tables = new ArrayList<SQLTable>();
+		for (int i = 0; i < 40; i++) {
+			SQLTable t = new SQLTable(ppdb, true);
+			t.setName("table_" + i);
+			SQLColumn id = new SQLColumn(t, "id", Types.INTEGER, 10, 0);
+			t.addColumn(id);
+			t.addToPK(id);
+			t.addColumn(new SQLColumn(t, "name", Types.VARCHAR, 50, 0));
+			t.addColumn(new SQLColumn(t, "amount", Types.DECIMAL, 10, 2));
+			ppdb.addTable(t);
+			tables.add(t);
+		}
+		for (int i = 1; i < tables.size(); i += 3) {
+			SQLRelationship r = new SQLRelationship();
+			r.attachRelationship(tables.get(i - 1), tables.get(i), true);
+		}
+
+		GenericDDLGenerator sequential = new GenericDDLGenerator(false);
+		sequential.setParallelism(1);
+		List<DDLStatement> expected = sequential.generateDDLStatements(tables);
+
+		GenericDDLGenerator parallel = new GenericDDLGenerator(false);
+		parallel.setParallelism(4);
+		List<DDLStatement> actual = parallel.generateDDLStatements(tables);
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSQLText(), actual.get(i).getSQLText());
+			assertSame(expected.get(i).getObject(), actual.get(i).getObject());
+		}
+	}
+
+	/**
+	 * Makes a model big enough to be rendered in parallel, with nothing but
+	 * logical names, so the generator has to make up every physical name.
+	 * The last table is only on the child side of a relationship and is not
+	 * in the returned list.
+	 */
+	private List<SQLTable> makeUnnamedModel() throws Exception {
+		SQLDatabase ppdb = new SQLDatabase();
+		ppdb.setPlayPenDatabase(true);
+		ppdb.setPopulated(true);
+		List<SQLTable> tables = new ArrayList<SQLTable>();
+		for (int i = 0; i < 41; i++) {
+			SQLTable t = new SQLTable(ppdb, true);
+			t.setName("table " + i);
+			SQLColumn id = new SQLColumn(t, "id " + i, Types.INTEGER, 10, 0);
+			t.addColumn(id);
+			t.addToPK(id);
+			SQLColumn name = new SQLColumn(t, "name " + i, Types.VARCHAR, 50, 0);
+			t.addColumn(name);
+			SQLIndex index = new SQLIndex("name index " + i, false, null, null, null);
+			t.addIndex(index);
+			index.addIndexColumn(name);
+			ppdb.addTable(t);
+			tables.add(t);
+		}
+		for (int i = 1; i < tables.size(); i += 3) {
+			SQLRelationship r = new SQLRelationship();
+			r.setName("relationship " + i);
+			r.attachRelationship(tables.get(i - 1), tables.get(i), true);
+		}
+		SQLRelationship r = new SQLRelationship();
+		r.setName("to the last table");
+		r.attachRelationship(tables.get(0), tables.get(40), true);
+		return tables.subList(0, 40);
+	}
+
+	/**
+	 * Returns the physical names of the tables and everything in them.
+	 */
+	private List<String> physicalNames(List<SQLTable> tables) throws Exception {
+		List<String> names = new ArrayList<String>();
+		SQLDatabase db = (SQLDatabase) tables.get(0).getParent();
+		for (SQLTable t : db.getTables()) {
+			names.add(t.getPhysicalName());
+			for (SQLColumn c : t.getColumns()) {
+				names.add(c.getPhysicalName());
+			}
+			for (SQLIndex index : t.getIndices()) {
+				names.add(index.getPhysicalName());
+			}
+			for (SQLRelationship r : t.getExportedKeys()) {
+				names.add(r.getPhysicalName());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Renders a model on one thread and a copy of it on several, and checks
+	 * that the statements and the physical names the generators set are the
+	 * same, and that the model was only changed on the calling thread.
+	 */
+	private void checkParallelNamesMatch(GenericDDLGenerator sequential, GenericDDLGenerator parallel) throws Exception {
+		List<SQLTable> sequentialTables = makeUnnamedModel();
+		sequential.setParallelism(1);
+		List<DDLStatement> expected = sequential.generateDDLStatements(sequentialTables);
+
+		List<SQLTable> parallelTables = makeUnnamedModel();
+		final Thread testThread = Thread.currentThread();
+		final List<String> offThreadChanges = new ArrayList<String>();
+		SQLPowerUtils.listenToHierarchy(parallelTables.get(0).getParent(), new AbstractSPListener() {
+			@Override
+			public void propertyChanged(PropertyChangeEvent evt) {
+				if (Thread.currentThread() != testThread) {
+					synchronized (offThreadChanges) {
+						offThreadChanges.add(evt.getPropertyName() + " of " + evt.getSource());
+					}
+				}
+			}
+		});
+		parallel.setParallelism(4);
+		List<DDLStatement> actual = parallel.generateDDLStatements(parallelTables);
+
+		assertEquals(Collections.emptyList(), offThreadChanges);
+		assertEquals(physicalNames(sequentialTables), physicalNames(parallelTables));
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSQLText(), actual.get(i).getSQLText());
+		}
+	}
+
+	public void testParallelNamesMatchSequentialForOracle() throws Exception {
+		checkParallelNamesMatch(new OracleDDLGenerator(), new OracleDDLGenerator());
+	}
+
+	public void testParallelNamesMatchSequentialForSQLServer() throws Exception {
+		checkParallelNamesMatch(new SQLServer2005DDLGenerator(), new SQLServer2005DDLGenerator());
+	}
+
+	public void testParallelGenerationIsOptIn() throws Exception {
+		assertEquals(1, new GenericDDLGenerator(false).getParallelism());
+	}
+
+	public void testMoveStatementsToStart() throws Exception {
+		GenericDDLGenerator ddl = new GenericDDLGenerator();
+		SQLTable tbl = new SQLTable();
+		tbl.initFolders(true);
+		tbl.setPhysicalName("test_table");
+		ddl.dropTable(tbl);
+		SQLColumn col = new SQLColumn(tbl, "id", Types.INTEGER, 0, 0);
+		tbl.addColumn(col);
+		int count = ddl.getStatementCount();
+		ddl.dropColumn(col);
+		ddl.moveStatementsToStart(count);
+
+		List<DDLStatement> stmts = ddl.getDdlStatements();
+		assertEquals(2, stmts.size());
+		assertSame(col, stmts.get(0).getObject());
+		assertSame(tbl, stmts.get(1).getObject());
+	}
 }
@@ -18,6 +18,7 @@
  */
 package ca.sqlpower.architect.ddl;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.sql.Types;
@@ -133,7 +134,11 @@ public class SQLServerDDLGeneratorTest extends TestCase {
         
         try {
             //forward engineer the play pen to the connection
-            List<DDLStatement> statements = DDLUtils.createDDLGenerator(ds).generateDDLStatements(Collections.singletonList(t));
+            GenericDDLGenerator ddlg = (GenericDDLGenerator) DDLUtils.createDDLGenerator(ds);
+            File typeInfoFile = File.createTempFile("typeinfo", ".cache");
+            typeInfoFile.deleteOnExit();
+            ddlg.setTypeInfoCache(new TypeInfoCache(typeInfoFile));
+            List<DDLStatement> statements = ddlg.generateDDLStatements(Collections.singletonList(t));
             logger.info("Running script " + statements);
             con = db.getConnection();
             Statement stmt = con.createStatement();
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.ddl;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Types;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+
+public class TypeInfoCacheTest extends TestCase {
+
+    private File file;
+
+    private JDBCDataSource ds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("typeinfo", ".cache");
+        file.delete();
+        PlDotIni plini = new PlDotIni();
+        plini.read(new File("pl.regression.ini"));
+        ds = plini.getDataSource("regression_test", JDBCDataSource.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testTypesAreReadAndSaved() throws Exception {
+        TypeInfoCache cache = new TypeInfoCache(file);
+        Map<Integer, GenericTypeDescriptor> types = cache.getTypeMap(ds);
+        assertNotNull(types.get(Types.INTEGER));
+        cache.flush();
+        assertTrue(file.exists());
+
+        Map<String, TypeInfoCache.Entry> saved = TypeInfoCache.load(file);
+        assertEquals(1, saved.size());
+        assertTrue(saved.containsKey(TypeInfoCache.key(ds)));
+    }
+
+    /**
+     * A new cache reading the same file must not need the database.
+     */
+    public void testSavedTypesAreUsedWithoutConnecting() throws Exception {
+        TypeInfoCache first = new TypeInfoCache(file);
+        Map<Integer, GenericTypeDescriptor> expected = first.getTypeMap(ds);
+        first.flush();
+
+        JDBCDataSource unreachable = new JDBCDataSource(new PlDotIni());
+        unreachable.setUrl(ds.getUrl());
+        unreachable.setUser(ds.getUser());
+        unreachable.setDriverClass(ds.getDriverClass());
+        unreachable.setPass("not the password");
+        Map<Integer, GenericTypeDescriptor> cached = new TypeInfoCache(file).getTypeMap(unreachable);
+
+        assertEquals(expected.keySet(), cached.keySet());
+        for (Integer type : expected.keySet()) {
+            GenericTypeDescriptor e = expected.get(type);
+            GenericTypeDescriptor c = cached.get(type);
+            assertEquals(e.getName(), c.getName());
+            assertEquals(e.getPrecision(), c.getPrecision());
+            assertEquals(e.getLiteralPrefix(), c.getLiteralPrefix());
+            assertEquals(e.getLiteralSuffix(), c.getLiteralSuffix());
+            assertEquals(e.getNullable(), c.getNullable());
+            assertEquals(e.getHasPrecision(), c.getHasPrecision());
+            assertEquals(e.getHasScale(), c.getHasScale());
+        }
+    }
+
+    public void testDriverClassIsPartOfTheKey() throws Exception {
+        JDBCDataSource otherDriver = new JDBCDataSource(new PlDotIni());
+        otherDriver.setUrl(ds.getUrl());
+        otherDriver.setUser(ds.getUser());
+        otherDriver.setDriverClass("no.such.Driver");
+        assertFalse(TypeInfoCache.key(ds).equals(TypeInfoCache.key(otherDriver)));
+    }
+
+    public void testReturnedMapIsACopy() throws Exception {
+        TypeInfoCache cache = new TypeInfoCache(file);
+        cache.getTypeMap(ds).get(Types.INTEGER).setName("changed");
+        assertFalse("changed".equals(cache.getTypeMap(ds).get(Types.INTEGER).getName()));
+    }
+
+    public void testOtherFormatVersionIsIgnored() throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(TypeInfoCache.FORMAT_VERSION + 1);
+        out.writeInt(5);
+        out.close();
+        assertTrue(TypeInfoCache.load(file).isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of SQL Power Architect.
+ *
+ * SQL Power Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SQL Power Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.ddl.critic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.ddl.critic.impl.DuplicateNameCritic;
+import ca.sqlpower.architect.ddl.critic.impl.PrimaryKeyCritic;
+
+public class CriticismBucketTest extends TestCase {
+
+    private CriticismBucket bucket;
+
+    private final Critic pkCritic = new PrimaryKeyCritic();
+
+    private final Critic nameCritic = new DuplicateNameCritic();
+
+    private final List<CriticismEvent> added = new ArrayList<CriticismEvent>();
+
+    private final List<CriticismEvent> removed = new ArrayList<CriticismEvent>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        bucket = new CriticismBucket();
+        bucket.addCriticismListener(new CriticismListener() {
+            public void criticismAdded(CriticismEvent e) {
+                assertSame(e.getCriticism(), bucket.getCriticisms().get(e.getIndex()));
+                added.add(e);
+            }
+            public void criticismRemoved(CriticismEvent e) {
+                assertFalse(bucket.getCriticisms().contains(e.getCriticism()));
+                removed.add(e);
+            }
+        });
+    }
+
+    public void testReplaceAll() throws Exception {
+        Criticism a = new Criticism("a", "first", pkCritic);
+        Criticism b = new Criticism("b", "second", pkCritic);
+        bucket.updateCriticismsToMatch(Arrays.asList(a, b));
+        assertEquals(Arrays.asList(a, b), bucket.getCriticisms());
+        assertEquals(0, added.get(0).getIndex());
+        assertEquals(1, added.get(1).getIndex());
+
+        Criticism c = new Criticism("c", "third", pkCritic);
+        bucket.updateCriticismsToMatch(Collections.singletonList(c));
+        assertEquals(Collections.singletonList(c), bucket.getCriticisms());
+        assertEquals(2, removed.size());
+        assertEquals(1, removed.get(0).getIndex());
+        assertEquals(0, removed.get(1).getIndex());
+        assertTrue(bucket.getCriticismsByObject("a").isEmpty());
+    }
+
+    public void testReplaceBySubject() throws Exception {
+        Criticism a = new Criticism("a", "first", pkCritic);
+        Criticism b = new Criticism("b", "second", pkCritic);
+        Criticism c = new Criticism("c", "third", pkCritic);
+        bucket.updateCriticismsToMatch(Arrays.asList(a, b, c));
+
+        Criticism newB = new Criticism("b", "new second", pkCritic);
+        bucket.updateCriticismsToMatch(Collections.singletonList("b"), null, Collections.singletonList(newB));
+        assertEquals(Arrays.asList(a, c, newB), bucket.getCriticisms());
+        assertEquals(1, removed.size());
+        assertSame(b, removed.get(0).getCriticism());
+        assertEquals(1, removed.get(0).getIndex());
+        assertEquals(Collections.singletonList(newB), bucket.getCriticismsByObject("b"));
+    }
+
+    public void testReplaceByCritic() throws Exception {
+        Criticism pk = new Criticism("a", "no pk", pkCritic);
+        Criticism name = new Criticism("a", "duplicate", nameCritic);
+        bucket.updateCriticismsToMatch(Arrays.asList(pk, name));
+
+        bucket.updateCriticismsToMatch(null, Collections.singletonList(nameCritic), new ArrayList<Criticism>());
+        assertEquals(Collections.singletonList(pk), bucket.getCriticisms());
+        assertEquals(Collections.singletonList(pk), bucket.getCriticismsByObject("a"));
+
+        bucket.updateCriticismsToMatch(Collections.singletonList("a"), Collections.singletonList(pkCritic),
+                new ArrayList<Criticism>());
+        assertTrue(bucket.getCriticisms().isEmpty());
+        assertTrue(bucket.getCriticismSubjects().isEmpty());
+    }
+}
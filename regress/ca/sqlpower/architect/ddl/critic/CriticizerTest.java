@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of SQL Power Architect.
+ *
+ * SQL Power Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SQL Power Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.ddl.critic;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.ddl.critic.impl.DuplicateNameCritic;
+import ca.sqlpower.architect.ddl.critic.impl.PrimaryKeyCritic;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLRelationship;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class CriticizerTest extends TestCase {
+
+    private SQLDatabase db;
+
+    private SQLTable parent;
+
+    private SQLTable child;
+
+    private SQLRelationship relationship;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        db = new SQLDatabase();
+        parent = new SQLTable(db, "parent", "", "TABLE", true);
+        parent.setPhysicalName("parent");
+        db.addChild(parent);
+        SQLColumn pk = new SQLColumn(parent, "id", Types.INTEGER, 10, 0);
+        parent.addColumn(pk);
+        parent.addToPK(pk);
+        child = new SQLTable(db, "child", "", "TABLE", true);
+        child.setPhysicalName("child");
+        db.addChild(child);
+        child.addColumn(new SQLColumn(child, "name", Types.VARCHAR, 10, 0));
+        relationship = new SQLRelationship();
+        relationship.attachRelationship(parent, child, true);
+    }
+
+    public void testAddSubjectsVisitsParentsFirst() throws Exception {
+        List<Object> subjects = new ArrayList<Object>();
+        Criticizer.addSubjects(db, subjects);
+
+        assertSame(db, subjects.get(0));
+        assertTrue(subjects.indexOf(parent) < subjects.indexOf(parent.getColumn(0)));
+        assertTrue(subjects.indexOf(child) < subjects.indexOf(child.getColumn(0)));
+    }
+
+    public void testAddSubjectsVisitsRelationshipOnce() throws Exception {
+        List<Object> subjects = new ArrayList<Object>();
+        Criticizer.addSubjects(db, subjects);
+
+        assertEquals(1, Collections.frequency(subjects, relationship));
+        assertFalse(subjects.contains(child.getImportedKeys().get(0)));
+    }
+
+    public void testCriticizeEachSkipsDescendants() throws Exception {
+        Criticizer criticizer = new Criticizer(Arrays.<Critic>asList(new PrimaryKeyCritic()));
+
+        List<Criticism> criticisms = criticizer.criticizeEach(Collections.singletonList(db));
+        assertTrue(criticisms.isEmpty());
+
+        criticisms = criticizer.criticizeEach(Arrays.asList(parent, child));
+        assertEquals(1, criticisms.size());
+        assertSame(child, criticisms.get(0).getSubject());
+    }
+
+    public void testCriticizeEachStartsStatefulCriticsOnce() throws Exception {
+        SQLTable duplicate = new SQLTable(db, "copy", "", "TABLE", true);
+        duplicate.setPhysicalName("child");
+        db.addChild(duplicate);
+        Criticizer criticizer = new Criticizer(Arrays.<Critic>asList(new DuplicateNameCritic()));
+
+        List<Criticism> criticisms = criticizer.criticizeEach(Arrays.asList(child, duplicate));
+        assertEquals(1, criticisms.size());
+        assertSame(duplicate, criticisms.get(0).getSubject());
+
+        // each call is a new run, so the names of the last call are forgotten
+        criticisms = criticizer.criticizeEach(Collections.singletonList(duplicate));
+        assertTrue(criticisms.isEmpty());
+    }
+}
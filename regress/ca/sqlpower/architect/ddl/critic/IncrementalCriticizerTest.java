@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of SQL Power Architect.
+ *
+ * SQL Power Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SQL Power Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.ddl.critic;
+
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.ArchitectSession;
+import ca.sqlpower.architect.TestingArchitectSessionContext;
+import ca.sqlpower.architect.ddl.critic.impl.DuplicateNameCritic;
+import ca.sqlpower.architect.ddl.critic.impl.PrimaryKeyCritic;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLRelationship;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class IncrementalCriticizerTest extends TestCase {
+
+    private CriticManager manager;
+
+    private SQLDatabase db;
+
+    private CriticismBucket bucket;
+
+    private IncrementalCriticizer criticizer;
+
+    private SQLTable parent;
+
+    private SQLTable child;
+
+    private SQLRelationship relationship;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ArchitectSession session = new TestingArchitectSessionContext().createSession();
+        manager = session.getWorkspace().getCriticManager();
+        manager.clear();
+        manager.registerCritic(new PrimaryKeyCritic());
+        manager.registerCritic(new DuplicateNameCritic());
+        db = session.getTargetDatabase();
+
+        parent = addTable("parent");
+        SQLColumn pk = new SQLColumn(parent, "id", Types.INTEGER, 10, 0);
+        pk.setPhysicalName("id");
+        parent.addColumn(pk);
+        parent.addToPK(pk);
+        child = addTable("child");
+        SQLColumn name = new SQLColumn(child, "name", Types.VARCHAR, 10, 0);
+        name.setPhysicalName("name");
+        child.addColumn(name);
+        relationship = new SQLRelationship();
+        relationship.attachRelationship(parent, child, true);
+
+        bucket = new CriticismBucket();
+        criticizer = new IncrementalCriticizer(manager, bucket);
+        criticizer.start();
+        criticizer.criticizePending();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        criticizer.stop();
+        super.tearDown();
+    }
+
+    private SQLTable addTable(String name) throws Exception {
+        SQLTable table = new SQLTable(db, name, "", "TABLE", true);
+        table.setPhysicalName(name);
+        db.addChild(table);
+        return table;
+    }
+
+    /**
+     * Waits for the passes the changes so far started to update the bucket.
+     */
+    private void waitForPasses() {
+        criticizer.criticizePending();
+    }
+
+    /**
+     * Asserts the bucket holds the same criticisms as criticizing the whole
+     * target database from scratch.
+     */
+    private void assertMatchesFullCriticism() {
+        List<Criticism> expected = new Criticizer(manager.getEnabledCritics(null)).criticize(db);
+        assertEquals(describe(expected), describe(bucket.getCriticisms()));
+    }
+
+    private Set<String> describe(List<Criticism> criticisms) {
+        Set<String> descriptions = new HashSet<String>();
+        for (Criticism criticism : criticisms) {
+            descriptions.add(System.identityHashCode(criticism.getSubject()) + " "
+                    + criticism.getCritic().getClass().getSimpleName() + " " + criticism.getDescription());
+        }
+        return descriptions;
+    }
+
+    public void testStartCriticizesWholeDatabase() throws Exception {
+        assertEquals(1, bucket.getCriticismsByObject(child).size());
+        assertMatchesFullCriticism();
+        assertTrue(criticizer.getDirtySubjects().isEmpty());
+    }
+
+    public void testChangesWaitForTransactionToEnd() throws Exception {
+        db.begin("adding a table");
+        SQLTable table = addTable("other");
+        SQLColumn column = new SQLColumn(table, "col", Types.INTEGER, 10, 0);
+        table.addColumn(column);
+
+        assertTrue(criticizer.getDirtySubjects().contains(table));
+        assertTrue(criticizer.getDirtySubjects().contains(column));
+        assertTrue(bucket.getCriticismsByObject(table).isEmpty());
+
+        db.commit();
+        waitForPasses();
+        assertTrue(criticizer.getDirtySubjects().isEmpty());
+        assertEquals(1, bucket.getCriticismsByObject(table).size());
+        assertMatchesFullCriticism();
+    }
+
+    public void testColumnChangeMarksTableAndRelationships() throws Exception {
+        db.begin("renaming a column");
+        SQLColumn pk = parent.getColumn(0);
+        pk.setName("renamed");
+
+        Set<Object> dirty = criticizer.getDirtySubjects();
+        assertTrue(dirty.contains(pk));
+        assertTrue(dirty.contains(parent));
+        assertTrue(dirty.contains(relationship));
+        assertFalse(dirty.contains(child));
+        db.commit();
+    }
+
+    public void testRemovedSubjectsLoseTheirCriticisms() throws Exception {
+        db.begin("removing a table");
+        db.removeChild(child);
+        assertTrue(criticizer.getRemovedSubjects().contains(child));
+        assertFalse(criticizer.getDirtySubjects().contains(child));
+        db.commit();
+        waitForPasses();
+
+        assertTrue(bucket.getCriticismsByObject(child).isEmpty());
+        assertMatchesFullCriticism();
+    }
+
+    public void testDuplicateNamesFollowRenames() throws Exception {
+        SQLTable copy = addTable("copy");
+        waitForPasses();
+        assertTrue(bucket.getCriticismsByObject(copy).size() == 1); // no primary key
+
+        copy.setPhysicalName("child");
+        waitForPasses();
+        assertEquals(2, bucket.getCriticismsByObject(copy).size());
+        assertMatchesFullCriticism();
+
+        copy.setPhysicalName("copy");
+        waitForPasses();
+        assertEquals(1, bucket.getCriticismsByObject(copy).size());
+        assertMatchesFullCriticism();
+    }
+
+    public void testRemovingFirstDuplicateClearsTheOther() throws Exception {
+        SQLTable copy = addTable("child");
+        waitForPasses();
+        assertEquals(2, bucket.getCriticismsByObject(copy).size());
+
+        db.removeChild(child);
+        waitForPasses();
+        assertEquals(1, bucket.getCriticismsByObject(copy).size());
+        assertMatchesFullCriticism();
+    }
+
+    public void testSettingsChangeCriticizesEverything() throws Exception {
+        for (CriticGrouping grouping : manager.getCriticGroupings()) {
+            for (CriticAndSettings settings : grouping.getSettings()) {
+                if (settings instanceof PrimaryKeyCritic) {
+                    settings.setSeverity(CriticAndSettings.Severity.IGNORE);
+                }
+            }
+        }
+        waitForPasses();
+        assertTrue(bucket.getCriticismsByObject(child).isEmpty());
+        assertMatchesFullCriticism();
+    }
+
+    public void testFullCriticismKeepsIncrementalState() throws Exception {
+        // a full criticism of the project in between passes must not make
+        // the duplicate name critic forget the names it saw
+        manager.criticize();
+        SQLTable copy = addTable("child");
+        waitForPasses();
+        assertEquals(2, bucket.getCriticismsByObject(copy).size());
+        assertMatchesFullCriticism();
+    }
+}
@@ -26,12 +26,14 @@ import java.util.List;
 import junit.framework.TestCase;
 import ca.sqlpower.diff.DiffChunk;
 import ca.sqlpower.diff.DiffType;
+import ca.sqlpower.sqlobject.SQLCheckConstraint;
 import ca.sqlpower.sqlobject.SQLObjectException;
 import ca.sqlpower.sqlobject.SQLColumn;
 import ca.sqlpower.sqlobject.SQLIndex;
 import ca.sqlpower.sqlobject.SQLObject;
 import ca.sqlpower.sqlobject.SQLRelationship;
 import ca.sqlpower.sqlobject.SQLTable;
+import ca.sqlpower.sqlobject.SQLTypePhysicalPropertiesProvider;
 
 public class CompareSQLTest extends TestCase {
 
@@ -865,6 +867,122 @@ public class CompareSQLTest extends TestCase {
 		return t;
 	}
 
+	/**
+	 * Comparing the matched tables on several threads must give the same
+	 * diffs in the same order as comparing them on one.
+	 */
+	public void testParallelComparisonIsDeterministic() throws Exception {
+		List<SQLTable> left = new ArrayList<SQLTable>();
+		List<SQLTable> right = new ArrayList<SQLTable>();
+		for (int i = 0; i < 50; i++) {
+			left.add(makeTable(i, 4));
+			SQLTable r = makeTable(i, 4);
+			if (i % 3 == 0) {
+				r.getColumn(1).setType(Types.VARCHAR);
+			}
+			if (i % 7 == 0) {
+				r.addColumn(new SQLColumn(r, "extra", Types.INTEGER, 3, 0));
+			}
+			right.add(r);
+		}
+		left.add(makeTable(100, 2));
+		right.add(makeTable(101, 2));
+
+		CompareSQL sequential = new CompareSQL(left, right, false);
+		sequential.setParallelism(1);
+		List<DiffChunk<SQLObject>> expected = sequential.generateTableDiffs();
+
+		CompareSQL parallel = new CompareSQL(left, right, false);
+		parallel.setParallelism(4);
+		List<DiffChunk<SQLObject>> actual = parallel.generateTableDiffs();
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getType(), actual.get(i).getType());
+			assertSame(expected.get(i).getData(), actual.get(i).getData());
+			assertEquals(expected.get(i).getPropertyChanges().size(), actual.get(i).getPropertyChanges().size());
+		}
+		assertEquals(DiffType.SAME, expected.get(indexOfTable(expected, "table_1")).getType());
+		assertEquals(DiffType.SAME, expected.get(indexOfTable(expected, "table_3")).getType());
+		assertEquals(DiffType.MODIFIED, expected.get(indexOfTable(expected, "table_3") + 2).getType());
+	}
+
+	/**
+	 * Streaming the diffs to a listener must give the same diffs, in the same
+	 * order, as the list.
+	 */
+	public void testListenerGetsSameDiffsAsList() throws Exception {
+		List<SQLTable> left = new ArrayList<SQLTable>();
+		List<SQLTable> right = new ArrayList<SQLTable>();
+		for (int i = 0; i < 20; i++) {
+			left.add(makeTable(i, 3));
+			SQLTable r = makeTable(i, 3);
+			if (i % 2 == 0) {
+				r.getColumn(0).setType(Types.VARCHAR);
+			}
+			right.add(r);
+		}
+		right.add(makeTable(30, 1));
+
+		List<DiffChunk<SQLObject>> expected = new CompareSQL(left, right, false).generateTableDiffs();
+
+		final List<DiffChunk<SQLObject>> streamed = new ArrayList<DiffChunk<SQLObject>>();
+		CompareSQL compare = new CompareSQL(left, right, false);
+		compare.setParallelism(3);
+		compare.generateTableDiffs(null, new DiffChunkListener() {
+			public void diffChunkGenerated(DiffChunk<SQLObject> chunk) {
+				streamed.add(chunk);
+			}
+		});
+
+		assertEquals(expected.size(), streamed.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getType(), streamed.get(i).getType());
+			assertSame(expected.get(i).getData(), streamed.get(i).getData());
+		}
+		assertTrue(compare.isFinished());
+	}
+
+	/**
+	 * Tables that only differ in a check constraint on the type of a column
+	 * have different signatures, and the column is reported as modified.
+	 */
+	public void testCheckConstraintDifferenceIsNotSame() throws Exception {
+		SQLTable left = makeTable(1, 2);
+		SQLTable right = makeTable(1, 2);
+		right.getColumn(1).getUserDefinedSQLType().addCheckConstraint(
+				SQLTypePhysicalPropertiesProvider.GENERIC_PLATFORM,
+				new SQLCheckConstraint("positive", "column_1 > 0"), 0);
+
+		assertFalse(new TableSignature(left, CompareSQL.nameComparator, false).equals(
+				new TableSignature(right, CompareSQL.nameComparator, false)));
+
+		List<SQLTable> leftList = new ArrayList<SQLTable>();
+		leftList.add(left);
+		List<SQLTable> rightList = new ArrayList<SQLTable>();
+		rightList.add(right);
+		List<DiffChunk<SQLObject>> diffs = new CompareSQL(leftList, rightList, false).generateTableDiffs();
+
+		boolean changed = false;
+		for (DiffChunk<SQLObject> chunk : diffs) {
+			if (chunk.getType() != DiffType.SAME) {
+				assertSame(right.getColumn(1), chunk.getData());
+				changed = true;
+			}
+		}
+		assertTrue(changed);
+	}
+
+	private int indexOfTable(List<DiffChunk<SQLObject>> diffs, String name) {
+		for (int i = 0; i < diffs.size(); i++) {
+			if (diffs.get(i).getData() instanceof SQLTable && diffs.get(i).getData().getName().equals(name)) {
+				return i;
+			}
+		}
+		fail("No diff for " + name);
+		return -1;
+	}
+
 	/*
 	 * Test method for 'ca.sqlpower.architect.swingui.CompareSchemaWorker.isFinished()'
 	 */
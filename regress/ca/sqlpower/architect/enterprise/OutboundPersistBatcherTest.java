@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.enterprise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+import ca.sqlpower.dao.MessageSender;
+import ca.sqlpower.dao.SPPersistenceException;
+
+public class OutboundPersistBatcherTest extends TestCase {
+
+    /**
+     * Keeps each flushed transaction as a list of its messages' methods,
+     * and the messages themselves.
+     */
+    private static class RecordingSender implements MessageSender<JSONObject> {
+        final List<List<JSONObject>> flushed = new ArrayList<List<JSONObject>>();
+        private List<JSONObject> current = new ArrayList<JSONObject>();
+
+        public void send(JSONObject content) throws SPPersistenceException {
+            current.add(content);
+        }
+
+        public synchronized void flush() throws SPPersistenceException {
+            flushed.add(current);
+            current = new ArrayList<JSONObject>();
+            notifyAll();
+        }
+
+        public void clear() {
+            current = new ArrayList<JSONObject>();
+        }
+    }
+
+    private RecordingSender target;
+
+    private OutboundPersistBatcher batcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        target = new RecordingSender();
+        batcher = new OutboundPersistBatcher(target, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        batcher.setBatchWindow(60000);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        batcher.close();
+    }
+
+    private static JSONObject message(String method, String uuid) throws Exception {
+        JSONObject o = new JSONObject();
+        o.put("method", method);
+        o.put("uuid", uuid == null ? JSONObject.NULL : uuid);
+        return o;
+    }
+
+    private static JSONObject change(String uuid, String property, String oldValue, String newValue) throws Exception {
+        JSONObject o = message("changeProperty", uuid);
+        o.put("propertyName", property);
+        o.put("type", "STRING");
+        o.put("oldValue", oldValue);
+        o.put("newValue", newValue);
+        return o;
+    }
+
+    private void sendTransaction(JSONObject ... messages) throws Exception {
+        batcher.send(message("begin", null));
+        for (JSONObject m : messages) {
+            batcher.send(m);
+        }
+        batcher.send(message("commit", null));
+        batcher.flush();
+    }
+
+    private static List<String> methods(List<JSONObject> messages) throws Exception {
+        List<String> methods = new ArrayList<String>();
+        for (JSONObject m : messages) {
+            methods.add(m.getString("method"));
+        }
+        return methods;
+    }
+
+    public void testNoWindowSendsRightAway() throws Exception {
+        batcher.setBatchWindow(0);
+        sendTransaction(change("a", "name", "x", "y"));
+        assertEquals(1, target.flushed.size());
+        assertEquals(3, target.flushed.get(0).size());
+    }
+
+    public void testTransactionsAreMerged() throws Exception {
+        sendTransaction(change("a", "name", "x", "y"));
+        sendTransaction(message("removeObject", "b"));
+        assertEquals(0, target.flushed.size());
+
+        batcher.flushPending();
+        assertEquals(1, target.flushed.size());
+        List<String> methods = methods(target.flushed.get(0));
+        assertEquals("begin", methods.get(0));
+        assertEquals("changeProperty", methods.get(1));
+        assertEquals("removeObject", methods.get(2));
+        assertEquals("commit", methods.get(3));
+        assertEquals(4, methods.size());
+        assertEquals(2, batcher.getTransactionCount());
+        assertEquals(1, batcher.getBatchCount());
+    }
+
+    public void testRepeatedPropertyChangesAreCollapsed() throws Exception {
+        sendTransaction(change("a", "name", "x", "y"));
+        sendTransaction(change("b", "name", "p", "q"));
+        sendTransaction(change("a", "name", "y", "z"));
+        batcher.flushPending();
+
+        List<JSONObject> sent = target.flushed.get(0);
+        assertEquals(4, sent.size());
+        assertEquals("b", sent.get(1).getString("uuid"));
+        JSONObject last = sent.get(2);
+        assertEquals("a", last.getString("uuid"));
+        assertEquals("x", last.getString("oldValue"));
+        assertEquals("z", last.getString("newValue"));
+        assertEquals(1, batcher.getDroppedMessageCount());
+    }
+
+    /**
+     * A persistProperty has no old value to check, so the collapsed change
+     * must not have one either.
+     */
+    public void testCollapsedPersistPropertyStaysPersistProperty() throws Exception {
+        JSONObject persist = change("a", "name", null, "y");
+        persist.put("method", "persistProperty");
+        persist.remove("oldValue");
+        sendTransaction(persist);
+        sendTransaction(change("a", "name", "y", "z"));
+        batcher.flushPending();
+
+        List<JSONObject> sent = target.flushed.get(0);
+        assertEquals(3, sent.size());
+        assertEquals("persistProperty", sent.get(1).getString("method"));
+        assertFalse(sent.get(1).has("oldValue"));
+        assertEquals("z", sent.get(1).getString("newValue"));
+    }
+
+    public void testChangesAroundObjectRemovalAreKept() throws Exception {
+        sendTransaction(change("a", "name", "x", "y"));
+        sendTransaction(message("removeObject", "a"));
+        sendTransaction(change("a", "name", "y", "z"));
+        batcher.flushPending();
+
+        assertEquals(5, target.flushed.get(0).size());
+        assertEquals(0, batcher.getDroppedMessageCount());
+    }
+
+    public void testClearOnlyDropsUnfinishedTransaction() throws Exception {
+        sendTransaction(change("a", "name", "x", "y"));
+        batcher.send(message("begin", null));
+        batcher.send(change("a", "name", "y", "z"));
+        batcher.clear();
+        batcher.flushPending();
+
+        List<JSONObject> sent = target.flushed.get(0);
+        assertEquals(3, sent.size());
+        assertEquals("y", sent.get(1).getString("newValue"));
+    }
+
+    public void testBatchIsSentWhenFull() throws Exception {
+        batcher.setMaxBatchSize(2);
+        sendTransaction(change("a", "name", "x", "y"));
+        assertEquals(0, target.flushed.size());
+        sendTransaction(change("b", "name", "x", "y"));
+        assertEquals(1, target.flushed.size());
+    }
+
+    public void testBatchIsSentWhenWindowCloses() throws Exception {
+        batcher.setBatchWindow(10);
+        synchronized (target) {
+            sendTransaction(change("a", "name", "x", "y"));
+            long giveUp = System.currentTimeMillis() + 10000;
+            while (target.flushed.isEmpty() && System.currentTimeMillis() < giveUp) {
+                target.wait(100);
+            }
+        }
+        assertEquals(1, target.flushed.size());
+        assertTrue(batcher.getLastBatchLatency() >= 10);
+    }
+
+    /**
+     * Other threads can finish transactions while a batch is being posted,
+     * and their transactions are sent after it.
+     */
+    public void testPostDoesNotBlockProducers() throws Exception {
+        final CountDownLatch posting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        batcher.close();
+        target = new RecordingSender() {
+            @Override
+            public synchronized void flush() throws SPPersistenceException {
+                if (flushed.isEmpty()) {
+                    posting.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                super.flush();
+            }
+        };
+        batcher = new OutboundPersistBatcher(target, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        batcher.setBatchWindow(60000);
+
+        sendTransaction(change("a", "name", "x", "y"));
+        Thread poster = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    batcher.flushPending();
+                } catch (SPPersistenceException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        poster.start();
+        assertTrue(posting.await(10, TimeUnit.SECONDS));
+
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    sendTransaction(change("b", "name", "x", "y"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        producer.start();
+        producer.join(10000);
+        assertFalse("The producer waited for the post", producer.isAlive());
+
+        release.countDown();
+        poster.join(10000);
+        batcher.flushPending();
+        assertEquals(2, target.flushed.size());
+        assertEquals("a", target.flushed.get(0).get(1).getString("uuid"));
+        assertEquals("b", target.flushed.get(1).get(1).getString("uuid"));
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.etl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.etl.ParallelDataMover.ConnectionFactory;
+import ca.sqlpower.architect.etl.ParallelDataMover.TableMove;
+import ca.sqlpower.architect.etl.ParallelDataMover.TableState;
+
+public class ParallelDataMoverTest extends TestCase {
+
+    private static int databaseCount;
+
+    private ConnectionFactory source;
+    private ConnectionFactory dest;
+    private Connection sourceCon;
+    private Connection destCon;
+
+    private static ConnectionFactory connectionsTo(final String url) {
+        return new ConnectionFactory() {
+            public Connection createConnection() throws SQLException {
+                return DriverManager.getConnection(url, "sa", "");
+            }
+        };
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        Class.forName("org.hsqldb.jdbcDriver");
+        databaseCount++;
+        source = connectionsTo("jdbc:hsqldb:mem:mover_source" + databaseCount);
+        dest = connectionsTo("jdbc:hsqldb:mem:mover_dest" + databaseCount);
+        sourceCon = source.createConnection();
+        destCon = dest.createConnection();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        sourceCon.createStatement().execute("SHUTDOWN");
+        destCon.createStatement().execute("SHUTDOWN");
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            stmt.executeUpdate(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static int count(Connection con, String table) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private void createTable(String name, int rows) throws SQLException {
+        String ddl = "CREATE TABLE " + name + " (id INTEGER PRIMARY KEY, name VARCHAR(20), note VARCHAR(20))";
+        execute(sourceCon, ddl);
+        execute(destCon, ddl);
+        for (int i = 0; i < rows; i++) {
+            execute(sourceCon, "INSERT INTO " + name + " VALUES (" + i + ", 'row " + i + "', " +
+                    (i % 3 == 0 ? "NULL" : "'note'") + ")");
+        }
+    }
+
+    public void testCopiesTablesInBatches() throws Exception {
+        createTable("parent", 1234);
+        createTable("child", 567);
+        createTable("other", 89);
+
+        ParallelDataMover mover = new ParallelDataMover();
+        mover.setBatchSize(100);
+        mover.setCommitInterval(250);
+        mover.setQueueSize(2);
+        mover.setThreadCount(2);
+        TableMove parent = mover.addTable(source, "parent", dest, "parent");
+        TableMove child = mover.addTable(source, "child", dest, "child");
+        TableMove other = mover.addTable(source, "other", dest, "other");
+        child.addDependency(parent);
+        mover.run();
+
+        assertEquals(TableState.FINISHED, parent.getState());
+        assertEquals(TableState.FINISHED, child.getState());
+        assertEquals(TableState.FINISHED, other.getState());
+        assertEquals(1234, parent.getRowCount());
+        assertEquals(1234, count(destCon, "parent"));
+        assertEquals(567, count(destCon, "child"));
+        assertEquals(89, count(destCon, "other"));
+        assertEquals(1234 + 567 + 89, mover.getTotalRowCount());
+        assertEquals((567 + 2) / 3, count(destCon, "child WHERE note IS NULL"));
+        assertTrue(mover.isFinished());
+        assertEquals(3, mover.getProgress());
+    }
+
+    public void testTruncatesDestination() throws Exception {
+        createTable("t", 10);
+        execute(destCon, "INSERT INTO t VALUES (100, 'old', NULL)");
+
+        ParallelDataMover mover = new ParallelDataMover();
+        mover.setTruncatingDestinationTable(true);
+        mover.addTable(source, "t", dest, "t");
+        mover.run();
+
+        assertEquals(10, count(destCon, "t"));
+    }
+
+    /**
+     * A table that fails stops the tables that depend on it, but not the
+     * others, and leaves nothing half copied behind.
+     */
+    public void testFailureSkipsDependents() throws Exception {
+        createTable("parent", 50);
+        createTable("child", 50);
+        createTable("other", 50);
+        // One row in the destination that clashes with a row being copied
+        execute(destCon, "INSERT INTO parent VALUES (40, 'clash', NULL)");
+
+        ParallelDataMover mover = new ParallelDataMover();
+        mover.setBatchSize(10);
+        mover.setCommitInterval(1000);
+        TableMove parent = mover.addTable(source, "parent", dest, "parent");
+        TableMove child = mover.addTable(source, "child", dest, "child");
+        TableMove other = mover.addTable(source, "other", dest, "other");
+        child.addDependency(parent);
+        mover.run();
+
+        assertEquals(TableState.FAILED, parent.getState());
+        assertNotNull(parent.getFailure());
+        assertEquals(1, count(destCon, "parent"));
+        assertEquals(TableState.SKIPPED, child.getState());
+        assertNotNull(child.getSkipReason());
+        assertEquals(0, count(destCon, "child"));
+        assertEquals(TableState.FINISHED, other.getState());
+        assertEquals(50, count(destCon, "other"));
+    }
+
+    public void testCopiesInKeyRanges() throws Exception {
+        createTable("t", 1000);
+        ParallelDataMover mover = new ParallelDataMover();
+        mover.setChunkSize(150);
+        mover.setChunkThreadCount(3);
+        mover.setBatchSize(40);
+        TableMove t = mover.addTable(source, "t", dest, "t");
+        t.setKeyColumn("id");
+        mover.run();
+
+        assertEquals(TableState.FINISHED, t.getState());
+        assertEquals(7, t.getRangeCount());
+        assertEquals(7, t.getCompletedRangeCount());
+        assertEquals(1000, t.getRowCount());
+        assertEquals(1000, count(destCon, "t"));
+    }
+
+    public void testNonNumericKeyIsCopiedInOnePiece() throws Exception {
+        createTable("t", 300);
+        ParallelDataMover mover = new ParallelDataMover();
+        mover.setChunkSize(100);
+        TableMove t = mover.addTable(source, "t", dest, "t");
+        t.setKeyColumn("name");
+        mover.run();
+
+        assertEquals(TableState.FINISHED, t.getState());
+        assertEquals(1, t.getRangeCount());
+        assertEquals(300, count(destCon, "t"));
+    }
+
+    /**
+     * A move that was interrupted carries on from the last range it
+     * committed, and replaces anything left in the range it stopped in.
+     */
+    public void testResumesFromCheckpoint() throws Exception {
+        createTable("t", 1000);
+        createTable("done", 10);
+        // The first three ranges were copied, and part of the fourth
+        for (int i = 0; i < 460; i++) {
+            execute(destCon, "INSERT INTO t VALUES (" + i + ", 'old', NULL)");
+        }
+        File file = File.createTempFile("mover", ".checkpoint");
+        file.delete();
+        try {
+            DataMoveCheckpoint checkpoint = new DataMoveCheckpoint(file);
+            checkpoint.recordPlan("t", new DataMoveCheckpoint.ChunkPlan(0, 143, 7));
+            for (int i = 0; i < 3; i++) {
+                checkpoint.recordChunkDone("t", i);
+            }
+            checkpoint.recordTableDone("done");
+            checkpoint.close();
+
+            checkpoint = new DataMoveCheckpoint(file);
+            ParallelDataMover mover = new ParallelDataMover();
+            mover.setChunkSize(500);
+            mover.setCheckpoint(checkpoint);
+            mover.setTruncatingDestinationTable(true);
+            TableMove t = mover.addTable(source, "t", dest, "t");
+            t.setKeyColumn("id");
+            t.setCheckpointKey("t");
+            TableMove done = mover.addTable(source, "done", dest, "done");
+            done.setCheckpointKey("done");
+            mover.run();
+            checkpoint.close();
+
+            assertEquals(TableState.FINISHED, t.getState());
+            assertTrue(t.isResumed());
+            assertEquals(7, t.getRangeCount());
+            assertEquals(7, t.getCompletedRangeCount());
+            assertEquals(1000 - 429, t.getRowCount());
+            assertEquals(1000, count(destCon, "t"));
+            assertEquals(429, count(destCon, "t WHERE name = 'old'"));
+            assertTrue(done.isResumed());
+            assertEquals(0, count(destCon, "done"));
+
+            checkpoint = new DataMoveCheckpoint(file);
+            assertTrue(checkpoint.isTableDone("t"));
+            checkpoint.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A table copied in one piece that was committed before the move
+     * stopped, but not recorded as done, is copied again over an emptied
+     * destination table instead of on top of the rows already there.
+     */
+    public void testResumesUnsplitTableAfterCommit() throws Exception {
+        createTable("t", 300);
+        // the whole table was committed before the move was interrupted
+        for (int i = 0; i < 300; i++) {
+            execute(destCon, "INSERT INTO t VALUES (" + i + ", 'old', NULL)");
+        }
+        File file = File.createTempFile("mover", ".checkpoint");
+        file.delete();
+        try {
+            DataMoveCheckpoint checkpoint = new DataMoveCheckpoint(file);
+            checkpoint.recordTableStarted("t");
+            checkpoint.close();
+
+            checkpoint = new DataMoveCheckpoint(file);
+            assertTrue(checkpoint.hasStarted("t"));
+            ParallelDataMover mover = new ParallelDataMover();
+            mover.setCheckpoint(checkpoint);
+            mover.setCommitInterval(50);
+            mover.setBatchSize(20);
+            TableMove t = mover.addTable(source, "t", dest, "t");
+            t.setCheckpointKey("t");
+            mover.run();
+            checkpoint.close();
+
+            assertEquals(TableState.FINISHED, t.getState());
+            assertTrue(t.isResumed());
+            assertEquals(1, t.getRangeCount());
+            assertEquals(300, count(destCon, "t"));
+            assertEquals(0, count(destCon, "t WHERE name = 'old'"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A table copied in one piece is recorded as started before any of its
+     * rows are copied.
+     */
+    public void testRecordsUnsplitTableStart() throws Exception {
+        createTable("t", 10);
+        File file = File.createTempFile("mover", ".checkpoint");
+        file.delete();
+        try {
+            DataMoveCheckpoint checkpoint = new DataMoveCheckpoint(file);
+            ParallelDataMover mover = new ParallelDataMover();
+            mover.setCheckpoint(checkpoint);
+            TableMove t = mover.addTable(source, "t", dest, "t");
+            t.setCheckpointKey("t");
+            mover.run();
+            checkpoint.close();
+
+            checkpoint = new DataMoveCheckpoint(file);
+            assertTrue(checkpoint.hasStarted("t"));
+            assertTrue(checkpoint.isTableDone("t"));
+            checkpoint.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * A line cut short by a crash is ignored, and doesn't run into the next
+     * line written.
+     */
+    public void testCheckpointIgnoresTornLine() throws Exception {
+        File file = File.createTempFile("mover", ".checkpoint");
+        try {
+            FileWriter out = new FileWriter(file);
+            out.write("chunk\tt\t0\nchunk\tt\t1");
+            out.close();
+            DataMoveCheckpoint checkpoint = new DataMoveCheckpoint(file);
+            assertTrue(checkpoint.isChunkDone("t", 0));
+            assertFalse(checkpoint.isChunkDone("t", 1));
+            checkpoint.recordChunkDone("t", 2);
+            checkpoint.close();
+
+            checkpoint = new DataMoveCheckpoint(file);
+            assertTrue(checkpoint.isChunkDone("t", 2));
+            assertFalse(checkpoint.isChunkDone("t", 1));
+            checkpoint.delete();
+            assertFalse(file.exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMissingSourceTableFails() throws Exception {
+        ParallelDataMover mover = new ParallelDataMover();
+        TableMove missing = mover.addTable(source, "no_such_table", dest, "no_such_table");
+        mover.run();
+        assertEquals(TableState.FAILED, missing.getState());
+    }
+
+    public void testCycleIsSkipped() throws Exception {
+        createTable("a", 1);
+        createTable("b", 1);
+        ParallelDataMover mover = new ParallelDataMover();
+        TableMove a = mover.addTable(source, "a", dest, "a");
+        TableMove b = mover.addTable(source, "b", dest, "b");
+        a.addDependency(b);
+        b.addDependency(a);
+        mover.run();
+        assertEquals(TableState.SKIPPED, a.getState());
+        assertEquals(TableState.SKIPPED, b.getState());
+    }
+}
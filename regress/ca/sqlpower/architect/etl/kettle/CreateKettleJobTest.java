@@ -161,6 +161,23 @@ public class CreateKettleJobTest extends TestCase {
         assertFalse(new File(jobFile.getParentFile().getPath() + "transformation_for_table_TargetTable2.ktr").exists());
     }
 
+    public void testCreatingJobsInParallel() throws SQLObjectException, IOException, RuntimeException, KettleException, SQLException {
+        KettleJob job = new KettleJob(session);
+        job.setJobName("Testing Job");
+        job.setSchemaName("Schema");
+        File jobFile = File.createTempFile("TestingJob", null);
+        job.setFilePath(jobFile.getPath());
+        job.setKettleJoinType(0);
+        job.setThreadCount(4);
+        List<SQLTable> tableList = new ArrayList<SQLTable>();
+        tableList.add(targetTableNoSource);
+        tableList.add(targetTableMixedSource);
+        job.doExport(tableList, target, tableList);
+        assertTrue(new File(jobFile.getPath() + ".kjb").exists());
+        assertTrue(job.isFinished());
+        assertEquals(2 * tableList.size() + 1, job.getJobSize().intValue());
+    }
+
     public void testAddDatabaseConnection() {
        Map<String, DatabaseMeta> databaseNames = new LinkedHashMap<String, DatabaseMeta>();
        KettleJob job = new KettleJob(session);
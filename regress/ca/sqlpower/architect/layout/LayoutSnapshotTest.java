@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.layout;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class LayoutSnapshotTest extends TestCase {
+
+    private static class Node extends AbstractLayoutNode {
+        private final Rectangle bounds;
+        final List<LayoutEdge> inbound = new ArrayList<LayoutEdge>();
+        final List<LayoutEdge> outbound = new ArrayList<LayoutEdge>();
+        int moves;
+
+        Node(int x, int y) {
+            bounds = new Rectangle(x, y, 100, 50);
+        }
+
+        @Override
+        public Rectangle getBounds(Rectangle b) {
+            b.setBounds(bounds);
+            return b;
+        }
+
+        @Override
+        public List<LayoutEdge> getInboundEdges() {
+            return inbound;
+        }
+
+        @Override
+        public List<LayoutEdge> getOutboundEdges() {
+            return outbound;
+        }
+
+        @Override
+        public String getNodeName() {
+            return "node";
+        }
+
+        @Override
+        public void setBounds(int x, int y, int width, int height) {
+            moves++;
+            bounds.setBounds(x, y, width, height);
+        }
+    }
+
+    private static LayoutEdge edge(final Node tail, final Node head) {
+        LayoutEdge e = new LayoutEdge() {
+            public LayoutNode getTailNode() {
+                return tail;
+            }
+            public LayoutNode getHeadNode() {
+                return head;
+            }
+        };
+        tail.outbound.add(e);
+        head.inbound.add(e);
+        return e;
+    }
+
+    public void testRunDoesNotMoveOriginals() throws Exception {
+        Node a = new Node(0, 0);
+        Node b = new Node(5, 5);
+        LayoutEdge ab = edge(a, b);
+        LayoutSnapshot snapshot = new LayoutSnapshot(Arrays.asList(a, b), Collections.singletonList(ab));
+
+        Map<LayoutNode, Point> locations = snapshot.run(new BarnesHutForceLayout(), new Rectangle(0, 0, 1000, 1000));
+
+        assertEquals(0, a.moves);
+        assertEquals(0, b.moves);
+        assertEquals(2, locations.size());
+        Rectangle newA = new Rectangle(locations.get(a), a.getBounds().getSize());
+        Rectangle newB = new Rectangle(locations.get(b), b.getBounds().getSize());
+        assertFalse(newA.intersects(newB));
+    }
+
+    /**
+     * The grid layout only lays out when it is told it is done, so this
+     * checks the snapshot finishes layouts properly.
+     */
+    public void testLayoutMovesNodes() throws Exception {
+        Node a = new Node(0, 0);
+        Node b = new Node(0, 0);
+        LayoutSnapshot.layout(new ArchitectGridLayout(), Arrays.asList(a, b),
+                Collections.<LayoutEdge>emptyList(), new Rectangle(0, 0, 1000, 1000));
+        assertFalse(a.getBounds().intersects(b.getBounds()));
+    }
+
+    public void testNodesNotLaidOutStayPut() throws Exception {
+        Node a = new Node(0, 0);
+        Node b = new Node(5, 5);
+        Node fixed = new Node(5, 5);
+        LayoutEdge ab = edge(a, b);
+        LayoutEdge af = edge(a, fixed);
+        Map<LayoutNode, Point> locations = new LayoutSnapshot(Arrays.asList(a, b), Arrays.asList(ab, af))
+            .run(new FruchtermanReingoldForceLayout(), new Rectangle(0, 0, 1000, 1000));
+        assertFalse(locations.containsKey(fixed));
+        assertEquals(new Point(5, 5), fixed.getLocation());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.layout;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class TestBarnesHutForceLayout extends TestCase {
+
+    private static class Node extends AbstractLayoutNode {
+        private final Rectangle bounds;
+        private final String name;
+        final List<LayoutEdge> inbound = new ArrayList<LayoutEdge>();
+        final List<LayoutEdge> outbound = new ArrayList<LayoutEdge>();
+
+        Node(String name, int x, int y) {
+            this.name = name;
+            bounds = new Rectangle(x, y, 80, 60);
+        }
+
+        @Override
+        public Rectangle getBounds(Rectangle b) {
+            b.setBounds(bounds);
+            return b;
+        }
+
+        @Override
+        public List<LayoutEdge> getInboundEdges() {
+            return inbound;
+        }
+
+        @Override
+        public List<LayoutEdge> getOutboundEdges() {
+            return outbound;
+        }
+
+        @Override
+        public String getNodeName() {
+            return name;
+        }
+
+        @Override
+        public void setBounds(int x, int y, int width, int height) {
+            bounds.setBounds(x, y, width, height);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Edge implements LayoutEdge {
+        private final Node tail;
+        private final Node head;
+
+        Edge(Node tail, Node head) {
+            this.tail = tail;
+            this.head = head;
+            tail.outbound.add(this);
+            head.inbound.add(this);
+        }
+
+        public LayoutNode getHeadNode() {
+            return head;
+        }
+
+        public LayoutNode getTailNode() {
+            return tail;
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    private final List<Edge> edges = new ArrayList<Edge>();
+
+    private BarnesHutForceLayout layout;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        layout = new BarnesHutForceLayout();
+    }
+
+    /**
+     * Makes a tree of related nodes all starting in the same small area.
+     */
+    private void makeTree(int count) {
+        for (int i = 0; i < count; i++) {
+            Node node = new Node("node" + i, 10 + (i % 10) * 5, 10 + (i / 10) * 5);
+            if (i > 0) {
+                edges.add(new Edge(nodes.get((i - 1) / 3), node));
+            }
+            nodes.add(node);
+        }
+    }
+
+    private void runToCompletion(Rectangle frame) {
+        layout.setup(nodes, edges, frame);
+        for (int i = 0; i < 1000 && !layout.isDone(); i++) {
+            layout.nextFrame();
+        }
+        assertTrue("Layout did not settle", layout.isDone());
+    }
+
+    public void testIsDoneOneElem() {
+        nodes.add(new Node("only", 10, 10));
+        layout.setup(nodes, edges, new Rectangle(0, 0, 500, 500));
+        assertTrue(layout.isDone());
+    }
+
+    public void testDone() {
+        makeTree(2);
+        layout.setup(nodes, edges, new Rectangle(0, 0, 500, 500));
+        assertFalse(layout.isDone());
+        layout.done();
+        assertTrue(layout.isDone());
+    }
+
+    public void testNodesStayInFrameAndSpreadOut() throws Exception {
+        makeTree(300);
+        Rectangle frame = new Rectangle(new Point(), layout.getNewArea(nodes));
+        layout.setParallelism(4);
+        runToCompletion(frame);
+
+        Set<Point> locations = new HashSet<Point>();
+        for (Node node : nodes) {
+            assertTrue(node + " at " + node.getBounds() + " is outside " + frame,
+                    frame.contains(node.getBounds()));
+            locations.add(node.getLocation());
+        }
+        assertEquals("Some nodes ended up on top of each other", nodes.size(), locations.size());
+    }
+
+    public void testOrphansArePlacedBelowRelatedNodes() throws Exception {
+        makeTree(20);
+        Node orphan = new Node("orphan", 10, 10);
+        nodes.add(orphan);
+        runToCompletion(new Rectangle(0, 0, 2000, 2000));
+        for (Node node : nodes) {
+            if (node != orphan) {
+                assertTrue(node.getY() + node.getHeight() < orphan.getY());
+            }
+        }
+    }
+
+    public void testEdgesToNodesNotLaidOutAreIgnored() throws Exception {
+        makeTree(10);
+        Node outside = new Node("outside", 10, 10);
+        edges.add(new Edge(nodes.get(0), outside));
+        runToCompletion(new Rectangle(0, 0, 2000, 2000));
+        assertEquals(new Point(10, 10), outside.getLocation());
+    }
+
+    public void testInvalidSettings() throws Exception {
+        try {
+            layout.setTheta(-1);
+            fail("Negative theta should not be allowed");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            layout.setParallelism(0);
+            fail("Parallelism below 1 should not be allowed");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        layout.setup(Collections.<LayoutNode>emptyList(), Collections.<LayoutEdge>emptyList(), new Rectangle());
+        assertTrue(layout.isDone());
+    }
+}
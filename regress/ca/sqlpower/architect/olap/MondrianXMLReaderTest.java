@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of SQL Power Architect.
+ *
+ * SQL Power Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SQL Power Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.olap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Reads a schema for every element type in Mondrian.xml and checks, field by
+ * field, that {@link MondrianXMLReader} set each attribute, including the
+ * ones an element inherits from its classes. Every element also carries an
+ * attribute and a child element the reader doesn't know, which must be
+ * skipped without disturbing the rest of the schema.
+ * <p>
+ * The element types and their attributes are taken from Mondrian.xml, the
+ * same model the reader is generated from, so an element or attribute added
+ * to the model is covered without changing this test.
+ */
+public class MondrianXMLReaderTest extends TestCase {
+
+    private static final String MODEL_FILE = "src/main/java/ca/sqlpower/architect/olap/Mondrian.xml";
+
+    /**
+     * The elements the model defines that no other element can contain, so
+     * they can't appear in a schema at all.
+     */
+    private static final Set<String> UNREACHABLE_ELEMENTS =
+        new HashSet<String>(Arrays.asList("Column", "CaptionExpression"));
+
+    /**
+     * One attribute of an element type, with the value this test gives it.
+     */
+    private static class AttributeSpec {
+        final String name;
+        final boolean isBoolean;
+        final String value;
+
+        AttributeSpec(String elementType, Element attribute) {
+            name = attribute.getAttribute("name");
+            isBoolean = "Boolean".equals(attribute.getAttribute("type"));
+            if (isBoolean) {
+                // the opposite of the default, so a skipped attribute shows
+                value = String.valueOf(!"true".equals(attribute.getAttribute("default")));
+            } else {
+                value = elementType + "." + name;
+            }
+        }
+    }
+
+    /**
+     * How an element type is reached from the one that contains it.
+     */
+    private static class Link {
+        final String parentType;
+        final String property;
+        final boolean isArray;
+
+        Link(String parentType, String property, boolean isArray) {
+            this.parentType = parentType;
+            this.property = property;
+            this.isArray = isArray;
+        }
+    }
+
+    private Map<String, Element> elements;
+
+    private Map<String, Element> classes;
+
+    /**
+     * The path from Schema to each element type that can appear in a schema.
+     */
+    private Map<String, Link> links;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Document model = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(MODEL_FILE));
+        elements = new LinkedHashMap<String, Element>();
+        classes = new HashMap<String, Element>();
+        for (Element e : children(model.getDocumentElement())) {
+            if (e.getTagName().equals("Element")) {
+                elements.put(e.getAttribute("type"), e);
+            } else if (e.getTagName().equals("Class")) {
+                classes.put(e.getAttribute("class"), e);
+            }
+        }
+
+        links = new LinkedHashMap<String, Link>();
+        links.put("Schema", null);
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add("Schema");
+        while (!queue.isEmpty()) {
+            String type = queue.removeFirst();
+            for (Element declaration : declarations(type)) {
+                if (!declaration.getTagName().equals("Object") && !declaration.getTagName().equals("Array")) continue;
+                for (String child : concreteTypes(declaration.getAttribute("type"))) {
+                    if (!links.containsKey(child)) {
+                        links.put(child, new Link(type, declaration.getAttribute("name"),
+                                declaration.getTagName().equals("Array")));
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+
+        file = File.createTempFile("mondrian", ".xml");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Returns the child elements of the given element.
+     */
+    private static List<Element> children(Element parent) {
+        List<Element> children = new ArrayList<Element>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) nodes.item(i));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Returns the classes the element type belongs to, nearest first.
+     */
+    private List<Element> classChain(String type) {
+        List<Element> chain = new ArrayList<Element>();
+        String className = elements.get(type).getAttribute("class");
+        while (className.length() > 0) {
+            Element c = classes.get(className);
+            chain.add(c);
+            className = c.getAttribute("superclass");
+        }
+        return chain;
+    }
+
+    /**
+     * Returns what the element type and its classes declare, the element's
+     * own declarations first.
+     */
+    private List<Element> declarations(String type) {
+        List<Element> declarations = new ArrayList<Element>(children(elements.get(type)));
+        for (Element c : classChain(type)) {
+            declarations.addAll(children(c));
+        }
+        return declarations;
+    }
+
+    /**
+     * Returns the element types that can stand for the given element or
+     * class name.
+     */
+    private List<String> concreteTypes(String name) {
+        List<String> types = new ArrayList<String>();
+        for (String type : elements.keySet()) {
+            if (type.equals(name)) {
+                types.add(type);
+            } else {
+                for (Element c : classChain(type)) {
+                    if (c.getAttribute("class").equals(name)) {
+                        types.add(type);
+                        break;
+                    }
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the attributes of the element type, including inherited ones.
+     * An attribute the element declares hides one of the same name from its
+     * classes, as it does in the reader.
+     */
+    private List<AttributeSpec> attributes(String type) {
+        Map<String, AttributeSpec> attributes = new LinkedHashMap<String, AttributeSpec>();
+        for (Element declaration : declarations(type)) {
+            if (declaration.getTagName().equals("Attribute") && !attributes.containsKey(declaration.getAttribute("name"))) {
+                AttributeSpec spec = new AttributeSpec(type, declaration);
+                attributes.put(spec.name, spec);
+            }
+        }
+        return new ArrayList<AttributeSpec>(attributes.values());
+    }
+
+    private boolean hasText(String type) {
+        for (Element declaration : children(elements.get(type))) {
+            if (declaration.getTagName().equals("CData")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the element types from Schema down to the given one.
+     */
+    private List<String> pathTo(String type) {
+        LinkedList<String> path = new LinkedList<String>();
+        for (String t = type; t != null; t = links.get(t) == null ? null : links.get(t).parentType) {
+            path.addFirst(t);
+        }
+        return path;
+    }
+
+    /**
+     * Writes a schema that nests the given element types, each inside the
+     * one before it, with every attribute set.
+     */
+    private void writeSchema(List<String> path) throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        for (String type : path) {
+            xml.append("<").append(type);
+            for (AttributeSpec attribute : attributes(type)) {
+                xml.append(" ").append(attribute.name).append("=\"").append(attribute.value).append("\"");
+            }
+            xml.append(" noSuchAttribute=\"ignored\">");
+            if (hasText(type)) {
+                xml.append("text of ").append(type);
+            } else {
+                xml.append("<NoSuchElement name=\"ignored\"><NoSuchChild/></NoSuchElement>");
+            }
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            xml.append("</").append(path.get(i)).append(">");
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write(xml.toString());
+        out.close();
+    }
+
+    private static String initcap(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Checks that every attribute of the object was set from the schema.
+     */
+    private void assertAttributes(String type, OLAPObject o) throws Exception {
+        assertEquals(MondrianModel.class.getName() + "$" + type, o.getClass().getName());
+        for (AttributeSpec attribute : attributes(type)) {
+            Method getter = o.getClass().getMethod("get" + initcap(attribute.name));
+            Object expected = attribute.isBoolean ? Boolean.valueOf(attribute.value) : attribute.value;
+            assertEquals(type + "." + attribute.name, expected, getter.invoke(o));
+        }
+        if (hasText(type)) {
+            assertEquals("text of " + type, o.getClass().getMethod("getText").invoke(o));
+        }
+    }
+
+    /**
+     * Every element of the model but the ones that can't be contained must
+     * be reachable from Schema, or this test would miss it.
+     */
+    public void testEveryElementIsCovered() throws Exception {
+        Set<String> missing = new TreeSet<String>(elements.keySet());
+        missing.removeAll(links.keySet());
+        assertEquals(new TreeSet<String>(UNREACHABLE_ELEMENTS), missing);
+    }
+
+    public void testEveryElementAndAttributeIsRead() throws Exception {
+        for (String type : links.keySet()) {
+            List<String> path = pathTo(type);
+            writeSchema(path);
+            OLAPObject o = MondrianXMLReader.importXML(file);
+            assertAttributes("Schema", o);
+            for (String step : path.subList(1, path.size())) {
+                Link link = links.get(step);
+                Object value = o.getClass().getMethod("get" + initcap(link.property)).invoke(o);
+                if (link.isArray) {
+                    List<?> list = (List<?>) value;
+                    assertEquals("Children of " + link.parentType + "." + link.property + " reading " + type,
+                            1, list.size());
+                    value = list.get(0);
+                }
+                assertNotNull(link.parentType + "." + link.property + " reading " + type, value);
+                o = (OLAPObject) value;
+                assertAttributes(step, o);
+            }
+            assertEquals(type + " should have no children", Collections.emptyList(),
+                    o.getChildren(OLAPObject.class));
+        }
+    }
+}
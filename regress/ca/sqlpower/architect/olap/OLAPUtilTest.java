@@ -20,8 +20,14 @@
 package ca.sqlpower.architect.olap;
 
 import junit.framework.TestCase;
+import ca.sqlpower.architect.olap.MondrianModel.Cube;
+import ca.sqlpower.architect.olap.MondrianModel.Dimension;
+import ca.sqlpower.architect.olap.MondrianModel.DimensionUsage;
 import ca.sqlpower.architect.olap.MondrianModel.Join;
+import ca.sqlpower.architect.olap.MondrianModel.Schema;
 import ca.sqlpower.architect.olap.MondrianModel.Table;
+import ca.sqlpower.architect.olap.MondrianModel.VirtualCube;
+import ca.sqlpower.architect.olap.MondrianModel.VirtualCubeDimension;
 
 public class OLAPUtilTest extends TestCase {
 
@@ -79,4 +85,106 @@ public class OLAPUtilTest extends TestCase {
         String sql = OLAPUtil.generateSQLFromJoin(join);
         assertEquals("SELECT * FROM schema.Table_One table1 JOIN (SELECT * FROM schema.Table_Two table2 JOIN schema.Table_Three table3 ON table2.column2=table3.column3) AS nestedJoin ON table1.column1=nestedJoin.column2", sql);
     }
+
+    private Schema schema;
+    private Dimension time;
+    private Cube sales;
+    private Dimension store;
+    private DimensionUsage salesTime;
+    private VirtualCube vCube;
+    private VirtualCubeDimension vStore;
+
+    @Override
+    protected void setUp() throws Exception {
+        schema = new Schema();
+        new OLAPSession(schema);
+        
+        time = new Dimension();
+        time.setName("Time");
+        schema.addDimension(time);
+        
+        sales = new Cube();
+        sales.setName("Sales");
+        store = new Dimension();
+        store.setName("Store");
+        sales.addDimension(store);
+        salesTime = new DimensionUsage();
+        salesTime.setName("Time");
+        salesTime.setSource("Time");
+        sales.addDimension(salesTime);
+        schema.addCube(sales);
+        
+        vCube = new VirtualCube();
+        vCube.setName("Virtual Sales");
+        vStore = new VirtualCubeDimension();
+        vStore.setCubeName("Sales");
+        vStore.setName("Store");
+        vCube.addDimension(vStore);
+        schema.addVirtualCube(vCube);
+    }
+
+    public void testFindReferencedDimension() throws Exception {
+        assertSame(time, OLAPUtil.findReferencedDimension(salesTime));
+        assertSame(store, OLAPUtil.findReferencedDimension(vStore));
+    }
+
+    public void testFindReferencedDimensionAfterCubeRename() throws Exception {
+        sales.setName("Revenue");
+        assertEquals("Revenue", vStore.getCubeName());
+        assertSame(store, OLAPUtil.findReferencedDimension(vStore));
+        assertTrue(OLAPUtil.isNameUnique(schema, Cube.class, "sales"));
+        assertFalse(OLAPUtil.isNameUnique(schema, Cube.class, "revenue"));
+    }
+
+    public void testFindReferencedDimensionAfterDimensionRename() throws Exception {
+        store.setName("Shop");
+        assertEquals("Shop", vStore.getName());
+        assertSame(store, OLAPUtil.findReferencedDimension(vStore));
+        assertTrue(OLAPUtil.isNameUnique(sales, Dimension.class, "store"));
+        assertFalse(OLAPUtil.isNameUnique(sales, Dimension.class, "SHOP"));
+    }
+
+    public void testNameUniqueAfterRemoval() throws Exception {
+        assertFalse(OLAPUtil.isNameUnique(schema, VirtualCube.class, "virtual sales"));
+        assertFalse(OLAPUtil.isNameUnique(sales, DimensionUsage.class, "time"));
+        schema.removeVirtualCube(vCube);
+        assertTrue(OLAPUtil.isNameUnique(schema, VirtualCube.class, "virtual sales"));
+        sales.removeDimension(salesTime);
+        assertTrue(OLAPUtil.isNameUnique(sales, DimensionUsage.class, "time"));
+    }
+
+    /**
+     * Removing one of two objects with the same name leaves the other one
+     * to be found.
+     */
+    public void testRemovingDuplicateNameKeepsTheOther() throws Exception {
+        Cube copy = new Cube();
+        copy.setName("SALES");
+        schema.addCube(copy);
+        schema.removeCube(sales);
+        assertFalse(OLAPUtil.isNameUnique(schema, Cube.class, "Sales"));
+        assertSame(copy, OLAPUtil.getSession(schema).getSchemaWatcher().findCube("sales"));
+    }
+
+    /**
+     * The dimensions of a cube that shares its name with an earlier one must
+     * not be found through the earlier cube.
+     */
+    public void testShadowedCubeDimensionsStayWithTheirCube() throws Exception {
+        Cube copy = new Cube();
+        copy.setName("SALES");
+        Dimension region = new Dimension();
+        region.setName("Region");
+        copy.addDimension(region);
+        schema.addCube(copy);
+
+        SchemaWatcher index = OLAPUtil.getSession(schema).getSchemaWatcher();
+        assertNull(index.findCubeDimension("sales", "region"));
+        assertSame(region, index.findCubeDimension(copy, "region"));
+        assertTrue(OLAPUtil.isNameUnique(sales, Dimension.class, "region"));
+        assertFalse(OLAPUtil.isNameUnique(copy, Dimension.class, "region"));
+
+        schema.removeCube(sales);
+        assertSame(region, index.findCubeDimension("sales", "region"));
+    }
 }
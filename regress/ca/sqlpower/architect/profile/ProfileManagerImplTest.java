@@ -19,6 +19,10 @@
 
 package ca.sqlpower.architect.profile;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import ca.sqlpower.architect.ArchitectProject;
 import ca.sqlpower.architect.StubArchitectSession;
 import ca.sqlpower.architect.util.ArchitectNewValueMaker;
@@ -26,6 +30,7 @@ import ca.sqlpower.object.PersistedSPObjectTest;
 import ca.sqlpower.object.SPObject;
 import ca.sqlpower.sql.DataSourceCollection;
 import ca.sqlpower.sql.SPDataSource;
+import ca.sqlpower.sqlobject.SQLTable;
 import ca.sqlpower.testutil.NewValueMaker;
 
 public class ProfileManagerImplTest extends PersistedSPObjectTest {
@@ -69,4 +74,27 @@ public class ProfileManagerImplTest extends PersistedSPObjectTest {
         return profileManager;
     }
 
+    /**
+     * A manager that was given its session's scheduler uses it and leaves it
+     * running when it is closed, since other managers of the session share it.
+     */
+    public void testSharedSchedulerOutlivesManager() throws Exception {
+        ProfileScheduler scheduler = new ProfileScheduler(1, 1);
+        ProfileManagerImpl first = new ProfileManagerImpl();
+        first.setScheduler(scheduler);
+        ProfileManagerImpl second = new ProfileManagerImpl();
+        second.setScheduler(scheduler);
+        assertSame(first.getScheduler(), second.getScheduler());
+
+        first.close();
+        final TableProfileResult result = new TableProfileResult(new SQLTable(), new ProfileSettings());
+        Future<TableProfileResult> job = scheduler.submit(new Callable<TableProfileResult>() {
+            public TableProfileResult call() throws Exception {
+                return result;
+            }
+        }, result, "ds", 0);
+        assertSame(result, job.get(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
 }
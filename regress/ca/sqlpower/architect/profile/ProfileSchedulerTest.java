@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class ProfileSchedulerTest extends TestCase {
+
+    /**
+     * A job that records how many jobs of its data source were running at
+     * the same time as it.
+     */
+    private static class CountingJob implements Callable<TableProfileResult> {
+        private final TableProfileResult result;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+        private final List<String> startOrder;
+        private final String name;
+
+        CountingJob(String name, TableProfileResult result, AtomicInteger running,
+                AtomicInteger maxRunning, List<String> startOrder) {
+            this.name = name;
+            this.result = result;
+            this.running = running;
+            this.maxRunning = maxRunning;
+            this.startOrder = startOrder;
+        }
+
+        public TableProfileResult call() throws Exception {
+            startOrder.add(name);
+            int now = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), now));
+            }
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return result;
+        }
+    }
+
+    private TableProfileResult newResult() throws Exception {
+        return new TableProfileResult(new SQLTable(), new ProfileSettings());
+    }
+
+    public void testPerDataSourceLimit() throws Exception {
+        ProfileScheduler scheduler = new ProfileScheduler(4, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> startOrder = Collections.synchronizedList(new ArrayList<String>());
+        Object dataSource = new Object();
+
+        List<Future<TableProfileResult>> futures = new ArrayList<Future<TableProfileResult>>();
+        for (int i = 0; i < 10; i++) {
+            TableProfileResult tpr = newResult();
+            futures.add(scheduler.submit(new CountingJob("t" + i, tpr, running, maxRunning, startOrder),
+                    tpr, dataSource, 0));
+        }
+        for (Future<TableProfileResult> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(10, startOrder.size());
+        assertTrue("Too many jobs ran at once: " + maxRunning.get(), maxRunning.get() <= 2);
+        assertEquals(0, scheduler.getOutstandingCount());
+        scheduler.shutdown();
+    }
+
+    public void testLargestTablesStartFirst() throws Exception {
+        ProfileScheduler scheduler = new ProfileScheduler(1, 1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        TableProfileResult first = newResult();
+        final TableProfileResult firstResult = first;
+        Future<TableProfileResult> blockingJob = scheduler.submit(new Callable<TableProfileResult>() {
+            public TableProfileResult call() throws Exception {
+                blocker.await();
+                return firstResult;
+            }
+        }, first, "ds", 0);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> startOrder = Collections.synchronizedList(new ArrayList<String>());
+        List<Future<TableProfileResult>> futures = new ArrayList<Future<TableProfileResult>>();
+        long[] sizes = new long[] { 10, 1000, 100 };
+        for (long size : sizes) {
+            TableProfileResult tpr = newResult();
+            futures.add(scheduler.submit(new CountingJob(String.valueOf(size), tpr, running, maxRunning, startOrder),
+                    tpr, "ds", size));
+        }
+        blocker.countDown();
+        blockingJob.get(10, TimeUnit.SECONDS);
+        for (Future<TableProfileResult> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals("1000", startOrder.get(0));
+        assertEquals("100", startOrder.get(1));
+        assertEquals("10", startOrder.get(2));
+        scheduler.shutdown();
+    }
+
+    public void testCancelAll() throws Exception {
+        ProfileScheduler scheduler = new ProfileScheduler(1, 1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final TableProfileResult first = newResult();
+        scheduler.submit(new Callable<TableProfileResult>() {
+            public TableProfileResult call() throws Exception {
+                blocker.await();
+                return first;
+            }
+        }, first, "ds", 0);
+        TableProfileResult waiting = newResult();
+        Future<TableProfileResult> waitingJob = scheduler.submit(new Callable<TableProfileResult>() {
+            public TableProfileResult call() throws Exception {
+                fail("A cancelled job should not run");
+                return null;
+            }
+        }, waiting, "ds", 0);
+
+        scheduler.cancelAll();
+        blocker.countDown();
+        assertTrue(waitingJob.isCancelled());
+        assertTrue(waiting.getProgressMonitor().isCancelled());
+        assertTrue(first.getProgressMonitor().isCancelled());
+        scheduler.shutdown();
+        assertEquals(0, scheduler.getOutstandingCount());
+    }
+
+    /**
+     * Cancelling a running job must not let the next job for its data source
+     * start before the cancelled one has returned.
+     */
+    public void testCancelledRunningJobKeepsSlot() throws Exception {
+        ProfileScheduler scheduler = new ProfileScheduler(2, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final TableProfileResult first = newResult();
+        Future<TableProfileResult> runningJob = scheduler.submit(new Callable<TableProfileResult>() {
+            public TableProfileResult call() throws Exception {
+                running.incrementAndGet();
+                maxRunning.set(1);
+                started.countDown();
+                blocker.await();
+                running.decrementAndGet();
+                return first;
+            }
+        }, first, "ds", 0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        TableProfileResult next = newResult();
+        List<String> startOrder = Collections.synchronizedList(new ArrayList<String>());
+        Future<TableProfileResult> nextJob = scheduler.submit(
+                new CountingJob("next", next, running, maxRunning, startOrder), next, "ds", 0);
+
+        runningJob.cancel(false);
+        Thread.sleep(100);
+        assertTrue("The next job started while the cancelled one was still running", startOrder.isEmpty());
+
+        blocker.countDown();
+        nextJob.get(10, TimeUnit.SECONDS);
+        assertEquals(1, maxRunning.get());
+        scheduler.shutdown();
+    }
+}
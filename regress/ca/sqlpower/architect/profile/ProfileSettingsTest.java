@@ -57,4 +57,19 @@ public class ProfileSettingsTest extends PersistedSPObjectTest {
         return new ArchitectNewValueMaker(root, dsCollection);
     }
 
+    /**
+     * A profile taken from a different sample must not be reused, so the
+     * sample percentage is part of the settings a result depends on.
+     */
+    public void testResultSettingsIncludeSamplePercent() throws Exception {
+        ProfileSettings settings = new ProfileSettings();
+        String before = settings.describeResultSettings();
+        settings.setSamplePercent(50);
+        assertFalse(before.equals(settings.describeResultSettings()));
+        settings.setSamplePercent(1.0);
+        assertEquals(before, settings.describeResultSettings());
+        settings.setThreadCount(settings.getThreadCount() + 1);
+        assertEquals(before, settings.describeResultSettings());
+    }
+
 }
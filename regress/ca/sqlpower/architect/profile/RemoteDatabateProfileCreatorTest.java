@@ -134,6 +134,81 @@ public class RemoteDatabateProfileCreatorTest extends TestCase {
         
     }
 
+    /**
+     * Profiles the given table with the given settings in a minimal project
+     * and returns the result.
+     */
+    private TableProfileResult profile(SQLDatabase db, SQLTable table, ProfileSettings settings) throws Exception {
+        final ArchitectProject project = new ArchitectProject();
+        StubArchitectSession session = new StubArchitectSession() {
+            @Override
+            public ArchitectProject getWorkspace() {
+                return project;
+            }
+            @Override
+            public void runInForeground(Runnable runner) {
+                runner.run();
+            }
+        };
+        project.setSession(session);
+        ProfileManager profileManager = new ProfileManagerImpl();
+        project.setProfileManager(profileManager);
+        TableProfileResult tpr = new TableProfileResult(table, settings);
+        profileManager.addChild(tpr, 0);
+        project.getRootObject().addDatabase(db, 0);
+        new RemoteDatabaseProfileCreator(settings).doProfile(tpr);
+        return tpr;
+    }
+
+    /**
+     * Tests that all of the columns of a table are aggregated by one query by
+     * default, and that each column gets its own query when the columns per
+     * query setting is 1.
+     */
+    public void testBatchedColumnAggregates() throws Exception {
+        Connection con = null;
+        Statement stmt = null;
+        try {
+            con = ds.createConnection();
+            stmt = con.createStatement();
+            stmt.execute("create table batched_table (col1 varchar (50), col2 varchar (50))");
+            stmt.execute("insert into batched_table (col1, col2) values ('hello', 'a')");
+            stmt.execute("insert into batched_table (col1, col2) values ('hello', null)");
+            stmt.execute("insert into batched_table (col1, col2) values ('goodbye', 'abc')");
+            SQLDatabase db = new SQLDatabase(ds);
+            SQLTable table = db.getTableByName("batched_table");
+
+            TableProfileResult tpr = profile(db, table, new ProfileSettings());
+            assertEquals(3, tpr.getRowCount());
+            ColumnProfileResult col1 = tpr.getColumnProfileResults().get(0);
+            ColumnProfileResult col2 = tpr.getColumnProfileResults().get(1);
+            assertNull(col1.getException());
+            assertNull(col2.getException());
+            assertEquals(2, col1.getDistinctValueCount());
+            assertEquals("goodbye", col1.getMinValue());
+            assertEquals(7, col1.getMaxLength());
+            assertEquals(0, col1.getNullCount());
+            assertEquals("hello", col1.getValueCount().get(0).getValue());
+            assertEquals(2, col1.getValueCount().get(0).getCount());
+            assertEquals(1, col2.getNullCount());
+            assertEquals("abc", col2.getMaxValue());
+            
+            // row count, one aggregate query and one top N query per column
+            assertEquals(4, tpr.getQueryCount());
+            
+            ProfileSettings oneColumnPerQuery = new ProfileSettings();
+            oneColumnPerQuery.setColumnsPerQuery(1);
+            SQLDatabase db2 = new SQLDatabase(ds);
+            tpr = profile(db2, db2.getTableByName("batched_table"), oneColumnPerQuery);
+            assertEquals(5, tpr.getQueryCount());
+            assertEquals(2, tpr.getColumnProfileResults().get(0).getDistinctValueCount());
+        } finally {
+            if (con != null) {
+                con.close();
+            }
+        }
+    }
+
     /**
      * Removes all ProfileFunctionDescriptor entries from the given database type.
      */
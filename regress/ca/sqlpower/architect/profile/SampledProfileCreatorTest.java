@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.ArchitectProject;
+import ca.sqlpower.architect.StubArchitectSession;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class SampledProfileCreatorTest extends TestCase {
+
+    public void testCountErrorBound() throws Exception {
+        // 100 of 1000 sampled rows at 10%: p = 0.1, N = 10000
+        long bound = SampledProfileCreator.countErrorBound(100, 1000, 0.1);
+        double expected = 1.96 * Math.sqrt(0.1 * 0.9 / 1000 * 0.9) * 10000;
+        assertEquals(Math.round(expected), bound);
+
+        // nothing seen in the sample still leaves room for some rows
+        assertEquals(30, SampledProfileCreator.countErrorBound(0, 1000, 0.1));
+        assertEquals(0, SampledProfileCreator.countErrorBound(0, 0, 0.1));
+    }
+
+    public void testEstimateDistinctValueCount() throws Exception {
+        ColumnProfileResult cpr = new ColumnProfileResult(new SQLColumn());
+        cpr.setDistinctValueCount(500);
+
+        // 100 values seen once in a 1% sample
+        SampledProfileCreator.estimateDistinctValueCount(cpr, 100, 0.01, 1000000);
+        assertEquals(400 + 1000, cpr.getDistinctValueCount());
+        assertEquals(400 + 10000 - 1400, cpr.getDistinctValueCountErrorBound());
+    }
+
+    public void testEstimateDistinctValueCountNeverExceedsRows() throws Exception {
+        ColumnProfileResult cpr = new ColumnProfileResult(new SQLColumn());
+        cpr.setDistinctValueCount(100);
+        SampledProfileCreator.estimateDistinctValueCount(cpr, 100, 0.01, 500);
+        assertEquals(500, cpr.getDistinctValueCount());
+    }
+
+    /**
+     * The background copy of a result must sample the same rows as the
+     * result itself, so the seed only depends on the result's UUID.
+     */
+    public void testSampleSeedFollowsResult() throws Exception {
+        ProfileSettings settings = new ProfileSettings();
+        TableProfileResult tpr = new TableProfileResult(new SQLTable(), settings);
+        TableProfileResult copy = new TableProfileResult(new SQLTable(), settings);
+        copy.setUUID(tpr.getUUID());
+        assertEquals(SampledProfileCreator.sampleSeed(tpr), SampledProfileCreator.sampleSeed(copy));
+        assertTrue(SampledProfileCreator.sampleSeed(tpr) >= 0);
+    }
+
+    /**
+     * A table whose sample would be too small to extrapolate from is
+     * profiled completely.
+     */
+    public void testSmallTableIsNotSampled() throws Exception {
+        PlDotIni plini = new PlDotIni();
+        plini.read(new File("pl.regression.ini"));
+        JDBCDataSource ds = plini.getDataSource("regression_test", JDBCDataSource.class);
+        Connection con = null;
+        Statement stmt = null;
+        try {
+            con = ds.createConnection();
+            stmt = con.createStatement();
+            stmt.execute("create table sampled_table (col1 varchar (50))");
+            stmt.execute("insert into sampled_table (col1) values ('hello')");
+            stmt.execute("insert into sampled_table (col1) values (null)");
+            SQLDatabase db = new SQLDatabase(ds);
+            SQLTable table = db.getTableByName("sampled_table");
+
+            final ArchitectProject project = new ArchitectProject();
+            StubArchitectSession session = new StubArchitectSession() {
+                @Override
+                public ArchitectProject getWorkspace() {
+                    return project;
+                }
+                @Override
+                public void runInForeground(Runnable runner) {
+                    runner.run();
+                }
+            };
+            project.setSession(session);
+            ProfileManager profileManager = new ProfileManagerImpl();
+            project.setProfileManager(profileManager);
+            ProfileSettings settings = new ProfileSettings();
+            settings.setSamplePercent(50);
+            TableProfileResult tpr = new TableProfileResult(table, settings);
+            profileManager.addChild(tpr, 0);
+            project.getRootObject().addDatabase(db, 0);
+            new SampledProfileCreator(settings).doProfile(tpr);
+
+            assertFalse(tpr.isSampled());
+            assertEquals(2, tpr.getRowCount());
+            assertEquals(2, tpr.getSampleRowCount());
+            ColumnProfileResult cpr = tpr.getColumnProfileResults().get(0);
+            assertNull(cpr.getException());
+            assertEquals(1, cpr.getNullCount());
+            assertEquals(0, cpr.getNullCountErrorBound());
+        } finally {
+            if (stmt != null) {
+                stmt.execute("drop table sampled_table");
+            }
+            if (con != null) {
+                con.close();
+            }
+        }
+    }
+}
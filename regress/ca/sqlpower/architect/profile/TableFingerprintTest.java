@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sql.PlDotIni;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class TableFingerprintTest extends TestCase {
+
+    private JDBCDataSource ds;
+
+    private Connection con;
+
+    private Statement stmt;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PlDotIni plini = new PlDotIni();
+        plini.read(new File("pl.regression.ini"));
+        ds = plini.getDataSource("regression_test", JDBCDataSource.class);
+        con = ds.createConnection();
+        stmt = con.createStatement();
+        stmt.execute("create table fingerprint_table (id integer, last_updated integer)");
+        stmt.execute("insert into fingerprint_table (id, last_updated) values (1, 10)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        stmt.execute("drop table fingerprint_table");
+        stmt.close();
+        con.close();
+        super.tearDown();
+    }
+
+    private String fingerprint(String watermarkColumn) throws Exception {
+        SQLTable table = new SQLDatabase(ds).getTableByName("fingerprint_table");
+        return TableFingerprint.compute(table, watermarkColumn);
+    }
+
+    public void testUnchangedTableHasSameFingerprint() throws Exception {
+        assertEquals(fingerprint(null), fingerprint(null));
+        assertEquals(fingerprint("last_updated"), fingerprint("last_updated"));
+    }
+
+    public void testRowCountChangesFingerprint() throws Exception {
+        String before = fingerprint(null);
+        stmt.execute("insert into fingerprint_table (id, last_updated) values (2, 11)");
+        assertFalse(before.equals(fingerprint(null)));
+    }
+
+    /**
+     * An update doesn't change the row count, so only the watermark column
+     * can tell that the table changed.
+     */
+    public void testWatermarkChangesFingerprint() throws Exception {
+        String before = fingerprint("LAST_UPDATED");
+        stmt.execute("update fingerprint_table set last_updated = 12 where id = 1");
+        assertFalse(before.equals(fingerprint("LAST_UPDATED")));
+    }
+
+    public void testMissingWatermarkColumnIsIgnored() throws Exception {
+        assertEquals(fingerprint(null), fingerprint("no_such_column"));
+    }
+}
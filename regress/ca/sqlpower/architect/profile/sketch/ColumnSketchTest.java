@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile.sketch;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ColumnSketchTest extends TestCase {
+
+    public void testSmallDistinctCountIsExact() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 1000; i++) {
+            hll.offer("value " + (i % 37));
+        }
+        assertEquals(37, hll.estimate());
+    }
+
+    public void testLargeDistinctCountWithinTwoPercent() {
+        HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 200000; i++) {
+            hll.offerLong(i);
+        }
+        assertEquals(200000.0, hll.estimate(), 200000 * 0.02);
+    }
+
+    public void testHyperLogLogMerge() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (long i = 0; i < 500; i++) {
+            a.offerLong(i);
+            b.offerLong(i + 250);
+        }
+        a.merge(b);
+        assertEquals(750.0, a.estimate(), 750 * 0.02);
+    }
+
+    public void testSpaceSavingFindsFrequentValues() {
+        SpaceSavingTopN topN = new SpaceSavingTopN(10);
+        for (int i = 0; i < 10000; i++) {
+            if (i % 2 == 0) {
+                topN.offer("half");
+            } else if (i % 5 == 0) {
+                topN.offer(null);
+            } else {
+                topN.offer(Integer.valueOf(i));
+            }
+        }
+        List<SpaceSavingTopN.Counter> top = topN.getTop(2);
+        assertEquals("half", top.get(0).getValue());
+        assertNull(top.get(1).getValue());
+        assertTrue(top.get(0).getCount() >= 5000);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 5000);
+    }
+
+    public void testTDigestQuantiles() {
+        TDigest digest = new TDigest();
+        for (int i = 1; i <= 100000; i++) {
+            digest.add(i);
+        }
+        assertEquals(1.0, digest.getMin());
+        assertEquals(100000.0, digest.getMax());
+        assertEquals(50000.0, digest.quantile(0.5), 500);
+        assertEquals(99000.0, digest.quantile(0.99), 200);
+    }
+
+    public void testLongColumn() {
+        ColumnSketch sketch = new ColumnSketch(ColumnSketch.Kind.LONG, 100, true);
+        sketch.updateLong(-10);
+        sketch.updateLong(5);
+        sketch.updateLong(5);
+        sketch.updateNull();
+        assertEquals(4, sketch.getCount());
+        assertEquals(1, sketch.getNullCount());
+        assertEquals(3, sketch.getDistinctCount());
+        assertEquals(Long.valueOf(-10), sketch.getMinValue());
+        assertEquals(Long.valueOf(5), sketch.getMaxValue());
+        assertEquals(0.0, sketch.getAverage().doubleValue(), 0.0001);
+        assertEquals(1, sketch.getMinLength());
+        assertEquals(3, sketch.getMaxLength());
+        assertEquals(Long.valueOf(5), sketch.getTopN().getTop(1).get(0).getValue());
+    }
+
+    public void testObjectColumnMerge() {
+        ColumnSketch a = new ColumnSketch(ColumnSketch.Kind.OBJECT, 100, true);
+        ColumnSketch b = new ColumnSketch(ColumnSketch.Kind.OBJECT, 100, true);
+        a.update("apple");
+        a.update("pear");
+        b.update("banana");
+        b.update("pear");
+        b.update(null);
+        a.merge(b);
+        assertEquals(5, a.getCount());
+        assertEquals(1, a.getNullCount());
+        assertEquals(4, a.getDistinctCount());
+        assertEquals("apple", a.getMinValue());
+        assertEquals("pear", a.getMaxValue());
+        assertNull(a.getAverage());
+        assertEquals("pear", a.getTopN().getTop(1).get(0).getValue());
+        assertEquals(2, a.getTopN().getTop(1).get(0).getCount());
+    }
+
+    public void testStringLength() {
+        assertEquals(String.valueOf(0L).length(), ColumnSketch.stringLength(0));
+        assertEquals(String.valueOf(-123L).length(), ColumnSketch.stringLength(-123));
+        assertEquals(String.valueOf(Long.MAX_VALUE).length(), ColumnSketch.stringLength(Long.MAX_VALUE));
+        assertEquals(String.valueOf(Long.MIN_VALUE).length(), ColumnSketch.stringLength(Long.MIN_VALUE));
+    }
+}
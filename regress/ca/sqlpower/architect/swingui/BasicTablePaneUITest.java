@@ -21,10 +21,14 @@ package ca.sqlpower.architect.swingui;
 
 import java.awt.Font;
 import java.awt.FontMetrics;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
 import java.sql.Types;
 
 import junit.framework.TestCase;
+import ca.sqlpower.architect.swingui.PlayPen.LevelOfDetail;
 import ca.sqlpower.sqlobject.SQLColumn;
 import ca.sqlpower.sqlobject.SQLTable;
 
@@ -94,4 +98,29 @@ public class BasicTablePaneUITest extends TestCase {
         assertEquals(ContainerPane.ITEM_INDEX_NONE, returnVal);
     }
 
+    /**
+     * Moving a table or its insertion point does not change how it looks, so
+     * these changes must keep the table's cached image. Any other property
+     * change must drop it.
+     */
+    public void testMovesKeepCachedImage() throws Exception {
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        try {
+            TablePaneImageCache cache = pp.getTableImageCache();
+            BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+            cache.put(tp, g, LevelOfDetail.FULL, image);
+
+            ui.propertyChanged(new PropertyChangeEvent(tp, "topLeftCorner", new Point(0, 0), new Point(10, 10)));
+            assertSame(image, cache.get(tp, g, LevelOfDetail.FULL));
+
+            ui.propertyChanged(new PropertyChangeEvent(tp, "insertionPoint", 0, 1));
+            assertSame(image, cache.get(tp, g, LevelOfDetail.FULL));
+
+            ui.propertyChanged(new PropertyChangeEvent(tp, "backgroundColor", null, null));
+            assertNull(cache.get(tp, g, LevelOfDetail.FULL));
+        } finally {
+            g.dispose();
+        }
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class JournalImageTest extends TestCase {
+
+    private JournalImage image;
+
+    @Override
+    protected void setUp() throws Exception {
+        image = new JournalImage();
+        image.apply(new JSONArray()
+                .put(persistObject(null, "Workspace", "ws", 0))
+                .put(persistProperty("ws", "name", "project")));
+    }
+
+    private static JSONObject persistObject(String parentUUID, String type, String uuid, int index) throws Exception {
+        return new JSONObject()
+            .put("method", "persistObject")
+            .put("parentUUID", parentUUID == null ? JSONObject.NULL : parentUUID)
+            .put("type", type)
+            .put("uuid", uuid)
+            .put("index", index);
+    }
+
+    private static JSONObject persistProperty(String uuid, String name, String value) throws Exception {
+        return new JSONObject()
+            .put("method", "persistProperty")
+            .put("uuid", uuid)
+            .put("propertyName", name)
+            .put("type", "STRING")
+            .put("newValue", value);
+    }
+
+    /**
+     * Returns the UUIDs of the objects in the snapshot with their index, in
+     * the order they are persisted.
+     */
+    private List<String> objects() throws Exception {
+        List<String> objects = new ArrayList<String>();
+        JSONArray snapshot = image.toSnapshot();
+        assertEquals("begin", snapshot.getJSONObject(0).getString("method"));
+        assertEquals("commit", snapshot.getJSONObject(snapshot.length() - 1).getString("method"));
+        for (int i = 0; i < snapshot.length(); i++) {
+            JSONObject message = snapshot.getJSONObject(i);
+            if (message.getString("method").equals("persistObject")) {
+                objects.add(message.getString("uuid") + "@" + message.getInt("index"));
+            }
+        }
+        return objects;
+    }
+
+    public void testIndexCountsChildrenOfSameType() throws Exception {
+        image.apply(new JSONArray()
+                .put(persistObject("ws", "Table", "b", 0))
+                .put(persistObject("ws", "Folder", "f", 0))
+                .put(persistObject("ws", "Table", "a", 0))
+                .put(persistObject("ws", "Table", "c", 2)));
+        assertEquals("[ws@0, a@0, b@1, f@0, c@2]", objects().toString());
+    }
+
+    public void testRemoveForgetsDescendants() throws Exception {
+        image.apply(new JSONArray()
+                .put(persistObject("ws", "Table", "t", 0))
+                .put(persistObject("t", "Column", "col", 0))
+                .put(new JSONObject().put("method", "removeObject").put("parentUUID", "ws").put("uuid", "t"))
+                .put(persistProperty("col", "name", "orphan")));
+        assertEquals("[ws@0]", objects().toString());
+    }
+
+    public void testLastPropertyValueKept() throws Exception {
+        image.apply(new JSONArray()
+                .put(new JSONObject()
+                    .put("method", "changeProperty")
+                    .put("uuid", "ws")
+                    .put("propertyName", "name")
+                    .put("type", "STRING")
+                    .put("oldValue", "project")
+                    .put("newValue", "renamed")));
+        JSONObject property = image.toSnapshot().getJSONObject(2);
+        assertEquals("persistProperty", property.getString("method"));
+        assertEquals("renamed", property.getString("newValue"));
+        assertFalse(property.has("oldValue"));
+    }
+}
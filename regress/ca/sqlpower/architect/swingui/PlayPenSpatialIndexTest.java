@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.swingui;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class PlayPenSpatialIndexTest extends TestCase {
+
+    private PlayPenSpatialIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        index = new PlayPenSpatialIndex();
+    }
+
+    private PlayPenComponent component(int x, int y, int width, int height) {
+        PlayPenComponent c = new PlayPenComponentImpl();
+        c.setBounds(x, y, width, height);
+        return c;
+    }
+
+    public void testQueryFindsOnlyIntersectingComponents() throws Exception {
+        PlayPenComponent inside = component(10, 10, 50, 50);
+        PlayPenComponent outside = component(500, 500, 50, 50);
+        index.add(inside);
+        index.add(outside);
+
+        List<PlayPenComponent> found = index.query(new Rectangle(0, 0, 100, 100));
+        assertEquals(1, found.size());
+        assertSame(inside, found.get(0));
+    }
+
+    /**
+     * Horizontal lines have no height but must still be found.
+     */
+    public void testZeroHeightComponentIsFound() throws Exception {
+        PlayPenComponent line = component(10, 40, 200, 0);
+        index.add(line);
+        assertEquals(1, index.query(new Rectangle(100, 40, 1, 1)).size());
+    }
+
+    public void testUpdateMovesComponent() throws Exception {
+        PlayPenComponent c = component(10, 10, 50, 50);
+        index.add(c);
+        c.setLocation(3000, 3000);
+        index.update(c);
+        assertTrue(index.query(new Rectangle(0, 0, 100, 100)).isEmpty());
+        assertEquals(1, index.query(new Rectangle(3000, 3000, 10, 10)).size());
+    }
+
+    public void testIndexGrowsForFarAwayComponents() throws Exception {
+        PlayPenComponent near = component(10, 10, 50, 50);
+        PlayPenComponent far = component(100000, 100000, 50, 50);
+        PlayPenComponent negative = component(-500, -500, 50, 50);
+        index.add(near);
+        index.add(far);
+        index.add(negative);
+        assertEquals(3, index.size());
+        assertSame(far, index.query(new Rectangle(100000, 100000, 1, 1)).get(0));
+        assertSame(negative, index.query(new Rectangle(-480, -480, 1, 1)).get(0));
+        assertSame(near, index.query(new Rectangle(20, 20, 1, 1)).get(0));
+    }
+
+    public void testRemove() throws Exception {
+        PlayPenComponent c = component(10, 10, 50, 50);
+        index.add(c);
+        index.remove(c);
+        assertEquals(0, index.size());
+        assertTrue(index.query(new Rectangle(0, 0, 100, 100)).isEmpty());
+    }
+
+    /**
+     * Compares queries against a linear scan on enough components to split
+     * the tree several levels deep.
+     */
+    public void testMatchesLinearScan() throws Exception {
+        Random random = new Random(1234);
+        List<PlayPenComponent> components = new ArrayList<PlayPenComponent>();
+        for (int i = 0; i < 2000; i++) {
+            PlayPenComponent c = component(random.nextInt(6000), random.nextInt(6000),
+                    random.nextInt(300), random.nextInt(300));
+            components.add(c);
+            index.add(c);
+        }
+        for (int i = 0; i < 500; i++) {
+            PlayPenComponent c = components.get(random.nextInt(components.size()));
+            c.setLocation(random.nextInt(6000), random.nextInt(6000));
+            index.update(c);
+        }
+        for (int i = 0; i < 100; i++) {
+            Rectangle region = new Rectangle(random.nextInt(6000), random.nextInt(6000),
+                    random.nextInt(800) + 1, random.nextInt(800) + 1);
+            Set<PlayPenComponent> expected = new HashSet<PlayPenComponent>();
+            for (PlayPenComponent c : components) {
+                Rectangle bounds = c.getBounds();
+                bounds.width++;
+                bounds.height++;
+                if (bounds.intersects(region)) {
+                    expected.add(c);
+                }
+            }
+            assertEquals(expected, new HashSet<PlayPenComponent>(index.query(region)));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+import ca.sqlpower.sqlobject.SQLTable;
+
+public class ProjectJournalTest extends TestCase {
+
+    private TestingArchitectSwingSessionContext context;
+    private ArchitectSwingSession session;
+    private File projectFile;
+    private ProjectJournal journal;
+
+    @Override
+    protected void setUp() throws Exception {
+        context = new TestingArchitectSwingSessionContext();
+        session = context.createSession();
+        projectFile = File.createTempFile("journal", ".architect");
+        projectFile.deleteOnExit();
+        ProjectJournal.journalFileFor(projectFile).deleteOnExit();
+        journal = new ProjectJournal(session);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        journal.close();
+        journal.waitForWrites();
+    }
+
+    /**
+     * A project that matches its file has nothing to recover, so the journal
+     * isn't written until the first change.
+     */
+    public void testNoChangesAfterStart() throws Exception {
+        journal.start(projectFile, false);
+        journal.waitForWrites();
+        assertFalse(ProjectJournal.journalFileFor(projectFile).exists());
+        assertFalse(ProjectJournal.hasUnsavedChanges(projectFile));
+    }
+
+    /**
+     * A project that was recovered doesn't match its file, so it can be
+     * recovered again before it is changed.
+     */
+    public void testChangedProjectJournaledAtStart() throws Exception {
+        session.getTargetDatabase().addChild(new SQLTable(null, "recovered", null, "TABLE", true));
+        journal.start(projectFile, true);
+        journal.waitForWrites();
+        assertTrue(ProjectJournal.hasUnsavedChanges(projectFile));
+
+        ArchitectSwingSession recovered = context.createSession();
+        recovered.getUndoManager().setLoading(true);
+        ProjectJournal.replay(ProjectJournal.journalFileFor(projectFile), recovered);
+        recovered.getUndoManager().setLoading(false);
+        assertNotNull(recovered.getTargetDatabase().getTableByName("recovered"));
+    }
+
+    /**
+     * Starting a journal removes one left from before, which was either
+     * recovered or turned down.
+     */
+    public void testStartRemovesOldJournal() throws Exception {
+        journal.start(projectFile, false);
+        session.getTargetDatabase().addChild(new SQLTable(null, "journaled", null, "TABLE", true));
+        journal.waitForWrites();
+        assertTrue(ProjectJournal.hasUnsavedChanges(projectFile));
+
+        ProjectJournal newJournal = new ProjectJournal(context.createSession());
+        newJournal.start(projectFile, false);
+        newJournal.waitForWrites();
+        assertFalse(ProjectJournal.journalFileFor(projectFile).exists());
+        newJournal.close();
+        newJournal.waitForWrites();
+    }
+
+    public void testReplayChanges() throws Exception {
+        journal.start(projectFile, false);
+        session.getTargetDatabase().addChild(new SQLTable(null, "journaled", null, "TABLE", true));
+        journal.waitForWrites();
+        assertTrue(ProjectJournal.hasUnsavedChanges(projectFile));
+
+        ArchitectSwingSession recovered = context.createSession();
+        recovered.getUndoManager().setLoading(true);
+        ProjectJournal.replay(ProjectJournal.journalFileFor(projectFile), recovered);
+        recovered.getUndoManager().setLoading(false);
+        assertNotNull(recovered.getTargetDatabase().getTableByName("journaled"));
+    }
+
+    /**
+     * Starting the journal again, as saving does, writes the new snapshot
+     * from the journal's own copy of the workspace, which has to hold the
+     * changes recorded before it.
+     */
+    public void testRestartedJournalKeepsEarlierChanges() throws Exception {
+        journal.start(projectFile, false);
+        SQLTable kept = new SQLTable(null, "kept", null, "TABLE", true);
+        session.getTargetDatabase().addChild(kept);
+        SQLTable dropped = new SQLTable(null, "dropped", null, "TABLE", true);
+        session.getTargetDatabase().addChild(dropped);
+        session.getTargetDatabase().removeChild(dropped);
+        kept.setName("renamed");
+
+        journal.start(projectFile, false);
+        session.getTargetDatabase().addChild(new SQLTable(null, "after", null, "TABLE", true));
+        journal.waitForWrites();
+
+        ArchitectSwingSession recovered = context.createSession();
+        recovered.getUndoManager().setLoading(true);
+        ProjectJournal.replay(ProjectJournal.journalFileFor(projectFile), recovered);
+        recovered.getUndoManager().setLoading(false);
+        assertNotNull(recovered.getTargetDatabase().getTableByName("renamed"));
+        assertNull(recovered.getTargetDatabase().getTableByName("dropped"));
+        assertNotNull(recovered.getTargetDatabase().getTableByName("after"));
+        assertEquals(kept.getUUID(), recovered.getTargetDatabase().getTableByName("renamed").getUUID());
+    }
+
+    /**
+     * A journal made from a different version of the project file doesn't
+     * belong to the file any more.
+     */
+    public void testJournalOfChangedFileIgnored() throws Exception {
+        journal.start(projectFile, false);
+        session.getTargetDatabase().addChild(new SQLTable(null, "journaled", null, "TABLE", true));
+        journal.waitForWrites();
+
+        FileOutputStream out = new FileOutputStream(projectFile);
+        out.write("<architect-project/>".getBytes("UTF-8"));
+        out.close();
+        assertFalse(ProjectJournal.hasUnsavedChanges(projectFile));
+    }
+
+    public void testCloseDeletesJournal() throws Exception {
+        journal.start(projectFile, false);
+        session.getTargetDatabase().addChild(new SQLTable(null, "journaled", null, "TABLE", true));
+        journal.close();
+        journal.waitForWrites();
+        assertFalse(ProjectJournal.journalFileFor(projectFile).exists());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.swingui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+import ca.sqlpower.architect.swingui.PlayPen.LevelOfDetail;
+
+public class TablePaneImageCacheTest extends TestCase {
+
+    private TablePaneImageCache cache;
+
+    private Graphics2D g;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = new TablePaneImageCache();
+        g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        g.dispose();
+        super.tearDown();
+    }
+
+    /**
+     * Returns an image taking up the given number of kilobytes.
+     */
+    private BufferedImage image(int kilobytes) {
+        return new BufferedImage(256, kilobytes, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public void testImagesAreKeptPerScale() throws Exception {
+        PlayPenComponent c = new PlayPenComponentImpl();
+        BufferedImage full = image(1);
+        cache.put(c, g, LevelOfDetail.FULL, full);
+        assertSame(full, cache.get(c, g, LevelOfDetail.FULL));
+        assertNull(cache.get(c, g, LevelOfDetail.TITLED_BOX));
+
+        g.scale(0.5, 0.5);
+        assertNull(cache.get(c, g, LevelOfDetail.FULL));
+        BufferedImage half = image(1);
+        cache.put(c, g, LevelOfDetail.FULL, half);
+        assertSame(half, cache.get(c, g, LevelOfDetail.FULL));
+        assertEquals(2, cache.getImageCount());
+    }
+
+    public void testLeastRecentlyUsedImageIsDropped() throws Exception {
+        cache.setSize(40);
+        PlayPenComponent a = new PlayPenComponentImpl();
+        PlayPenComponent b = new PlayPenComponentImpl();
+        PlayPenComponent c = new PlayPenComponentImpl();
+        cache.put(a, g, LevelOfDetail.FULL, image(10));
+        cache.put(b, g, LevelOfDetail.FULL, image(10));
+        cache.put(c, g, LevelOfDetail.FULL, image(10));
+
+        // using a makes b the least recently used
+        cache.get(a, g, LevelOfDetail.FULL);
+        cache.put(new PlayPenComponentImpl(), g, LevelOfDetail.FULL, image(10));
+        cache.put(new PlayPenComponentImpl(), g, LevelOfDetail.FULL, image(10));
+
+        assertNotNull(cache.get(a, g, LevelOfDetail.FULL));
+        assertNull(cache.get(b, g, LevelOfDetail.FULL));
+        assertTrue(cache.getUsedBytes() <= 40 * 1024);
+    }
+
+    public void testImagesTooLargeForCacheAreNotKept() throws Exception {
+        cache.setSize(40);
+        PlayPenComponent c = new PlayPenComponentImpl();
+        assertFalse(cache.put(c, g, LevelOfDetail.FULL, image(20)));
+        assertNull(cache.get(c, g, LevelOfDetail.FULL));
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    public void testInvalidateDropsAllImagesOfComponent() throws Exception {
+        PlayPenComponent c = new PlayPenComponentImpl();
+        PlayPenComponent other = new PlayPenComponentImpl();
+        cache.put(c, g, LevelOfDetail.FULL, image(1));
+        cache.put(c, g, LevelOfDetail.PLAIN_BOX, image(1));
+        cache.put(other, g, LevelOfDetail.FULL, image(1));
+
+        cache.invalidate(c);
+        assertNull(cache.get(c, g, LevelOfDetail.FULL));
+        assertNull(cache.get(c, g, LevelOfDetail.PLAIN_BOX));
+        assertNotNull(cache.get(other, g, LevelOfDetail.FULL));
+        assertEquals(1024, cache.getUsedBytes());
+    }
+
+    public void testShrinkingDropsImages() throws Exception {
+        cache.put(new PlayPenComponentImpl(), g, LevelOfDetail.FULL, image(10));
+        cache.put(new PlayPenComponentImpl(), g, LevelOfDetail.FULL, image(10));
+        cache.setSize(15);
+        assertEquals(1, cache.getImageCount());
+        cache.setSize(0);
+        assertEquals(0, cache.getImageCount());
+    }
+}
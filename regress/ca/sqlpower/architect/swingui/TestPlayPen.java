@@ -265,6 +265,28 @@ public class TestPlayPen extends TestCase {
         }
     }
 	
+	public void testLevelOfDetailFollowsZoom() throws Exception {
+	    pp.setLevelOfDetailZooms(0.5, 0.25);
+	    pp.setZoom(1.0);
+	    assertEquals(PlayPen.LevelOfDetail.FULL, pp.getLevelOfDetail());
+	    pp.setZoom(0.5);
+	    assertEquals(PlayPen.LevelOfDetail.FULL, pp.getLevelOfDetail());
+	    pp.setZoom(0.3);
+	    assertEquals(PlayPen.LevelOfDetail.TITLED_BOX, pp.getLevelOfDetail());
+	    pp.setZoom(0.1);
+	    assertEquals(PlayPen.LevelOfDetail.PLAIN_BOX, pp.getLevelOfDetail());
+	    
+	    pp.setLevelOfDetailEnabled(false);
+	    assertEquals(PlayPen.LevelOfDetail.FULL, pp.getLevelOfDetail());
+	    
+	    try {
+	        pp.setLevelOfDetailZooms(0.25, 0.5);
+	        fail("The plain box zoom can't be above the titled box zoom");
+	    } catch (IllegalArgumentException e) {
+	        // expected
+	    }
+	}
+	
 	/**
 	 * Checks that the properties of an instance from the copy constructor are equal to the original.
 	 * In the case of a mutable property, it also checks that they don't share the same instance.
@@ -24,7 +24,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.Types;
@@ -44,6 +47,7 @@ import org.apache.tools.ant.filters.StringInputStream;
 import ca.sqlpower.ArchitectTestCase;
 import ca.sqlpower.architect.ArchitectSession;
 import ca.sqlpower.architect.ArchitectSessionContext;
+import ca.sqlpower.architect.BinaryProjectWriter;
 import ca.sqlpower.architect.ProjectLoader;
 import ca.sqlpower.architect.TestUtils;
 import ca.sqlpower.architect.TestingArchitectSessionContext;
@@ -1191,6 +1195,216 @@ public class TestSwingUIProject extends ArchitectTestCase {
         assertEquals(5, cpr.getMinLength());
         assertEquals(6, cpr.getMaxLength());
     }
+
+    /**
+     * The streaming reader copies the digester's rules, so a project saved by
+     * this version must come out the same from both. The test project is too
+     * old for the streaming reader, so it is saved once first.
+     */
+    public void testStreamingReaderMatchesDigester() throws Exception {
+        testLoad();
+        ByteArrayOutputStream current = new ByteArrayOutputStream();
+        project.save(current, ENCODING);
+
+        ArchitectSwingSession streamedSession = session.getContext().createSession();
+        SwingUIProjectLoader streamed = new SwingUIProjectLoader(streamedSession);
+        streamed.load(new ByteArrayInputStream(current.toByteArray()), plIni);
+        ByteArrayOutputStream streamedOut = new ByteArrayOutputStream();
+        streamed.save(streamedOut, ENCODING);
+
+        ArchitectSwingSession digestedSession = session.getContext().createSession();
+        SwingUIProjectLoader digested = new SwingUIProjectLoader(digestedSession);
+        digested.setStreamingReaderEnabled(false);
+        digested.load(new ByteArrayInputStream(current.toByteArray()), plIni);
+        ByteArrayOutputStream digestedOut = new ByteArrayOutputStream();
+        digested.save(digestedOut, ENCODING);
+
+        assertEquals(digestedOut.toString(ENCODING), streamedOut.toString(ENCODING));
+        assertEquals(session.getProfileManager().getResults().size(),
+                streamedSession.getProfileManager().getResults().size());
+        assertEquals(digestedSession.getTargetDatabase().getTables().size(),
+                streamedSession.getTargetDatabase().getTables().size());
+    }
+
+    /**
+     * Ensures the column profile results left in the project file by a lazy
+     * load are read from the file when they are asked for.
+     */
+    public void testLazyLoadProfileResults() throws Exception {
+        testLoad();
+        File tmp = File.createTempFile("test", ".architect");
+        if (deleteOnExit) {
+            tmp.deleteOnExit();
+        }
+        PrintWriter out = new PrintWriter(tmp, ENCODING);
+        project.save(out, ENCODING);
+
+        ArchitectSwingSession session2 = session.getContext().createSession();
+        SwingUIProjectLoader project2 = new SwingUIProjectLoader(session2);
+        project2.setLazyProfileFile(tmp);
+        project2.load(new BufferedInputStream(new FileInputStream(tmp)), plIni);
+
+        TableProfileResult tpr = session2.getProfileManager().getResults().get(0);
+        assertEquals("Customers", tpr.getProfiledObject().getName());
+        assertTrue(tpr.toString(), tpr.toString().endsWith("Cols: 1/1"));
+        assertTrue("Walking the hierarchy must not read the file", tpr.getChildren().isEmpty());
+
+        assertEquals(1, tpr.getColumnProfileResults().size());
+        ColumnProfileResult cpr = tpr.getColumnProfileResults().get(0);
+        assertEquals("id", cpr.getProfiledObject().getName());
+        assertSame(tpr, cpr.getParent());
+        assertEquals(5, cpr.getMinLength());
+        assertEquals(6, cpr.getMaxLength());
+        assertEquals(1, tpr.getChildren().size());
+    }
+
+    /**
+     * A journal started on a lazily loaded project must not read the column
+     * profile results from the file, and a project recovered from it must
+     * still get them from the file.
+     */
+    public void testJournalLeavesLazyProfileResultsInFile() throws Exception {
+        testLoad();
+        File tmp = File.createTempFile("test", ".architect");
+        if (deleteOnExit) {
+            tmp.deleteOnExit();
+            ProjectJournal.journalFileFor(tmp).deleteOnExit();
+        }
+        PrintWriter out = new PrintWriter(tmp, ENCODING);
+        project.save(out, ENCODING);
+
+        ArchitectSwingSession session2 = session.getContext().createSession();
+        SwingUIProjectLoader project2 = new SwingUIProjectLoader(session2);
+        project2.setLazyProfileFile(tmp);
+        project2.load(new BufferedInputStream(new FileInputStream(tmp)), plIni);
+        TableProfileResult tpr = session2.getProfileManager().getResults().get(0);
+
+        ProjectJournal journal = new ProjectJournal(session2);
+        journal.start(tmp, false);
+        journal.waitForWrites();
+        assertFalse("Nothing is journaled before the first change", ProjectJournal.journalFileFor(tmp).exists());
+
+        session2.getTargetDatabase().addChild(new SQLTable(null, "journaled", null, "TABLE", true));
+        journal.waitForWrites();
+        assertTrue(ProjectJournal.hasUnsavedChanges(tmp));
+        assertTrue("The journal must not read the file", tpr.getChildren().isEmpty());
+
+        ArchitectSwingSession recovered = session.getContext().createSession();
+        recovered.getUndoManager().setLoading(true);
+        ProjectJournal.replay(ProjectJournal.journalFileFor(tmp), recovered);
+        recovered.getUndoManager().setLoading(false);
+        journal.close();
+        journal.waitForWrites();
+
+        assertNotNull(recovered.getTargetDatabase().getTableByName("journaled"));
+        TableProfileResult recoveredTpr = recovered.getProfileManager().getResults().get(0);
+        assertEquals(tpr.getUUID(), recoveredTpr.getUUID());
+        assertEquals(1, recoveredTpr.getColumnProfileResults().size());
+        ColumnProfileResult cpr = recoveredTpr.getColumnProfileResults().get(0);
+        assertEquals("id", cpr.getProfiledObject().getName());
+        assertSame(recoveredTpr, cpr.getParent());
+        assertEquals(5, cpr.getMinLength());
+        assertEquals(6, cpr.getMaxLength());
+    }
+
+    /**
+     * The parser counts columns in characters, so a lazy load must still find
+     * the column profile results when the line before them has characters
+     * that take more than one byte. The project is saved on a single line so
+     * the names come before the profile results on the same line.
+     */
+    public void testLazyLoadProfileResultsAfterMultiByteNames() throws Exception {
+        testLoad();
+        TableProfileResult original = session.getProfileManager().getResults().get(0);
+        String tableName = "Kunden \u00e4\u00f6\u00fc \u4e2d\u6587 \ud834\udd1e";
+        original.getProfiledObject().setName(tableName);
+        original.getColumnProfileResults().get(0).getProfiledObject().setName("\u00e9t\u00e9");
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        project.save(saved, ENCODING);
+        String oneLine = saved.toString(ENCODING).replaceAll(">\\s+<", "><");
+        assertTrue("The names must be saved as multi-byte characters", oneLine.contains(tableName));
+
+        File tmp = File.createTempFile("test", ".architect");
+        if (deleteOnExit) {
+            tmp.deleteOnExit();
+        }
+        OutputStream out = new FileOutputStream(tmp);
+        out.write(oneLine.getBytes(ENCODING));
+        out.close();
+
+        ArchitectSwingSession session2 = session.getContext().createSession();
+        SwingUIProjectLoader project2 = new SwingUIProjectLoader(session2);
+        project2.setLazyProfileFile(tmp);
+        project2.load(new BufferedInputStream(new FileInputStream(tmp)), plIni);
+
+        TableProfileResult tpr = session2.getProfileManager().getResults().get(0);
+        assertEquals(tableName, tpr.getProfiledObject().getName());
+        assertEquals(1, tpr.getColumnProfileResults().size());
+        assertNull(tpr.getException());
+        ColumnProfileResult cpr = tpr.getColumnProfileResults().get(0);
+        assertEquals("\u00e9t\u00e9", cpr.getProfiledObject().getName());
+        assertEquals(5, cpr.getMinLength());
+        assertEquals(6, cpr.getMaxLength());
+    }
+
+    /**
+     * Ensures a project saved in the binary format loads back the same as
+     * it does from XML, and is saved in the binary format again.
+     */
+    public void testSaveLoadBinary() throws Exception {
+        testLoad();
+        File tmp = File.createTempFile("test", ".architect");
+        if (deleteOnExit) {
+            tmp.deleteOnExit();
+        }
+        project.save(new PrintWriter(new BinaryProjectWriter(new FileOutputStream(tmp))), ENCODING);
+
+        ArchitectSwingSession session2 = session.getContext().createSession();
+        SwingUIProjectLoader project2 = new SwingUIProjectLoader(session2);
+        project2.load(new BufferedInputStream(new FileInputStream(tmp)), plIni);
+        assertTrue(project2.isBinaryFormat());
+
+        assertEquals(session.getName(), session2.getName());
+        List<SQLTable> tables = session.getTargetDatabase().getTables();
+        List<SQLTable> tables2 = session2.getTargetDatabase().getTables();
+        assertEquals(tables.size(), tables2.size());
+        for (int i = 0; i < tables.size(); i++) {
+            assertEquals(tables.get(i).getName(), tables2.get(i).getName());
+            assertEquals(tables.get(i).getColumns().size(), tables2.get(i).getColumns().size());
+        }
+        assertEquals(session.getProfileManager().getResults().size(),
+                session2.getProfileManager().getResults().size());
+    }
+
+    /**
+     * A PrintWriter hides the exceptions of the binary writer under it, so the
+     * save has to notice them itself rather than report a truncated file as
+     * saved.
+     */
+    public void testSaveFailsWhenBinaryWriterFails() throws Exception {
+        testLoad();
+        project.setModified(true);
+        OutputStream failing = new OutputStream() {
+            private boolean headerWritten;
+            @Override
+            public void write(int b) throws IOException {
+                if (headerWritten) throw new IOException("disk full");
+            }
+            @Override
+            public void flush() {
+                headerWritten = true;
+            }
+        };
+        BinaryProjectWriter writer = new BinaryProjectWriter(failing);
+        failing.flush();
+        try {
+            project.save(new PrintWriter(writer), ENCODING);
+            fail("The save should have failed");
+        } catch (IOException expected) {
+            // the project was not saved
+        }
+        assertTrue(project.isModified());
+    }
     
     /**
      * Checks the entire object tree loaded in to ensure all the
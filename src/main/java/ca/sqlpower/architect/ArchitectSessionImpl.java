@@ -29,6 +29,8 @@ import ca.sqlpower.architect.ddl.GenericDDLGenerator;
 import ca.sqlpower.architect.ddl.LiquibaseSettings;
 import ca.sqlpower.architect.profile.ProfileManager;
 import ca.sqlpower.architect.profile.ProfileManagerImpl;
+import ca.sqlpower.architect.profile.ProfileScheduler;
+import ca.sqlpower.architect.profile.ProfileSettings;
 import ca.sqlpower.object.SPObjectSnapshot;
 import ca.sqlpower.sql.DataSourceCollection;
 import ca.sqlpower.sql.JDBCDataSource;
@@ -86,6 +88,13 @@ public class ArchitectSessionImpl implements ArchitectSession {
     
     private ArchitectStatusInformation statusInfo;
 
+    /**
+     * Runs the profiles of this session. There is only one per session so
+     * the limit on the number of tables profiled at once from one data
+     * source holds for the whole session.
+     */
+    private final ProfileScheduler profileScheduler;
+
 	public ArchitectSessionImpl(final ArchitectSessionContext context,
 	        String name) throws SQLObjectException {
 	    this(context, name, new ArchitectProject());
@@ -96,8 +105,10 @@ public class ArchitectSessionImpl implements ArchitectSession {
 	    this.context = context;
 	    this.project = project;
 	    project.setSession(this);
-	    ProfileManagerImpl manager = new ProfileManagerImpl();
-	    this.project.setProfileManager(manager);
+	    ProfileSettings profileDefaults = new ProfileSettings();
+	    profileScheduler = new ProfileScheduler(
+	            profileDefaults.getThreadCount(), profileDefaults.getMaxConcurrentPerDataSource());
+	    setProfileManager(new ProfileManagerImpl());
 	    this.name = name;
         this.projectLoader = new ProjectLoader(this);
         this.isEnterpriseSession = false;
@@ -157,7 +168,13 @@ public class ArchitectSessionImpl implements ArchitectSession {
 
 
 
+    /**
+     * Makes the given manager the project's profile manager. It runs its
+     * profiles on this session's scheduler, which every profile manager of
+     * the session shares.
+     */
     public void setProfileManager(ProfileManagerImpl manager) {
+        manager.setScheduler(profileScheduler);
         project.setProfileManager(manager);
     }
 
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The binary project file format, and conversions between it and the XML
+ * project file format.
+ * <p>
+ * A binary project file holds the same elements, attributes and text as the
+ * XML file it was made from, less the indentation between elements. It
+ * starts with {@link #MAGIC} and {@link #FORMAT_VERSION}, followed by
+ * sections that each start with their length before and after compression
+ * and are compressed on their own. Each section holds a run of records for
+ * the start and end of elements and for text. The names and short values
+ * used in the records are kept in a string table that grows as the file is
+ * read, so each one is only stored once. The {@link BinaryProjectWriter}
+ * starts a new section for each part of the project (each child of the root
+ * element) and whenever a section gets large.
+ * <p>
+ * The text in a binary file is what an XML parser reads out of the XML file,
+ * so anything that was escaped by {@link ca.sqlpower.util.SQLPowerUtils#escapeXML(String)}
+ * still has to be unescaped when it is loaded, the same as for XML files.
+ * <p>
+ * The format makes project files smaller, not faster to save. A binary file
+ * is written by running the XML saver into a {@link BinaryProjectWriter},
+ * which then tokenizes and compresses what the saver wrote, so saving in this
+ * format takes more CPU time than saving XML.
+ * <p>
+ * {@link #toBinary(InputStream, OutputStream)} and
+ * {@link #toXML(InputStream, OutputStream)} convert a project from one format
+ * to the other.
+ */
+public class BinaryProjectFormat {
+
+    /**
+     * The bytes every binary project file starts with. The first byte can't
+     * start an XML file in any encoding the project saver uses.
+     */
+    static final byte[] MAGIC = { (byte) 0x89, 'A', 'R', 'C', 'H', 'B', 'I', 'N' };
+
+    /**
+     * The version of the binary format, written after {@link #MAGIC}.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * A record for the start of an element: the name, the number of
+     * attributes, and the name and value of each attribute.
+     */
+    static final int START_ELEMENT = 1;
+
+    /**
+     * A record for the end of the most recently started element.
+     */
+    static final int END_ELEMENT = 2;
+
+    /**
+     * A record for text inside an element.
+     */
+    static final int TEXT = 3;
+
+    /**
+     * Strings longer than this are not put in the string table. Long strings
+     * are almost always text or descriptions that are not repeated.
+     */
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    /**
+     * The string table stops growing once it has this many strings.
+     */
+    static final int MAX_INTERNED_STRINGS = 1 << 20;
+
+    private BinaryProjectFormat() {
+        // static utility class
+    }
+
+    /**
+     * Returns true if the given stream is at the start of a binary project
+     * file. The stream must support mark and reset, and is left where it
+     * was.
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            byte[] start = new byte[MAGIC.length];
+            int count = 0;
+            while (count < start.length) {
+                int n = in.read(start, count, start.length - count);
+                if (n < 0) break;
+                count += n;
+            }
+            return Arrays.equals(start, MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Converts an XML project file to the binary format. Neither stream is
+     * closed.
+     */
+    public static void toBinary(InputStream xml, OutputStream out) throws IOException, SAXException {
+        final BinaryProjectWriter writer = new BinaryProjectWriter(out);
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(xml, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                    try {
+                        writer.startElement(qName, attributes);
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) throws SAXException {
+                    try {
+                        writer.endElement();
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    writer.characters(ch, start, length);
+                }
+            });
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+        writer.finish();
+    }
+
+    /**
+     * Converts a binary project file to an XML project file in UTF-8.
+     * Neither stream is closed.
+     */
+    public static void toXML(InputStream binary, OutputStream out) throws IOException, SAXException {
+        Writer w = new OutputStreamWriter(out, "UTF-8"); //$NON-NLS-1$
+        new BinaryProjectReader(binary).parse(new XMLFormatter(w));
+        w.flush();
+    }
+
+    /**
+     * Writes the document it is given as indented XML, in the same layout
+     * the project saver uses.
+     */
+    private static class XMLFormatter extends DefaultHandler {
+
+        private final Writer out;
+
+        private int depth;
+
+        /**
+         * True if the last start tag written has not been closed with a '>'
+         * yet, because it may still turn out to be an empty element.
+         */
+        private boolean startTagOpen;
+
+        /**
+         * True if the current element has text in it, so its end tag goes on
+         * the same line.
+         */
+        private boolean hasText;
+
+        XMLFormatter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (startTagOpen) {
+                write(">\n"); //$NON-NLS-1$
+            }
+            StringBuilder sb = new StringBuilder();
+            indent(sb);
+            sb.append('<').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                sb.append(' ').append(attributes.getQName(i)).append("=\""); //$NON-NLS-1$
+                escape(sb, attributes.getValue(i), true);
+                sb.append('"');
+            }
+            write(sb.toString());
+            startTagOpen = true;
+            hasText = false;
+            depth++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            depth--;
+            if (startTagOpen) {
+                write("/>\n"); //$NON-NLS-1$
+            } else if (hasText) {
+                write("</" + qName + ">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                StringBuilder sb = new StringBuilder();
+                indent(sb);
+                sb.append("</").append(qName).append(">\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                write(sb.toString());
+            }
+            startTagOpen = false;
+            hasText = false;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            StringBuilder sb = new StringBuilder(length + 1);
+            if (startTagOpen) {
+                sb.append('>');
+                startTagOpen = false;
+            }
+            escape(sb, new String(ch, start, length), false);
+            write(sb.toString());
+            hasText = true;
+        }
+
+        private void indent(StringBuilder sb) {
+            for (int i = 0; i < depth; i++) {
+                sb.append(' ');
+            }
+        }
+
+        /**
+         * Escapes only what XML requires, so the text an XML parser reads
+         * back is exactly the text that was in the binary file.
+         */
+        private static void escape(StringBuilder sb, String s, boolean attribute) {
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                switch (ch) {
+                case '<': sb.append("&lt;"); break; //$NON-NLS-1$
+                case '>': sb.append("&gt;"); break; //$NON-NLS-1$
+                case '&': sb.append("&amp;"); break; //$NON-NLS-1$
+                case '"': sb.append(attribute ? "&quot;" : "\""); break; //$NON-NLS-1$ //$NON-NLS-2$
+                case '\r': sb.append("&#13;"); break; //$NON-NLS-1$
+                case '\n': sb.append(attribute ? "&#10;" : "\n"); break; //$NON-NLS-1$ //$NON-NLS-2$
+                case '\t': sb.append(attribute ? "&#9;" : "\t"); break; //$NON-NLS-1$ //$NON-NLS-2$
+                default: sb.append(ch);
+                }
+            }
+        }
+
+        private void write(String s) throws SAXException {
+            try {
+                out.write(s);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Reads a project file in the {@link BinaryProjectFormat} and passes its
+ * contents to a SAX content handler, the same way a SAX parser passes it
+ * the contents of an XML file. Handlers written for XML project files can
+ * read binary files without any changes, except that the handler's locator
+ * gives the number of the section as the line number and the offset of the
+ * record in that section as the column number.
+ */
+public class BinaryProjectReader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private final DataInputStream in;
+
+    private final List<String> strings = new ArrayList<String>();
+
+    private byte[] compressed = new byte[16 * 1024];
+
+    private byte[] section = new byte[64 * 1024];
+
+    private int position;
+
+    /**
+     * The stream is read one section at a time, and is not read past the end
+     * of the file. It is not closed.
+     */
+    public BinaryProjectReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Reads the whole file and gives its contents to the handler.
+     *
+     * @throws IOException
+     *             If the stream can't be read or is not a binary project
+     *             file.
+     */
+    public void parse(ContentHandler handler) throws IOException, SAXException {
+        byte[] magic = new byte[BinaryProjectFormat.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryProjectFormat.MAGIC)) {
+            throw new IOException("Not a binary project file"); //$NON-NLS-1$
+        }
+        int version = in.readInt();
+        if (version != BinaryProjectFormat.FORMAT_VERSION) {
+            throw new IOException("Unknown binary project file version " + version); //$NON-NLS-1$
+        }
+
+        LocatorImpl locator = new LocatorImpl();
+        handler.setDocumentLocator(locator);
+        handler.startDocument();
+
+        AttributesImpl attributes = new AttributesImpl();
+        String[] names = new String[32];
+        int depth = 0;
+        char[] chars = new char[256];
+        Inflater inflater = new Inflater();
+        try {
+            int sectionCount = 0;
+            int length;
+            while ((length = in.readInt()) != 0) {
+                readSection(inflater, length);
+                sectionCount++;
+                locator.setLineNumber(sectionCount);
+                position = 0;
+                while (position < length) {
+                    locator.setColumnNumber(position);
+                    int type = section[position++];
+                    if (type == BinaryProjectFormat.START_ELEMENT) {
+                        String name = readString();
+                        int count = readVarInt();
+                        attributes.clear();
+                        for (int i = 0; i < count; i++) {
+                            String attributeName = readString();
+                            attributes.addAttribute("", attributeName, attributeName, "CDATA", readString()); //$NON-NLS-1$ //$NON-NLS-2$
+                        }
+                        if (depth == names.length) {
+                            names = Arrays.copyOf(names, depth * 2);
+                        }
+                        names[depth++] = name;
+                        handler.startElement("", name, name, attributes); //$NON-NLS-1$
+                    } else if (type == BinaryProjectFormat.END_ELEMENT) {
+                        if (depth == 0) {
+                            throw new IOException("Unbalanced element end in section " + sectionCount); //$NON-NLS-1$
+                        }
+                        String name = names[--depth];
+                        names[depth] = null;
+                        handler.endElement("", name, name); //$NON-NLS-1$
+                    } else if (type == BinaryProjectFormat.TEXT) {
+                        String text = readString();
+                        if (chars.length < text.length()) {
+                            chars = new char[text.length()];
+                        }
+                        text.getChars(0, text.length(), chars, 0);
+                        handler.characters(chars, 0, text.length());
+                    } else {
+                        throw new IOException("Unknown record type " + type + " in section " + sectionCount); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        if (depth != 0) {
+            throw new IOException("Binary project file ended inside " + names[depth - 1]); //$NON-NLS-1$
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * Reads the next section into {@link #section}.
+     */
+    private void readSection(Inflater inflater, int length) throws IOException {
+        int compressedLength = in.readInt();
+        if (length < 0 || compressedLength < 0) {
+            throw new IOException("Corrupt section length"); //$NON-NLS-1$
+        }
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        if (section.length < length) {
+            section = new byte[length];
+        }
+        in.readFully(compressed, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(section, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new IOException("Section is shorter than its length"); //$NON-NLS-1$
+            }
+        } catch (DataFormatException e) {
+            IOException ex = new IOException("Corrupt section"); //$NON-NLS-1$
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads a string written by the {@link BinaryProjectWriter}, adding it to
+     * the string table under the same rules the writer uses.
+     */
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index > 0) {
+            if (index > strings.size()) {
+                throw new IOException("Unknown string " + index); //$NON-NLS-1$
+            }
+            return strings.get(index - 1);
+        }
+        int length = readVarInt();
+        if (length < 0 || position + length > section.length) {
+            throw new IOException("Corrupt string length"); //$NON-NLS-1$
+        }
+        String s = new String(section, position, length, UTF8);
+        position += length;
+        if (s.length() <= BinaryProjectFormat.MAX_INTERNED_LENGTH
+                && strings.size() < BinaryProjectFormat.MAX_INTERNED_STRINGS) {
+            strings.add(s);
+        }
+        return s;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = section[position++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
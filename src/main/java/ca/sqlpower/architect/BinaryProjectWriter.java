@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Writes a project file in the {@link BinaryProjectFormat}. The project saver
+ * writes XML to this class through a {@link java.io.PrintWriter} the same way
+ * it writes XML files, and this class picks the elements, attributes and text
+ * out of the XML as it goes, without building a document. It only has to
+ * understand the XML the saver writes: elements, attributes, text, comments,
+ * CDATA sections and the character references XML defines. The XML
+ * declaration and any other processing instructions are dropped.
+ * <p>
+ * All of the XML saver's work is still done, and the tokenizing and the
+ * compression of each section come on top of it, so a binary save uses more
+ * CPU time than an XML save of the same project. What it saves is space.
+ * <p>
+ * Nothing is written to the output stream until a section is finished, and
+ * the file is only complete once this writer has been closed. A
+ * {@link java.io.PrintWriter} in front of this writer hides the exceptions
+ * thrown while writing and closing, so whoever closes it has to check
+ * {@link java.io.PrintWriter#checkError()} before treating the file as saved.
+ */
+public class BinaryProjectWriter extends Writer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    /**
+     * A section is finished at the next element boundary once it holds at
+     * least this many bytes.
+     */
+    static final int SECTION_SIZE = 256 * 1024;
+
+    private static final int TEXT = 0;
+    private static final int MARKUP = 1;
+    private static final int REFERENCE = 2;
+
+    private final DataOutputStream out;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * The records of the section being built.
+     */
+    private byte[] section = new byte[64 * 1024];
+
+    private int sectionLength;
+
+    private byte[] compressed = new byte[16 * 1024];
+
+    private int depth;
+
+    /**
+     * True if the last record was the start of an element, so text that
+     * comes before the next end tag is the whole content of the element.
+     */
+    private boolean lastWasStart;
+
+    private boolean finished;
+
+    // ------ the state of the XML tokenizer ------
+
+    private int state = TEXT;
+
+    /**
+     * The text since the last tag, with its references already replaced.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The markup between the '<' and '>' of the tag being read.
+     */
+    private final StringBuilder markup = new StringBuilder();
+
+    /**
+     * The reference being read in text, without its '&amp;' and ';'.
+     */
+    private final StringBuilder reference = new StringBuilder();
+
+    /**
+     * The quote character around the attribute value the tokenizer is in, or
+     * 0 if it is not in an attribute value.
+     */
+    private char quote;
+
+    /**
+     * True if the last character of text was a carriage return, so a line
+     * feed right after it is dropped.
+     */
+    private boolean afterCR;
+
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    public BinaryProjectWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(BinaryProjectFormat.MAGIC);
+        this.out.writeInt(BinaryProjectFormat.FORMAT_VERSION);
+    }
+
+    // ------ Writer ------
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char ch = cbuf[i];
+            switch (state) {
+            case TEXT:
+                if (ch == '<') {
+                    state = MARKUP;
+                    markup.setLength(0);
+                    quote = 0;
+                    afterCR = false;
+                } else if (ch == '&') {
+                    state = REFERENCE;
+                    reference.setLength(0);
+                    afterCR = false;
+                } else {
+                    appendText(ch);
+                }
+                break;
+            case REFERENCE:
+                if (ch == ';') {
+                    state = TEXT;
+                    appendReference(text, reference);
+                } else {
+                    reference.append(ch);
+                }
+                break;
+            case MARKUP:
+                if (quote != 0) {
+                    if (ch == quote) {
+                        quote = 0;
+                    }
+                    markup.append(ch);
+                } else if (ch == '>' && isMarkupComplete()) {
+                    state = TEXT;
+                    processMarkup();
+                } else {
+                    if ((ch == '"' || ch == '\'') && (markup.length() == 0 || markup.charAt(0) != '!')) {
+                        quote = ch;
+                    }
+                    markup.append(ch);
+                }
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        char[] chars = new char[len];
+        str.getChars(off, off + len, chars, 0);
+        write(chars, 0, len);
+    }
+
+    /**
+     * Writes out any compressed sections to the output stream. The section
+     * being built is not written until it is finished.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Finishes the file and closes the output stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /**
+     * Writes out the last section and the end of the file without closing
+     * the output stream. Nothing can be written after this.
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+        writeSection();
+        out.writeInt(0);
+        out.flush();
+    }
+
+    /**
+     * Returns true if the '>' the tokenizer just reached ends the markup,
+     * which it doesn't inside comments and CDATA sections.
+     */
+    private boolean isMarkupComplete() {
+        if (startsWith(markup, "!--")) { //$NON-NLS-1$
+            return markup.length() >= 5 && endsWith(markup, "--"); //$NON-NLS-1$
+        } else if (startsWith(markup, "![CDATA[")) { //$NON-NLS-1$
+            return endsWith(markup, "]]"); //$NON-NLS-1$
+        }
+        return true;
+    }
+
+    private void processMarkup() throws IOException {
+        int length = markup.length();
+        if (length == 0) {
+            return;
+        }
+        char first = markup.charAt(0);
+        if (first == '?') {
+            // the XML declaration or a processing instruction
+        } else if (first == '!') {
+            if (startsWith(markup, "![CDATA[")) { //$NON-NLS-1$
+                text.append(markup, 8, length - 2);
+            }
+            // comments and document type declarations are dropped
+        } else if (first == '/') {
+            endElement();
+        } else {
+            boolean empty = markup.charAt(length - 1) == '/';
+            int end = empty ? length - 1 : length;
+            int i = 0;
+            while (i < end && !isSpace(markup.charAt(i))) i++;
+            String name = markup.substring(0, i);
+            attributes.clear();
+            while (i < end) {
+                while (i < end && isSpace(markup.charAt(i))) i++;
+                if (i == end) break;
+                int nameStart = i;
+                while (i < end && markup.charAt(i) != '=' && !isSpace(markup.charAt(i))) i++;
+                String attributeName = markup.substring(nameStart, i);
+                while (i < end && markup.charAt(i) != '"' && markup.charAt(i) != '\'') i++;
+                if (i == end) {
+                    throw new IOException("Attribute " + attributeName + " of " + name + " has no value"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                }
+                char q = markup.charAt(i++);
+                int valueStart = i;
+                while (i < end && markup.charAt(i) != q) i++;
+                String value = attributeValue(markup, valueStart, i);
+                i++;
+                attributes.addAttribute("", attributeName, attributeName, "CDATA", value); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            startElement(name, attributes);
+            if (empty) {
+                endElement();
+            }
+        }
+    }
+
+    /**
+     * Replaces the references in an attribute value and turns the white space
+     * in it into spaces, as an XML parser does.
+     */
+    private static String attributeValue(CharSequence s, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch == '&') {
+                int semicolon = i + 1;
+                while (semicolon < end && s.charAt(semicolon) != ';') semicolon++;
+                appendReference(sb, s.subSequence(i + 1, semicolon));
+                i = semicolon;
+            } else if (ch == '\n' || ch == '\r' || ch == '\t') {
+                if (ch == '\n' && i > start && s.charAt(i - 1) == '\r') continue;
+                sb.append(' ');
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the character a reference such as "lt" or "#10" stands for.
+     * References XML doesn't define are left as they were.
+     */
+    private static void appendReference(StringBuilder sb, CharSequence ref) {
+        String name = ref.toString();
+        if (name.equals("lt")) sb.append('<'); //$NON-NLS-1$
+        else if (name.equals("gt")) sb.append('>'); //$NON-NLS-1$
+        else if (name.equals("amp")) sb.append('&'); //$NON-NLS-1$
+        else if (name.equals("quot")) sb.append('"'); //$NON-NLS-1$
+        else if (name.equals("apos")) sb.append('\''); //$NON-NLS-1$
+        else {
+            try {
+                if (name.startsWith("#x")) { //$NON-NLS-1$
+                    sb.appendCodePoint(Integer.parseInt(name.substring(2), 16));
+                    return;
+                } else if (name.startsWith("#")) { //$NON-NLS-1$
+                    sb.appendCodePoint(Integer.parseInt(name.substring(1)));
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                // not a character reference, left as it was
+            }
+            sb.append('&').append(name).append(';');
+        }
+    }
+
+    private void appendText(char ch) {
+        if (ch == '\r') {
+            text.append('\n');
+            afterCR = true;
+        } else {
+            if (ch != '\n' || !afterCR) {
+                text.append(ch);
+            }
+            afterCR = false;
+        }
+    }
+
+    private static boolean isSpace(char ch) {
+        return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+    }
+
+    private static boolean startsWith(StringBuilder sb, String prefix) {
+        if (sb.length() < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (sb.charAt(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) return false;
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // ------ records ------
+
+    /**
+     * Adds the start of an element. The text given to
+     * {@link #characters(char[], int, int)} since the last element boundary
+     * is added first if it is not just indentation.
+     */
+    void startElement(String name, Attributes attributes) throws IOException {
+        writeText(false);
+        if (depth == 1 || sectionLength >= SECTION_SIZE) {
+            writeSection();
+        }
+        writeByte(BinaryProjectFormat.START_ELEMENT);
+        writeString(name);
+        writeVarInt(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            writeString(attributes.getQName(i));
+            writeString(attributes.getValue(i));
+        }
+        depth++;
+        lastWasStart = true;
+    }
+
+    /**
+     * Adds the end of the current element, after the text given to
+     * {@link #characters(char[], int, int)} since the last element boundary.
+     * The text is kept even if it is only white space when there is nothing
+     * else in the element.
+     */
+    void endElement() throws IOException {
+        writeText(lastWasStart);
+        writeByte(BinaryProjectFormat.END_ELEMENT);
+        depth--;
+        lastWasStart = false;
+        if (sectionLength >= SECTION_SIZE) {
+            writeSection();
+        }
+    }
+
+    void characters(char[] ch, int start, int length) {
+        text.append(ch, start, length);
+    }
+
+    private void writeText(boolean keepWhiteSpace) throws IOException {
+        if (text.length() == 0) return;
+        boolean blank = true;
+        for (int i = 0; i < text.length() && blank; i++) {
+            blank = isSpace(text.charAt(i));
+        }
+        if (keepWhiteSpace || !blank) {
+            writeByte(BinaryProjectFormat.TEXT);
+            writeString(text.toString());
+        }
+        text.setLength(0);
+    }
+
+    /**
+     * Compresses the records built up so far and writes them out as a
+     * section.
+     */
+    private void writeSection() throws IOException {
+        if (sectionLength == 0) return;
+        deflater.reset();
+        deflater.setInput(section, 0, sectionLength);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                byte[] bigger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, bigger, 0, compressedLength);
+                compressed = bigger;
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        out.writeInt(sectionLength);
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+        sectionLength = 0;
+    }
+
+    /**
+     * Writes the index of a string in the string table plus one, or 0
+     * followed by the string itself if it is not in the table yet. Short
+     * strings are added to the table the first time they are written. The
+     * {@link BinaryProjectReader} builds the same table as it reads.
+     */
+    private void writeString(String s) {
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeVarInt(index + 1);
+            return;
+        }
+        writeVarInt(0);
+        byte[] bytes = s.getBytes(UTF8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, section, sectionLength, bytes.length);
+        sectionLength += bytes.length;
+        if (s.length() <= BinaryProjectFormat.MAX_INTERNED_LENGTH
+                && strings.size() < BinaryProjectFormat.MAX_INTERNED_STRINGS) {
+            strings.put(s, strings.size());
+        }
+    }
+
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7f) != 0) {
+            section[sectionLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        section[sectionLength++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        section[sectionLength++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (sectionLength + extra > section.length) {
+            byte[] bigger = new byte[Math.max(section.length * 2, sectionLength + extra)];
+            System.arraycopy(section, 0, bigger, 0, sectionLength);
+            section = bigger;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Maps the ids in a project file to the objects loaded for them. The project
+ * saver makes ids out of a short prefix and a number that counts up from 0
+ * across the whole file (such as "TAB12" and "COL13"), so this map keeps the
+ * objects in an array indexed by that number. Looking an id up only parses its
+ * trailing digits and compares it with the id stored at that index, which
+ * avoids hashing the id and allocating an entry for every object in large
+ * projects. Ids that do not end in a number, or whose number is already used
+ * by a different id, are kept in an ordinary hash map.
+ * <p>
+ * The entry set is not backed by the map and does not support removal.
+ */
+public class LoadIdMap<V> extends AbstractMap<String, V> {
+
+    /**
+     * Ids numbered this high or higher are kept in the hash map, so a
+     * malformed id can't make the arrays huge.
+     */
+    private static final int MAX_INDEX = 1 << 24;
+
+    private String[] keys = new String[64];
+
+    private Object[] values = new Object[64];
+
+    /**
+     * The number of ids stored in {@link #keys}.
+     */
+    private int indexedCount;
+
+    private final Map<String, V> others = new HashMap<String, V>();
+
+    /**
+     * Returns the number at the end of the given id, or -1 if it does not end
+     * in a number that can be used as an index.
+     */
+    static int indexOf(Object key) {
+        if (!(key instanceof String)) return -1;
+        String id = (String) key;
+        int end = id.length();
+        int start = end;
+        int index = 0;
+        while (start > 0) {
+            char ch = id.charAt(start - 1);
+            if (ch < '0' || ch > '9') break;
+            start--;
+        }
+        if (start == end || end - start > 8) return -1;
+        for (int i = start; i < end; i++) {
+            index = index * 10 + (id.charAt(i) - '0');
+        }
+        return index < MAX_INDEX ? index : -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = indexOf(key);
+        if (index >= 0 && index < keys.length && key.equals(keys[index])) {
+            return (V) values[index];
+        }
+        return others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = indexOf(key);
+        if (index >= 0 && index < keys.length && key.equals(keys[index])) {
+            return true;
+        }
+        return others.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            if (index >= keys.length) {
+                grow(index);
+            }
+            if (keys[index] == null) {
+                keys[index] = key;
+                values[index] = value;
+                indexedCount++;
+                return null;
+            } else if (keys[index].equals(key)) {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+        }
+        return others.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int index = indexOf(key);
+        if (index >= 0 && index < keys.length && key.equals(keys[index])) {
+            V old = (V) values[index];
+            keys[index] = null;
+            values[index] = null;
+            indexedCount--;
+            return old;
+        }
+        return others.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return indexedCount + others.size();
+    }
+
+    @Override
+    public void clear() {
+        keys = new String[64];
+        values = new Object[64];
+        indexedCount = 0;
+        others.clear();
+    }
+
+    private void grow(int index) {
+        int length = keys.length;
+        while (length <= index) {
+            length *= 2;
+        }
+        String[] newKeys = new String[length];
+        Object[] newValues = new Object[length];
+        System.arraycopy(keys, 0, newKeys, 0, keys.length);
+        System.arraycopy(values, 0, newValues, 0, values.length);
+        keys = newKeys;
+        values = newValues;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<Map.Entry<String, V>>() {
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                final Iterator<Map.Entry<String, V>> othersIterator = others.entrySet().iterator();
+                return new Iterator<Map.Entry<String, V>>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < keys.length && keys[from] == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    public boolean hasNext() {
+                        return next < keys.length || othersIterator.hasNext();
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    public Map.Entry<String, V> next() {
+                        if (next < keys.length) {
+                            Map.Entry<String, V> e =
+                                new AbstractMap.SimpleImmutableEntry<String, V>(keys[next], (V) values[next]);
+                            next = advance(next + 1);
+                            return e;
+                        } else if (othersIterator.hasNext()) {
+                            Map.Entry<String, V> e = othersIterator.next();
+                            return new AbstractMap.SimpleImmutableEntry<String, V>(e);
+                        }
+                        throw new NoSuchElementException();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return LoadIdMap.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import ca.sqlpower.util.MonitorableImpl;
+
+/**
+ * Counts the bytes of a project file as it is read and reports them as the
+ * progress of an optional monitor. If the monitor is cancelled, the next read
+ * fails with an {@link InterruptedIOException} with the message "progress",
+ * the same way a {@link javax.swing.ProgressMonitorInputStream} does.
+ * <p>
+ * It can also remember the byte offset each line starts at, so a reader that
+ * is only told line numbers can find its way back to a place in the file.
+ */
+class LoadProgressInputStream extends FilterInputStream {
+
+    /**
+     * The monitor is updated after at least this many bytes have been read
+     * since it was last updated.
+     */
+    private static final int REPORT_INTERVAL = 64 * 1024;
+
+    private final MonitorableImpl monitor;
+
+    private long count;
+
+    private long markCount;
+
+    private long reportedCount;
+
+    /**
+     * The byte offsets of the lines from {@link #firstLine} on, starting at
+     * index {@link #firstIndex}, or null if lines aren't being tracked.
+     */
+    private long[] lineStarts;
+
+    private int firstIndex;
+
+    private int lineCount;
+
+    /**
+     * The number of the line at {@link #firstIndex}. Lines are numbered from
+     * 1, the same way a SAX locator numbers them.
+     */
+    private int firstLine = 1;
+
+    /**
+     * @param in
+     *            The stream to read the project from
+     * @param monitor
+     *            The monitor to report progress to, or null to only count
+     *            the bytes
+     */
+    LoadProgressInputStream(InputStream in, MonitorableImpl monitor) {
+        super(in);
+        this.monitor = monitor;
+    }
+
+    /**
+     * Starts remembering where each line starts. This must be called before
+     * anything is read. Lines are only ended by a line feed, so a carriage
+     * return on its own doesn't end a line.
+     */
+    public void trackLines() {
+        lineStarts = new long[256];
+        lineStarts[0] = count;
+        firstIndex = 0;
+        lineCount = 1;
+        firstLine = 1;
+    }
+
+    /**
+     * Returns the byte offset the given line starts at, or -1 if it hasn't
+     * been read yet or was forgotten by {@link #forgetLinesBefore(int)}.
+     */
+    public long getLineStart(int line) {
+        if (lineStarts == null || line < firstLine || line >= firstLine + lineCount) return -1;
+        return lineStarts[firstIndex + line - firstLine];
+    }
+
+    /**
+     * Stops remembering where the lines before the given one start. A reader
+     * calls this as it moves through the file, so only the lines between it
+     * and what its parser has read ahead are kept.
+     */
+    public void forgetLinesBefore(int line) {
+        if (lineStarts == null || line <= firstLine) return;
+        int forget = Math.min(line - firstLine, lineCount - 1);
+        firstIndex += forget;
+        lineCount -= forget;
+        firstLine += forget;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            if (lineStarts != null && b == '\n') {
+                addLineStart(count + 1);
+            }
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            if (lineStarts != null) {
+                for (int i = off; i < off + n; i++) {
+                    if (b[i] == '\n') {
+                        addLineStart(count + (i - off) + 1);
+                    }
+                }
+            }
+            advance(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (lineStarts != null) {
+            // the skipped bytes have to be looked at for line feeds
+            return Math.max(read(new byte[(int) Math.min(n, 8192)]), 0);
+        }
+        long skipped = super.skip(n);
+        advance(skipped);
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        super.mark(readlimit);
+        markCount = count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+        count = markCount;
+        if (lineStarts != null) {
+            while (lineCount > 1 && lineStarts[firstIndex + lineCount - 1] > count) {
+                lineCount--;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void addLineStart(long offset) {
+        if (firstIndex + lineCount == lineStarts.length) {
+            if (firstIndex > lineStarts.length / 2) {
+                System.arraycopy(lineStarts, firstIndex, lineStarts, 0, lineCount);
+            } else {
+                long[] grown = new long[lineStarts.length * 2];
+                System.arraycopy(lineStarts, firstIndex, grown, 0, lineCount);
+                lineStarts = grown;
+            }
+            firstIndex = 0;
+        }
+        lineStarts[firstIndex + lineCount] = offset;
+        lineCount++;
+    }
+
+    private void advance(long n) throws InterruptedIOException {
+        count += n;
+        if (monitor != null && count - reportedCount >= REPORT_INTERVAL) {
+            if (monitor.isCancelled()) {
+                throw new InterruptedIOException("progress"); //$NON-NLS-1$
+            }
+            monitor.setProgress((int) Math.min(count, Integer.MAX_VALUE));
+            reportedCount = count;
+        }
+    }
+}
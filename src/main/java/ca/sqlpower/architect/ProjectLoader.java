@@ -19,7 +19,9 @@
 
 package ca.sqlpower.architect;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -27,14 +29,20 @@ import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JOptionPane;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.digester.AbstractObjectCreationFactory;
 import org.apache.commons.digester.Digester;
@@ -42,12 +50,20 @@ import org.apache.commons.digester.Rule;
 import org.apache.commons.digester.SetPropertiesRule;
 import org.apache.log4j.Logger;
 import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import ca.sqlpower.architect.ddl.DDLGenerator;
 import ca.sqlpower.architect.ddl.GenericDDLGenerator;
+import ca.sqlpower.architect.ddl.LiquibaseSettings;
+import ca.sqlpower.architect.profile.AbstractProfileResult;
 import ca.sqlpower.architect.profile.ColumnProfileResult;
+import ca.sqlpower.architect.profile.ColumnProfileResultLoader;
 import ca.sqlpower.architect.profile.ColumnValueCount;
+import ca.sqlpower.architect.profile.ProfileManagerImpl;
 import ca.sqlpower.architect.profile.TableProfileResult;
+import ca.sqlpower.object.SPObject;
 import ca.sqlpower.sql.DataSourceCollection;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.JDBCDataSourceType;
@@ -71,10 +87,12 @@ import ca.sqlpower.sqlobject.UserDefinedSQLType;
 import ca.sqlpower.swingui.SPSUtils;
 import ca.sqlpower.util.BrowserUtil;
 import ca.sqlpower.util.DefaultUserPrompterFactory;
+import ca.sqlpower.util.MonitorableImpl;
 import ca.sqlpower.util.UserPrompter;
 import ca.sqlpower.util.UserPrompter.UserPromptOptions;
 import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.util.UserPrompterFactory.UserPromptType;
+import ca.sqlpower.xml.UnescapingDefaultHandler;
 import ca.sqlpower.xml.UnescapingSaxParser;
 
 import com.google.common.collect.ArrayListMultimap;
@@ -185,6 +203,45 @@ public class ProjectLoader {
      */
     protected String fileVersion;
 
+    /**
+     * Files saved by versions of the Architect older than this are always
+     * loaded by the digester, because they can contain elements that the
+     * streaming reader does not know about.
+     */
+    static final ArchitectVersion OLDEST_STREAMED_VERSION = new ArchitectVersion("1.0.0"); //$NON-NLS-1$
+
+    /**
+     * The number of bytes that can be read from the project file before the
+     * streaming reader decides whether it can read the file. The digester
+     * starts over from the beginning if it can't, so this must be more than
+     * the parser reads ahead before it reaches the root element.
+     */
+    private static final int FALLBACK_MARK_LIMIT = 1024 * 1024;
+
+    /**
+     * See {@link #setLoadMonitor(MonitorableImpl)}.
+     */
+    private MonitorableImpl loadMonitor;
+
+    /**
+     * See {@link #setLazyProfileFile(File)}.
+     */
+    private File lazyProfileFile;
+
+    /**
+     * See {@link #isBinaryFormat()}.
+     */
+    private boolean binaryFormat;
+
+    /**
+     * See {@link #setStreamingReaderEnabled(boolean)}.
+     */
+    private boolean streamingReaderEnabled = true;
+
+    private final ProfileResultValueFactory profileResultValueFactory = new ProfileResultValueFactory();
+
+    private final ProfileResultTopNValueFactory topNValueFactory = new ProfileResultTopNValueFactory();
+
     public ProjectLoader(ArchitectSession session) {
         this.session = session;
     }
@@ -208,41 +265,25 @@ public class ProjectLoader {
      */
     public void load(InputStream in, DataSourceCollection<? extends SPDataSource> dataSources,
             ArchitectSession messageDelegate) throws IOException, SQLObjectException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
         UnclosableInputStream uin = new UnclosableInputStream(in);
         siblingSession = messageDelegate;
         try {
-            dbcsLoadIdMap = new HashMap<String, JDBCDataSource>();
-            sqlObjectLoadIdMap = new HashMap<String, SQLObject>();
-
-            Digester digester = null;
+            binaryFormat = BinaryProjectFormat.isBinary(uin);
+            if (binaryFormat) {
+                // the column results can only be found again in XML files
+                lazyProfileFile = null;
+            }
+            dbcsLoadIdMap = new LoadIdMap<JDBCDataSource>();
+            sqlObjectLoadIdMap = new LoadIdMap<SQLObject>();
 
-            // use digester to read from file
-            try {
-                digester = setupDigester();
-                digester.parse(uin);
-            } catch (SAXException ex) {
-                //The digester likes to wrap the cancelled exception in a SAXException.
-                if (ex.getException() instanceof DigesterCancelledException) {
-                    //Digeseter was cancelled by the user. Do not load anything.
-                    throw new RuntimeException(new InterruptedIOException("progress"));
-                }
-                logger.error("SAX Exception in project file parse!", ex);
-                String message;
-                if (digester == null) {
-                    message = "Couldn't create an XML parser";
-                } else {
-                    message = "There is an XML parsing error in project file at Line:" +
-                    digester.getDocumentLocator().getLineNumber() + " Column:" +
-                    digester.getDocumentLocator().getColumnNumber();
-                }
-                throw new SQLObjectException(message, ex);
-            } catch (IOException ex) {
-                logger.error("IO Exception in project file parse!", ex);
-                throw new SQLObjectException("There was an I/O error while reading the file", ex);
-            } catch (Exception ex) {
-                logger.error("General Exception in project file parse!", ex);
-                throw new SQLObjectException("Unexpected Exception", ex);
+            LoadProgressInputStream counted = new LoadProgressInputStream(uin, loadMonitor);
+            if (lazyProfileFile != null) {
+                counted.trackLines();
             }
+            readProject(counted);
 
             SQLObject dbConnectionContainer = ((SQLObject) getSession().getRootObject());
 
@@ -333,33 +374,309 @@ public class ProjectLoader {
 
             setModified(false);
         } finally {
+            if (loadMonitor != null) {
+                loadMonitor.setFinished(true);
+                loadMonitor = null;
+            }
+            lazyProfileFile = null;
             uin.forceClose();
         }
     }
 
+    /**
+     * Reads the project file into the session. Files are read in one pass by
+     * the {@link StreamingProjectReader}, except for files too old for it,
+     * which are read again from the start by the digester. Binary files are
+     * given to the same readers as XML files.
+     *
+     * @param in
+     *            The project file. It must support mark and reset, and track
+     *            lines if the column profile results are left in the file.
+     */
+    private void readProject(LoadProgressInputStream in) throws SQLObjectException {
+        Digester digester = null;
+        StreamingProjectReader reader = null;
+        try {
+            in.mark(FALLBACK_MARK_LIMIT);
+            try {
+                if (!streamingReaderEnabled) {
+                    throw new FallbackException("the streaming reader is turned off");
+                }
+                reader = new StreamingProjectReader(setupSupplementalDigester(), in);
+                parse(in, reader);
+            } catch (FallbackException ex) {
+                logger.info("Reading project file with the digester: " + ex.getMessage());
+                reader = null;
+                in.reset();
+                digester = setupDigester();
+                if (binaryFormat) {
+                    parse(in, digester);
+                } else {
+                    digester.parse(in);
+                }
+            }
+        } catch (DigesterCancelledException ex) {
+            //Loading was cancelled by the user. Do not load anything.
+            throw new RuntimeException(new InterruptedIOException("progress"));
+        } catch (SAXException ex) {
+            //The digester likes to wrap the cancelled exception in a SAXException.
+            if (ex.getException() instanceof DigesterCancelledException) {
+                //Digeseter was cancelled by the user. Do not load anything.
+                throw new RuntimeException(new InterruptedIOException("progress"));
+            }
+            logger.error("SAX Exception in project file parse!", ex);
+            Locator locator = null;
+            if (reader != null) {
+                locator = reader.getDocumentLocator();
+            } else if (digester != null) {
+                locator = digester.getDocumentLocator();
+            }
+            String message;
+            if (locator == null) {
+                message = "Couldn't create an XML parser";
+            } else {
+                message = "There is an XML parsing error in project file at Line:" +
+                locator.getLineNumber() + " Column:" +
+                locator.getColumnNumber();
+            }
+            throw new SQLObjectException(message, ex);
+        } catch (IOException ex) {
+            logger.error("IO Exception in project file parse!", ex);
+            throw new SQLObjectException("There was an I/O error while reading the file", ex);
+        } catch (Exception ex) {
+            logger.error("General Exception in project file parse!", ex);
+            throw new SQLObjectException("Unexpected Exception", ex);
+        }
+    }
+
+    /**
+     * Passes the contents of the project file to the handler, unescaping
+     * them the same way for both file formats.
+     */
+    private void parse(InputStream in, DefaultHandler handler)
+            throws IOException, SAXException, ParserConfigurationException {
+        if (binaryFormat) {
+            new BinaryProjectReader(in).parse(new UnescapingDefaultHandler(handler));
+        } else {
+            new UnescapingSaxParser().parse(in, handler);
+        }
+    }
+
+    /**
+     * Returns true if the project was loaded from a file in the
+     * {@link BinaryProjectFormat}, or has been set to be saved in it. The
+     * project is saved in the same format it was loaded in.
+     */
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    /**
+     * Sets whether the project is saved in the {@link BinaryProjectFormat}
+     * instead of XML.
+     */
+    public void setBinaryFormat(boolean binaryFormat) {
+        this.binaryFormat = binaryFormat;
+    }
+
+    /**
+     * Sets a monitor that is told how many bytes of the project file have been
+     * read during the next load. Its job size should be set to the length of
+     * the file before the load starts. Cancelling the monitor stops the load,
+     * and the monitor is marked as finished when the load is done.
+     */
+    public void setLoadMonitor(MonitorableImpl loadMonitor) {
+        this.loadMonitor = loadMonitor;
+    }
+
+    /**
+     * Turning the streaming reader off makes every file load through the
+     * digester, which the streaming reader has to agree with. It is on by
+     * default.
+     */
+    public void setStreamingReaderEnabled(boolean streamingReaderEnabled) {
+        this.streamingReaderEnabled = streamingReaderEnabled;
+    }
+
+    /**
+     * Makes the next load leave the column results of each table profile
+     * result in the given file, which must be the file being loaded, and read
+     * them from there only when something asks the table result for them.
+     * Projects with a long profiling history then open without reading most
+     * of that history into memory. Files read by the digester always have
+     * all of their profile results loaded.
+     */
+    public void setLazyProfileFile(File lazyProfileFile) {
+        this.lazyProfileFile = lazyProfileFile;
+    }
+
+    /**
+     * Reads the column results of the given table profile results back from
+     * a project file that holds them, and adds them to the results. The table
+     * results, and the columns the column results are for, are found in the
+     * file by their UUIDs, so the table results don't have to come from a
+     * load of this file. Column results for columns the project no longer
+     * has are left out.
+     * <p>
+     * This is for projects rebuilt from somewhere else than their file, such
+     * as a {@link ca.sqlpower.architect.swingui.ProjectJournal}, that left
+     * some of their column results in the file.
+     *
+     * @param in
+     *            The project file, in either format. It is not closed.
+     */
+    public void loadColumnProfileResults(InputStream in, Collection<TableProfileResult> results)
+            throws IOException, SAXException, ParserConfigurationException {
+        final Map<String, TableProfileResult> resultsByUUID = new HashMap<String, TableProfileResult>();
+        final Map<String, SQLColumn> columnsByUUID = new HashMap<String, SQLColumn>();
+        for (TableProfileResult result : results) {
+            resultsByUUID.put(result.getUUID(), result);
+            for (SQLColumn column : result.getProfiledObject().getChildrenWithoutPopulating(SQLColumn.class)) {
+                columnsByUUID.put(column.getUUID(), column);
+            }
+        }
+        sqlObjectLoadIdMap = new LoadIdMap<SQLObject>();
+
+        DefaultHandler handler = new DefaultHandler() {
+
+            /**
+             * Reads the table result being restored, or null between them.
+             */
+            private ColumnResultsReader reader;
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                String name = localName == null || localName.length() == 0 ? qName : localName;
+                if (reader == null && name.equals("column")) {
+                    SQLColumn column = columnsByUUID.get(attributes.getValue("UUID"));
+                    if (column != null) {
+                        sqlObjectLoadIdMap.put(attributes.getValue("id"), column);
+                    }
+                } else if (reader == null && name.equals("table-profile-result")) {
+                    TableProfileResult result = resultsByUUID.get(attributes.getValue("UUID"));
+                    if (result != null) {
+                        reader = new ColumnResultsReader(result);
+                    }
+                }
+                if (reader != null) {
+                    reader.startElement(uri, localName, qName, attributes);
+                }
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                if (reader == null) return;
+                try {
+                    reader.endElement(uri, localName, qName);
+                } catch (EndOfBlockException e) {
+                    for (ColumnProfileResult cpr : reader.columnResults) {
+                        reader.tableResult.addColumnProfileResult(cpr);
+                    }
+                    reader = null;
+                }
+            }
+        };
+
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        if (BinaryProjectFormat.isBinary(in)) {
+            new BinaryProjectReader(in).parse(new UnescapingDefaultHandler(handler));
+        } else {
+            new UnescapingSaxParser().parse(in, handler);
+        }
+    }
+
+    /**
+     * Returns the session that should show any questions to the user while
+     * loading.
+     */
+    private ArchitectSession getMessageOwner() {
+        return siblingSession == null ? session : siblingSession;
+    }
+
+    /**
+     * Tells the user that the file contains an enterprise project, which can't
+     * be opened here. Always stops the load by throwing a
+     * {@link DigesterCancelledException}.
+     */
+    private void rejectEnterpriseProject() {
+        UserPrompter loadingWarningPrompt = getMessageOwner().createUserPrompter(
+                "This file contains an Enterprise project and can only\n" + 
+                "be opened in the Architect Enterprise Edition.",
+                UserPromptType.BOOLEAN, UserPromptOptions.OK_CANCEL,
+                UserPromptResponse.CANCEL, UserPromptResponse.CANCEL, "Get Enterprise", "Cancel");
+        UserPromptResponse upr = loadingWarningPrompt.promptUser();
+        if (upr == UserPromptResponse.OK) {
+            try {
+                BrowserUtil.launch("http://www.sqlpower.ca/page/architect-e");
+            } catch (IOException e) {
+                throw new DigesterCancelledException();
+            }
+        }
+        throw new DigesterCancelledException();
+    }
+
+    /**
+     * Remembers the version of the Architect that saved the file being loaded,
+     * and asks the user whether to keep going if that version is missing or
+     * newer than this one. Throws a {@link DigesterCancelledException} if the
+     * user decides not to load the file.
+     */
+    private void checkFileVersion(String appVersion) throws IOException {
+        fileVersion = appVersion;
+        String loadingMessage;
+        try {
+            if (fileVersion == null) {
+                loadingMessage = "The version of the file cannot be found.";
+                fileVersion = "0";
+            } else if (ArchitectVersion.APP_FULL_VERSION.compareTo(
+                    new ArchitectVersion(fileVersion)) < 0) {
+                loadingMessage = "This file was last saved with a newer version.\n" +
+                		"Loading with an older version may cause data loss.";
+            } else {
+                return;
+            }
+        } catch (Exception e) {
+            loadingMessage = "The version of the file cannot be understood.";
+        }
+        UserPrompter loadingWarningPrompt = getMessageOwner().createUserPrompter(
+                loadingMessage + "\nDo you wish to try and open the file?",
+                UserPromptType.BOOLEAN, UserPromptOptions.OK_NOTOK_CANCEL,
+                UserPromptResponse.OK, UserPromptResponse.OK, "Try loading",
+                "Upgrade...", "Cancel");
+        UserPromptResponse response = loadingWarningPrompt.promptUser();
+        if (response == UserPromptResponse.OK) {
+            //continue to try loading
+        } else if (response == UserPromptResponse.NOT_OK) {
+            BrowserUtil.launch(SPSUtils.SQLP_ARCHITECT_URL);
+            throw new DigesterCancelledException();
+        } else if (response == UserPromptResponse.CANCEL) {
+            throw new DigesterCancelledException();
+        }
+    }
+
+    /**
+     * Returns a digester for the parts of the project file that the
+     * {@link StreamingProjectReader} does not read itself, or null if there
+     * are none. The reader passes every top-level element other than the
+     * model, data sources, DDL generator and profiles to this digester, along
+     * with the root element. Subclasses that add rules in
+     * {@link #setupDigester()} should add the same rules here.
+     */
+    protected Digester setupSupplementalDigester() throws ParserConfigurationException, SAXException {
+        return null;
+    }
+
     protected Digester setupDigester() throws ParserConfigurationException, SAXException {
         Digester d = new Digester(new UnescapingSaxParser());
-        final ArchitectSession messageOwner = (siblingSession == null ? session : siblingSession);
         d.setValidating(false);
         d.push(session);
 
         d.addRule("architect-enterprise-project", new Rule() {
             @Override
             public void begin(String namespace, String name, Attributes attributes) throws Exception {
-                UserPrompter loadingWarningPrompt = messageOwner.createUserPrompter(
-                        "This file contains an Enterprise project and can only\n" + 
-                        "be opened in the Architect Enterprise Edition.",
-                        UserPromptType.BOOLEAN, UserPromptOptions.OK_CANCEL,
-                        UserPromptResponse.CANCEL, UserPromptResponse.CANCEL, "Get Enterprise", "Cancel");
-                UserPromptResponse upr = loadingWarningPrompt.promptUser();
-                if (upr == UserPromptResponse.OK) {
-                    try {
-                        BrowserUtil.launch("http://www.sqlpower.ca/page/architect-e");
-                    } catch (IOException e) {
-                        throw new DigesterCancelledException();
-                    }
-                }
-                throw new DigesterCancelledException();
+                rejectEnterpriseProject();
             }
         });
         
@@ -367,36 +684,7 @@ public class ProjectLoader {
         d.addRule("architect-project", new Rule() {
             @Override
             public void begin(String namespace, String name, Attributes attributes) throws Exception {
-                fileVersion = attributes.getValue("appversion");
-                String loadingMessage;
-                try {
-                    if (fileVersion == null) {
-                        loadingMessage = "The version of the file cannot be found.";
-                        fileVersion = "0";
-                    } else if (ArchitectVersion.APP_FULL_VERSION.compareTo(
-                            new ArchitectVersion(fileVersion)) < 0) {
-                        loadingMessage = "This file was last saved with a newer version.\n" +
-                        		"Loading with an older version may cause data loss.";
-                    } else {
-                        return;
-                    }
-                } catch (Exception e) {
-                    loadingMessage = "The version of the file cannot be understood.";
-                }
-                UserPrompter loadingWarningPrompt = messageOwner.createUserPrompter(
-                        loadingMessage + "\nDo you wish to try and open the file?",
-                        UserPromptType.BOOLEAN, UserPromptOptions.OK_NOTOK_CANCEL,
-                        UserPromptResponse.OK, UserPromptResponse.OK, "Try loading",
-                        "Upgrade...", "Cancel");
-                UserPromptResponse response = loadingWarningPrompt.promptUser();
-                if (response == UserPromptResponse.OK) {
-                    //continue to try loading
-                } else if (response == UserPromptResponse.NOT_OK) {
-                    BrowserUtil.launch(SPSUtils.SQLP_ARCHITECT_URL);
-                    throw new DigesterCancelledException();
-                } else if (response == UserPromptResponse.CANCEL) {
-                    throw new DigesterCancelledException();
-                }
+                checkFileVersion(attributes.getValue("appversion"));
             }
         });
 
@@ -555,6 +843,785 @@ public class ProjectLoader {
         return d;
     }
 
+    /**
+     * Thrown by the {@link StreamingProjectReader} when it finds a file that
+     * has to be read by the digester instead.
+     */
+    private static class FallbackException extends SAXException {
+        FallbackException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The top-level elements of a project file that the
+     * {@link StreamingProjectReader} reads itself.
+     */
+    private static final Set<String> STREAMED_SECTIONS = new HashSet<String>(Arrays.asList(
+            "project-name", "project-connection-specs", "project-data-sources", "source-databases",
+            "target-database", "ddl-generator", "liquibase-settings", "profiles"));
+
+    /**
+     * Reads the data sources, databases, DDL generator, Liquibase settings
+     * and profiles of a project file as the parser reports each element.
+     * Objects are made by the same factories the digester uses, but their
+     * properties and parents are set by looking at the element name instead
+     * of matching every element against every digester rule and finding the
+     * methods to call by reflection. Every other top-level element, such as
+     * the play pen, is passed along with the root element to the supplemental
+     * digester, if there is one.
+     * <p>
+     * Files saved before {@link ProjectLoader#OLDEST_STREAMED_VERSION} stop
+     * the parse with a {@link FallbackException} as soon as the root element
+     * is read.
+     */
+    private class StreamingProjectReader extends DefaultHandler {
+
+        /**
+         * The digester that reads the sections of the file this reader
+         * doesn't. May be null.
+         */
+        private final Digester supplement;
+
+        private Locator locator;
+
+        /**
+         * The name of each open element, indexed by depth. The root element
+         * is at depth 0.
+         */
+        private String[] names = new String[32];
+
+        /**
+         * The object each open element sets its properties on and adds its
+         * children to, indexed by depth. This is the object the digester
+         * would have on the top of its stack.
+         */
+        private Object[] scopes = new Object[32];
+
+        /**
+         * True for each open element that made the object in its scope, as
+         * opposed to inheriting the scope of its parent.
+         */
+        private boolean[] created = new boolean[32];
+
+        /**
+         * The depth of the next element to start.
+         */
+        private int depth;
+
+        /**
+         * True while the elements are being passed to the supplemental
+         * digester.
+         */
+        private boolean forwarding;
+
+        /**
+         * The body text of the current project-name or remarks element, or
+         * null if the current element's text isn't needed.
+         */
+        private StringBuilder text;
+
+        /**
+         * The source databases, which are given to the session at the end of
+         * the source-databases element.
+         */
+        private List<SQLDatabase> sourceDatabases;
+
+        /**
+         * The old and new names of the source data type of the column being
+         * read. These are set last, in the same order as the digester sets
+         * them, so the generic type doesn't override the database specific
+         * one.
+         */
+        private String sourceDBTypeName;
+        private String sourceDataTypeName;
+
+        /**
+         * Where the parser said the previous start or end tag finished. The
+         * next element starts after it.
+         */
+        private int previousLine;
+        private int previousColumn;
+
+        /**
+         * The length and modification time of the {@link #lazyProfileFile}
+         * when the load started.
+         */
+        private final long lazyFileLength;
+        private final long lazyFileModified;
+
+        /**
+         * The column results of the table profile result whose children are
+         * being skipped, or null if nothing is being skipped.
+         */
+        private DeferredColumnResults deferring;
+
+        /**
+         * The depth of the table profile result whose children are being
+         * skipped.
+         */
+        private int deferringDepth;
+
+        /**
+         * The project file as it is read, which knows the byte offsets of the
+         * lines around the parser's position.
+         */
+        private final LoadProgressInputStream input;
+
+        private final DBCSFactory dbcsFactory = new DBCSFactory();
+        private final SQLDatabaseFactory dbFactory = new SQLDatabaseFactory();
+        private final TargetDBFactory targetDBFactory = new TargetDBFactory();
+        private final SQLSchemaFactory schemaFactory = new SQLSchemaFactory();
+        private final SQLTableFactory tableFactory = new SQLTableFactory();
+        private final SQLFolderFactory folderFactory = new SQLFolderFactory();
+        private final SQLColumnFactory columnFactory = new SQLColumnFactory();
+        private final SQLRelationshipFactory relationshipFactory = new SQLRelationshipFactory();
+        private final ColumnMappingFactory columnMappingFactory = new ColumnMappingFactory();
+        private final SQLIndexFactory indexFactory = new SQLIndexFactory();
+        private final SQLIndexColumnFactory indexColumnFactory = new SQLIndexColumnFactory();
+        private final DDLGeneratorFactory ddlgFactory = new DDLGeneratorFactory();
+        private final LiquibaseSettingsFactory lbFactory = new LiquibaseSettingsFactory();
+        private final ProfileManagerFactory profileManagerFactory = new ProfileManagerFactory();
+        private final TableProfileResultFactory tableProfileResultFactory = new TableProfileResultFactory();
+        private final ColumnProfileResultFactory columnProfileResultFactory = new ColumnProfileResultFactory();
+
+        StreamingProjectReader(Digester supplement, LoadProgressInputStream input) {
+            this.supplement = supplement;
+            this.input = input;
+            if (lazyProfileFile != null) {
+                lazyFileLength = lazyProfileFile.length();
+                lazyFileModified = lazyProfileFile.lastModified();
+            } else {
+                lazyFileLength = 0;
+                lazyFileModified = 0;
+            }
+        }
+
+        /**
+         * Returns the locator the parser gave this reader, or null if the
+         * parser didn't get that far.
+         */
+        Locator getDocumentLocator() {
+            return locator;
+        }
+
+        private void rememberPosition() {
+            if (locator != null) {
+                previousLine = locator.getLineNumber();
+                previousColumn = locator.getColumnNumber();
+                input.forgetLinesBefore(previousLine);
+            }
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+            if (supplement != null) {
+                supplement.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            if (supplement != null) {
+                supplement.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            if (supplement != null) {
+                supplement.endDocument();
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            String name = localName == null || localName.length() == 0 ? qName : localName;
+            if (depth == names.length) {
+                names = Arrays.copyOf(names, depth * 2);
+                scopes = Arrays.copyOf(scopes, depth * 2);
+                created = Arrays.copyOf(created, depth * 2);
+            }
+            names[depth] = name;
+            scopes[depth] = depth == 0 ? null : scopes[depth - 1];
+            created[depth] = false;
+
+            if (deferring != null) {
+                if (depth == deferringDepth + 1 && name.equals("column-profile-result")) {
+                    deferring.countColumn(!"true".equals(attributes.getValue("exception")));
+                }
+            } else if (depth == 0) {
+                startProject(name, attributes);
+                if (supplement != null) {
+                    supplement.startElement(uri, localName, qName, attributes);
+                }
+            } else if (forwarding || (depth == 1 && !STREAMED_SECTIONS.contains(name))) {
+                forwarding = true;
+                if (supplement != null) {
+                    supplement.startElement(uri, localName, qName, attributes);
+                }
+            } else {
+                try {
+                    start(name, attributes);
+                } catch (SAXException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SAXException(e);
+                }
+            }
+            depth++;
+            rememberPosition();
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            depth--;
+            if (deferring != null && depth > deferringDepth) {
+                // skipped along with the rest of the table profile result
+            } else if (depth == 0 || forwarding) {
+                if (depth == 1) {
+                    forwarding = false;
+                }
+                if (supplement != null) {
+                    supplement.endElement(uri, localName, qName);
+                }
+            } else {
+                try {
+                    end(names[depth]);
+                } catch (SAXException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SAXException(e);
+                }
+            }
+            scopes[depth] = null;
+            rememberPosition();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (forwarding) {
+                if (supplement != null) {
+                    supplement.characters(ch, start, length);
+                }
+            } else if (text != null) {
+                text.append(ch, start, length);
+            }
+        }
+
+        /**
+         * Checks the root element, the same way the digester's rules for the
+         * root elements do, and puts the session in scope.
+         */
+        private void startProject(String name, Attributes attributes) throws SAXException {
+            if (name.equals("architect-enterprise-project")) {
+                rejectEnterpriseProject();
+            }
+            String appVersion = attributes.getValue("appversion");
+            if (!name.equals("architect-project") || appVersion == null) {
+                throw new FallbackException("Unexpected root element or version");
+            }
+            try {
+                if (new ArchitectVersion(appVersion).compareTo(OLDEST_STREAMED_VERSION) < 0) {
+                    throw new FallbackException("File saved by version " + appVersion);
+                }
+            } catch (FallbackException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FallbackException("Unreadable version " + appVersion);
+            }
+            try {
+                checkFileVersion(appVersion);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+            scopes[0] = session;
+        }
+
+        /**
+         * Makes the object for an element inside one of the streamed
+         * sections, puts it in scope, and sets its properties from the
+         * attributes.
+         */
+        private void start(String name, Attributes attributes) throws Exception {
+            Object parent = scopes[depth];
+            String parentName = names[depth - 1];
+            Object obj = null;
+            if (name.equals("project-name") || name.equals("remarks")) {
+                text = new StringBuilder();
+            } else if (name.equals("data-source") && depth == 2) {
+                scopes[depth] = dbcsFactory.createObject(attributes);
+            } else if (name.equals("property") && parent instanceof JDBCDataSource) {
+                ((JDBCDataSource) parent).put(attributes.getValue("key"), attributes.getValue("value"));
+            } else if (name.equals("source-databases")) {
+                sourceDatabases = new LinkedList<SQLDatabase>();
+                obj = sourceDatabases;
+            } else if (name.equals("database") && parentName.equals("source-databases")) {
+                obj = dbFactory.createObject(attributes);
+            } else if (name.equals("catalog") && parentName.equals("database")) {
+                obj = new SQLCatalog();
+            } else if (name.equals("target-database")) {
+                obj = targetDBFactory.createObject(attributes);
+            } else if (name.equals("schema")) {
+                obj = schemaFactory.createObject(attributes);
+            } else if (name.equals("table")) {
+                obj = tableFactory.createObject(attributes);
+            } else if (name.equals("folder")) {
+                scopes[depth] = folderFactory.createObject(attributes);
+            } else if (name.equals("column")) {
+                obj = columnFactory.createObject(attributes);
+                sourceDBTypeName = attributes.getValue("sourceDBTypeName");
+                sourceDataTypeName = attributes.getValue("sourceDataTypeName");
+            } else if (name.equals("relationship")) {
+                obj = relationshipFactory.createObject(attributes);
+            } else if (name.equals("column-mapping")) {
+                obj = columnMappingFactory.createObject(attributes);
+            } else if (name.equals("index")) {
+                obj = indexFactory.createObject(attributes);
+            } else if (name.equals("index-column")) {
+                obj = indexColumnFactory.createObject(attributes);
+            } else if (name.equals("ddl-generator")) {
+                obj = ddlgFactory.createObject(attributes);
+            } else if (name.equals("liquibase-settings") && depth == 1) {
+                obj = lbFactory.createObject(attributes);
+            } else if (name.equals("profiles")) {
+                obj = profileManagerFactory.createObject(attributes);
+            } else if (name.equals("table-profile-result") && parentName.equals("profiles")) {
+                obj = tableProfileResultFactory.createObject(attributes);
+                long lineStart = input.getLineStart(previousLine);
+                if (lazyProfileFile != null && lineStart >= 0) {
+                    deferring = new DeferredColumnResults(lazyProfileFile, lazyFileLength, lazyFileModified,
+                            lineStart, previousColumn);
+                    deferringDepth = depth;
+                }
+            } else if (name.equals("column-profile-result") && parentName.equals("table-profile-result")) {
+                obj = columnProfileResultFactory.createObject(attributes);
+            } else if (parent instanceof ColumnProfileResult) {
+                addColumnProfileValue((ColumnProfileResult) parent, name, attributes);
+            } else if (name.equals("dbcs") || name.equals("profile-result") || name.equals("sql-exception")) {
+                logger.warn("Ignoring <" + name + "> element in a project file saved by version " + fileVersion);
+            }
+
+            if (obj != null) {
+                scopes[depth] = obj;
+                created[depth] = true;
+                setProperties(obj, attributes);
+            }
+        }
+
+        /**
+         * Adds the object made by an element that just ended to its parent.
+         */
+        private void end(String name) throws Exception {
+            if (text != null) {
+                String body = text.toString().trim();
+                text = null;
+                if (name.equals("project-name")) {
+                    session.setName(body);
+                } else if (scopes[depth] instanceof SQLTable) {
+                    ((SQLTable) scopes[depth]).setRemarks(body);
+                } else if (scopes[depth] instanceof SQLColumn) {
+                    ((SQLColumn) scopes[depth]).setRemarks(body);
+                }
+                return;
+            }
+            if (!created[depth]) return;
+
+            Object obj = scopes[depth];
+            Object parent = scopes[depth - 1];
+            if (name.equals("source-databases")) {
+                session.setSourceDatabaseList(sourceDatabases);
+                sourceDatabases = null;
+            } else if (name.equals("database")) {
+                sourceDatabases.add((SQLDatabase) obj);
+            } else if (name.equals("column")) {
+                SQLColumn col = (SQLColumn) obj;
+                ((SQLObject) parent).addChild(col);
+                if (sourceDataTypeName != null) {
+                    col.setSourceDataTypeName(sourceDataTypeName);
+                }
+                if (sourceDBTypeName != null) {
+                    col.setSourceDataTypeName(sourceDBTypeName);
+                }
+            } else if (name.equals("catalog") || name.equals("schema") || name.equals("table")
+                    || name.equals("column-mapping") || name.equals("index") || name.equals("index-column")) {
+                ((SQLObject) parent).addChild((SQLObject) obj);
+            } else if (name.equals("ddl-generator")) {
+                session.setDDLGenerator((DDLGenerator) obj);
+            } else if (name.equals("liquibase-settings")) {
+                session.setLiquibaseSettings((LiquibaseSettings) obj);
+            } else if (name.equals("table-profile-result")) {
+                if (deferring != null) {
+                    ((TableProfileResult) obj).setColumnResultLoader(deferring);
+                    deferring = null;
+                }
+                ((ProfileManagerImpl) parent).addTableProfileResult((TableProfileResult) obj);
+            } else if (name.equals("column-profile-result")) {
+                ((TableProfileResult) parent).addColumnProfileResult((ColumnProfileResult) obj);
+            }
+        }
+    }
+
+    /**
+     * Sets the value of a column profile result described by one of its child
+     * elements.
+     */
+    private void addColumnProfileValue(ColumnProfileResult cpr, String name, Attributes attributes) throws Exception {
+        if (name.equals("avgValue")) {
+            cpr.setAvgValue(profileResultValueFactory.createObject(attributes));
+        } else if (name.equals("minValue")) {
+            cpr.setMinValue(profileResultValueFactory.createObject(attributes));
+        } else if (name.equals("maxValue")) {
+            cpr.setMaxValue(profileResultValueFactory.createObject(attributes));
+        } else if (name.equals("topNvalue")) {
+            cpr.addValueCount((ColumnValueCount) topNValueFactory.createObject(attributes));
+        }
+    }
+
+    /**
+     * Thrown by the {@link ColumnResultsReader} to stop the parser at the end
+     * of the table profile result it was reading.
+     */
+    private static class EndOfBlockException extends SAXException {
+        EndOfBlockException() {
+            super("End of table profile result");
+        }
+    }
+
+    /**
+     * The column results of a table profile result that were left in the
+     * project file by a lazy load. The parser only reports lines and columns,
+     * and counts columns in characters, so the block is found again from the
+     * byte offset of its line, which the {@link LoadProgressInputStream}
+     * counted while the file was read, and the number of characters on that
+     * line before it.
+     */
+    private class DeferredColumnResults implements ColumnProfileResultLoader {
+
+        private final File file;
+        private final long length;
+        private final long lastModified;
+
+        /**
+         * The byte offset of the line where the tag before the table profile
+         * result ended, and the column the parser reported for its end.
+         */
+        private final long lineStart;
+        private final int column;
+
+        private int columnCount;
+        private int successfulColumnCount;
+
+        DeferredColumnResults(File file, long length, long lastModified, long lineStart, int column) {
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.lineStart = lineStart;
+            this.column = column;
+        }
+
+        void countColumn(boolean successful) {
+            columnCount++;
+            if (successful) {
+                successfulColumnCount++;
+            }
+        }
+
+        public int getColumnCount() {
+            return columnCount;
+        }
+
+        public int getSuccessfulColumnCount() {
+            return successfulColumnCount;
+        }
+
+        public List<ColumnProfileResult> loadColumnResults(TableProfileResult result) throws Exception {
+            if (file.length() != length || file.lastModified() != lastModified) {
+                throw new IOException("The project file " + file +
+                        " has changed since it was opened, so the column profiles can't be read from it");
+            }
+            FileInputStream fin = new FileInputStream(file);
+            try {
+                fin.getChannel().position(lineStart);
+                InputStream in = new BufferedInputStream(fin);
+                skipCharacters(in, column - 1);
+
+                // skip to the start of the table profile result
+                int ch;
+                do {
+                    in.mark(1);
+                    ch = in.read();
+                } while (ch >= 0 && ch != '<');
+                in.reset();
+
+                ColumnResultsReader reader = new ColumnResultsReader(result);
+                try {
+                    new UnescapingSaxParser().parse(in, reader);
+                } catch (EndOfBlockException e) {
+                    // the whole table profile result has been read
+                }
+                return reader.columnResults;
+            } finally {
+                fin.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the column results of one table profile result, starting at the
+     * table profile result's element.
+     */
+    private class ColumnResultsReader extends DefaultHandler {
+
+        private final TableProfileResult tableResult;
+
+        private final List<ColumnProfileResult> columnResults = new ArrayList<ColumnProfileResult>();
+
+        private final ColumnProfileResultFactory columnProfileResultFactory = new ColumnProfileResultFactory();
+
+        private ColumnProfileResult current;
+
+        private int depth;
+
+        ColumnResultsReader(TableProfileResult tableResult) {
+            this.tableResult = tableResult;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            String name = localName == null || localName.length() == 0 ? qName : localName;
+            try {
+                if (depth == 0) {
+                    String uuid = attributes.getValue("UUID");
+                    if (!name.equals("table-profile-result") || (uuid != null && !uuid.equals(tableResult.getUUID()))) {
+                        throw new SAXException("Found <" + name + "> instead of the profile of " +
+                                tableResult.getProfiledObject().getName());
+                    }
+                } else if (depth == 1 && name.equals("column-profile-result")) {
+                    if (sqlObjectLoadIdMap.get(attributes.getValue("ref-id")) == null) {
+                        // the column isn't in the project any more
+                        current = null;
+                    } else {
+                        current = (ColumnProfileResult) columnProfileResultFactory.createObject(attributes);
+                        setProperties(current, attributes);
+                    }
+                } else if (depth == 2 && current != null) {
+                    addColumnProfileValue(current, name, attributes);
+                }
+            } catch (SAXException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SAXException(e);
+            }
+            depth++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            depth--;
+            if (depth == 1 && current != null) {
+                columnResults.add(current);
+                current = null;
+            } else if (depth == 0) {
+                throw new EndOfBlockException();
+            }
+        }
+    }
+
+    /**
+     * Skips the given number of characters of a UTF-8 stream, which is the
+     * encoding project files are saved in. Characters outside the Basic
+     * Multilingual Plane count as two, as they do in the column numbers the
+     * parser reports.
+     */
+    private static void skipCharacters(InputStream in, int characters) throws IOException {
+        while (characters > 0) {
+            in.mark(1);
+            int b = in.read();
+            if (b < 0) return;
+            if ((b & 0xC0) == 0x80) {
+                // the rest of a character that was already counted
+                continue;
+            }
+            characters -= (b & 0xF8) == 0xF0 ? 2 : 1;
+        }
+        // include the rest of the last character
+        int b;
+        do {
+            in.mark(1);
+            b = in.read();
+        } while (b >= 0 && (b & 0xC0) == 0x80);
+        if (b >= 0) {
+            in.reset();
+        }
+    }
+
+    /**
+     * Sets a property of the object for each attribute, the same way the
+     * digester's set properties rule does. Attributes with a hyphen in
+     * their names are never properties; the factories read them.
+     */
+    private static void setProperties(Object obj, Attributes attributes) throws Exception {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String name = attributes.getLocalName(i);
+            if (name == null || name.length() == 0) {
+                name = attributes.getQName(i);
+            }
+            if (name.indexOf('-') >= 0 || name.equals("id") || name.equals("hashCode")
+                    || (name.equals("exception") && obj instanceof AbstractProfileResult<?>)) {
+                continue;
+            }
+            String value = attributes.getValue(i);
+            boolean set;
+            try {
+                set = setKnownProperty(obj, name, value);
+            } catch (NumberFormatException e) {
+                set = false;
+            }
+            if (!set) {
+                BeanUtils.setProperty(obj, name, value);
+            }
+        }
+    }
+
+    /**
+     * Sets the properties that are in nearly every element of a large
+     * project by calling the setter directly. Returns false if the
+     * property isn't one of these, or the value needs BeanUtils to
+     * convert it.
+     */
+    private static boolean setKnownProperty(Object obj, String name, String value) throws Exception {
+        if (obj instanceof SQLObject) {
+            SQLObject so = (SQLObject) obj;
+            if (name.equals("name")) {
+                so.setName(value);
+                return true;
+            } else if (name.equals("physicalName")) {
+                so.setPhysicalName(value);
+                return true;
+            } else if (name.equals("UUID")) {
+                so.setUUID(value);
+                return true;
+            } else if (name.equals("populated")) {
+                so.setPopulated(Boolean.valueOf(value));
+                return true;
+            }
+        } else if (obj instanceof SPObject && name.equals("UUID")) {
+            ((SPObject) obj).setUUID(value);
+            return true;
+        }
+
+        if (obj instanceof SQLColumn) {
+            SQLColumn col = (SQLColumn) obj;
+            if (name.equals("type")) {
+                col.setType(Integer.parseInt(value));
+            } else if (name.equals("scale")) {
+                col.setScale(Integer.parseInt(value));
+            } else if (name.equals("precision")) {
+                col.setPrecision(Integer.parseInt(value));
+            } else if (name.equals("nullable")) {
+                col.setNullable(Integer.parseInt(value));
+            } else if (name.equals("defaultValue")) {
+                col.setDefaultValue(value);
+            } else if (name.equals("autoIncrement")) {
+                col.setAutoIncrement(Boolean.valueOf(value));
+            } else if (name.equals("autoIncrementSequenceName")) {
+                col.setAutoIncrementSequenceName(value);
+            } else if (name.equals("sourceDataTypeName")) {
+                col.setSourceDataTypeName(value);
+            } else {
+                return false;
+            }
+            return true;
+        } else if (obj instanceof SQLRelationship) {
+            SQLRelationship rel = (SQLRelationship) obj;
+            if (name.equals("pkCardinality")) {
+                rel.setPkCardinality(Integer.parseInt(value));
+            } else if (name.equals("fkCardinality")) {
+                rel.setFkCardinality(Integer.parseInt(value));
+            } else if (name.equals("identifying")) {
+                rel.setIdentifying(Boolean.valueOf(value));
+            } else if (name.equals("updateRule")) {
+                rel.setUpdateRule((UpdateDeleteRule) ConvertUtils.convert(value, UpdateDeleteRule.class));
+            } else if (name.equals("deleteRule")) {
+                rel.setDeleteRule((UpdateDeleteRule) ConvertUtils.convert(value, UpdateDeleteRule.class));
+            } else if (name.equals("deferrability")) {
+                rel.setDeferrability((Deferrability) ConvertUtils.convert(value, Deferrability.class));
+            } else {
+                return false;
+            }
+            return true;
+        } else if (obj instanceof SQLIndex) {
+            SQLIndex index = (SQLIndex) obj;
+            if (name.equals("unique")) {
+                index.setUnique(Boolean.valueOf(value));
+            } else if (name.equals("clustered")) {
+                index.setClustered(Boolean.valueOf(value));
+            } else if (name.equals("qualifier")) {
+                index.setQualifier(value);
+            } else if (name.equals("filterCondition")) {
+                index.setFilterCondition(value);
+            } else {
+                return false;
+            }
+            return true;
+        } else if (obj instanceof Column) {
+            if (name.equals("ascendingOrDescending")) {
+                ((Column) obj).setAscendingOrDescending((AscendDescend) ConvertUtils.convert(value, AscendDescend.class));
+                return true;
+            }
+            return false;
+        } else if (obj instanceof AbstractProfileResult<?>) {
+            AbstractProfileResult<?> result = (AbstractProfileResult<?>) obj;
+            if (name.equals("createStartTime")) {
+                result.setCreateStartTime(Long.parseLong(value));
+                return true;
+            } else if (name.equals("createEndTime")) {
+                result.setCreateEndTime(Long.parseLong(value));
+                return true;
+            }
+            if (obj instanceof TableProfileResult) {
+                TableProfileResult tpr = (TableProfileResult) obj;
+                if (name.equals("rowCount")) {
+                    tpr.setRowCount(Long.parseLong(value));
+                } else if (name.equals("queryCount")) {
+                    tpr.setQueryCount(Integer.parseInt(value));
+                } else if (name.equals("queryTime")) {
+                    tpr.setQueryTime(Long.parseLong(value));
+                } else if (name.equals("fingerprint")) {
+                    tpr.setFingerprint(value);
+                } else {
+                    return false;
+                }
+                return true;
+            } else if (obj instanceof ColumnProfileResult) {
+                ColumnProfileResult cpr = (ColumnProfileResult) obj;
+                if (name.equals("avgLength")) {
+                    cpr.setAvgLength(Double.parseDouble(value));
+                } else if (name.equals("minLength")) {
+                    cpr.setMinLength(Integer.parseInt(value));
+                } else if (name.equals("maxLength")) {
+                    cpr.setMaxLength(Integer.parseInt(value));
+                } else if (name.equals("nullCount")) {
+                    cpr.setNullCount(Long.parseLong(value));
+                } else if (name.equals("distinctValueCount")) {
+                    cpr.setDistinctValueCount(Long.parseLong(value));
+                } else {
+                    return false;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Creates a SPDataSource object and puts a mapping from its
      * id (in the attributes) to the new instance into the dbcsIdMap.
@@ -1081,7 +2148,7 @@ public class ProjectLoader {
         @Override
         public Object createObject(Attributes attributes) throws SQLObjectException, ClassNotFoundException, InstantiationException, IllegalAccessException {
             String className = attributes.getValue("type");
-            int count = Integer.valueOf(attributes.getValue("count"));
+            long count = Long.valueOf(attributes.getValue("count"));
 
             String per = attributes.getValue("percent");
             double percent = -1;
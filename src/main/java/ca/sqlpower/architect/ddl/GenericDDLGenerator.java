@@ -18,9 +18,7 @@
  */
 package ca.sqlpower.architect.ddl;
 
-import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -30,6 +28,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.log4j.Logger;
 
@@ -42,6 +44,7 @@ import ca.sqlpower.diff.DiffChunk;
 import ca.sqlpower.object.SPResolverRegistry;
 import ca.sqlpower.object.SPVariableHelper;
 import ca.sqlpower.object.SPVariableResolver;
+import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.JDBCDataSourceType;
 import ca.sqlpower.sqlobject.SQLCheckConstraint;
 import ca.sqlpower.sqlobject.SQLCheckConstraintVariableResolver;
@@ -71,6 +74,12 @@ public class GenericDDLGenerator implements DDLGenerator {
 
 	private static final Logger logger = Logger.getLogger(GenericDDLGenerator.class);
 
+	/**
+	 * Models with fewer tables than this are always generated on the calling
+	 * thread; handing them to a pool costs more than it saves.
+	 */
+	private static final int PARALLEL_TABLE_THRESHOLD = 32;
+
 	public String getName() {
 	    return "Generic SQL-92";
 	}
@@ -113,10 +122,18 @@ public class GenericDDLGenerator implements DDLGenerator {
 	protected Map<Integer, GenericTypeDescriptor> typeMap;
 
 	/**
-	 * This variable will be a live, non-null connection to the target
-	 * database (set up by writeDDL) if allowConnection is true.
+	 * The data source whose type information {@link #createTypeMap()} uses,
+	 * or null to use the generic types. It is set to the tables' data source
+	 * by {@link #generateDDLStatements(Collection)} if allowConnection is
+	 * true and the tables are not in the play pen.
+	 */
+	protected JDBCDataSource typeInfoSource;
+
+	/**
+	 * The cache {@link #createTypeMap()} reads the type information of
+	 * {@link #typeInfoSource} through, or null for the shared one.
 	 */
-	protected Connection con;
+	private TypeInfoCache typeInfoCache;
 
 	/**
 	 * As table and relationship creation statements are generated,
@@ -164,6 +181,78 @@ public class GenericDDLGenerator implements DDLGenerator {
     private ArchitectSwingSession session;
 
     private JDBCDataSourceType dsType = null;
+
+    /**
+     * The number of threads {@link #generateDDLStatements(Collection)} renders
+     * tables on. This is 1 unless a caller asks for more, so tables are
+     * rendered on the calling thread by default.
+     */
+    private int parallelism = 1;
+
+    /**
+     * The statements a worker thread has rendered for the table it is working
+     * on, and the buffer its current statement is built in. While a thread
+     * has one of these, {@link #print(String)}, {@link #println(String)} and
+     * {@link #endStatement(StatementType, SQLObject)} write to it instead of
+     * to this generator's own buffer and statement list.
+     */
+    private static class StatementOutput {
+        private StringBuffer ddl = new StringBuffer(500);
+        private final List<DDLStatement> statements = new ArrayList<DDLStatement>();
+    }
+
+    private final ThreadLocal<StatementOutput> workerOutput = new ThreadLocal<StatementOutput>();
+
+    /**
+     * Something rendered for each table in a model, such as its CREATE
+     * statement or its foreign keys.
+     */
+    private interface TableRenderer {
+        void render(SQLTable t) throws SQLException, SQLObjectException;
+    }
+
+    /**
+     * The type names {@link #columnType(SQLColumn)} has rendered for columns
+     * based on a domain or type, keyed by that type and the precision and
+     * scale that apply on this generator's platform. Most columns in a large
+     * model share a handful of these shapes.
+     */
+    private final Map<ColumnTypeKey, String> columnTypeCache = new ConcurrentHashMap<ColumnTypeKey, String>();
+
+    private static final class ColumnTypeKey {
+        private final UserDefinedSQLType type;
+        private final int precision;
+        private final int scale;
+        private final PropertyType precisionType;
+        private final PropertyType scaleType;
+
+        ColumnTypeKey(UserDefinedSQLType type, int precision, int scale,
+                PropertyType precisionType, PropertyType scaleType) {
+            this.type = type;
+            this.precision = precision;
+            this.scale = scale;
+            this.precisionType = precisionType;
+            this.scaleType = scaleType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ColumnTypeKey)) return false;
+            ColumnTypeKey other = (ColumnTypeKey) obj;
+            return type == other.type && precision == other.precision && scale == other.scale
+                && precisionType == other.precisionType && scaleType == other.scaleType;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(type);
+            result = 31 * result + precision;
+            result = 31 * result + scale;
+            result = 31 * result + (precisionType == null ? 0 : precisionType.hashCode());
+            result = 31 * result + (scaleType == null ? 0 : scaleType.hashCode());
+            return result;
+        }
+    }
     
     public GenericDDLGenerator(boolean allowConnection) throws SQLException {
         this.allowConnection = allowConnection;
@@ -226,43 +315,167 @@ public class GenericDDLGenerator implements DDLGenerator {
         tableList = dfs.getFinishOrder();
         SQLDatabase parentDb = SQLPowerUtils.getAncestor(tableList.get(0), SQLDatabase.class);
         dsType = parentDb.getDataSource().getParentType();
-		try {
-			if (allowConnection && tableList.size() > 0) {
-                if (parentDb.isPlayPenDatabase()) {
-                    con = null;
-                } else {
-                    con = parentDb.getConnection();
-                }
-			} else {
-				con = null;
-			}
-
-			createTypeMap();
-
-			for (SQLTable t : tableList) {
+		if (allowConnection && tableList.size() > 0 && !parentDb.isPlayPenDatabase()) {
+		    typeInfoSource = parentDb.getDataSource();
+		} else {
+		    typeInfoSource = null;
+		}
 
-				addTable(t);
+		createTypeMap();
+		columnTypeCache.clear();
 
-                for (SQLIndex index : t.getIndices()) {
-                   if (index.isPrimaryKeyIndex()) continue;
-                    addIndex(index);
-                }
-			}
+		TableRenderer tableRenderer = new TableRenderer() {
+		    public void render(SQLTable t) throws SQLException, SQLObjectException {
+		        addTable(t);
 
-            for (SQLTable t : tableList) {
-				writeExportedRelationships(t);
-			}
+		        for (SQLIndex index : t.getIndices()) {
+		            if (index.isPrimaryKeyIndex()) continue;
+		            addIndex(index);
+		        }
+		    }
+		};
+		TableRenderer relationshipRenderer = new TableRenderer() {
+		    public void render(SQLTable t) throws SQLObjectException {
+		        writeExportedRelationships(t);
+		    }
+		};
 
-		} finally {
-			try {
-				if (con != null) con.close();
-			} catch (SQLException ex) {
-				logger.error("Couldn't close connection", ex);
-			}
+		if (parallelism > 1 && tableList.size() >= PARALLEL_TABLE_THRESHOLD
+		        && supportsParallelGeneration()) {
+		    prepareForParallelGeneration(tableList);
+		    renderInParallel(tableList, tableRenderer);
+		    renderInParallel(tableList, relationshipRenderer);
+		} else {
+		    for (SQLTable t : tableList) {
+		        tableRenderer.render(t);
+		    }
+		    for (SQLTable t : tableList) {
+		        relationshipRenderer.render(t);
+		    }
 		}
+
 		return ddlStatements;
 	}
 
+	/**
+	 * Returns true if {@link #generateDDLStatements(Collection)} may render
+	 * different tables on different threads at the same time. Generators
+	 * whose output depends on the order statements are made in, beyond the
+	 * order they end up in, must override this to return false.
+	 */
+	protected boolean supportsParallelGeneration() {
+	    return true;
+	}
+
+	public int getParallelism() {
+	    return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads tables are rendered on. A value of 1, the
+	 * default, renders everything on the calling thread.
+	 */
+	public void setParallelism(int parallelism) {
+	    if (parallelism < 1) {
+	        throw new IllegalArgumentException("Parallelism must be at least 1, not " + parallelism);
+	    }
+	    this.parallelism = parallelism;
+	}
+
+	/**
+	 * Does everything rendering the given tables would change in the tables
+	 * themselves, on the calling thread: it populates them and sets up the
+	 * physical names of the tables and everything in them, and of the tables
+	 * and columns on the other side of their relationships, in the same
+	 * order rendering them one at a time would. After this, rendering them
+	 * only reads from them. See {@link #createPhysicalName(Map, SQLObject)}.
+	 */
+	private void prepareForParallelGeneration(List<SQLTable> tables) throws SQLObjectException {
+	    for (SQLTable t : tables) {
+	        createPhysicalName(topLevelNames, t);
+	        Map<String, SQLObject> colNameMap = new HashMap<String, SQLObject>();
+	        for (SQLColumn c : t.getColumns()) {
+	            createPhysicalName(colNameMap, c);
+	        }
+	        for (SQLIndex index : t.getIndices()) {
+	            createPhysicalName(topLevelNames, index);
+	        }
+	    }
+	    for (SQLTable t : tables) {
+	        for (SQLRelationship r : t.getExportedKeys()) {
+	            createPhysicalName(topLevelNames, r);
+	            createPhysicalName(topLevelNames, r.getFkTable());
+	            Map<String, SQLObject> colNameMap = new HashMap<String, SQLObject>();
+	            for (ColumnMapping cm : r.getChildren(ColumnMapping.class)) {
+	                createPhysicalName(colNameMap, cm.getPkColumn());
+	                createPhysicalName(colNameMap, cm.getFkColumn());
+	            }
+	        }
+	    }
+	}
+
+	/**
+	 * Renders each of the given tables on a pool of
+	 * {@link #getParallelism()} threads, each into its own statement list,
+	 * then adds the statements to this generator's list in the order of the
+	 * tables.
+	 */
+	private void renderInParallel(List<SQLTable> tables, final TableRenderer renderer) throws SQLException, SQLObjectException {
+	    List<ForkJoinTask<List<DDLStatement>>> tasks = new ArrayList<ForkJoinTask<List<DDLStatement>>>();
+	    final boolean firstStatement = ddlStatements.isEmpty();
+	    ForkJoinPool pool = new ForkJoinPool(parallelism);
+	    try {
+	        for (int i = 0; i < tables.size(); i++) {
+	            final SQLTable t = tables.get(i);
+	            final boolean leadingNewline = !(firstStatement && i == 0);
+	            tasks.add(pool.submit(new Callable<List<DDLStatement>>() {
+	                public List<DDLStatement> call() throws Exception {
+	                    // match the newline every statement but the first
+	                    // starts with when they are made one after another
+	                    StatementOutput output = new StatementOutput();
+	                    if (leadingNewline) {
+	                        output.ddl.append(EOL);
+	                    }
+	                    workerOutput.set(output);
+	                    try {
+	                        renderer.render(t);
+	                    } finally {
+	                        workerOutput.remove();
+	                    }
+	                    return output.statements;
+	                }
+	            }));
+	        }
+	        for (ForkJoinTask<List<DDLStatement>> task : tasks) {
+	            ddlStatements.addAll(task.join());
+	        }
+	    } catch (RuntimeException ex) {
+	        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+	            if (cause instanceof SQLException) {
+	                throw (SQLException) cause;
+	            } else if (cause instanceof SQLObjectException) {
+	                throw (SQLObjectException) cause;
+	            }
+	        }
+	        throw ex;
+	    } finally {
+	        pool.shutdownNow();
+	    }
+	    if (!ddlStatements.isEmpty()) {
+	        ddl = new StringBuffer(500);
+	        println("");
+	    }
+	}
+
+	/**
+	 * Returns the buffer the statement being made on the current thread is
+	 * built in.
+	 */
+	private StringBuffer currentDdl() {
+	    StatementOutput output = workerOutput.get();
+	    return output == null ? ddl : output.ddl;
+	}
+
 	/**
 	 * Stores all the ddl since the last call to endStatement as a SQL
 	 * statement. You have to call this at the end of each statement.
@@ -271,15 +484,44 @@ public class GenericDDLGenerator implements DDLGenerator {
 	 * @param sqlObject the object to which the statement pertains
 	 */
 	public final void endStatement(StatementType type, SQLObject sqlObject) {
+		StatementOutput output = workerOutput.get();
+		StringBuffer buffer = output == null ? ddl : output.ddl;
 		if (logger.isInfoEnabled()) {
-			logger.info("endStatement: " + ddl.toString());
+			logger.info("endStatement: " + buffer.toString());
 		}
 
-		ddlStatements.add(new DDLStatement(sqlObject, type, ddl.toString(), getStatementTerminator(), getTargetCatalog(), getTargetSchema()));
-		ddl = new StringBuffer(500);
+		DDLStatement statement = new DDLStatement(sqlObject, type, buffer.toString(), getStatementTerminator(), getTargetCatalog(), getTargetSchema());
+		if (output == null) {
+		    ddlStatements.add(statement);
+		    ddl = new StringBuffer(500);
+		} else {
+		    output.statements.add(statement);
+		    output.ddl = new StringBuffer(500);
+		}
 		println("");
 	}
 
+	/**
+	 * Returns the number of statements generated so far.
+	 */
+	public final int getStatementCount() {
+		return ddlStatements.size();
+	}
+
+	/**
+	 * Moves the statements generated since this generator had
+	 * <code>count</code> of them to the start of its script. This lets
+	 * statements that have to run first, such as dropping foreign keys, be
+	 * generated after the rest of the script.
+	 */
+	public final void moveStatementsToStart(int count) {
+		List<DDLStatement> moved = ddlStatements.subList(count, ddlStatements.size());
+		List<DDLStatement> rest = new ArrayList<DDLStatement>(ddlStatements.subList(0, count));
+		List<DDLStatement> reordered = new ArrayList<DDLStatement>(moved);
+		reordered.addAll(rest);
+		ddlStatements = reordered;
+	}
+
 	public void writeHeader() {
 		println("-- Created by SQLPower Generic DDL Generator "+GENERATOR_VERSION+" --");
 	}
@@ -908,18 +1150,28 @@ public class GenericDDLGenerator implements DDLGenerator {
     
 	/** Column type */
     public String columnType(SQLColumn c) {
-        StringBuffer def = new StringBuffer();
         UserDefinedSQLType columnType = c.getUserDefinedSQLType();
-        if (columnType.getUpstreamType() != null) {
-            def.append(columnType.getUpstreamType().getPhysicalName(getPlatformName()));
-        } else {
-            def.append(columnType.getPhysicalName(getPlatformName()));
-        }
-        
+        UserDefinedSQLType upstreamType = columnType.getUpstreamType();
         int precision = columnType.getPrecision(getPlatformName());
         int scale = columnType.getScale(getPlatformName());
         PropertyType precisionType = columnType.getPrecisionType(getPlatformName());
         PropertyType scaleType = columnType.getScaleType(getPlatformName());
+
+        ColumnTypeKey key = null;
+        if (upstreamType != null) {
+            key = new ColumnTypeKey(upstreamType, precision, scale, precisionType, scaleType);
+            String cached = columnTypeCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        StringBuffer def = new StringBuffer();
+        if (upstreamType != null) {
+            def.append(upstreamType.getPhysicalName(getPlatformName()));
+        } else {
+            def.append(columnType.getPhysicalName(getPlatformName()));
+        }
         
 		if (precisionType != PropertyType.NOT_APPLICABLE && 
 		        scaleType != PropertyType.NOT_APPLICABLE && 
@@ -931,6 +1183,9 @@ public class GenericDDLGenerator implements DDLGenerator {
 		} else if (scaleType != PropertyType.NOT_APPLICABLE && scale > 0) {
 		    def.append("("+columnType.getScale(getPlatformName())+")");
 		}
+        if (key != null) {
+            columnTypeCache.put(key, def.toString());
+        }
         return def.toString();
     }
 
@@ -1064,13 +1319,14 @@ public class GenericDDLGenerator implements DDLGenerator {
 
 	/**
 	 * Creates and populates <code>typeMap</code> using
-	 * DatabaseMetaData.  Subclasses for specific DB platforms will be
-	 * able to override this implementation with one that uses a
-	 * static, pre-defined type map.
+	 * DatabaseMetaData, through a {@link TypeInfoCache} so the
+	 * database is only asked the first time it is seen. Subclasses for
+	 * specific DB platforms will be able to override this implementation
+	 * with one that uses a static, pre-defined type map.
 	 */
 	protected void createTypeMap() throws SQLException {
 		typeMap = new HashMap<Integer, GenericTypeDescriptor>();
-		if (con == null || !allowConnection) {
+		if (typeInfoSource == null || !allowConnection) {
 			// Add generic type map
 			typeMap.put(Integer.valueOf(Types.BIGINT), new GenericTypeDescriptor("BIGINT", Types.BIGINT, 38, null, null, DatabaseMetaData.columnNullable, false, false));
 			typeMap.put(Integer.valueOf(Types.BINARY), new GenericTypeDescriptor("BINARY", Types.BINARY, 2000, "0x", null, DatabaseMetaData.columnNullable, true, false));
@@ -1100,22 +1356,17 @@ public class GenericDDLGenerator implements DDLGenerator {
 		}
 		else
 		{
-			DatabaseMetaData dbmd = con.getMetaData();
-			ResultSet rs = dbmd.getTypeInfo();
-			while (rs.next()) {
-				GenericTypeDescriptor td = new GenericTypeDescriptor(rs);
-				typeMap.put(Integer.valueOf(td.getDataType()), td);
-			}
-			rs.close();
+			TypeInfoCache cache = typeInfoCache == null ? TypeInfoCache.getInstance() : typeInfoCache;
+			typeMap = cache.getTypeMap(typeInfoSource);
 		}
 	}
 
 	protected void println(String text) {
-		ddl.append(text).append(EOL);
+		currentDdl().append(text).append(EOL);
 	}
 
 	protected void print(String text) {
-		ddl.append(text);
+		currentDdl().append(text);
 	}
 
 	/**
@@ -1187,6 +1438,14 @@ public class GenericDDLGenerator implements DDLGenerator {
 		this.allowConnection = argAllowConnection;
 	}
 
+	/**
+	 * Sets the cache the type map of a live database is read through. Null,
+	 * the default, means {@link TypeInfoCache#getInstance()}.
+	 */
+	public void setTypeInfoCache(TypeInfoCache typeInfoCache) {
+		this.typeInfoCache = typeInfoCache;
+	}
+
 	/**
 	 * Gets the value of typeMap
 	 *
@@ -1212,24 +1471,6 @@ public class GenericDDLGenerator implements DDLGenerator {
         this.profileFunctionMap = profileFunctionMap;
     }
 
-	/**
-	 * Gets the value of con
-	 *
-	 * @return the value of con
-	 */
-	public Connection getCon()  {
-		return this.con;
-	}
-
-	/**
-	 * Sets the value of con
-	 *
-	 * @param argCon Value to assign to this.con
-	 */
-	public void setCon(Connection argCon) {
-		this.con = argCon;
-	}
-
 	/**
 	 * See {@link #targetCatalog}.
 	 *
@@ -1286,6 +1527,12 @@ public class GenericDDLGenerator implements DDLGenerator {
 
 	/**  
 	 * Generate, set, and return a valid identifier for this SQLObject.
+	 * <p>
+	 * On the worker threads of a parallel generation the name is only
+	 * returned, never set, so rendering doesn't fire events on the model
+	 * from those threads. The calling thread has already set the same names
+	 * in {@link #prepareForParallelGeneration(List)}, for the subclasses that
+	 * read them back from the objects.
 	 * @param dupCheck
 	 * @param so
 	 * @return
@@ -1296,6 +1543,8 @@ public class GenericDDLGenerator implements DDLGenerator {
                 (so.getPhysicalName() != null && !so.getPhysicalName().trim().equals(""))) {
 		    String physicalName = so.getPhysicalName();
 		    logger.debug("The physical name for this SQLObject is: " + physicalName);
+		} else if (workerOutput.get() != null) {
+		    return getQuotedPhysicalName(toIdentifier(so.getName()));
 		} else {
 		    so.setPhysicalName(toIdentifier(so.getName()));
 		}
@@ -214,6 +214,15 @@ public class LiquibaseDDLGenerator extends GenericDDLGenerator implements DDLGen
 		return result;
 	}
 
+	/**
+	 * Change set ids are numbered in the order statements are made, so the
+	 * tables have to be rendered one after another.
+	 */
+	@Override
+	protected boolean supportsParallelGeneration() {
+		return false;
+	}
+
 	public void dropRelationship(SQLRelationship r) {
 		startOfStatement();
 		print("<dropForeignKeyConstraint ");
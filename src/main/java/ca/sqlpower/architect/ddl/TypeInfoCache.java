@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.ddl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.sql.JDBCDataSource;
+
+/**
+ * Remembers the type information each database reports through
+ * {@link DatabaseMetaData#getTypeInfo()}, in a file in the user's home
+ * directory, so DDL generators don't have to ask the database for it every
+ * time they run.
+ * <p>
+ * The first time a data source is seen its types are read from the database
+ * while the caller waits. After that the saved types are returned right
+ * away, and once per run a background thread checks the database's driver
+ * and server versions. The types are only read again if one of the
+ * versions changed. The file is always written on that background thread
+ * too, so a generator never waits for the disk.
+ * <p>
+ * One cache is shared by every generator in every session; see
+ * {@link #getInstance()}. It is kept in the file named by the
+ * {@link #FILE_PROPERTY} system property, or in the user's home directory if
+ * the property is not set. A generator can be given a cache of its own with
+ * {@link GenericDDLGenerator#setTypeInfoCache(TypeInfoCache)}.
+ */
+public class TypeInfoCache {
+
+    private static final Logger logger = Logger.getLogger(TypeInfoCache.class);
+
+    /**
+     * The version of the file format. Files with any other version are
+     * ignored and replaced.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    /**
+     * The system property holding the path of the file the shared cache is
+     * kept in. The test build points it at its own directory so running the
+     * tests doesn't touch the user's cache.
+     */
+    public static final String FILE_PROPERTY = TypeInfoCache.class.getName() + ".file";
+
+    /**
+     * The cache shared by all DDL generators, null until it is first asked
+     * for. Guarded by the class.
+     */
+    private static TypeInfoCache instance;
+
+    /**
+     * Returns the cache shared by all DDL generators. The location of its
+     * file is decided the first time this is called.
+     */
+    public static synchronized TypeInfoCache getInstance() {
+        if (instance == null) {
+            String path = System.getProperty(FILE_PROPERTY);
+            File file;
+            if (path != null && path.trim().length() > 0) {
+                file = new File(path);
+            } else {
+                file = new File(System.getProperty("user.home"), ".architect-typeinfo.cache");
+            }
+            instance = new TypeInfoCache(file);
+        }
+        return instance;
+    }
+
+    /**
+     * The types of one data source, and the versions of the driver and
+     * server they were read with.
+     */
+    static class Entry {
+        private final String driverVersion;
+        private final String serverVersion;
+        private final Map<Integer, GenericTypeDescriptor> types;
+
+        Entry(String driverVersion, String serverVersion, Map<Integer, GenericTypeDescriptor> types) {
+            this.driverVersion = driverVersion;
+            this.serverVersion = serverVersion;
+            this.types = Collections.unmodifiableMap(types);
+        }
+
+        boolean isSameVersion(String driverVersion, String serverVersion) {
+            return safeEquals(this.driverVersion, driverVersion) && safeEquals(this.serverVersion, serverVersion);
+        }
+    }
+
+    private final File file;
+
+    /**
+     * The cached entries by {@link #key(JDBCDataSource)}. Null until the
+     * file has been read.
+     */
+    private Map<String, Entry> entries;
+
+    /**
+     * The keys of the entries that have been checked against their
+     * database, or are being checked, since this cache was created. Guarded
+     * by itself.
+     */
+    private final Set<String> checked = new HashSet<String>();
+
+    /**
+     * Guards the file, so the refresher's saves and {@link #clear()} don't
+     * run into each other. The cache's own lock is never held while the
+     * file is written.
+     */
+    private final Object fileLock = new Object();
+
+    /**
+     * True while a save has been handed to the refresher and hasn't started
+     * yet. Later changes are picked up by that save instead of queueing
+     * another one.
+     */
+    private final AtomicBoolean savePending = new AtomicBoolean();
+
+    /**
+     * Checks entries against their databases and saves the file, one task
+     * at a time.
+     */
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Type info refresher");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * @param file
+     *            The file the cache is saved in. It does not have to exist.
+     */
+    public TypeInfoCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns a copy of the type map for the given data source, keyed by JDBC
+     * type code. This only connects to the database, and waits for it, if
+     * the data source has never been seen before.
+     */
+    public Map<Integer, GenericTypeDescriptor> getTypeMap(final JDBCDataSource ds) throws SQLException {
+        final String key = key(ds);
+        Entry entry = getEntries().get(key);
+        if (entry == null) {
+            synchronized (checked) {
+                checked.add(key);
+            }
+            entry = read(ds, null);
+            getEntries().put(key, entry);
+            scheduleSave();
+        } else {
+            boolean firstUse;
+            synchronized (checked) {
+                firstUse = checked.add(key);
+            }
+            if (firstUse) {
+                refresher.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            Entry old = getEntries().get(key);
+                            Entry current = read(ds, old);
+                            if (current != old) {
+                                logger.info("Type info for " + ds.getUrl() + " changed, updating cache");
+                                getEntries().put(key, current);
+                                save();
+                            }
+                        } catch (Exception ex) {
+                            logger.warn("Couldn't check type info for " + ds.getUrl() + ", keeping the cached types", ex);
+                        }
+                    }
+                });
+            }
+        }
+        return copy(entry.types);
+    }
+
+    /**
+     * Forgets everything in this cache, including the file.
+     */
+    public void clear() {
+        synchronized (this) {
+            entries = new ConcurrentHashMap<String, Entry>();
+        }
+        synchronized (checked) {
+            checked.clear();
+        }
+        synchronized (fileLock) {
+            if (file.exists() && !file.delete()) {
+                logger.warn("Couldn't delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Waits until every check and save handed to the background thread so
+     * far is finished. This is for tests.
+     */
+    void flush() throws InterruptedException, ExecutionException {
+        refresher.submit(new Runnable() {
+            public void run() {
+                // nothing to do, everything queued before this has run
+            }
+        }).get();
+    }
+
+    /**
+     * Reads the types of the given data source from its database.
+     *
+     * @param old
+     *            The entry already in the cache, or null. If the database's
+     *            versions match it, it is returned without reading the
+     *            types.
+     */
+    private Entry read(JDBCDataSource ds, Entry old) throws SQLException {
+        Connection con = null;
+        try {
+            con = ds.createConnection();
+            DatabaseMetaData dbmd = con.getMetaData();
+            String driverVersion = dbmd.getDriverName() + " " + dbmd.getDriverVersion();
+            String serverVersion = dbmd.getDatabaseProductName() + " " + dbmd.getDatabaseProductVersion();
+            if (old != null && old.isSameVersion(driverVersion, serverVersion)) {
+                return old;
+            }
+            Map<Integer, GenericTypeDescriptor> types = new HashMap<Integer, GenericTypeDescriptor>();
+            ResultSet rs = dbmd.getTypeInfo();
+            while (rs.next()) {
+                GenericTypeDescriptor td = new GenericTypeDescriptor(rs);
+                types.put(Integer.valueOf(td.getDataType()), td);
+            }
+            rs.close();
+            return new Entry(driverVersion, serverVersion, types);
+        } finally {
+            if (con != null) {
+                try {
+                    con.close();
+                } catch (SQLException ex) {
+                    logger.error("Couldn't close connection", ex);
+                }
+            }
+        }
+    }
+
+    private synchronized Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new ConcurrentHashMap<String, Entry>();
+            if (file.exists()) {
+                try {
+                    entries.putAll(load(file));
+                } catch (IOException ex) {
+                    logger.warn("Couldn't read type info cache " + file + ", starting a new one", ex);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Saves the file on the refresher thread, unless a save is already
+     * waiting there.
+     */
+    private void scheduleSave() {
+        if (savePending.compareAndSet(false, true)) {
+            refresher.execute(new Runnable() {
+                public void run() {
+                    save();
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the current entries to the file. Only called on the refresher
+     * thread.
+     */
+    private void save() {
+        savePending.set(false);
+        Map<String, Entry> snapshot = new HashMap<String, Entry>(getEntries());
+        synchronized (fileLock) {
+            try {
+                save(file, snapshot);
+            } catch (IOException ex) {
+                logger.warn("Couldn't save type info cache " + file, ex);
+            }
+        }
+    }
+
+    /**
+     * Identifies a data source in the cache. Two data sources that use the
+     * same driver class to connect to the same database as the same user
+     * share an entry. The driver class is part of the key because two
+     * drivers for the same URL can report different types.
+     */
+    static String key(JDBCDataSource ds) {
+        return ds.getDriverClass() + "\u0000" + ds.getUrl() + "\u0000" + ds.getUser();
+    }
+
+    static Map<String, Entry> load(File file) throws IOException {
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                logger.info("Ignoring type info cache with format version " + version);
+                return entries;
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = in.readUTF();
+                String driverVersion = readString(in);
+                String serverVersion = readString(in);
+                int typeCount = in.readInt();
+                Map<Integer, GenericTypeDescriptor> types = new HashMap<Integer, GenericTypeDescriptor>();
+                for (int j = 0; j < typeCount; j++) {
+                    GenericTypeDescriptor td = new GenericTypeDescriptor(
+                            readString(in), in.readInt(), in.readLong(), readString(in), readString(in),
+                            in.readInt(), in.readBoolean(), in.readBoolean());
+                    types.put(Integer.valueOf(td.getDataType()), td);
+                }
+                entries.put(key, new Entry(driverVersion, serverVersion, types));
+            }
+        } finally {
+            in.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the entries to a temporary file next to the given one, then
+     * moves it into place so a crash never leaves half a cache behind.
+     */
+    static void save(File file, Map<String, Entry> entries) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = new File(parent, file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                writeString(out, e.getValue().driverVersion);
+                writeString(out, e.getValue().serverVersion);
+                out.writeInt(e.getValue().types.size());
+                for (GenericTypeDescriptor td : e.getValue().types.values()) {
+                    writeString(out, td.getName());
+                    out.writeInt(td.getDataType());
+                    out.writeLong(td.getPrecision());
+                    writeString(out, td.getLiteralPrefix());
+                    writeString(out, td.getLiteralSuffix());
+                    out.writeInt(td.getNullable());
+                    out.writeBoolean(td.getHasPrecision());
+                    out.writeBoolean(td.getHasScale());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Couldn't replace " + file);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Couldn't rename " + temp + " to " + file);
+        }
+    }
+
+    private static Map<Integer, GenericTypeDescriptor> copy(Map<Integer, GenericTypeDescriptor> types) {
+        Map<Integer, GenericTypeDescriptor> copy = new HashMap<Integer, GenericTypeDescriptor>();
+        for (Map.Entry<Integer, GenericTypeDescriptor> e : types.entrySet()) {
+            GenericTypeDescriptor td = e.getValue();
+            copy.put(e.getKey(), new GenericTypeDescriptor(td.getName(), td.getDataType(), td.getPrecision(),
+                    td.getLiteralPrefix(), td.getLiteralSuffix(), td.getNullable(),
+                    td.getHasPrecision(), td.getHasScale()));
+        }
+        return copy;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static boolean safeEquals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -19,6 +19,7 @@
 
 package ca.sqlpower.architect.ddl.critic;
 
+import java.util.Collection;
 import java.util.List;
 
 import ca.sqlpower.architect.ddl.critic.CriticAndSettings.Severity;
@@ -60,6 +61,54 @@ public interface Critic {
      */
     public void end();
 
+    /**
+     * Returns true if the criticisms this critic makes of one subject depend
+     * on the other subjects it was given since {@link #start()}, such as a
+     * critic that looks for duplicate names. A critic that only looks at the
+     * subject it is given can be run on just the objects that changed, but a
+     * stateful critic has to see every object between start and end, or keep
+     * what it saw between runs as described in {@link #startIncremental()}.
+     */
+    public boolean isStateful();
+
+    /**
+     * Starts a run over only the subjects that changed since this critic was
+     * last run. This is the counterpart of {@link #start()} for
+     * {@link #isStateful() stateful} critics: the state built up by the
+     * previous run is kept if that run was ended by {@link #endIncremental()}.
+     * Before any subject is criticized {@link #forget(Object)} must be called
+     * for every subject that changed or was removed since the previous run.
+     * 
+     * @return True if the state of the previous run was kept. If false the
+     *         critic has started over as if {@link #start()} was called and
+     *         every subject must be criticized in this run.
+     */
+    public boolean startIncremental();
+
+    /**
+     * Tells this critic that the subject changed or was removed since the
+     * previous run, so it can drop what it remembers of the subject. Only
+     * called between a successful {@link #startIncremental()} and the end of
+     * the run.
+     * 
+     * @param subject
+     *            The object that changed or was removed.
+     * @param removed
+     *            True if the subject is no longer part of the project.
+     * @return The other subjects whose criticisms by this critic may change
+     *         because of the change to the subject. They must be criticized
+     *         again in this run, as must the subject itself unless it was
+     *         removed.
+     */
+    public Collection<?> forget(Object subject, boolean removed);
+
+    /**
+     * Ends a run started by either {@link #start()} or
+     * {@link #startIncremental()}. Unlike {@link #end()} the state of the run
+     * is kept so the next incremental run can continue from it.
+     */
+    public void endIncremental();
+
     /**
      * The error level this critic was defined to be at when it was created.
      * The severity should not change even if settings in the project change
@@ -19,6 +19,7 @@
 
 package ca.sqlpower.architect.ddl.critic;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -40,6 +41,7 @@ import ca.sqlpower.object.annotation.Accessor;
 import ca.sqlpower.object.annotation.Constructor;
 import ca.sqlpower.object.annotation.ConstructorParameter;
 import ca.sqlpower.object.annotation.Mutator;
+import ca.sqlpower.object.annotation.Transient;
 
 /**
  * The settings of a specific {@link Critic}. Includes if the critic is enabled
@@ -191,6 +193,39 @@ public abstract class CriticAndSettings extends AbstractSPObject implements Crit
     public void end() {
         started = false;
     }
+
+    /**
+     * Most critics only look at the subject they are given. Critics that
+     * remember the objects they have seen between {@link #start()} and
+     * {@link #end()} must override this to return true.
+     */
+    @Transient @Accessor
+    public boolean isStateful() {
+        return false;
+    }
+
+    /**
+     * Critics that keep no state between runs always start over, which is
+     * the same as {@link #start()}.
+     */
+    public boolean startIncremental() {
+        start();
+        return !isStateful();
+    }
+
+    /**
+     * Critics that keep no state between runs have nothing to forget.
+     */
+    public Collection<?> forget(Object subject, boolean removed) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Critics that keep no state between runs have nothing to keep.
+     */
+    public void endIncremental() {
+        end();
+    }
     
     @Mutator
     public void setSeverity(Severity severity) {
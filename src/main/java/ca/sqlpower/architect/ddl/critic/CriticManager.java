@@ -22,7 +22,9 @@ package ca.sqlpower.architect.ddl.critic;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -62,6 +64,7 @@ import ca.sqlpower.object.annotation.NonProperty;
 import ca.sqlpower.object.annotation.Transient;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.JDBCDataSourceType;
+import ca.sqlpower.sqlobject.SQLDatabase;
 
 /**
  * A collection of settings that defines what critics are enabled in the system
@@ -121,6 +124,27 @@ public class CriticManager extends AbstractSPObject {
      * All of the critic groups known to this system.
      */
     private final List<CriticGrouping> criticGroupings = new ArrayList<CriticGrouping>();
+
+    /**
+     * Critics can only be started once at a time, so every run of the critics
+     * in this manager, whether a full criticism or an
+     * {@link IncrementalCriticizer} pass, holds this lock while the critics
+     * are started.
+     */
+    private final Object criticLock = new Object();
+
+    /**
+     * The criticisms of the target database, kept up to date as it is edited
+     * while incremental criticism is on. See
+     * {@link #startIncrementalCriticism()}.
+     */
+    private final CriticismBucket liveCriticisms = new CriticismBucket();
+
+    /**
+     * Keeps {@link #liveCriticisms} up to date. Null if incremental criticism
+     * is off.
+     */
+    private IncrementalCriticizer incrementalCriticizer;
     
     @Constructor
     public CriticManager() {
@@ -187,10 +211,15 @@ public class CriticManager extends AbstractSPObject {
      *            limit some of the enabled critics to only use critics
      *            associated with this DDL generators of this type. If null all
      *            enabled critics will be used.
+     * @see #startIncrementalCriticism()
      */
     public List<Criticism> criticize(Class<? extends DDLGenerator> generatorClass) {
         List<Criticism> criticisms = new ArrayList<Criticism>();
-        criticisms.addAll(criticize(generatorClass, getParent().getTargetDatabase()));
+        if (incrementalCriticizer != null) {
+            criticisms.addAll(getLiveCriticisms(generatorClass));
+        } else {
+            criticisms.addAll(criticize(generatorClass, getParent().getTargetDatabase()));
+        }
         for (JDBCDataSourceType dsType : getParent().getSession().getDataSources().getDataSourceTypes()) {
             criticisms.addAll(criticize(generatorClass, dsType));
         }
@@ -212,6 +241,78 @@ public class CriticManager extends AbstractSPObject {
      *            enabled critics will be used.
      */
     private List<Criticism> criticize(Class<? extends DDLGenerator> generatorClass, Object root) {
+        Criticizer criticizer = new Criticizer(getEnabledCritics(generatorClass));
+        synchronized (criticLock) {
+            return Collections.unmodifiableList(criticizer.criticize(root));
+        }
+    }
+
+    /**
+     * Starts keeping the criticisms of the target database up to date as it
+     * is edited. The whole target database is criticized on a background
+     * thread, and from then on only the objects that change are criticized
+     * again, so {@link #criticize(Class)} no longer has to criticize the
+     * target database each time it is called. Does nothing if incremental criticism is already
+     * on. This must be called on the foreground thread.
+     */
+    public void startIncrementalCriticism() {
+        if (incrementalCriticizer != null) return;
+        incrementalCriticizer = new IncrementalCriticizer(this, liveCriticisms);
+        incrementalCriticizer.start();
+    }
+
+    /**
+     * Stops keeping the criticisms of the target database up to date. The
+     * criticisms already found are left in {@link #getLiveCriticisms()}.
+     */
+    public void stopIncrementalCriticism() {
+        if (incrementalCriticizer == null) return;
+        incrementalCriticizer.stop();
+        incrementalCriticizer = null;
+    }
+
+    /**
+     * Returns the criticisms of the target database kept up to date by
+     * {@link #startIncrementalCriticism()}. The bucket only changes on the
+     * foreground thread.
+     */
+    @NonProperty
+    public CriticismBucket getLiveCriticisms() {
+        return liveCriticisms;
+    }
+
+    /**
+     * Returns the live criticisms made by the enabled critics for the given
+     * type of DDL generator, after criticizing any objects that changed since
+     * the last incremental pass.
+     */
+    private List<Criticism> getLiveCriticisms(Class<? extends DDLGenerator> generatorClass) {
+        SQLDatabase targetDatabase = getParent().getTargetDatabase();
+        if (incrementalCriticizer.getTargetDatabase() != targetDatabase) {
+            // the project's target database was replaced
+            stopIncrementalCriticism();
+            startIncrementalCriticism();
+        }
+        incrementalCriticizer.criticizePending();
+        Set<Critic> critics = Collections.newSetFromMap(new IdentityHashMap<Critic, Boolean>());
+        critics.addAll(getEnabledCritics(generatorClass));
+        List<Criticism> criticisms = new ArrayList<Criticism>();
+        for (Criticism criticism : liveCriticisms.getCriticisms()) {
+            if (critics.contains(criticism.getCritic())) {
+                criticisms.add(criticism);
+            }
+        }
+        return Collections.unmodifiableList(criticisms);
+    }
+
+    /**
+     * Returns the critics that are enabled and not ignored.
+     * 
+     * @param generatorClass
+     *            If not null only the critics associated with this type of
+     *            DDL generator are returned.
+     */
+    List<Critic> getEnabledCritics(Class<? extends DDLGenerator> generatorClass) {
         List<Critic> critics = new ArrayList<Critic>();
         for (CriticGrouping grouping : criticGroupings) {
             if (!grouping.isEnabled()) continue;
@@ -223,9 +324,15 @@ public class CriticManager extends AbstractSPObject {
                 critics.add(singleSettings);
             }
         }
-        Criticizer criticizer = new Criticizer(critics);
-        return Collections.unmodifiableList(criticizer.criticize(root));
-        
+        return critics;
+    }
+
+    /**
+     * Returns the lock that must be held while the critics of this manager
+     * are started.
+     */
+    Object getCriticLock() {
+        return criticLock;
     }
     
     @Override
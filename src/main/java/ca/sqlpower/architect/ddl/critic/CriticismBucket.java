@@ -22,8 +22,12 @@ package ca.sqlpower.architect.ddl.critic;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -43,31 +47,84 @@ public class CriticismBucket {
      * this criticizer.
      */
     private final List<Criticism> criticisms = new ArrayList<Criticism>();
+
+    /**
+     * The same criticisms as {@link #criticisms} grouped by their subject, so
+     * the criticisms of a few objects can be found and replaced without
+     * looking at all of them.
+     */
+    private final Map<Object, List<Criticism>> criticismsBySubject = new HashMap<Object, List<Criticism>>();
     
     private final List<CriticismListener> listeners = new ArrayList<CriticismListener>();
     
     public void updateCriticismsToMatch(List<Criticism> newCriticisms) {
-        clearCriticisms();
-        criticisms.addAll(newCriticisms);
-        int index = criticisms.size();
-        for (Criticism newCriticism : newCriticisms) {
-            for (int i = listeners.size() - 1; i >=0; i--) {
-                listeners.get(i).criticismAdded(new CriticismEvent(newCriticism, index));
-            }
-            index++;
-        }
+        updateCriticismsToMatch(null, null, newCriticisms);
     }
-    
+
     /**
-     * Removes all current criticisms from the criticizer.
+     * Replaces some of the criticisms in this bucket. Criticisms of the given
+     * subjects made by the given critics are removed and the new criticisms
+     * are appended. All other criticisms stay where they are.
+     * 
+     * @param subjects
+     *            The objects whose criticisms are being replaced. If null the
+     *            criticisms of every object are replaced.
+     * @param critics
+     *            The critics whose criticisms are being replaced. If null the
+     *            criticisms of every critic are replaced.
+     * @param newCriticisms
+     *            The criticisms to add to the bucket.
      */
-    private void clearCriticisms() {
-        ArrayList<Criticism> oldCriticisms = new ArrayList<Criticism>(criticisms);
-        criticisms.clear();
-        for (int i = oldCriticisms.size() - 1; i >= 0; i--) {
-            Criticism oldCriticism = oldCriticisms.get(i);
-            for (int j = listeners.size() - 1; j >=0; j--) {
-                listeners.get(j).criticismRemoved(new CriticismEvent(oldCriticism, i));
+    public void updateCriticismsToMatch(Collection<?> subjects, Collection<? extends Critic> critics, 
+            List<Criticism> newCriticisms) {
+        Set<Criticism> oldCriticisms = Collections.newSetFromMap(new IdentityHashMap<Criticism, Boolean>());
+        if (subjects == null) {
+            oldCriticisms.addAll(criticisms);
+        } else {
+            for (Object subject : subjects) {
+                List<Criticism> subjectCriticisms = criticismsBySubject.get(subject);
+                if (subjectCriticisms != null) {
+                    oldCriticisms.addAll(subjectCriticisms);
+                }
+            }
+        }
+        if (critics != null) {
+            Set<Critic> criticSet = Collections.newSetFromMap(new IdentityHashMap<Critic, Boolean>());
+            criticSet.addAll(critics);
+            for (Iterator<Criticism> it = oldCriticisms.iterator(); it.hasNext(); ) {
+                if (!criticSet.contains(it.next().getCritic())) {
+                    it.remove();
+                }
+            }
+        }
+        
+        if (!oldCriticisms.isEmpty()) {
+            for (int i = criticisms.size() - 1; i >= 0; i--) {
+                Criticism oldCriticism = criticisms.get(i);
+                if (!oldCriticisms.contains(oldCriticism)) continue;
+                criticisms.remove(i);
+                List<Criticism> subjectCriticisms = criticismsBySubject.get(oldCriticism.getSubject());
+                subjectCriticisms.remove(oldCriticism);
+                if (subjectCriticisms.isEmpty()) {
+                    criticismsBySubject.remove(oldCriticism.getSubject());
+                }
+                for (int j = listeners.size() - 1; j >=0; j--) {
+                    listeners.get(j).criticismRemoved(new CriticismEvent(oldCriticism, i));
+                }
+            }
+        }
+        
+        for (Criticism newCriticism : newCriticisms) {
+            int index = criticisms.size();
+            criticisms.add(newCriticism);
+            List<Criticism> subjectCriticisms = criticismsBySubject.get(newCriticism.getSubject());
+            if (subjectCriticisms == null) {
+                subjectCriticisms = new ArrayList<Criticism>();
+                criticismsBySubject.put(newCriticism.getSubject(), subjectCriticisms);
+            }
+            subjectCriticisms.add(newCriticism);
+            for (int i = listeners.size() - 1; i >=0; i--) {
+                listeners.get(i).criticismAdded(new CriticismEvent(newCriticism, index));
             }
         }
     }
@@ -77,21 +134,13 @@ public class CriticismBucket {
     }
     
     public List<Criticism> getCriticismsByObject(Object subject) {
-        List<Criticism> selectedCriticisms = new ArrayList<Criticism>();
-        for (Criticism criticism : criticisms) {
-            if (criticism.getSubject().equals(subject)) {
-                selectedCriticisms.add(criticism);
-            }
-        }
-        return selectedCriticisms;
+        List<Criticism> subjectCriticisms = criticismsBySubject.get(subject);
+        if (subjectCriticisms == null) return new ArrayList<Criticism>();
+        return new ArrayList<Criticism>(subjectCriticisms);
     }
     
     public Collection<Object> getCriticismSubjects() {
-        Set<Object> subjects = new HashSet<Object>();
-        for (Criticism criticism : criticisms) {
-            subjects.add(criticism.getSubject());
-        }
-        return subjects;
+        return new HashSet<Object>(criticismsBySubject.keySet());
     }
     
     public void addCriticismListener(CriticismListener l) {
@@ -20,6 +20,7 @@
 package ca.sqlpower.architect.ddl.critic;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -52,36 +53,44 @@ class Criticizer {
      * descendants if it is an {@link SPObject}.
      */
     public List<Criticism> criticize(Object subject) {
+        List<Object> subjects = new ArrayList<Object>();
+        addSubjects(subject, subjects);
+        return criticizeEach(subjects);
+    }
+
+    /**
+     * Runs each of the given objects through the list of active critics, in
+     * order. Unlike {@link #criticize(Object)} the descendants of the objects
+     * are not criticized unless they are in the collection as well.
+     */
+    public List<Criticism> criticizeEach(Collection<?> subjects) {
         try {
             for (Critic c : critics) {
                 c.start();
             }
-            return recursivelyCriticize(subject);
+            List<Criticism> criticisms = new ArrayList<Criticism>();
+            for (Object subject : subjects) {
+                // skip types that don't warrant criticism
+                if (subject instanceof SQLDatabase) continue;
+                for (Critic critic : critics) {
+                    criticisms.addAll(critic.criticize(subject));
+                }
+            }
+            return criticisms;
         } finally {
             for (Critic c : critics) {
                 c.end();
             }
         }
     }
-    
+
     /**
-     * 
-     * @param root
-     *            The SQLObject to criticize
-     * @return List of criticism
+     * Adds the root and every descendant of it that {@link #criticize(Object)}
+     * would visit to the given collection, parents before their children.
      */
     @SuppressWarnings("unchecked")
-    private List<Criticism> recursivelyCriticize(Object root) {
-        List<Criticism> criticisms = new ArrayList<Criticism>();
-        
-        // skip types that don't warrant criticism
-        if ( (!(root instanceof SQLDatabase))) {
-            for (Critic critic : critics) {
-                List<Criticism> newCriticisms = critic.criticize(root);
-                criticisms.addAll(newCriticisms);
-                // TODO record the critic-subject combination so it can be wiped out later
-            }
-        }
+    static void addSubjects(Object root, Collection<Object> subjects) {
+        subjects.add(root);
         
         if (root instanceof SPObject) {
             for (SPObject child : (List<SPObject>) ((SPObject) root).getChildren()) {
@@ -94,10 +103,9 @@ class Criticizer {
                 } catch (SQLObjectException e) {
                     throw new RuntimeException(e);
                 }
-                criticisms.addAll(recursivelyCriticize(child));
+                addSubjects(child, subjects);
             }
         }
-        return criticisms;
     }
     
 }
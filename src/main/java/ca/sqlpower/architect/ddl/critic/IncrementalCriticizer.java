@@ -0,0 +1,596 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of SQL Power Architect.
+ *
+ * SQL Power Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SQL Power Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.ddl.critic;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.object.SPChildEvent;
+import ca.sqlpower.object.SPListener;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLDatabase;
+import ca.sqlpower.sqlobject.SQLRelationship;
+import ca.sqlpower.sqlobject.SQLRelationship.ColumnMapping;
+import ca.sqlpower.sqlobject.SQLRelationship.SQLImportedKey;
+import ca.sqlpower.sqlobject.SQLTable;
+import ca.sqlpower.util.SQLPowerUtils;
+import ca.sqlpower.util.TransactionEvent;
+
+/**
+ * Keeps a {@link CriticismBucket} up to date with the project's target
+ * database as it is edited, without criticizing the whole project on every
+ * change.
+ * <p>
+ * The criticizer listens to the target database and remembers which objects
+ * were added, removed or changed. When the outermost transaction ends a pass
+ * is run on a background thread over just those objects, and only their
+ * criticisms are replaced in the bucket. {@link Critic#isStateful() Stateful}
+ * critics, like the duplicate name critic, are run with
+ * {@link Critic#startIncremental()} so they keep what they learned of the
+ * unchanged objects in earlier passes; they are told which objects changed
+ * and name the other objects whose criticisms have to be redone. Changing the
+ * critic settings causes a full pass.
+ * <p>
+ * The events are only collected on the thread that fires them, so editing a
+ * large project never waits for the critics. The critics read the model on
+ * the background thread while it may still be edited. Any edit made during a
+ * pass marks the objects it touched as changed again, so the next pass
+ * corrects anything the previous one saw half done, and a pass that fails
+ * because the model changed under it is followed by a full pass. The bucket
+ * itself is only updated on the session's foreground thread.
+ */
+public class IncrementalCriticizer {
+
+    private static final Logger logger = Logger.getLogger(IncrementalCriticizer.class);
+
+    /**
+     * One change to the bucket worked out by a pass, to be made on the
+     * foreground thread.
+     */
+    private static class BucketUpdate {
+
+        /**
+         * The subjects whose criticisms are replaced, or null for all of
+         * them.
+         */
+        private final List<Object> subjects;
+
+        /**
+         * The critics whose criticisms are replaced, or null for all of
+         * them.
+         */
+        private final List<Critic> critics;
+
+        private final List<Criticism> criticisms;
+
+        BucketUpdate(List<Object> subjects, List<Critic> critics, List<Criticism> criticisms) {
+            this.subjects = subjects;
+            this.critics = critics;
+            this.criticisms = criticisms;
+        }
+
+        void applyTo(CriticismBucket bucket) {
+            if (subjects == null && critics == null) {
+                bucket.updateCriticismsToMatch(criticisms);
+            } else {
+                bucket.updateCriticismsToMatch(subjects, critics, criticisms);
+            }
+        }
+    }
+
+    private final CriticManager manager;
+
+    private final CriticismBucket bucket;
+
+    private final SQLDatabase targetDatabase;
+
+    /**
+     * The objects that need to be criticized again. Guarded by itself, and
+     * guards {@link #removed}, {@link #fullPassNeeded} and
+     * {@link #passScheduled}.
+     */
+    private final Set<Object> dirty = new LinkedHashSet<Object>();
+
+    /**
+     * The objects that were removed from the target database since the last
+     * pass. Their criticisms are removed by the next pass.
+     */
+    private final Set<Object> removed = new LinkedHashSet<Object>();
+
+    /**
+     * True if every object must be criticized by the next pass and every
+     * existing criticism replaced, because the critics themselves changed or
+     * the last pass failed.
+     */
+    private boolean fullPassNeeded;
+
+    /**
+     * True if a pass has been submitted to the executor but has not yet taken
+     * the dirty objects.
+     */
+    private boolean passScheduled;
+
+    /**
+     * The bucket changes worked out by passes that have not been made yet,
+     * oldest first. Guarded by itself.
+     */
+    private final List<BucketUpdate> pendingUpdates = new ArrayList<BucketUpdate>();
+
+    /**
+     * The depth of the transactions on the objects being listened to. Passes
+     * are only scheduled when this is 0. Only used on the foreground thread.
+     */
+    private int transactionCount;
+
+    /**
+     * Runs the passes one at a time. Null if the criticizer is not started.
+     */
+    private volatile ExecutorService executor;
+
+    private final SPListener modelListener = new SPListener() {
+
+        public void childAdded(SPChildEvent e) {
+            SQLPowerUtils.listenToHierarchy(e.getChild(), this);
+            List<Object> subjects = new ArrayList<Object>();
+            Criticizer.addSubjects(e.getChild(), subjects);
+            synchronized (dirty) {
+                for (Object subject : subjects) {
+                    markDirty(subject);
+                }
+                markDirty(e.getSource());
+            }
+            scheduleIfIdle();
+        }
+
+        public void childRemoved(SPChildEvent e) {
+            SQLPowerUtils.unlistenToHierarchy(e.getChild(), this);
+            List<Object> subjects = new ArrayList<Object>();
+            Criticizer.addSubjects(e.getChild(), subjects);
+            synchronized (dirty) {
+                for (Object subject : subjects) {
+                    dirty.remove(subject);
+                    removed.add(subject);
+                }
+                markDirty(e.getSource());
+            }
+            scheduleIfIdle();
+        }
+
+        public void propertyChanged(PropertyChangeEvent evt) {
+            synchronized (dirty) {
+                markDirtyWithDependents(evt.getSource());
+            }
+            scheduleIfIdle();
+        }
+
+        public void transactionStarted(TransactionEvent e) {
+            transactionCount++;
+        }
+
+        public void transactionEnded(TransactionEvent e) {
+            transactionCount--;
+            scheduleIfIdle();
+        }
+
+        public void transactionRollback(TransactionEvent e) {
+            transactionCount = 0;
+            scheduleIfIdle();
+        }
+    };
+
+    /**
+     * Any change to the critic settings can change any criticism.
+     */
+    private final SPListener settingsListener = new SPListener() {
+
+        public void childAdded(SPChildEvent e) {
+            SQLPowerUtils.listenToHierarchy(e.getChild(), this);
+            markAllDirty();
+            scheduleIfIdle();
+        }
+
+        public void childRemoved(SPChildEvent e) {
+            SQLPowerUtils.unlistenToHierarchy(e.getChild(), this);
+            markAllDirty();
+            scheduleIfIdle();
+        }
+
+        public void propertyChanged(PropertyChangeEvent evt) {
+            markAllDirty();
+            scheduleIfIdle();
+        }
+
+        public void transactionStarted(TransactionEvent e) {
+            transactionCount++;
+        }
+
+        public void transactionEnded(TransactionEvent e) {
+            transactionCount--;
+            scheduleIfIdle();
+        }
+
+        public void transactionRollback(TransactionEvent e) {
+            transactionCount = 0;
+            scheduleIfIdle();
+        }
+    };
+
+    /**
+     * @param manager
+     *            The manager whose enabled critics are used. Its project's
+     *            target database is the database that is watched.
+     * @param bucket
+     *            The bucket to keep up to date. It will only be modified on
+     *            the session's foreground thread.
+     */
+    public IncrementalCriticizer(CriticManager manager, CriticismBucket bucket) {
+        this.manager = manager;
+        this.bucket = bucket;
+        this.targetDatabase = manager.getParent().getTargetDatabase();
+    }
+
+    /**
+     * Starts listening to the target database and critic settings and
+     * schedules a full pass to fill the bucket. This must be called on the
+     * foreground thread.
+     */
+    public void start() {
+        if (executor != null) throw new IllegalStateException("The criticizer has already been started.");
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Incremental criticizer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        SQLPowerUtils.listenToHierarchy(targetDatabase, modelListener);
+        SQLPowerUtils.listenToHierarchy(manager, settingsListener);
+        markAllDirty();
+        schedule();
+    }
+
+    /**
+     * Stops listening to the project and discards any pass that has not run
+     * yet. The bucket keeps the criticisms it has.
+     */
+    public void stop() {
+        SQLPowerUtils.unlistenToHierarchy(targetDatabase, modelListener);
+        SQLPowerUtils.unlistenToHierarchy(manager, settingsListener);
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        synchronized (dirty) {
+            dirty.clear();
+            removed.clear();
+            fullPassNeeded = false;
+            passScheduled = false;
+        }
+        synchronized (pendingUpdates) {
+            pendingUpdates.clear();
+        }
+        transactionCount = 0;
+    }
+
+    /**
+     * Returns the database whose criticisms this criticizer keeps.
+     */
+    public SQLDatabase getTargetDatabase() {
+        return targetDatabase;
+    }
+
+    /**
+     * Returns the objects that will be criticized again by the next pass.
+     */
+    Set<Object> getDirtySubjects() {
+        synchronized (dirty) {
+            return Collections.unmodifiableSet(new LinkedHashSet<Object>(dirty));
+        }
+    }
+
+    /**
+     * Returns the objects whose criticisms will be dropped by the next pass.
+     */
+    Set<Object> getRemovedSubjects() {
+        synchronized (dirty) {
+            return Collections.unmodifiableSet(new LinkedHashSet<Object>(removed));
+        }
+    }
+
+    /**
+     * Adds the subject to the dirty set. Imported keys are skipped as their
+     * relationship is criticized instead. Must be called while holding the
+     * dirty lock.
+     */
+    private void markDirty(Object subject) {
+        if (subject instanceof SQLImportedKey) {
+            subject = ((SQLImportedKey) subject).getRelationship();
+        }
+        if (subject == null) return;
+        removed.remove(subject);
+        dirty.add(subject);
+    }
+
+    /**
+     * Marks the subject dirty along with the objects whose criticisms look at
+     * it: a column's table, and the relationships its table takes part in,
+     * and a column mapping's relationship. Must be called while holding the
+     * dirty lock.
+     */
+    private void markDirtyWithDependents(Object subject) {
+        markDirty(subject);
+        if (subject instanceof SQLColumn && ((SQLColumn) subject).getParent() != null) {
+            SQLTable table = ((SQLColumn) subject).getParent();
+            markDirty(table);
+            for (SQLRelationship r : table.getChildrenWithoutPopulating(SQLRelationship.class)) {
+                markDirty(r);
+            }
+            for (SQLImportedKey key : table.getChildrenWithoutPopulating(SQLImportedKey.class)) {
+                markDirty(key);
+            }
+        } else if (subject instanceof ColumnMapping) {
+            markDirty(((ColumnMapping) subject).getParent());
+        }
+    }
+
+    /**
+     * Makes the next pass a full one. The target database is walked by the
+     * pass itself, on the background thread.
+     */
+    private void markAllDirty() {
+        synchronized (dirty) {
+            dirty.clear();
+            removed.clear();
+            fullPassNeeded = true;
+        }
+    }
+
+    private void scheduleIfIdle() {
+        if (transactionCount == 0) {
+            schedule();
+        } else if (transactionCount < 0) {
+            logger.warn("Transaction ended that was never started");
+            transactionCount = 0;
+            schedule();
+        }
+    }
+
+    /**
+     * Submits a pass to the executor if anything changed and no pass is
+     * waiting to start already.
+     */
+    private void schedule() {
+        synchronized (dirty) {
+            ExecutorService executor = this.executor;
+            if (passScheduled || executor == null) return;
+            if (dirty.isEmpty() && removed.isEmpty() && !fullPassNeeded) return;
+            passScheduled = true;
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        runPass();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // stopped while scheduling
+                passScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Criticizes the objects that changed since the last pass, even if a
+     * transaction is in progress, and waits for the bucket to be updated.
+     * Does nothing if nothing changed. This must be called on the foreground
+     * thread.
+     */
+    public void criticizePending() {
+        ExecutorService executor = this.executor;
+        if (executor == null) return;
+        schedule();
+        try {
+            // the executor runs one task at a time, so every pass submitted
+            // before this has finished once it runs
+            executor.submit(new Runnable() {
+                public void run() {
+                    // nothing to do
+                }
+            }).get();
+        } catch (RejectedExecutionException e) {
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        applyPendingUpdates();
+    }
+
+    /**
+     * Criticizes the objects that changed since the last pass and posts the
+     * changes to the bucket to the foreground thread. Runs on the executor.
+     */
+    private void runPass() {
+        final List<Object> changed;
+        final List<Object> gone;
+        final boolean fullPass;
+        synchronized (dirty) {
+            changed = new ArrayList<Object>(dirty);
+            gone = new ArrayList<Object>(removed);
+            fullPass = fullPassNeeded;
+            dirty.clear();
+            removed.clear();
+            fullPassNeeded = false;
+            passScheduled = false;
+        }
+
+        List<BucketUpdate> updates = new ArrayList<BucketUpdate>();
+        try {
+            synchronized (manager.getCriticLock()) {
+                if (fullPass) {
+                    criticizeAll(updates);
+                } else {
+                    criticizeChanges(changed, gone, updates);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (executor == null) return;
+            boolean changedDuringPass = e instanceof ConcurrentModificationException;
+            if (changedDuringPass) {
+                logger.debug("The project changed while it was being criticized, criticizing it all again", e);
+            } else {
+                logger.error("Criticizing the changed objects failed, the next change will " +
+                        "criticize the whole project", e);
+            }
+            // a stateful critic may have been left with half of the pass
+            markAllDirty();
+            if (changedDuringPass) {
+                schedule();
+            }
+            return;
+        }
+
+        synchronized (pendingUpdates) {
+            pendingUpdates.addAll(updates);
+        }
+        manager.getParent().getSession().runInForeground(new Runnable() {
+            public void run() {
+                applyPendingUpdates();
+            }
+        });
+    }
+
+    /**
+     * Makes the bucket changes the finished passes worked out, in the order
+     * they were worked out. Runs on the foreground thread.
+     */
+    private void applyPendingUpdates() {
+        synchronized (pendingUpdates) {
+            if (executor == null) {
+                pendingUpdates.clear();
+                return;
+            }
+            for (BucketUpdate update : pendingUpdates) {
+                update.applyTo(bucket);
+            }
+            pendingUpdates.clear();
+        }
+    }
+
+    /**
+     * Criticizes the whole target database and replaces every criticism in
+     * the bucket.
+     */
+    private void criticizeAll(List<BucketUpdate> updates) {
+        List<Object> subjects = new ArrayList<Object>();
+        Criticizer.addSubjects(targetDatabase, subjects);
+        List<Criticism> criticisms = new ArrayList<Criticism>();
+        for (Critic critic : manager.getEnabledCritics(null)) {
+            critic.start();
+            try {
+                criticisms.addAll(criticizeEach(critic, subjects));
+            } finally {
+                critic.endIncremental();
+            }
+        }
+        updates.add(new BucketUpdate(null, null, criticisms));
+    }
+
+    /**
+     * Criticizes the changed objects and replaces their criticisms in the
+     * bucket, along with the criticisms of the removed objects and of any
+     * object a stateful critic says depended on them.
+     */
+    private void criticizeChanges(List<Object> changed, List<Object> gone, List<BucketUpdate> updates) {
+        List<Critic> statelessCritics = new ArrayList<Critic>();
+        List<Object> replaced = new ArrayList<Object>(changed);
+        replaced.addAll(gone);
+        List<Criticism> statelessCriticisms = new ArrayList<Criticism>();
+        for (Critic critic : manager.getEnabledCritics(null)) {
+            if (!critic.startIncremental()) {
+                // the critic lost its state, so it has to see everything again
+                List<Object> subjects = new ArrayList<Object>();
+                Criticizer.addSubjects(targetDatabase, subjects);
+                List<Criticism> criticisms;
+                try {
+                    criticisms = criticizeEach(critic, subjects);
+                } finally {
+                    critic.endIncremental();
+                }
+                updates.add(new BucketUpdate(null, Collections.singletonList(critic), criticisms));
+            } else if (critic.isStateful()) {
+                Set<Object> goneSet = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+                goneSet.addAll(gone);
+                Set<Object> subjects = new LinkedHashSet<Object>(changed);
+                List<Criticism> criticisms;
+                try {
+                    for (Object subject : gone) {
+                        subjects.addAll(critic.forget(subject, true));
+                    }
+                    for (Object subject : changed) {
+                        subjects.addAll(critic.forget(subject, false));
+                    }
+                    subjects.removeAll(goneSet);
+                    criticisms = criticizeEach(critic, subjects);
+                } finally {
+                    critic.endIncremental();
+                }
+                List<Object> criticReplaced = new ArrayList<Object>(replaced);
+                criticReplaced.addAll(subjects);
+                updates.add(new BucketUpdate(criticReplaced, Collections.singletonList(critic), criticisms));
+            } else {
+                try {
+                    statelessCriticisms.addAll(criticizeEach(critic, changed));
+                } finally {
+                    critic.endIncremental();
+                }
+                statelessCritics.add(critic);
+            }
+        }
+        updates.add(new BucketUpdate(replaced, statelessCritics, statelessCriticisms));
+    }
+
+    /**
+     * Runs one started critic over the given subjects.
+     */
+    private static List<Criticism> criticizeEach(Critic critic, Iterable<?> subjects) {
+        List<Criticism> criticisms = new ArrayList<Criticism>();
+        for (Object subject : subjects) {
+            // skip types that don't warrant criticism
+            if (subject instanceof SQLDatabase) continue;
+            criticisms.addAll(critic.criticize(subject));
+        }
+        return criticisms;
+    }
+}
@@ -22,7 +22,10 @@ package ca.sqlpower.architect.ddl.critic.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import ca.sqlpower.architect.ArchitectUtils;
 import ca.sqlpower.architect.ddl.critic.CriticAndSettings;
@@ -35,9 +38,6 @@ import ca.sqlpower.sqlobject.SQLObject;
 import ca.sqlpower.sqlobject.SQLRelationship;
 import ca.sqlpower.sqlobject.SQLTable;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-
 /**
  * This critic will create a warning for objects that have the same name if they
  * are of conflicting types. This means some objects, like columns in different
@@ -47,23 +47,57 @@ import com.google.common.collect.Multimap;
 public class DuplicateNameCritic extends CriticAndSettings {
 
     /**
-     * Stores all of the top level target database objects by name for the
-     * current run of the critics. The definition of top level is any object
-     * that is in the target database that would be at the same level in a
-     * database when written out to a DDL script. This includes tables,
-     * relationships, indices, and sequences.
-     * <p>
-     * Note: sequences are represented by columns in this map as there is no
-     * sequence object.
+     * The objects this critic has seen, by name. The objects under each name
+     * are kept in the order they were first criticized; every object after the
+     * first is criticized as a duplicate of the first.
+     */
+    private static class NameIndex {
+
+        /**
+         * Stores all of the top level target database objects by name. The
+         * definition of top level is any object that is in the target database
+         * that would be at the same level in a database when written out to a
+         * DDL script. This includes tables, relationships, indices, and
+         * sequences.
+         * <p>
+         * Note: sequences are represented by columns in this map as there is no
+         * sequence object.
+         */
+        final Map<String, List<SQLObject>> topLevelPhysicalNameMap = new HashMap<String, List<SQLObject>>();
+
+        /**
+         * The name each object in {@link #topLevelPhysicalNameMap} is stored
+         * under, so it can be found again after it is renamed.
+         */
+        final Map<SQLObject, String> topLevelNames = new IdentityHashMap<SQLObject, String>();
+
+        /**
+         * Maps each parent table to the columns in the table that we have
+         * critiqued. This way we can find if there are columns with matching
+         * column names.
+         */
+        final Map<SQLTable, List<SQLColumn>> columnPhysicalNameMap = new IdentityHashMap<SQLTable, List<SQLColumn>>();
+
+        /**
+         * The table each column in {@link #columnPhysicalNameMap} is stored
+         * under, so it can be found again after it is moved.
+         */
+        final Map<SQLColumn, SQLTable> columnTables = new IdentityHashMap<SQLColumn, SQLTable>();
+
+    }
+
+    /**
+     * The names seen in the current run. Null if the critic is not running.
      */
-    private Multimap<String, SQLObject> topLevelPhysicalNameMap = ArrayListMultimap.create();
+    private NameIndex names;
 
     /**
-     * Maps each parent table to the columns in the table that we have
-     * critiqued. This way we can find if there are columns with matching column
-     * names.
+     * The names seen in the last run that was ended by
+     * {@link #endIncremental()}, for the next incremental run to continue
+     * from. Runs started by {@link #start()} never touch these, so full
+     * criticisms done in between incremental runs do not lose them.
      */
-    private Multimap<SQLTable, SQLColumn> columnPhysicalNameMap = ArrayListMultimap.create();
+    private NameIndex keptNames;
     
     public DuplicateNameCritic() {
         super(StarterPlatformTypes.GENERIC.getName(), Messages.getString("DuplicateNameCritic.name"));
@@ -72,15 +106,89 @@ public class DuplicateNameCritic extends CriticAndSettings {
     @Override
     public void start() {
         super.start();
-        topLevelPhysicalNameMap.clear();
-        columnPhysicalNameMap.clear();
+        names = new NameIndex();
+    }
+
+    @Override
+    public boolean startIncremental() {
+        super.start();
+        if (keptNames == null) {
+            names = new NameIndex();
+            return false;
+        }
+        names = keptNames;
+        keptNames = null;
+        return true;
+    }
+
+    /**
+     * Removes the subject from the names seen so far if it was removed or
+     * renamed. The other objects that had the same name may have been
+     * duplicates of the subject and have to be criticized again. A renamed
+     * subject is added again after the objects that already had its new name,
+     * so it becomes their duplicate rather than the other way around.
+     * <p>
+     * Columns are checked against the earlier columns in their table, so any
+     * change to a column causes the other columns of its table to be
+     * criticized again.
+     */
+    @Override
+    public Collection<?> forget(Object subject, boolean removed) {
+        List<SQLObject> affected = new ArrayList<SQLObject>();
+        if (subject instanceof SQLColumn) {
+            SQLColumn col = (SQLColumn) subject;
+            SQLTable parent = names.columnTables.get(col);
+            if (parent != null) {
+                List<SQLColumn> columns = names.columnPhysicalNameMap.get(parent);
+                if (removed || parent != col.getParent()) {
+                    names.columnTables.remove(col);
+                    removeByIdentity(columns, col);
+                    if (columns.isEmpty()) {
+                        names.columnPhysicalNameMap.remove(parent);
+                    }
+                }
+                for (SQLColumn otherCol : columns) {
+                    if (otherCol != col) {
+                        affected.add(otherCol);
+                    }
+                }
+            }
+        }
+        if (names.topLevelNames.containsKey(subject)) {
+            String physicalName = names.topLevelNames.get(subject);
+            if (removed || !equalNames(physicalName, topLevelName((SQLObject) subject))) {
+                names.topLevelNames.remove(subject);
+                List<SQLObject> sameNameObjects = names.topLevelPhysicalNameMap.get(physicalName);
+                removeByIdentity(sameNameObjects, subject);
+                if (sameNameObjects.isEmpty()) {
+                    names.topLevelPhysicalNameMap.remove(physicalName);
+                }
+                affected.addAll(sameNameObjects);
+            }
+        }
+        return affected;
     }
     
     @Override
     public void end() {
         super.end();
-        topLevelPhysicalNameMap.clear();
-        columnPhysicalNameMap.clear();
+        names = null;
+    }
+
+    @Override
+    public void endIncremental() {
+        super.end();
+        keptNames = names;
+        names = null;
+    }
+
+    /**
+     * The duplicates of an object are the objects seen before it in the same
+     * run, so this critic has to remember every object it has seen.
+     */
+    @Override
+    public boolean isStateful() {
+        return true;
     }
     
     public List<Criticism> criticize(Object subject) {
@@ -92,8 +200,19 @@ public class DuplicateNameCritic extends CriticAndSettings {
             SQLTable parent = col.getParent();
             if (col.getPhysicalName() == null) return criticisms;
 
+            List<SQLColumn> columns = names.columnPhysicalNameMap.get(parent);
+            if (columns == null) {
+                columns = new ArrayList<SQLColumn>();
+                names.columnPhysicalNameMap.put(parent, columns);
+            }
+            int position = indexOfIdentity(columns, col);
+            if (position == -1) {
+                position = columns.size();
+                columns.add(col);
+                names.columnTables.put(col, parent);
+            }
             int count = 0;
-            for (SQLColumn otherCol : columnPhysicalNameMap.get(parent)) {
+            for (SQLColumn otherCol : columns.subList(0, position)) {
                 if (col.getPhysicalName().equals(otherCol.getPhysicalName())) {
                     count++;
                 }
@@ -110,19 +229,25 @@ public class DuplicateNameCritic extends CriticAndSettings {
                             }
                         }));
             }
-            columnPhysicalNameMap.put(parent, col);
         }
         if (subject instanceof SQLTable || subject instanceof SQLRelationship || 
                 subject instanceof SQLIndex || subject instanceof SQLColumn) {
             final SQLObject obj = (SQLObject) subject;
-            String physicalName = obj.getPhysicalName();
-            if (obj instanceof SQLColumn) {
-                physicalName = ((SQLColumn) obj).getAutoIncrementSequenceName();
+            String physicalName = topLevelName(obj);
+            List<SQLObject> sameNameObjects = names.topLevelPhysicalNameMap.get(physicalName);
+            if (sameNameObjects == null) {
+                sameNameObjects = new ArrayList<SQLObject>();
+                names.topLevelPhysicalNameMap.put(physicalName, sameNameObjects);
+            }
+            int position = indexOfIdentity(sameNameObjects, obj);
+            if (position == -1) {
+                position = sameNameObjects.size();
+                sameNameObjects.add(obj);
+                names.topLevelNames.put(obj, physicalName);
             }
-            final Collection<SQLObject> sameNameObjects = topLevelPhysicalNameMap.get(physicalName);
-            if (!sameNameObjects.isEmpty()) {
-                final String newPhysicalName = physicalName + "_" + sameNameObjects.size();
-                SQLObject duplicate = sameNameObjects.iterator().next();
+            if (position > 0) {
+                final String newPhysicalName = physicalName + "_" + position;
+                SQLObject duplicate = sameNameObjects.get(0);
                 criticisms.add(new Criticism(subject, 
                         "Duplicate physical name \"" + physicalName + 
                             "\". There is a " + ArchitectUtils.convertClassToString(duplicate.getClass())+ " in " + 
@@ -139,9 +264,37 @@ public class DuplicateNameCritic extends CriticAndSettings {
                             }
                 }));
             }
-            topLevelPhysicalNameMap.put(physicalName, obj);
         }
         return criticisms;
     }
 
+    /**
+     * Returns the name the object has among the top level objects of the
+     * database. Columns stand in for their sequences.
+     */
+    private static String topLevelName(SQLObject obj) {
+        if (obj instanceof SQLColumn) {
+            return ((SQLColumn) obj).getAutoIncrementSequenceName();
+        }
+        return obj.getPhysicalName();
+    }
+
+    private static boolean equalNames(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int indexOfIdentity(List<?> list, Object o) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == o) return i;
+        }
+        return -1;
+    }
+
+    private static void removeByIdentity(List<?> list, Object o) {
+        int i = indexOfIdentity(list, o);
+        if (i != -1) {
+            list.remove(i);
+        }
+    }
+
 }
@@ -17,14 +17,21 @@
  */
 package ca.sqlpower.architect.diff;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -36,6 +43,7 @@ import ca.sqlpower.dao.session.SessionPersisterSuperConverter;
 import ca.sqlpower.diff.DiffChunk;
 import ca.sqlpower.diff.DiffType;
 import ca.sqlpower.diff.PropertyChange;
+import ca.sqlpower.object.SPObject;
 import ca.sqlpower.object.SPObjectUUIDComparator;
 import ca.sqlpower.sqlobject.SQLColumn;
 import ca.sqlpower.sqlobject.SQLIndex;
@@ -120,6 +128,35 @@ public class CompareSQL implements Monitorable {
 
 	private boolean useUUID;
 
+	/**
+	 * The number of threads matched tables are compared on.
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * A pair of matched tables, or a table that only exists on one side, and
+	 * the diffs generated for it.
+	 */
+	private static class TableMatch {
+	    private final SQLTable source;
+	    private final SQLTable target;
+
+	    /**
+	     * The diffs for this match, or null if it has not been compared.
+	     */
+	    private List<DiffChunk<SQLObject>> diffs;
+
+	    /**
+	     * The comparison of this match running on another thread, if any.
+	     */
+	    private ForkJoinTask<Void> comparison;
+
+	    TableMatch(SQLTable source, SQLTable target) {
+	        this.source = source;
+	        this.target = target;
+	    }
+	}
+
 	public CompareSQL(
 			Collection<SQLTable> sourceTables,
 			Collection<SQLTable> targetTables, boolean suppressSimilarities) throws ArchitectDiffException {
@@ -175,169 +212,232 @@ public class CompareSQL implements Monitorable {
 	}
 	
 	public List<DiffChunk<SQLObject>> generateTableDiffs(ArchitectSession session) throws SQLObjectException {
+	    generateTableDiffs(session, new DiffChunkListener() {
+	        public void diffChunkGenerated(DiffChunk<SQLObject> chunk) {
+	            results.add(chunk);
+	        }
+	    });
+	    return results;
+	}
+
+	/**
+	 * Compares the tables and passes each diff to the given listener as soon
+	 * as the table it belongs to has been compared, instead of collecting
+	 * them in a list. The diffs arrive in the same order
+	 * {@link #generateTableDiffs(ArchitectSession)} returns them in.
+	 * 
+	 * @param session
+	 *            The session to look up upstream types in, or null to leave
+	 *            the tables' types as they are.
+	 * @param listener
+	 *            Receives every diff, on the calling thread.
+	 */
+	public void generateTableDiffs(ArchitectSession session, DiffChunkListener listener) throws SQLObjectException {
 		setStarted(true);
 		setFinished(false);
 	    try {
-			Iterator<SQLTable> sourceIter = sourceTableSet.iterator();
-			Iterator<SQLTable> targetIter = targetTableSet.iterator();
-			SQLTable targetTable;
-			SQLTable sourceTable;
-			boolean sourceContinue;
-			boolean targetContinue;
-
-			//Checks if both lists of tables contain any tables at all, if they do
-			//the iterator is initialized for the list
-			if (sourceIter.hasNext()) {
-
-				sourceContinue = true;
-				sourceTable = sourceIter.next();
-				sourceTable.populate();
-			} else {
-				sourceContinue = false;
-				sourceTable = null;
-			}
-
-			if (targetIter.hasNext()) {
-				targetContinue = true;
-				targetTable = targetIter.next();
-				targetTable.populate();
-			} else {
-				targetContinue = false;
-				targetTable = null;
-			}
+	        List<TableMatch> matches = matchTables(session);
+	        compareMatchedTables(matches, listener);
+	        for (DiffChunk<SQLObject> chunk : generateRelationshipDiffs(sourceTableSet, targetTableSet)) {
+	            listener.diffChunkGenerated(chunk);
+	        }
 
-			// Will loop until one or both the list reaches its last table
-			while (sourceContinue && targetContinue && !isCancelled()) {
-			    logger.debug("Generating table diffs for " + sourceTable.getName());
-			    if (session != null) {
-			        ArchitectUtils.setUpstreamTypesInTable(sourceTable, session);
-			        ArchitectUtils.setUpstreamTypesInTable(targetTable, session);
+			if (compareIndex) {
+			    for (DiffChunk<SQLObject> chunk : generateIndexDiffs(sourceTableSet, targetTableSet)) {
+			        listener.diffChunkGenerated(chunk);
 			    }
-			    DiffChunk<SQLObject> chunk = null;
-			    int compareResult = getObjectComparator().compare(sourceTable, targetTable);
-
-				// bring the source table up to the same level as the target
-				if (compareResult < 0) {
-					chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.LEFTONLY);
-					incProgress(1, sourceTable, targetTable);
-					//results.addAll(generateColumnDiffs(sourceTable, null));
-					if (sourceIter.hasNext()) {
-						sourceTable = (SQLTable) sourceIter.next();
-						sourceTable.populate();
-					} else {
-						sourceContinue = false;
-
-					}
-				}
-
-				// bring the target table up to the same level as the source
-				if (compareResult > 0) {
-					chunk = new DiffChunk<SQLObject>(targetTable, DiffType.RIGHTONLY);
-					incProgress(1, sourceTable, targetTable);
-					// now don't do the columns it's already handled
-					//results.addAll(generateColumnDiffs(null, targetTable));
-					if (targetIter.hasNext()) {
-						targetTable = (SQLTable) targetIter.next();
-						targetTable.populate();
-					} else {
-						targetContinue = false;
-					}
-				}
+			}
+		} finally {
+			setJobSize(null);
+			setFinished(true);
+		}
+	}
 
-				if (compareResult == 0) {
-                    List<PropertyChange> changes = generatePropertyChanges(sourceTable, targetTable);
-					if (changes.size() > 0) {
-						if (nameComparator.compare(sourceTable, targetTable) != 0) {
-							chunk = new DiffChunk<SQLObject>(targetTable, DiffType.NAME_CHANGED);
-							chunk.setOriginalData(sourceTable);
-						} else if (!StringUtils.equals(sourceTable.getRemarks(), targetTable.getRemarks())) {
-                            // If the remarks are the same, then don't generate SQL script
-                            chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.SQL_MODIFIED);
-                        } else {
-                            // If the remarks were changed, generate SQL script for that
-                            chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.MODIFIED);
-                        }
-                        for (PropertyChange change : changes) {
-                            chunk.addPropertyChange(change);
-                        }
-                    } else {
-                        chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.SAME);
-                    }
-                    incProgress(1, sourceTable, targetTable);
-                    List<DiffChunk<SQLObject>> columns = generateColumnDiffs(sourceTable, targetTable);
-                    if (!(chunk.getType() == DiffType.SAME && suppressSimilarities) || columns.size() > 0) {
-                        results.add(chunk);
-                        results.addAll(columns);
-                    }
-					if (!targetIter.hasNext() && !sourceIter.hasNext())
-					{
-						targetContinue = false;
-						sourceContinue = false;
-					}
-					if (targetIter.hasNext()) {
-						targetTable = (SQLTable) targetIter.next();
-						targetTable.populate();
-					} else {
-						targetContinue = false;
-					}
+	/**
+	 * Walks the source and target tables in comparison order and pairs up the
+	 * tables that exist on both sides. Tables that only exist on one side get
+	 * their diff right away. Every table is populated here, on the calling
+	 * thread, so the matched pairs can be compared on other threads.
+	 * 
+	 * @return The matches in the order their diffs are reported.
+	 */
+	private List<TableMatch> matchTables(ArchitectSession session) throws SQLObjectException {
+	    List<TableMatch> matches = new ArrayList<TableMatch>();
+	    List<SQLTable> sources = new ArrayList<SQLTable>(sourceTableSet);
+	    List<SQLTable> targets = new ArrayList<SQLTable>(targetTableSet);
+	    int s = 0;
+	    int t = 0;
+	    while ((s < sources.size() || t < targets.size()) && !isCancelled()) {
+	        SQLTable sourceTable = s < sources.size() ? sources.get(s) : null;
+	        SQLTable targetTable = t < targets.size() ? targets.get(t) : null;
+	        int compareResult;
+	        if (sourceTable == null) {
+	            compareResult = 1;
+	        } else if (targetTable == null) {
+	            compareResult = -1;
+	        } else {
+	            compareResult = getObjectComparator().compare(sourceTable, targetTable);
+	        }
 
-					if (sourceIter.hasNext()) {
-						sourceTable = (SQLTable) sourceIter.next();
-						sourceTable.populate();
-					}
+	        if (compareResult < 0) {
+	            prepareTable(sourceTable, session);
+	            TableMatch match = new TableMatch(sourceTable, null);
+	            match.diffs = Collections.singletonList(new DiffChunk<SQLObject>(sourceTable, DiffType.LEFTONLY));
+	            matches.add(match);
+	            incProgress(1, sourceTable, null);
+	            s++;
+	        } else if (compareResult > 0) {
+	            prepareTable(targetTable, session);
+	            TableMatch match = new TableMatch(null, targetTable);
+	            match.diffs = Collections.singletonList(new DiffChunk<SQLObject>(targetTable, DiffType.RIGHTONLY));
+	            matches.add(match);
+	            incProgress(1, null, targetTable);
+	            t++;
+	        } else {
+	            logger.debug("Matched table " + sourceTable.getName());
+	            prepareTable(sourceTable, session);
+	            prepareTable(targetTable, session);
+	            sourceTable.getColumns();
+	            targetTable.getColumns();
+	            matches.add(new TableMatch(sourceTable, targetTable));
+	            s++;
+	            t++;
+	        }
+	    }
+	    return matches;
+	}
 
-					else {
-						sourceContinue = false;
-					}
-				} else {
-				    // If we are adding column diffs, the table diff must be in the list first.
-				    // If we are not generating column diffs, we have waited until now to add the chunk.
-				    results.add(chunk);
-				}
+	private void prepareTable(SQLTable table, ArchitectSession session) throws SQLObjectException {
+	    table.populate();
+	    if (session != null) {
+	        ArchitectUtils.setUpstreamTypesInTable(table, session);
+	    }
+	}
 
-			}
-			// If any tables in the sourceList still exist, the changes are added
-			while (sourceContinue && !isCancelled()) {
-			    if (session != null) {
-			        ArchitectUtils.setUpstreamTypesInTable(sourceTable, session);
-			    }
-				results.add(new DiffChunk<SQLObject>(sourceTable, DiffType.LEFTONLY));
-				incProgress(1, sourceTable, null);
-				//results.addAll(generateColumnDiffs(sourceTable, null));
-				if (sourceIter.hasNext()) {
-					sourceTable = (SQLTable) sourceIter.next();
-					sourceTable.populate();
-				} else {
-					sourceContinue = false;
-				}
-			}
+	/**
+	 * Generates the diffs of every matched pair of tables and passes the
+	 * diffs of each match to the listener in order. If there is more than one
+	 * pair, they are compared on a fork-join pool of {@link #getParallelism()}
+	 * threads, which may only run a few matches ahead of the listener so
+	 * finished diffs do not pile up.
+	 */
+	private void compareMatchedTables(List<TableMatch> matches, DiffChunkListener listener) throws SQLObjectException {
+	    int pairCount = 0;
+	    for (TableMatch match : matches) {
+	        if (match.diffs == null) {
+	            pairCount++;
+	        }
+	    }
+	    if (parallelism == 1 || pairCount <= 1) {
+	        for (TableMatch match : matches) {
+	            if (match.diffs == null) {
+	                compareTables(match);
+	            }
+	            fireDiffs(match, listener);
+	        }
+	        return;
+	    }
+	    final int window = parallelism * 4;
+	    ArrayDeque<TableMatch> pending = new ArrayDeque<TableMatch>();
+	    ForkJoinPool pool = new ForkJoinPool(parallelism);
+	    try {
+	        for (final TableMatch match : matches) {
+	            if (match.diffs == null) {
+	                match.comparison = pool.submit(new Callable<Void>() {
+	                    public Void call() throws SQLObjectException {
+	                        compareTables(match);
+	                        return null;
+	                    }
+	                });
+	            }
+	            pending.add(match);
+	            if (pending.size() > window) {
+	                fireDiffs(pending.remove(), listener);
+	            }
+	        }
+	        while (!pending.isEmpty()) {
+	            fireDiffs(pending.remove(), listener);
+	        }
+	    } catch (RuntimeException ex) {
+	        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+	            if (cause instanceof SQLObjectException) {
+	                throw (SQLObjectException) cause;
+	            }
+	        }
+	        throw ex;
+	    } finally {
+	        pool.shutdownNow();
+	    }
+	}
 
-			//If any remaining tables in the targetList still exist, they are now being added
-			while (targetContinue && !isCancelled()) {
-			    if (session != null) {
-			        ArchitectUtils.setUpstreamTypesInTable(targetTable, session);
-			    }
-				results.add(new DiffChunk<SQLObject>(targetTable, DiffType.RIGHTONLY));
-				incProgress(1, null, targetTable);
+	/**
+	 * Passes the diffs of a compared match to the listener and lets go of
+	 * them.
+	 */
+	private void fireDiffs(TableMatch match, DiffChunkListener listener) throws SQLObjectException {
+	    if (match.comparison != null) {
+	        match.comparison.join();
+	        match.comparison = null;
+	    }
+	    if (match.diffs == null) return;
+	    for (DiffChunk<SQLObject> chunk : match.diffs) {
+	        listener.diffChunkGenerated(chunk);
+	    }
+	    match.diffs = null;
+	}
 
-				//results.addAll(generateColumnDiffs(null, targetTable));
-				if (targetIter.hasNext()) {
-					targetTable = (SQLTable) targetIter.next();
-					targetTable.populate();
-				} else {
-					targetContinue = false;
-				}
-			}
-			results.addAll(generateRelationshipDiffs(sourceTableSet, targetTableSet));
+	/**
+	 * Generates the diffs of one matched pair of tables. Tables whose
+	 * structural signatures are equal are reported as the same without
+	 * comparing their properties one by one.
+	 */
+	private void compareTables(TableMatch match) throws SQLObjectException {
+	    if (isCancelled()) return;
+	    SQLTable sourceTable = match.source;
+	    SQLTable targetTable = match.target;
+	    TableSignature sourceSignature = new TableSignature(sourceTable, getObjectComparator(), useUUID);
+	    TableSignature targetSignature = new TableSignature(targetTable, getObjectComparator(), useUUID);
+	    if (sourceSignature.equals(targetSignature)) {
+	        logger.debug("Table " + sourceTable.getName() + " is unchanged");
+	        match.diffs = new ArrayList<DiffChunk<SQLObject>>();
+	        if (!suppressSimilarities) {
+	            match.diffs.add(new DiffChunk<SQLObject>(sourceTable, DiffType.SAME));
+	            List<SQLColumn> columns = new ArrayList<SQLColumn>(sourceTable.getColumnsWithoutPopulating());
+	            Collections.sort(columns, getObjectComparator());
+	            for (SQLColumn col : columns) {
+	                match.diffs.add(new DiffChunk<SQLObject>(col, DiffType.SAME));
+	            }
+	        }
+	        incProgress(1, sourceTable, targetTable);
+	        return;
+	    }
 
-			if (compareIndex) {
-			    results.addAll(generateIndexDiffs(sourceTableSet, targetTableSet));
-			}
-		} finally {
-			setJobSize(null);
-			setFinished(true);
-		}
-		return results;
+	    DiffChunk<SQLObject> chunk = null;
+	    List<PropertyChange> changes = generatePropertyChanges(sourceTable, targetTable);
+	    if (changes.size() > 0) {
+	        if (nameComparator.compare(sourceTable, targetTable) != 0) {
+	            chunk = new DiffChunk<SQLObject>(targetTable, DiffType.NAME_CHANGED);
+	            chunk.setOriginalData(sourceTable);
+	        } else if (!StringUtils.equals(sourceTable.getRemarks(), targetTable.getRemarks())) {
+	            // If the remarks are the same, then don't generate SQL script
+	            chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.SQL_MODIFIED);
+	        } else {
+	            // If the remarks were changed, generate SQL script for that
+	            chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.MODIFIED);
+	        }
+	        for (PropertyChange change : changes) {
+	            chunk.addPropertyChange(change);
+	        }
+	    } else {
+	        chunk = new DiffChunk<SQLObject>(sourceTable, DiffType.SAME);
+	    }
+	    incProgress(1, sourceTable, targetTable);
+	    List<DiffChunk<SQLObject>> columns = generateColumnDiffs(sourceTable, targetTable);
+	    match.diffs = new ArrayList<DiffChunk<SQLObject>>();
+	    if (!(chunk.getType() == DiffType.SAME && suppressSimilarities) || columns.size() > 0) {
+	        match.diffs.add(chunk);
+	        match.diffs.addAll(columns);
+	    }
 	}
 
     private List<DiffChunk<SQLObject>> generateRelationshipDiffs(
@@ -814,36 +914,74 @@ public class CompareSQL implements Monitorable {
      */
 	private List<PropertyChange> generatePropertyChanges(SQLObject sourceObject, SQLObject targetObject)
 	throws SQLObjectException {
-	    
-
 	    List<PropertyChange> changes = new ArrayList<PropertyChange>();
-	    
+	    Map<String, String> sourceProperties = getComparedProperties(sourceObject);
+	    Map<String, String> targetProperties = getComparedProperties(targetObject);
+	    if (sourceObject instanceof SQLColumn && targetObject instanceof SQLColumn) {
+	        sourceProperties.putAll(getComparedTypeProperties((SQLColumn) sourceObject));
+	        targetProperties.putAll(getComparedTypeProperties((SQLColumn) targetObject));
+	    }
+	    Set<String> propertyNames = new TreeSet<String>(sourceProperties.keySet());
+	    propertyNames.addAll(targetProperties.keySet());
+	    for (String propertyName : propertyNames) {
+	        String oldValue = sourceProperties.get(propertyName);
+	        String newValue = targetProperties.get(propertyName);
+	        if (oldValue == null) oldValue = "null";
+	        if (newValue == null) newValue = "null";
+	        if (!oldValue.equals(newValue)) {
+	            logger.debug(propertyName + "differs");
+	            changes.add(new PropertyChange(propertyName, oldValue, newValue));
+	        }
+	    }
+	    return changes;
+	}
 
+	/**
+	 * Returns the interesting properties of an object as the strings
+	 * {@link #generatePropertyChanges(SQLObject, SQLObject)} compares, in
+	 * order of their names. {@link TableSignature} is built from the same
+	 * properties.
+	 */
+	static Map<String, String> getComparedProperties(SPObject object) throws SQLObjectException {
 	    try {
-	        SessionPersisterSuperConverter converter = new SessionPersisterSuperConverter(null, sourceObject);
-	        Map<String, Object> sourceProperties = PersisterUtils.getInterestingProperties(sourceObject, converter);
-	        converter = new SessionPersisterSuperConverter(null, targetObject);
-	        Map<String, Object> targetProperties = PersisterUtils.getInterestingProperties(targetObject, converter);
-	        
-
-	        Iterator<String> i = sourceProperties.keySet().iterator();
-	        while (i.hasNext()) {
-	            String propertyName = i.next();
-	            String oldValue = String.valueOf(sourceProperties.get(propertyName));
-	            String newValue = String.valueOf(targetProperties.get(propertyName));
-	            if (oldValue.equals("")) oldValue = "null";
-	            if (newValue.equals("")) newValue = "null";
-	            if (!oldValue.equals(newValue)) {
-	                logger.debug(propertyName + "differs");
-	                changes.add(new PropertyChange(propertyName, oldValue, newValue));
-	            }
+	        SessionPersisterSuperConverter converter = new SessionPersisterSuperConverter(null, object);
+	        Map<String, Object> properties = PersisterUtils.getInterestingProperties(object, converter);
+	        Map<String, String> compared = new TreeMap<String, String>();
+	        for (Map.Entry<String, Object> property : properties.entrySet()) {
+	            String value = String.valueOf(property.getValue());
+	            compared.put(property.getKey(), value.equals("") ? "null" : value);
 	        }
+	        return compared;
 	    } catch (Exception e) {
 	        throw new SQLObjectException("Error generating property diffs", e);
 	    }
-	    
+	}
 
-	    return changes;
+	/**
+	 * Returns the compared properties of the type of a column and of
+	 * everything under it, such as its physical properties, check constraints
+	 * and enumerations. These are children of the type rather than properties
+	 * of the column, so they are named by their path from the type, for
+	 * example <code>userDefinedSQLType/SQLTypePhysicalProperties[0]/SQLCheckConstraint[1].constraint</code>.
+	 */
+	static Map<String, String> getComparedTypeProperties(SQLColumn column) throws SQLObjectException {
+	    Map<String, String> compared = new TreeMap<String, String>();
+	    addTreeProperties("userDefinedSQLType", column.getUserDefinedSQLType(), compared);
+	    return compared;
+	}
+
+	private static void addTreeProperties(String path, SPObject object, Map<String, String> compared)
+	throws SQLObjectException {
+	    for (Map.Entry<String, String> property : getComparedProperties(object).entrySet()) {
+	        compared.put(path + "." + property.getKey(), property.getValue());
+	    }
+	    Map<Class<?>, Integer> typeCounts = new HashMap<Class<?>, Integer>();
+	    for (SPObject child : object.getChildren()) {
+	        Integer count = typeCounts.get(child.getClass());
+	        int index = count == null ? 0 : count;
+	        typeCounts.put(child.getClass(), index + 1);
+	        addTreeProperties(path + "/" + child.getClass().getSimpleName() + "[" + index + "]", child, compared);
+	    }
 	}
 
 	private Comparator<SQLObject> getObjectComparator() {
@@ -935,4 +1073,19 @@ public class CompareSQL implements Monitorable {
     public void setCompareIndices(boolean compareIndices) {
         this.compareIndex = compareIndices;
     }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads matched tables are compared on. The order
+     * of the generated diffs does not depend on it.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, not " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.diff;
+
+import ca.sqlpower.diff.DiffChunk;
+import ca.sqlpower.sqlobject.SQLObject;
+import ca.sqlpower.sqlobject.SQLObjectException;
+
+/**
+ * Receives the diffs of a {@link CompareSQL} comparison as they are
+ * generated, so they can be formatted without holding the whole comparison
+ * in memory.
+ * <p>
+ * Chunks arrive in the same order {@link CompareSQL#generateTableDiffs()}
+ * would return them in, always on the thread that started the comparison.
+ */
+public interface DiffChunkListener {
+
+    /**
+     * Called once for each diff, in order.
+     * 
+     * @throws SQLObjectException
+     *             If the chunk could not be handled. This stops the
+     *             comparison.
+     */
+    public void diffChunkGenerated(DiffChunk<SQLObject> chunk) throws SQLObjectException;
+}
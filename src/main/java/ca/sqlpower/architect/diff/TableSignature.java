@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import ca.sqlpower.object.SPObject;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLObject;
+import ca.sqlpower.sqlobject.SQLObjectException;
+import ca.sqlpower.sqlobject.SQLTable;
+
+/**
+ * The structure of a table and its columns reduced to a string, with a hash
+ * of it for quick inequality checks. {@link CompareSQL} uses signatures to
+ * find matched tables that are identical without reflecting over their
+ * properties one pair at a time.
+ * <p>
+ * A signature is made of the same property values the comparison uses:
+ * {@link CompareSQL#getComparedProperties(SPObject)} for the table and for
+ * each of its columns in comparison order, and
+ * {@link CompareSQL#getComparedTypeProperties(SQLColumn)} for the type of
+ * each column, which covers its check constraints and enumerations. Two
+ * tables with equal signatures would therefore get no property changes from
+ * the comparison either, and a property the comparison looks at can't be
+ * left out of the signature by accident.
+ * <p>
+ * Signatures are only meant to be compared with each other.
+ */
+class TableSignature {
+
+    /**
+     * Separates the values in a signature. It is a control character so it
+     * is very unlikely to appear in a name or remark.
+     */
+    private static final char SEPARATOR = '\u001f';
+
+    private final String signature;
+
+    private final int hash;
+
+    /**
+     * @param table
+     *            The table to describe. Its columns must already be populated.
+     * @param columnOrder
+     *            The comparator {@link CompareSQL} matches columns with. The
+     *            columns are described in this order.
+     * @param includeUUIDs
+     *            True if the columns are matched by UUID, in which case their
+     *            UUIDs are part of the signature.
+     */
+    TableSignature(SQLTable table, Comparator<SQLObject> columnOrder, boolean includeUUIDs) throws SQLObjectException {
+        StringBuilder sb = new StringBuilder();
+        appendProperties(sb, table);
+        append(sb, table.getPrimaryKeyIndex() == null ? null : table.getPrimaryKeyIndex().getName());
+        List<SQLColumn> columns = new ArrayList<SQLColumn>(table.getColumnsWithoutPopulating());
+        Collections.sort(columns, columnOrder);
+        for (SQLColumn col : columns) {
+            sb.append('\n');
+            if (includeUUIDs) {
+                append(sb, col.getUUID());
+            }
+            appendProperties(sb, col);
+            append(sb, col.isPrimaryKey());
+            appendProperties(sb, CompareSQL.getComparedTypeProperties(col));
+        }
+        signature = sb.toString();
+        hash = signature.hashCode();
+    }
+
+    private static void append(StringBuilder sb, Object value) {
+        sb.append(value).append(SEPARATOR);
+    }
+
+    /**
+     * Appends the name and compared value of each property of the object.
+     */
+    private static void appendProperties(StringBuilder sb, SPObject object) throws SQLObjectException {
+        appendProperties(sb, CompareSQL.getComparedProperties(object));
+    }
+
+    private static void appendProperties(StringBuilder sb, Map<String, String> properties) {
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            append(sb, property.getKey());
+            append(sb, property.getValue());
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof TableSignature)) return false;
+        TableSignature other = (TableSignature) obj;
+        return hash == other.hash && signature.equals(other.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+}
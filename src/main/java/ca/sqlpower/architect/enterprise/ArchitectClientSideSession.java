@@ -16,6 +16,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -57,6 +58,7 @@ import ca.sqlpower.dao.session.SessionPersisterSuperConverter;
 import ca.sqlpower.diff.DiffChunk;
 import ca.sqlpower.diff.DiffInfo;
 import ca.sqlpower.diff.SimpleDiffChunkJSONConverter;
+import ca.sqlpower.enterprise.AbstractNetworkConflictResolver;
 import ca.sqlpower.enterprise.ClientSideSessionUtils;
 import ca.sqlpower.enterprise.DataSourceCollectionUpdater;
 import ca.sqlpower.enterprise.JSONMessage;
@@ -128,6 +130,12 @@ public class ArchitectClientSideSession extends ArchitectSessionImpl implements
 	 * server changes to the {@link #sessionPersister}.
 	 */
 	private final SPJSONPersister jsonPersister;
+	
+	/**
+	 * Batches the changes the {@link #jsonPersister} sends before they are
+	 * passed on to the {@link #updater} to be posted to the server.
+	 */
+	private final OutboundPersistBatcher outboundBatcher;
 	private final ArchitectNetworkConflictResolver updater;
 	private final SPJSONMessageDecoder jsonMessageDecoder;
 	private final DataSourceCollectionUpdater dataSourceCollectionUpdater;
@@ -229,7 +237,36 @@ public class ArchitectClientSideSession extends ArchitectSessionImpl implements
 		        ClientSideSessionUtils.createHttpClient(projectLocation.getServiceInfo(), cookieStore), 
 		        outboundHttpClient, this);
 		
-		jsonPersister = new SPJSONPersister(updater);
+		outboundBatcher = new OutboundPersistBatcher(updater, new Executor() {
+		    public void execute(Runnable command) {
+		        runInForeground(command);
+		    }
+		});
+		jsonPersister = new SPJSONPersister(outboundBatcher);
+		
+		// changes waiting in a batch have to reach the resolver before it
+		// checks the server's changes against ours
+		updater.addListener(new AbstractNetworkConflictResolver.UpdateListener() {
+		    public void preUpdatePerformed(AbstractNetworkConflictResolver resolver) {
+		        try {
+		            outboundBatcher.flushPending();
+		        } catch (SPPersistenceException e) {
+		            throw new RuntimeException(e);
+		        }
+		    }
+
+		    public boolean updatePerformed(AbstractNetworkConflictResolver resolver) {
+		        return false;
+		    }
+
+		    public boolean updateException(AbstractNetworkConflictResolver resolver, Throwable t) {
+		        return false;
+		    }
+
+		    public void workspaceDeleted() {
+		        // nothing to flush to
+		    }
+		});
 		
 		verifyServerLicense(projectLocation);
 	}
@@ -384,6 +421,11 @@ public class ArchitectClientSideSession extends ArchitectSessionImpl implements
 			}
 		}
 		
+		try {
+		    outboundBatcher.close();
+		} catch (Exception e) {
+		    logger.error("Could not send the last changes to the server", e);
+		}
 		updater.interrupt();
         outboundHttpClient.getConnectionManager().shutdown();
         
@@ -532,6 +574,7 @@ public class ArchitectClientSideSession extends ArchitectSessionImpl implements
 		final SPPersisterListener tempListener = new SPPersisterListener(jsonPersister,
 						new ArchitectPersisterSuperConverter(dataSourceCollection, getWorkspace()));
 		tempListener.persistObject(getWorkspace(), 0);
+		outboundBatcher.flushPending();
 	}
 	
 	public ArchitectSwingProject getSystemWorkspace() {
@@ -802,6 +845,10 @@ public class ArchitectClientSideSession extends ArchitectSessionImpl implements
     public ArchitectNetworkConflictResolver getUpdater() {
         return updater;
     }
+    
+    public OutboundPersistBatcher getOutboundBatcher() {
+        return outboundBatcher;
+    }
 	
 	// ----------- Preferences accessors and mutators -----------
 	// XXX Add different types, such as int or boolean, as needed
@@ -18,6 +18,8 @@
 
 package ca.sqlpower.architect.enterprise;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,8 +27,18 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.client.HttpClient;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
@@ -73,10 +85,42 @@ public class ArchitectNetworkConflictResolver extends AbstractNetworkConflictRes
         public void postServerSend();
     }
     
+    /**
+     * Posts shorter than this many bytes are not worth compressing.
+     */
+    private static final int MIN_COMPRESSED_LENGTH = 512;
+    
     private ArchitectClientSideSession session;
     
     private final List<PostTransactionListener> postTransactionListeners = new ArrayList<PostTransactionListener>();
     
+    /**
+     * Set on the thread posting changes while the post the superclass makes
+     * should be compressed. See {@link #postCompressedJsonArray(String)}.
+     */
+    private final ThreadLocal<Boolean> compressNextPost = new ThreadLocal<Boolean>();
+    
+    /**
+     * The size of the last post after it was compressed, or -1 if it was
+     * not compressed. Only used on the thread posting changes.
+     */
+    private long compressedLength;
+    
+    /**
+     * Set to false if the server turns down a compressed post, after which
+     * every post is sent uncompressed. Also false if the outbound client
+     * can't compress posts at all.
+     */
+    private volatile boolean compressingPosts;
+    
+    private final AtomicLong postCount = new AtomicLong();
+    private final AtomicLong uncompressedBytesPosted = new AtomicLong();
+    private final AtomicLong bytesPosted = new AtomicLong();
+    private final AtomicLong totalPostTime = new AtomicLong();
+    private volatile long lastPostUncompressedBytes;
+    private volatile long lastPostBytes;
+    private volatile long lastPostTime;
+    
     public ArchitectNetworkConflictResolver(
             ProjectLocation projectLocation, 
             SPJSONMessageDecoder jsonDecoder, 
@@ -87,6 +131,18 @@ public class ArchitectNetworkConflictResolver extends AbstractNetworkConflictRes
         super(projectLocation, jsonDecoder, inboundHttpClient, outboundHttpClient, session);
         
         this.session = session;
+        if (outboundHttpClient instanceof AbstractHttpClient) {
+            // Added first so the standard interceptors that run after it
+            // set the length of the compressed body.
+            ((AbstractHttpClient) outboundHttpClient).addRequestInterceptor(new HttpRequestInterceptor() {
+                public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+                    if (Boolean.TRUE.equals(compressNextPost.get()) && request instanceof HttpEntityEnclosingRequest) {
+                        compress((HttpEntityEnclosingRequest) request);
+                    }
+                }
+            }, 0);
+            compressingPosts = true;
+        }
     }
     
     @Override
@@ -130,7 +186,7 @@ public class ArchitectNetworkConflictResolver extends AbstractNetworkConflictRes
                 for (PostTransactionListener l : postTransactionListeners) {
                     l.preServerSend();
                 }
-                response = postJsonArray(messageBuffer.toString());
+                response = postCompressedJsonArray(messageBuffer.toString());
                 for (PostTransactionListener l : postTransactionListeners) {
                     l.postServerSend();
                 }
@@ -281,6 +337,140 @@ public class ArchitectNetworkConflictResolver extends AbstractNetworkConflictRes
         }
     }
     
+    /**
+     * Posts the given JSON array of persist calls to the server with
+     * {@link #postJsonArray(String)}, with the body of the request compressed
+     * with gzip on the way out. If the server does not accept compressed
+     * posts the array is posted again uncompressed, and so is every post
+     * after it. Also keeps the counters of how many bytes each post took and
+     * how long it took.
+     */
+    private JSONMessage postCompressedJsonArray(String jsonArray) {
+        long startTime = System.currentTimeMillis();
+        long jsonLength;
+        try {
+            jsonLength = jsonArray.getBytes("UTF-8").length;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        JSONMessage response = null;
+        compressedLength = -1;
+        if (compressingPosts && jsonLength >= MIN_COMPRESSED_LENGTH) {
+            compressNextPost.set(Boolean.TRUE);
+            try {
+                response = postJsonArray(jsonArray);
+            } finally {
+                compressNextPost.remove();
+            }
+            if (response.getStatusCode() == 415) {
+                // 415 Unsupported Media Type: the server turned the post
+                // down without reading it, so it is safe to send again.
+                logger.info("Server turned down a compressed post, posting changes uncompressed from now on: " + response);
+                compressingPosts = false;
+                response = null;
+            }
+        }
+        long bytesSent = compressedLength >= 0 ? compressedLength : jsonLength;
+        if (response == null) {
+            response = postJsonArray(jsonArray);
+            bytesSent = jsonLength;
+        }
+        
+        lastPostTime = System.currentTimeMillis() - startTime;
+        lastPostUncompressedBytes = jsonLength;
+        lastPostBytes = bytesSent;
+        postCount.incrementAndGet();
+        totalPostTime.addAndGet(lastPostTime);
+        uncompressedBytesPosted.addAndGet(jsonLength);
+        bytesPosted.addAndGet(bytesSent);
+        return response;
+    }
+    
+    /**
+     * Replaces the body of a post the superclass is making with the same
+     * bytes compressed with gzip. The rest of the request, including where
+     * it is posted to, is left as the superclass made it.
+     */
+    private void compress(HttpEntityEnclosingRequest request) throws IOException {
+        byte[] json = EntityUtils.toByteArray(request.getEntity());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(json);
+        gzip.close();
+        byte[] compressed = out.toByteArray();
+        ByteArrayEntity entity = new ByteArrayEntity(compressed);
+        entity.setContentType(request.getEntity().getContentType());
+        request.setEntity(entity);
+        request.setHeader("Content-Encoding", "gzip");
+        compressedLength = compressed.length;
+    }
+    
+    /**
+     * Returns the number of posts of changes made to the server.
+     */
+    public long getPostCount() {
+        return postCount.get();
+    }
+    
+    /**
+     * Returns the number of bytes of JSON posted to the server, before
+     * compression.
+     */
+    public long getUncompressedBytesPosted() {
+        return uncompressedBytesPosted.get();
+    }
+    
+    /**
+     * Returns the number of bytes actually posted to the server, after
+     * compression.
+     */
+    public long getBytesPosted() {
+        return bytesPosted.get();
+    }
+    
+    /**
+     * Returns the total number of milliseconds spent posting changes,
+     * including waiting for the server's response.
+     */
+    public long getTotalPostTime() {
+        return totalPostTime.get();
+    }
+    
+    /**
+     * Returns the size in bytes of the JSON in the last post, before
+     * compression.
+     */
+    public long getLastPostUncompressedBytes() {
+        return lastPostUncompressedBytes;
+    }
+    
+    /**
+     * Returns the size in bytes of the last post, after compression.
+     */
+    public long getLastPostBytes() {
+        return lastPostBytes;
+    }
+    
+    /**
+     * Returns the number of milliseconds the last post took, including
+     * waiting for the server's response.
+     */
+    public long getLastPostTime() {
+        return lastPostTime;
+    }
+    
+    /**
+     * Returns true if posts are still being compressed. This becomes false
+     * the first time the server turns down a compressed post.
+     */
+    public boolean isCompressingPosts() {
+        return compressingPosts;
+    }
+    
+    public void setCompressingPosts(boolean compressingPosts) {
+        this.compressingPosts = compressingPosts;
+    }
+    
     @Override
     protected List<ConflictMessage> detectConflicts() {
         List<ConflictMessage> conflicts = checkForSimultaneousEdit();
@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2010, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.enterprise;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ca.sqlpower.dao.MessageSender;
+import ca.sqlpower.dao.SPPersistenceException;
+
+/**
+ * Sits between the JSON persister of a client session and the
+ * {@link ArchitectNetworkConflictResolver} that posts its messages to the
+ * server, and sends the server fewer, larger transactions.
+ * <p>
+ * Each transaction the persister finishes is held for a short time instead
+ * of being posted right away. Transactions finished while one is held are
+ * folded into it, so dragging a table or typing in a property panel makes
+ * one post instead of dozens. When the same property of the same object
+ * changes more than once in a batch only the last change is sent, with the
+ * old value of the first change, so the server sees one change from the
+ * value it knows about to the value the user ended up with. That is the
+ * same change the conflict resolver rolls back and checks for conflicts
+ * if the post fails.
+ * <p>
+ * A batch is sent once the first transaction in it has waited for
+ * {@link #getBatchWindow()} milliseconds, or as soon as it holds
+ * {@link #getMaxBatchSize()} messages. Batches are always forwarded with
+ * the foreground executor given to the constructor, which is the thread the
+ * conflict resolver expects to post from. This batcher's lock is not held
+ * while a batch is being posted, so other threads can keep adding to the
+ * next batch in the meantime.
+ * <p>
+ * Changes in a batch that has not been sent yet are not known to the
+ * conflict resolver. The session calls {@link #flushPending()} before the
+ * resolver applies changes from the server, so they are checked against
+ * the server's changes the same way changes posted right away are.
+ */
+public class OutboundPersistBatcher implements MessageSender<JSONObject> {
+
+    private static final Logger logger = Logger.getLogger(OutboundPersistBatcher.class);
+
+    /**
+     * The default number of milliseconds a transaction is held to be
+     * batched with the ones after it.
+     */
+    public static final long DEFAULT_BATCH_WINDOW = 250;
+
+    /**
+     * The default number of messages that makes a batch get sent without
+     * waiting for the rest of the window.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 5000;
+
+    private static final String METHOD = "method";
+    private static final String UUID = "uuid";
+    private static final String PROPERTY_NAME = "propertyName";
+    private static final String TYPE = "type";
+    private static final String OLD_VALUE = "oldValue";
+    private static final String BEGIN = "begin";
+    private static final String COMMIT = "commit";
+    private static final String PERSIST_PROPERTY = "persistProperty";
+    private static final String CHANGE_PROPERTY = "changeProperty";
+
+    private final MessageSender<JSONObject> target;
+
+    private final Executor foregroundExecutor;
+
+    /**
+     * Held while batches are taken out of {@link #outbox} and forwarded, so
+     * they reach the target in order. This is never taken while holding
+     * this batcher's own lock.
+     */
+    private final Object sendLock = new Object();
+
+    /**
+     * A batch that is ready to be forwarded. Transactions that could not be
+     * merged have no begin or commit of their own, and no start time.
+     */
+    private static class Batch {
+        final JSONObject begin;
+        final List<JSONObject> messages;
+        final JSONObject commit;
+        final long since;
+
+        Batch(JSONObject begin, List<JSONObject> messages, JSONObject commit, long since) {
+            this.begin = begin;
+            this.messages = messages;
+            this.commit = commit;
+            this.since = since;
+        }
+    }
+
+    /**
+     * The batches waiting to be forwarded, in order.
+     */
+    private final LinkedList<Batch> outbox = new LinkedList<Batch>();
+
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The messages of the transaction the persister is in the middle of
+     * sending.
+     */
+    private final List<JSONObject> current = new ArrayList<JSONObject>();
+
+    /**
+     * The messages of the batch waiting to be sent, without the begin and
+     * commit that will go around them. Messages made redundant by a later
+     * change to the same property are set to null.
+     */
+    private final List<JSONObject> pending = new ArrayList<JSONObject>();
+
+    /**
+     * The begin and commit messages that go around the pending batch. These
+     * are the begin of the first transaction and the commit of the last.
+     */
+    private JSONObject pendingBegin;
+    private JSONObject pendingCommit;
+
+    /**
+     * Where the last property message for each object and property in the
+     * pending batch is, by object UUID and then by property name.
+     */
+    private final Map<String, Map<String, Integer>> propertyIndex = new HashMap<String, Map<String, Integer>>();
+
+    private int pendingCount;
+
+    private long pendingSince;
+
+    private ScheduledFuture<?> scheduledSend;
+
+    private long batchWindow = DEFAULT_BATCH_WINDOW;
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private long batchCount;
+    private long transactionCount;
+    private long droppedMessageCount;
+    private long lastBatchLatency;
+    private long totalBatchLatency;
+
+    /**
+     * @param target
+     *            The sender batches are forwarded to.
+     * @param foregroundExecutor
+     *            Runs the sends that happen when a batch window closes. The
+     *            target is only ever called on the thread of this executor
+     *            or on the thread that calls {@link #flush()}.
+     */
+    public OutboundPersistBatcher(MessageSender<JSONObject> target, Executor foregroundExecutor) {
+        this.target = target;
+        this.foregroundExecutor = foregroundExecutor;
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Outbound persist batcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public synchronized void send(JSONObject content) throws SPPersistenceException {
+        current.add(content);
+    }
+
+    /**
+     * Called by the persister at the end of each transaction. The
+     * transaction is added to the pending batch, which is sent now if it is
+     * full or the batch window is 0, and otherwise when the window closes.
+     */
+    public void flush() throws SPPersistenceException {
+        synchronized (this) {
+            if (current.isEmpty()) return;
+            boolean sendNow;
+            try {
+                if (!isWholeTransaction(current)) {
+                    // Not something we know how to fold into a batch, so keep
+                    // everything in order and send it as it was given to us.
+                    takePending();
+                    outbox.add(new Batch(null, new ArrayList<JSONObject>(current), null, -1));
+                    sendNow = true;
+                } else {
+                    if (pendingBegin == null) {
+                        pendingSince = System.currentTimeMillis();
+                        pendingBegin = current.get(0);
+                    }
+                    pendingCommit = current.get(current.size() - 1);
+                    for (JSONObject message : current.subList(1, current.size() - 1)) {
+                        addToBatch(message);
+                    }
+                    transactionCount++;
+                    sendNow = pendingCount >= maxBatchSize || batchWindow <= 0;
+                    if (sendNow) {
+                        takePending();
+                    }
+                }
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            } finally {
+                current.clear();
+            }
+
+            if (!sendNow) {
+                if (scheduledSend == null) {
+                    scheduledSend = timer.schedule(new Runnable() {
+                        public void run() {
+                            foregroundExecutor.execute(new Runnable() {
+                                public void run() {
+                                    try {
+                                        flushPending();
+                                    } catch (SPPersistenceException e) {
+                                        throw new RuntimeException(e);
+                                    }
+                                }
+                            });
+                        }
+                    }, batchWindow, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+        sendOutbox();
+    }
+
+    /**
+     * Discards the transaction the persister is in the middle of sending.
+     * Transactions that were already finished are still sent.
+     */
+    public synchronized void clear() {
+        current.clear();
+    }
+
+    /**
+     * Sends the pending batch now instead of waiting for its window to
+     * close. Call this before doing anything that needs the server to be up
+     * to date, such as closing the session or applying changes from the
+     * server.
+     */
+    public void flushPending() throws SPPersistenceException {
+        synchronized (this) {
+            takePending();
+        }
+        sendOutbox();
+    }
+
+    /**
+     * Sends any pending batch and stops the timer. Transactions sent to this
+     * batcher afterwards are forwarded right away.
+     */
+    public void close() throws SPPersistenceException {
+        synchronized (this) {
+            batchWindow = 0;
+            takePending();
+        }
+        try {
+            sendOutbox();
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns true if the messages start with a begin and end with the
+     * commit that matches it, so they can be unwrapped and merged with
+     * other transactions.
+     */
+    private static boolean isWholeTransaction(List<JSONObject> messages) throws JSONException {
+        if (messages.size() < 2) return false;
+        int depth = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            String method = messages.get(i).getString(METHOD);
+            if (method.equals(BEGIN)) {
+                depth++;
+            } else if (method.equals(COMMIT)) {
+                depth--;
+                if (depth < 0 || (depth == 0 && i != messages.size() - 1)) return false;
+            } else if (depth == 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    /**
+     * Adds one message to the pending batch. A property change replaces the
+     * last change to the same property in the batch, unless the object was
+     * added or removed in between or the two changes have different types.
+     */
+    private void addToBatch(JSONObject message) throws JSONException {
+        String method = message.getString(METHOD);
+        Object uuid = message.opt(UUID);
+        if ((method.equals(PERSIST_PROPERTY) || method.equals(CHANGE_PROPERTY))
+                && uuid instanceof String) {
+            String propertyName = message.getString(PROPERTY_NAME);
+            Map<String, Integer> properties = propertyIndex.get(uuid);
+            if (properties == null) {
+                properties = new HashMap<String, Integer>();
+                propertyIndex.put((String) uuid, properties);
+            }
+            Integer earlierIndex = properties.get(propertyName);
+            if (earlierIndex != null) {
+                JSONObject earlier = pending.get(earlierIndex);
+                if (earlier.optString(TYPE).equals(message.optString(TYPE))) {
+                    if (earlier.getString(METHOD).equals(PERSIST_PROPERTY)) {
+                        message.put(METHOD, PERSIST_PROPERTY);
+                        message.remove(OLD_VALUE);
+                    } else {
+                        message.put(OLD_VALUE, earlier.opt(OLD_VALUE));
+                    }
+                    pending.set(earlierIndex, null);
+                    pendingCount--;
+                    droppedMessageCount++;
+                }
+            }
+            properties.put(propertyName, pending.size());
+        } else if (uuid instanceof String) {
+            // Changes on either side of the object being added or removed
+            // are not the same change.
+            propertyIndex.remove(uuid);
+        }
+        pending.add(message);
+        pendingCount++;
+    }
+
+    /**
+     * Moves the pending batch, if there is one, to the end of the outbox.
+     * Must be called with this batcher's lock held.
+     */
+    private void takePending() {
+        if (scheduledSend != null) {
+            scheduledSend.cancel(false);
+            scheduledSend = null;
+        }
+        if (pendingBegin == null) return;
+
+        List<JSONObject> messages = new ArrayList<JSONObject>(pendingCount);
+        for (JSONObject message : pending) {
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        outbox.add(new Batch(pendingBegin, messages, pendingCommit, pendingSince));
+        pending.clear();
+        propertyIndex.clear();
+        pendingCount = 0;
+        pendingBegin = null;
+        pendingCommit = null;
+    }
+
+    /**
+     * Forwards the batches in the outbox until it is empty. Only the send
+     * lock is held while the target posts a batch. If a batch fails, the
+     * batches after it stay in the outbox for the next send.
+     */
+    private void sendOutbox() throws SPPersistenceException {
+        synchronized (sendLock) {
+            while (true) {
+                Batch batch;
+                synchronized (this) {
+                    batch = outbox.poll();
+                }
+                if (batch == null) return;
+
+                forward(batch.begin, batch.messages, batch.commit);
+
+                if (batch.since >= 0) {
+                    long latency = System.currentTimeMillis() - batch.since;
+                    synchronized (this) {
+                        lastBatchLatency = latency;
+                        totalBatchLatency += latency;
+                        batchCount++;
+                    }
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Sent batch of " + batch.messages.size() + " messages in " + latency + "ms");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of milliseconds a finished transaction waits for more
+     * transactions to be batched with it. If this is 0 every transaction is
+     * sent as soon as it is finished.
+     */
+    public synchronized long getBatchWindow() {
+        return batchWindow;
+    }
+
+    public synchronized void setBatchWindow(long batchWindow) {
+        this.batchWindow = batchWindow;
+    }
+
+    /**
+     * The number of messages that makes a batch get sent before its window
+     * closes.
+     */
+    public synchronized int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * The number of batches sent so far.
+     */
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * The number of transactions that have been put in batches so far.
+     */
+    public synchronized long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * The number of property changes that were not sent because a later
+     * change to the same property replaced them.
+     */
+    public synchronized long getDroppedMessageCount() {
+        return droppedMessageCount;
+    }
+
+    /**
+     * The number of milliseconds between the first transaction of the last
+     * batch being finished and the server accepting or rejecting the batch.
+     */
+    public synchronized long getLastBatchLatency() {
+        return lastBatchLatency;
+    }
+
+    /**
+     * The average of {@link #getLastBatchLatency()} over all batches sent so
+     * far, in milliseconds.
+     */
+    public synchronized double getAverageBatchLatency() {
+        if (batchCount == 0) return 0;
+        return (double) totalBatchLatency / batchCount;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.etl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A small file that records how far a {@link ParallelDataMover} got, so a
+ * move that was interrupted can carry on where it stopped instead of
+ * starting over.
+ * <p>
+ * The file is a list of tab separated lines that are only ever appended to,
+ * each one forced to disk before the mover goes on. A line records either
+ * that a table copied in one piece was started, how a table was split into
+ * key ranges, that one of those ranges was copied and committed, or that a
+ * whole table was copied. Tables are
+ * identified by the {@link ParallelDataMover.TableMove#getCheckpointKey()
+ * checkpoint key} of their move. A line that was only partly written when
+ * the move was interrupted is ignored.
+ */
+public class DataMoveCheckpoint {
+
+    private static final Logger logger = Logger.getLogger(DataMoveCheckpoint.class);
+
+    private static final String START = "start"; //$NON-NLS-1$
+    private static final String PLAN = "plan"; //$NON-NLS-1$
+    private static final String CHUNK = "chunk"; //$NON-NLS-1$
+    private static final String TABLE = "table"; //$NON-NLS-1$
+
+    /**
+     * How a table's key column was split into ranges. The ranges are
+     * {@link #width} keys wide starting at {@link #min}, except that the
+     * first range has no lower bound and the last has no upper bound.
+     */
+    public static class ChunkPlan {
+        private final long min;
+        private final long width;
+        private final int chunkCount;
+
+        public ChunkPlan(long min, long width, int chunkCount) {
+            this.min = min;
+            this.width = width;
+            this.chunkCount = chunkCount;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getWidth() {
+            return width;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+    }
+
+    private final File file;
+
+    private final Set<String> startedTables = new HashSet<String>();
+
+    private final Map<String, ChunkPlan> plans = new HashMap<String, ChunkPlan>();
+
+    private final Map<String, Set<Integer>> doneChunks = new HashMap<String, Set<Integer>>();
+
+    private final Set<String> doneTables = new HashSet<String>();
+
+    private FileOutputStream out;
+
+    /**
+     * The length of the file up to the end of its last whole line, or -1 if
+     * the file ends with a whole line. A line that was cut short has to be
+     * cut off before anything else is appended, or it would be read back
+     * as if it was whole.
+     */
+    private long tornLineStart = -1;
+
+    /**
+     * Reads what an earlier move recorded in the given file, if it exists.
+     * New records are appended to the same file.
+     */
+    public DataMoveCheckpoint(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        byte[] contents = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int count = 0;
+            while (count < contents.length) {
+                int n = in.read(contents, count, contents.length - count);
+                if (n < 0) break;
+                count += n;
+            }
+        } finally {
+            in.close();
+        }
+        // A line without its line break was cut short
+        int end = contents.length;
+        while (end > 0 && contents[end - 1] != '\n') {
+            end--;
+        }
+        if (end < contents.length) {
+            tornLineStart = end;
+        }
+        
+        BufferedReader reader = new BufferedReader(new StringReader(new String(contents, 0, end, "UTF-8"))); //$NON-NLS-1$
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1); //$NON-NLS-1$
+            try {
+                if (fields[0].equals(START) && fields.length == 2) {
+                    startedTables.add(fields[1]);
+                } else if (fields[0].equals(PLAN) && fields.length == 5) {
+                    plans.put(fields[1], new ChunkPlan(
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), Integer.parseInt(fields[4])));
+                } else if (fields[0].equals(CHUNK) && fields.length == 3) {
+                    chunksFor(fields[1]).add(Integer.valueOf(fields[2]));
+                } else if (fields[0].equals(TABLE) && fields.length == 2) {
+                    doneTables.add(fields[1]);
+                } else {
+                    logger.warn("Ignoring checkpoint line " + line); //$NON-NLS-1$
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring checkpoint line " + line); //$NON-NLS-1$
+            }
+        }
+    }
+
+    private Set<Integer> chunksFor(String tableKey) {
+        Set<Integer> chunks = doneChunks.get(tableKey);
+        if (chunks == null) {
+            chunks = new HashSet<Integer>();
+            doneChunks.put(tableKey, chunks);
+        }
+        return chunks;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if anything at all has been recorded about the given
+     * table, in which case some of its rows may already have been copied.
+     */
+    public synchronized boolean hasStarted(String tableKey) {
+        return startedTables.contains(tableKey) || plans.containsKey(tableKey)
+            || doneChunks.containsKey(tableKey) || doneTables.contains(tableKey);
+    }
+
+    /**
+     * Records that a table that is not split into ranges is about to be
+     * copied. Call this before any of its rows are inserted, so a move that
+     * resumes knows the destination table may hold some of them.
+     */
+    public synchronized void recordTableStarted(String tableKey) throws IOException {
+        append(START + "\t" + tableKey); //$NON-NLS-1$
+        startedTables.add(tableKey);
+    }
+
+    /**
+     * Returns how the table was split into ranges by the earlier move, or
+     * null if it was not.
+     */
+    public synchronized ChunkPlan getPlan(String tableKey) {
+        return plans.get(tableKey);
+    }
+
+    public synchronized void recordPlan(String tableKey, ChunkPlan plan) throws IOException {
+        append(PLAN + "\t" + tableKey + "\t" + plan.getMin() + "\t" + plan.getWidth() + "\t" + plan.getChunkCount()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        plans.put(tableKey, plan);
+    }
+
+    public synchronized boolean isChunkDone(String tableKey, int chunk) {
+        Set<Integer> chunks = doneChunks.get(tableKey);
+        return chunks != null && chunks.contains(chunk);
+    }
+
+    /**
+     * Records that the given range of the table was copied. Call this only
+     * once the rows in the range have been committed.
+     */
+    public synchronized void recordChunkDone(String tableKey, int chunk) throws IOException {
+        append(CHUNK + "\t" + tableKey + "\t" + chunk); //$NON-NLS-1$ //$NON-NLS-2$
+        chunksFor(tableKey).add(chunk);
+    }
+
+    public synchronized boolean isTableDone(String tableKey) {
+        return doneTables.contains(tableKey);
+    }
+
+    public synchronized void recordTableDone(String tableKey) throws IOException {
+        append(TABLE + "\t" + tableKey); //$NON-NLS-1$
+        doneTables.add(tableKey);
+    }
+
+    private void append(String line) throws IOException {
+        if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Checkpoint keys can't contain line breaks: " + line); //$NON-NLS-1$
+        }
+        if (out == null) {
+            out = new FileOutputStream(file, true);
+            if (tornLineStart >= 0) {
+                out.getChannel().truncate(tornLineStart);
+                tornLineStart = -1;
+            }
+        }
+        out.write((line + "\n").getBytes("UTF-8")); //$NON-NLS-1$ //$NON-NLS-2$
+        out.getFD().sync();
+    }
+
+    /**
+     * Closes the file, leaving it in place for the next move to resume from.
+     */
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the file. Call this once a move has finished
+     * without anything left to resume.
+     */
+    public synchronized void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file); //$NON-NLS-1$
+        }
+        startedTables.clear();
+        plans.clear();
+        doneChunks.clear();
+        doneTables.clear();
+    }
+}
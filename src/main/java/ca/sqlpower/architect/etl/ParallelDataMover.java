@@ -0,0 +1,1045 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.etl;
+
+import java.io.IOException;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.architect.etl.DataMoveCheckpoint.ChunkPlan;
+import ca.sqlpower.util.Monitorable;
+import ca.sqlpower.util.MonitorableImpl;
+
+/**
+ * Copies the rows of a set of tables from one database to another, several
+ * tables at a time.
+ * <p>
+ * A table is only started once every table it depends on (normally the
+ * tables its foreign keys point to) has been copied, and is skipped if one
+ * of them could not be copied. Tables that do not depend on each other are
+ * copied at the same time, up to {@link #getThreadCount()} at once.
+ * <p>
+ * Each table is copied by two threads. One reads the source table with a
+ * fetch size of {@link #getFetchSize()} and hands the rows over in chunks of
+ * {@link #getBatchSize()} through a queue that holds at most
+ * {@link #getQueueSize()} chunks. The other inserts each chunk into the
+ * destination table as one JDBC batch and commits every
+ * {@link #getCommitInterval()} rows. The number of rows copied and the
+ * copying speed of each table are kept in its {@link TableMove}.
+ * <p>
+ * If {@link #getChunkSize()} is set, tables with a whole number
+ * {@link TableMove#getKeyColumn() key column} are split into ranges of that
+ * column holding about that many rows each. Each range is copied and
+ * committed on its own, up to {@link #getChunkThreadCount()} ranges of a
+ * table at a time. With a {@link DataMoveCheckpoint} each range is recorded
+ * once it is committed, and a move that is started again with the same
+ * checkpoint skips the tables and ranges that were already copied. Ranges
+ * that may have been partly copied are deleted from the destination table
+ * before they are copied again.
+ * <p>
+ * Tables that can't be split into ranges, because they have no whole number
+ * key column or chunking is off, are still committed every
+ * {@link #getCommitInterval()} rows when a checkpoint is kept. Resuming such
+ * a table that was started deletes all of the rows in its destination table
+ * and copies it again from the start.
+ */
+public class ParallelDataMover implements Monitorable {
+
+    private static final Logger logger = Logger.getLogger(ParallelDataMover.class);
+
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+    public static final int DEFAULT_QUEUE_SIZE = 8;
+
+    /**
+     * Makes the connections a table is copied with. Each table gets its
+     * own source and destination connection, which are closed when the
+     * table is done.
+     */
+    public static interface ConnectionFactory {
+        public Connection createConnection() throws SQLException;
+    }
+
+    public static enum TableState {
+        /**
+         * The table has not been started yet.
+         */
+        WAITING,
+        RUNNING,
+        FINISHED,
+        /**
+         * Copying the table failed. See {@link TableMove#getFailure()}.
+         */
+        FAILED,
+        /**
+         * The table was not copied because the move was cancelled or a
+         * table it depends on was not copied.
+         */
+        SKIPPED
+    }
+
+    /**
+     * One table to be copied, and how copying it went.
+     */
+    public static class TableMove {
+
+        private final ConnectionFactory sourceConnections;
+        private final String sourceQualifiedName;
+        private final ConnectionFactory destConnections;
+        private final String destQualifiedName;
+
+        /**
+         * The tables that must be copied before this one.
+         */
+        private final Set<TableMove> dependencies = new LinkedHashSet<TableMove>();
+
+        private final AtomicLong rowCount = new AtomicLong();
+        private volatile TableState state = TableState.WAITING;
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile Exception failure;
+        private volatile String skipReason;
+        private volatile String keyColumn;
+        private volatile String checkpointKey;
+        private volatile int rangeCount;
+        private final AtomicInteger completedRangeCount = new AtomicInteger();
+        private volatile boolean resumed;
+
+        private TableMove(ConnectionFactory sourceConnections, String sourceQualifiedName,
+                ConnectionFactory destConnections, String destQualifiedName) {
+            this.sourceConnections = sourceConnections;
+            this.sourceQualifiedName = sourceQualifiedName;
+            this.destConnections = destConnections;
+            this.destQualifiedName = destQualifiedName;
+        }
+
+        /**
+         * Makes this table wait for the given table to be copied first.
+         */
+        public void addDependency(TableMove table) {
+            if (table != this) {
+                dependencies.add(table);
+            }
+        }
+
+        public Set<TableMove> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        /**
+         * The column the source table is split into ranges on when the mover
+         * copies in chunks, normally the first column of its primary key. The
+         * destination table must have a column of the same name. If this is
+         * null, or the column does not hold whole numbers, the table is
+         * copied in one piece.
+         */
+        public String getKeyColumn() {
+            return keyColumn;
+        }
+
+        public void setKeyColumn(String keyColumn) {
+            this.keyColumn = keyColumn;
+        }
+
+        /**
+         * The name this table is recorded under in a
+         * {@link DataMoveCheckpoint}. This defaults to the source and
+         * destination names, and should be set to something that also names
+         * the databases when tables from more than one database are moved.
+         */
+        public String getCheckpointKey() {
+            return checkpointKey == null ? toString() : checkpointKey;
+        }
+
+        public void setCheckpointKey(String checkpointKey) {
+            this.checkpointKey = checkpointKey;
+        }
+
+        /**
+         * The number of ranges the table was split into, which is 1 if it
+         * was copied in one piece.
+         */
+        public int getRangeCount() {
+            return rangeCount;
+        }
+
+        /**
+         * The number of ranges that have been copied, including the ones an
+         * earlier move copied.
+         */
+        public int getCompletedRangeCount() {
+            return completedRangeCount.get();
+        }
+
+        /**
+         * True if an earlier, interrupted move had already copied some or
+         * all of this table. The row count and speed only cover the rows
+         * copied by this move.
+         */
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        public String getSourceQualifiedName() {
+            return sourceQualifiedName;
+        }
+
+        public String getDestQualifiedName() {
+            return destQualifiedName;
+        }
+
+        public TableState getState() {
+            return state;
+        }
+
+        /**
+         * The number of rows inserted into the destination table so far.
+         * Rows are counted when their batch is executed, whether or not
+         * they have been committed yet.
+         */
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        /**
+         * The number of milliseconds spent copying this table so far, or in
+         * total once it is done.
+         */
+        public long getElapsedTime() {
+            if (startTime == 0) return 0;
+            long end = endTime == 0 ? System.currentTimeMillis() : endTime;
+            return end - startTime;
+        }
+
+        /**
+         * The average number of rows copied per second so far.
+         */
+        public double getRowsPerSecond() {
+            long elapsed = getElapsedTime();
+            if (elapsed == 0) return 0;
+            return getRowCount() * 1000.0 / elapsed;
+        }
+
+        /**
+         * The exception that stopped this table from being copied, or null
+         * if it did not fail.
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /**
+         * Why this table was skipped, or null if it was not.
+         */
+        public String getSkipReason() {
+            return skipReason;
+        }
+
+        private void skip(String reason) {
+            skipReason = reason;
+            state = TableState.SKIPPED;
+        }
+
+        @Override
+        public String toString() {
+            return sourceQualifiedName + " -> " + destQualifiedName;
+        }
+    }
+
+    /**
+     * Put on a table's row queue after its last chunk.
+     */
+    private static final List<Object[]> END_OF_ROWS = new ArrayList<Object[]>(0);
+
+    private final List<TableMove> tables = new ArrayList<TableMove>();
+
+    private final MonitorableImpl monitor = new MonitorableImpl();
+
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private boolean truncatingDestinationTable;
+    private int chunkSize;
+    private int chunkThreadCount = 1;
+    private DataMoveCheckpoint checkpoint;
+
+    /**
+     * Adds a table to be copied. All of the tables should be added before
+     * {@link #run()} is called.
+     */
+    public TableMove addTable(ConnectionFactory sourceConnections, String sourceQualifiedName,
+            ConnectionFactory destConnections, String destQualifiedName) {
+        TableMove table = new TableMove(sourceConnections, sourceQualifiedName, destConnections, destQualifiedName);
+        tables.add(table);
+        return table;
+    }
+
+    public List<TableMove> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * The total number of rows copied so far, over all tables.
+     */
+    public long getTotalRowCount() {
+        long total = 0;
+        for (TableMove table : tables) {
+            total += table.getRowCount();
+        }
+        return total;
+    }
+
+    /**
+     * Copies all of the tables and returns when they are done. Tables that
+     * fail do not stop the others, except for the tables that depend on
+     * them; check the state of each table to find out how it went.
+     */
+    public void run() throws InterruptedException {
+        monitor.setJobSize(tables.size());
+        monitor.setProgress(0);
+        monitor.setFinished(false);
+        monitor.setStarted(true);
+
+        ExecutorService tableExecutor = Executors.newFixedThreadPool(
+                Math.max(1, threadCount), new NamedThreadFactory("Data mover writer")); //$NON-NLS-1$
+        final ExecutorService readerExecutor = Executors.newCachedThreadPool(
+                new NamedThreadFactory("Data mover reader")); //$NON-NLS-1$
+        final ExecutorService rangeExecutor = chunkThreadCount > 1 ? Executors.newFixedThreadPool(
+                chunkThreadCount, new NamedThreadFactory("Data mover range writer")) : null; //$NON-NLS-1$
+        CompletionService<TableMove> completion = new ExecutorCompletionService<TableMove>(tableExecutor);
+        List<TableMove> waiting = new ArrayList<TableMove>(tables);
+        int running = 0;
+        int done = 0;
+        try {
+            while (!waiting.isEmpty() || running > 0) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    for (Iterator<TableMove> it = waiting.iterator(); it.hasNext(); ) {
+                        final TableMove table = it.next();
+                        String skipReason = null;
+                        boolean ready = true;
+                        if (monitor.isCancelled()) {
+                            skipReason = "The move was cancelled"; //$NON-NLS-1$
+                        } else {
+                            for (TableMove dependency : table.dependencies) {
+                                TableState state = dependency.getState();
+                                if (state == TableState.FAILED || state == TableState.SKIPPED) {
+                                    skipReason = dependency.getSourceQualifiedName() + " was not copied"; //$NON-NLS-1$
+                                } else if (state != TableState.FINISHED) {
+                                    ready = false;
+                                }
+                            }
+                        }
+                        if (skipReason != null) {
+                            table.skip(skipReason);
+                            done++;
+                            it.remove();
+                            changed = true;
+                        } else if (ready) {
+                            table.state = TableState.RUNNING;
+                            completion.submit(new Callable<TableMove>() {
+                                public TableMove call() throws Exception {
+                                    copyTable(table, readerExecutor, rangeExecutor);
+                                    return table;
+                                }
+                            });
+                            running++;
+                            it.remove();
+                        }
+                    }
+                }
+                monitor.setProgress(done);
+                if (running == 0) {
+                    // Whatever is left is waiting on itself through a cycle
+                    for (TableMove table : waiting) {
+                        table.skip("It depends on itself through other tables"); //$NON-NLS-1$
+                        done++;
+                    }
+                    waiting.clear();
+                } else {
+                    Future<TableMove> finished = completion.take();
+                    try {
+                        finished.get();
+                    } catch (ExecutionException e) {
+                        // copyTable records its own failures
+                        logger.error("Unexpected exception copying a table", e); //$NON-NLS-1$
+                    }
+                    running--;
+                    done++;
+                    monitor.setProgress(done);
+                }
+            }
+        } finally {
+            tableExecutor.shutdownNow();
+            readerExecutor.shutdownNow();
+            if (rangeExecutor != null) {
+                rangeExecutor.shutdownNow();
+            }
+            monitor.setFinished(true);
+        }
+    }
+
+    /**
+     * Copies one table, recording the outcome in the table.
+     */
+    private void copyTable(TableMove table, ExecutorService readerExecutor, ExecutorService rangeExecutor) {
+        table.startTime = System.currentTimeMillis();
+        try {
+            String key = table.getCheckpointKey();
+            if (checkpoint != null && checkpoint.isTableDone(key)) {
+                table.resumed = true;
+                table.state = TableState.FINISHED;
+                return;
+            }
+            boolean resuming = checkpoint != null && checkpoint.hasStarted(key);
+            table.resumed = resuming;
+            if (truncatingDestinationTable && !resuming) {
+                truncate(table);
+            }
+            List<KeyRange> ranges = planRanges(table);
+            table.rangeCount = ranges.size();
+            if (checkpoint != null && ranges.size() == 1 && !resuming) {
+                checkpoint.recordTableStarted(key);
+            }
+            copyRanges(table, ranges, resuming, readerExecutor, rangeExecutor);
+            if (monitor.isCancelled()) {
+                table.skip("The move was cancelled"); //$NON-NLS-1$
+            } else {
+                if (checkpoint != null) {
+                    checkpoint.recordTableDone(key);
+                }
+                table.state = TableState.FINISHED;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to copy " + table, e); //$NON-NLS-1$
+            table.failure = e;
+            table.state = TableState.FAILED;
+        } finally {
+            table.endTime = System.currentTimeMillis();
+            logger.info(table + ": " + table.getRowCount() + " rows in " + table.getElapsedTime() + "ms (" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    Math.round(table.getRowsPerSecond()) + " rows/s), " + table.getState()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Deletes all of the rows in the table's destination table.
+     */
+    private void truncate(TableMove table) throws SQLException {
+        Connection destCon = table.destConnections.createConnection();
+        try {
+            destCon.setAutoCommit(false);
+            Statement stmt = destCon.createStatement();
+            try {
+                stmt.executeUpdate("DELETE FROM " + table.getDestQualifiedName()); //$NON-NLS-1$
+            } finally {
+                stmt.close();
+            }
+            destCon.commit();
+        } finally {
+            destCon.setAutoCommit(true);
+            destCon.close();
+        }
+    }
+
+    /**
+     * Returns the ranges to copy the table in, using the plan in the
+     * checkpoint if an earlier move made one. New plans are recorded in the
+     * checkpoint before any of their ranges are copied.
+     */
+    private List<KeyRange> planRanges(TableMove table) throws SQLException, IOException {
+        String key = table.getCheckpointKey();
+        ChunkPlan plan = checkpoint == null ? null : checkpoint.getPlan(key);
+        if (plan == null && chunkSize > 0 && table.getKeyColumn() != null) {
+            plan = makePlan(table);
+            if (plan != null && checkpoint != null) {
+                checkpoint.recordPlan(key, plan);
+            }
+        }
+        List<KeyRange> ranges = new ArrayList<KeyRange>();
+        if (plan == null) {
+            ranges.add(new KeyRange(0, null, null));
+        } else {
+            int last = plan.getChunkCount() - 1;
+            for (int i = 0; i <= last; i++) {
+                ranges.add(new KeyRange(i,
+                        i == 0 ? null : Long.valueOf(plan.getMin() + i * plan.getWidth()),
+                        i == last ? null : Long.valueOf(plan.getMin() + (i + 1) * plan.getWidth() - 1)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Splits the source table into ranges of its key column of about
+     * {@link #chunkSize} rows each, assuming the keys are spread evenly.
+     * Returns null if the table is small enough to copy in one piece or its
+     * key column does not hold whole numbers.
+     */
+    private ChunkPlan makePlan(TableMove table) throws SQLException {
+        String keyColumn = table.getKeyColumn();
+        Connection con = table.sourceConnections.createConnection();
+        try {
+            Statement stmt = con.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + "), COUNT(*) FROM " + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        table.getSourceQualifiedName());
+                if (!rs.next()) return null;
+                ResultSetMetaData rsmd = rs.getMetaData();
+                int type = rsmd.getColumnType(1);
+                boolean wholeNumber = type == Types.TINYINT || type == Types.SMALLINT
+                    || type == Types.INTEGER || type == Types.BIGINT
+                    || ((type == Types.NUMERIC || type == Types.DECIMAL) 
+                            && rsmd.getScale(1) == 0 && rsmd.getPrecision(1) <= 18);
+                if (!wholeNumber) {
+                    logger.info("Copying " + table + " in one piece because " + keyColumn + //$NON-NLS-1$ //$NON-NLS-2$
+                            " is not a whole number column"); //$NON-NLS-1$
+                    return null;
+                }
+                long min = rs.getLong(1);
+                long max = rs.getLong(2);
+                long count = rs.getLong(3);
+                if (count <= chunkSize) return null;
+                long chunks = (count + chunkSize - 1) / chunkSize;
+                double span = (double) max - (double) min + 1;
+                long width = Math.max(1, (long) Math.ceil(span / chunks));
+                int chunkCount = (int) Math.ceil(span / width);
+                if (chunkCount <= 1) return null;
+                return new ChunkPlan(min, width, chunkCount);
+            } finally {
+                stmt.close();
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Copies the ranges of a table that have not been copied yet, several at
+     * a time if there is a range executor. Once one range fails, the ranges
+     * that have not started yet are not copied.
+     */
+    private void copyRanges(final TableMove table, List<KeyRange> ranges, final boolean resuming,
+            final ExecutorService readerExecutor, ExecutorService rangeExecutor) throws Exception {
+        final String key = table.getCheckpointKey();
+        final AtomicBoolean failed = new AtomicBoolean();
+        // A range of a split table has to be copied in one transaction, or an
+        // interrupted copy would leave rows the checkpoint doesn't know about.
+        // A table copied in one piece is emptied instead when it is resumed.
+        final long commitEvery = ranges.size() > 1 ? Long.MAX_VALUE : commitInterval;
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final KeyRange range : ranges) {
+            if (checkpoint != null && checkpoint.isChunkDone(key, range.index)) {
+                table.completedRangeCount.incrementAndGet();
+                continue;
+            }
+            Callable<Void> copy = new Callable<Void>() {
+                public Void call() throws Exception {
+                    if (failed.get() || monitor.isCancelled()) return null;
+                    try {
+                        copyRows(table, range, resuming, commitEvery, readerExecutor);
+                    } catch (Exception e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    if (!monitor.isCancelled()) {
+                        if (checkpoint != null) {
+                            checkpoint.recordChunkDone(key, range.index);
+                        }
+                        table.completedRangeCount.incrementAndGet();
+                    }
+                    return null;
+                }
+            };
+            if (rangeExecutor == null) {
+                copy.call();
+            } else {
+                futures.add(rangeExecutor.submit(copy));
+            }
+        }
+        Exception failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Copies the rows of one range of a table.
+     * 
+     * @param clearRange
+     *            If true, any rows already in the range in the destination
+     *            table are deleted first, in the same transaction. For a
+     *            table copied in one piece this deletes every row.
+     * @param commitEvery
+     *            The number of rows to insert between commits.
+     */
+    private void copyRows(final TableMove table, KeyRange range, boolean clearRange, long commitEvery,
+            ExecutorService readerExecutor) throws Exception {
+        Connection sourceCon = null;
+        Connection destCon = null;
+        Statement sourceStmt = null;
+        PreparedStatement insert = null;
+        Future<?> reader = null;
+        final RowPipe pipe = new RowPipe(queueSize);
+        try {
+            sourceCon = table.sourceConnections.createConnection();
+            destCon = table.destConnections.createConnection();
+            destCon.setAutoCommit(false);
+
+            String where = range.where(table.getKeyColumn());
+            if (clearRange) {
+                Statement stmt = destCon.createStatement();
+                try {
+                    stmt.executeUpdate("DELETE FROM " + table.getDestQualifiedName() + where); //$NON-NLS-1$
+                } finally {
+                    stmt.close();
+                }
+            }
+
+            // Some drivers (PostgreSQL for one) only honour the fetch size
+            // inside a transaction.
+            sourceCon.setAutoCommit(false);
+            sourceStmt = sourceCon.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            sourceStmt.setFetchSize(fetchSize);
+            final ResultSet rs = sourceStmt.executeQuery("SELECT * FROM " + table.getSourceQualifiedName() + where); //$NON-NLS-1$
+            ResultSetMetaData rsmd = rs.getMetaData();
+            final int columnCount = rsmd.getColumnCount();
+            int[] types = new int[columnCount];
+            StringBuilder sql = new StringBuilder("INSERT INTO "); //$NON-NLS-1$
+            sql.append(table.getDestQualifiedName()).append(" ("); //$NON-NLS-1$
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) sql.append(", "); //$NON-NLS-1$
+                sql.append(rsmd.getColumnName(i + 1));
+                types[i] = rsmd.getColumnType(i + 1);
+            }
+            sql.append(") VALUES ("); //$NON-NLS-1$
+            for (int i = 0; i < columnCount; i++) {
+                sql.append(i > 0 ? ", ?" : "?"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            sql.append(")"); //$NON-NLS-1$
+            insert = destCon.prepareStatement(sql.toString());
+
+            reader = readerExecutor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    try {
+                        readRows(rs, columnCount, pipe);
+                    } catch (Exception e) {
+                        pipe.readFailed = true;
+                        throw e;
+                    } finally {
+                        pipe.put(END_OF_ROWS);
+                    }
+                    return null;
+                }
+            });
+
+            writeRows(table, destCon, insert, types, pipe, commitEvery);
+            reader.get();
+        } catch (ExecutionException e) {
+            // The reader failed, which is the more interesting exception
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } catch (Exception e) {
+            pipe.stopped = true;
+            if (reader != null) {
+                try {
+                    reader.get();
+                } catch (ExecutionException ex) {
+                    logger.debug("Reader failed after the writer", ex); //$NON-NLS-1$
+                }
+            }
+            if (destCon != null) {
+                try {
+                    destCon.rollback();
+                } catch (SQLException ex) {
+                    logger.error("Rollback failed", ex); //$NON-NLS-1$
+                }
+            }
+            throw e;
+        } finally {
+            pipe.stopped = true;
+            if (insert != null) {
+                try {
+                    insert.close();
+                } catch (SQLException ex) {
+                    logger.error("Couldn't close insert statement", ex); //$NON-NLS-1$
+                }
+            }
+            if (sourceStmt != null) {
+                try {
+                    sourceStmt.close();
+                } catch (SQLException ex) {
+                    logger.error("Couldn't close source statement", ex); //$NON-NLS-1$
+                }
+            }
+            if (sourceCon != null) {
+                try {
+                    sourceCon.rollback();
+                    sourceCon.setAutoCommit(true);
+                    sourceCon.close();
+                } catch (SQLException ex) {
+                    logger.error("Couldn't close source connection", ex); //$NON-NLS-1$
+                }
+            }
+            if (destCon != null) {
+                try {
+                    destCon.setAutoCommit(true);
+                    destCon.close();
+                } catch (SQLException ex) {
+                    logger.error("Couldn't close destination connection", ex); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs on the reader thread, reading the source rows into chunks and
+     * handing them to the writer.
+     */
+    private void readRows(ResultSet rs, int columnCount, RowPipe pipe) throws SQLException, InterruptedException {
+        List<Object[]> chunk = new ArrayList<Object[]>(batchSize);
+        while (rs.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                Object value = rs.getObject(i + 1);
+                // LOBs may not outlive the current row, so read them now
+                if (value instanceof Blob) {
+                    Blob blob = (Blob) value;
+                    value = blob.getBytes(1, (int) blob.length());
+                } else if (value instanceof Clob) {
+                    Clob clob = (Clob) value;
+                    value = clob.getSubString(1, (int) clob.length());
+                }
+                row[i] = value;
+            }
+            chunk.add(row);
+            if (chunk.size() >= batchSize) {
+                if (!pipe.put(chunk)) return;
+                chunk = new ArrayList<Object[]>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            pipe.put(chunk);
+        }
+    }
+
+    /**
+     * Runs on the table's own thread, inserting the chunks the reader hands
+     * over until it runs out of rows or the move is cancelled.
+     */
+    private void writeRows(TableMove table, Connection destCon, PreparedStatement insert,
+            int[] types, RowPipe pipe, long commitEvery) throws SQLException, InterruptedException {
+        long uncommitted = 0;
+        for (;;) {
+            if (monitor.isCancelled()) {
+                pipe.stopped = true;
+                destCon.rollback();
+                return;
+            }
+            List<Object[]> chunk = pipe.queue.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk == null) continue;
+            if (chunk == END_OF_ROWS) {
+                if (pipe.readFailed) {
+                    // Don't commit a partial table; the reader's exception
+                    // is thrown once it is collected.
+                    destCon.rollback();
+                    return;
+                }
+                break;
+            }
+            for (Object[] row : chunk) {
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] == null) {
+                        insert.setNull(i + 1, types[i]);
+                    } else {
+                        insert.setObject(i + 1, row[i]);
+                    }
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            insert.clearBatch();
+            table.rowCount.addAndGet(chunk.size());
+            uncommitted += chunk.size();
+            if (uncommitted >= commitEvery) {
+                destCon.commit();
+                uncommitted = 0;
+            }
+            monitor.setMessage(table.getSourceQualifiedName() + ": " + table.getRowCount() + " rows"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        destCon.commit();
+    }
+
+    /**
+     * A range of a table's key column, with either end left open.
+     */
+    private static class KeyRange {
+        final int index;
+        final Long lower;
+        final Long upper;
+
+        KeyRange(int index, Long lower, Long upper) {
+            this.index = index;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        /**
+         * Returns the where clause that selects this range, or an empty
+         * string for the whole table.
+         */
+        String where(String keyColumn) {
+            if (lower != null && upper != null) {
+                return " WHERE " + keyColumn + " >= " + lower + " AND " + keyColumn + " <= " + upper; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            } else if (lower != null) {
+                return " WHERE " + keyColumn + " >= " + lower; //$NON-NLS-1$ //$NON-NLS-2$
+            } else if (upper != null) {
+                return " WHERE " + keyColumn + " <= " + upper; //$NON-NLS-1$ //$NON-NLS-2$
+            } else {
+                return ""; //$NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * The queue a table's reader hands rows to its writer through.
+     */
+    private static class RowPipe {
+        final BlockingQueue<List<Object[]>> queue;
+
+        /**
+         * Set when the writer has stopped, so the reader should too.
+         */
+        volatile boolean stopped;
+
+        /**
+         * Set by the reader before it ends the rows early because of an
+         * exception.
+         */
+        volatile boolean readFailed;
+
+        RowPipe(int size) {
+            queue = new ArrayBlockingQueue<List<Object[]>>(Math.max(1, size));
+        }
+
+        /**
+         * Waits for room in the queue and adds the chunk to it. Returns
+         * false without adding it if the writer has stopped.
+         */
+        boolean put(List<Object[]> chunk) throws InterruptedException {
+            while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped) return false;
+            }
+            return true;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private int count;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name + " " + (++count)); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * The number of tables copied at the same time.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * The fetch size given to the driver when reading source tables.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * The number of rows inserted with each JDBC batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * The number of rows inserted between commits. The commit happens after
+     * the batch that reaches this number, so it is rounded up to a whole
+     * number of batches.
+     */
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * The number of chunks of {@link #getBatchSize()} rows that can be read
+     * ahead of the writer for each table.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * If true, each destination table has all of its rows deleted before
+     * the source rows are copied into it.
+     */
+    public boolean isTruncatingDestinationTable() {
+        return truncatingDestinationTable;
+    }
+
+    public void setTruncatingDestinationTable(boolean truncatingDestinationTable) {
+        this.truncatingDestinationTable = truncatingDestinationTable;
+    }
+
+    /**
+     * The number of rows to copy in each range of a table, or 0 to copy
+     * each table in one piece. See {@link TableMove#getKeyColumn()}.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The number of ranges of one table copied at the same time.
+     */
+    public int getChunkThreadCount() {
+        return chunkThreadCount;
+    }
+
+    public void setChunkThreadCount(int chunkThreadCount) {
+        this.chunkThreadCount = chunkThreadCount;
+    }
+
+    /**
+     * The checkpoint that copied tables and ranges are recorded in, and
+     * that tables and ranges copied by an earlier move are skipped from.
+     * If this is null nothing is recorded.
+     */
+    public DataMoveCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(DataMoveCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    // ------------------ Monitorable Interface --------------------
+
+    public Integer getJobSize() {
+        return monitor.getJobSize();
+    }
+
+    public String getMessage() {
+        return monitor.getMessage();
+    }
+
+    public int getProgress() {
+        return monitor.getProgress();
+    }
+
+    public boolean hasStarted() {
+        return monitor.hasStarted();
+    }
+
+    public boolean isFinished() {
+        return monitor.isFinished();
+    }
+
+    public void setCancelled(boolean cancelled) {
+        monitor.setCancelled(cancelled);
+    }
+
+    public boolean isCancelled() {
+        return monitor.isCancelled();
+    }
+}
@@ -18,19 +18,31 @@
  */
 package ca.sqlpower.architect.etl.kettle;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.log4j.Logger;
 import org.pentaho.di.core.NotePadMeta;
@@ -93,6 +105,12 @@ public class KettleJob implements Monitorable {
      */
     private static int spacing = 150;
     
+    /**
+     * The size of the buffer job and transformation files are encoded into
+     * on their way to disk.
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
     /**
      * A list of tasks that an administrator or tech will have to do to the Kettle
      * job to make it run correctly.
@@ -131,6 +149,15 @@ public class KettleJob implements Monitorable {
      * job number used create inner job
      */
     private int job_no = 0;
+    
+    /**
+     * The number of transformations to build, and convert to XML, at the
+     * same time. Each transformation only depends on the mapping of its own
+     * table, so for big play pens this uses more than one core. If this is
+     * 1 everything is done on the thread that starts the export.
+     */
+    private int threadCount = 1;
+    
     public KettleJob(ArchitectSession session, KettleRepositoryDirectoryChooser chooser) {
         this(session);
         dirChooser = chooser;
@@ -149,7 +176,7 @@ public class KettleJob implements Monitorable {
         } else {
             settings = new KettleSettings();
         }
-        tasksToDo = new ArrayList<String>();
+        tasksToDo = Collections.synchronizedList(new ArrayList<String>());
         monitor = new MonitorableImpl();
         dirChooser = new RootRepositoryDirectoryChooser();
     }
@@ -166,11 +193,13 @@ public class KettleJob implements Monitorable {
      *          List of tables in a Playpen. which can be used to find the mapping table
      * @throws KettleException 
      */
-    public void doExport(List<SQLTable> tableList, SQLDatabase targetDB, List<SQLTable> playPenTableList) throws SQLObjectException, RuntimeException, IOException, KettleException, SQLException {
+    public void doExport(List<SQLTable> tableList, final SQLDatabase targetDB, List<SQLTable> playPenTableList) throws SQLObjectException, RuntimeException, IOException, KettleException, SQLException {
 
         monitor = new MonitorableImpl();
         monitor.setMessage("");
-        monitor.setJobSize(new Integer(tableList.size()+1)); 
+        // One step for building each transformation and one for writing it,
+        // plus one for writing the job
+        monitor.setJobSize(new Integer(2 * tableList.size() + 1));
         monitor.setStarted(true);
 
         try {
@@ -179,200 +208,47 @@ public class KettleJob implements Monitorable {
             LogWriter lw = LogWriter.getInstance();
             JobMeta jm = new JobMeta(lw);
 
-            Map<SQLTable, StringBuffer> tableMapping;
             List<TransMeta> transformations = new ArrayList<TransMeta>();
-            List<String> noTransTables = new ArrayList<String>();
-            tasksToDo = new ArrayList<String>();
+            final List<String> noTransTables = Collections.synchronizedList(new ArrayList<String>());
+            tasksToDo = Collections.synchronizedList(new ArrayList<String>());
 
 
             // The depth-first search will do a topological sort of
             // the target table graph, so parent tables will come before
             // their children.
             tableList = new DepthFirstSearch(tableList).getFinishOrder();
-            playPenTableList = new DepthFirstSearch(playPenTableList).getFinishOrder();
-            Map<String, DatabaseMeta> databaseNames = new LinkedHashMap<String, DatabaseMeta>();
-
-            for (SQLTable table: tableList) {
-
-                TransMeta transMeta = new TransMeta();
-                transMeta.setName(table.getName());
-                tableMapping = new LinkedHashMap<SQLTable, StringBuffer>();
-
-                JDBCDataSource target = targetDB.getDataSource();
-                DatabaseMeta targetDatabaseMeta = addDatabaseConnection(databaseNames, target);
-                transMeta.addDatabase(targetDatabaseMeta);
-
-                List<SQLColumn> columnList = table.getColumns();
-                List<String> noMappingForColumn = new ArrayList<String>();
-                List<StepMeta> inputSteps = new ArrayList<StepMeta>();
-                List<String[]> keyFields1 = new ArrayList<String[]>();
-                List<String[]> keyFields2 = new ArrayList<String[]>();
-                JDBCDataSourceType dsType = targetDB.getDataSource().getParentType();
-                boolean isQuoting = dsType.getSupportsQuotingName();
-                String ddlGeneratorClass = dsType.getDDLGeneratorClass();
-                
-                logger.debug("isQuoting:  " +isQuoting );
-                for (SQLColumn column: columnList) {
-                    SQLTable sourceTable;
-                    String sourceColumn;
-                    
-                    String dataType = column.getSourceDataTypeName();
-                   
-                    if (settings.isTimeStampExcluded() && dataType.equalsIgnoreCase("timestamp")) {
-                        continue;
-                    }
-                    // if quoting and not a PostgresDDLGenerator then adding square brackets for SQLServer
-                    String columnName = column.getName();
-                    columnName = getUpdatedName(isQuoting, columnName,ddlGeneratorClass);
-                    logger.debug(" Quoted columnName: "+ columnName);
-                    if (column.getSourceColumn() == null) {
-                        /** if we have no source table then we will get nulls as
-                         * placeholder from the target table.
-                         */
-                        sourceTable = table;
-                        sourceColumn = "null";
-                        noMappingForColumn.add(columnName);
-                    } else {
-                        sourceTable = column.getSourceColumn().getParent();
-                        sourceColumn = column.getSourceColumn().getName();
-                    }
-                    /** if quoting and not a PostgresDDLGenerator then adding square brackets for SQLServer */
-                    sourceColumn = getUpdatedName(isQuoting,sourceColumn,ddlGeneratorClass);
-                    if(column.getSourceColumn() != null ) {
-                        if (!tableMapping.containsKey(sourceTable)) {
-                            List<String> pkCols = new ArrayList<String>();
-                            List<String> fkCols = new ArrayList<String>();
-                            StringBuffer buffer = new StringBuffer();
-                            buffer.append("SELECT ");
-                            buffer.append(sourceColumn);
-                            buffer.append(" AS ").append(columnName);
-                            pkCols.add(sourceColumn);
-                            fkCols.add(sourceColumn);
-                            List<SQLRelationship> exportedKeys = getPlaypenExportedKeys(playPenTableList, sourceTable);
-                            for(SQLRelationship exportedKey : exportedKeys) {
-                                for (ColumnMapping mapping: exportedKey.getMappings()) {
-                                    SQLColumn pkCol = mapping.getPkColumn();
-                                    if(pkCol != null && !pkCol.getName().isEmpty()) {
-                                        String updatedPkColName = getUpdatedName(isQuoting, pkCol.getName(),ddlGeneratorClass);
-                                        if(!pkCols.contains(updatedPkColName) ){
-                                            buffer.append(", ").append
-                                            (updatedPkColName).append(" AS ").append(updatedPkColName);
-                                            pkCols.add(updatedPkColName);
-                                        }
-                                    }
-                                }
-                            }
-                            List<SQLImportedKey> importedKeys = getPlaypenImportedKeys(playPenTableList, sourceTable);
-                            for(SQLImportedKey importedKey : importedKeys) {
-                                SQLRelationship relationShip = importedKey.getRelationship();
-                                for (ColumnMapping mapping: relationShip.getMappings()) {
-                                    SQLColumn fkCol = mapping.getFkColumn();
-                                    if(fkCol != null && !fkCol.getName().isEmpty()) {
-                                        String updatedFkColName = getUpdatedName(isQuoting, fkCol.getName(),ddlGeneratorClass);
-                                        if(!fkCols.contains(updatedFkColName) ){
-                                            buffer.append(", ").append
-                                            (updatedFkColName).append(" AS ").append(updatedFkColName);
-                                            fkCols.add(updatedFkColName);
-                                        }
-                                    }
-                                }
-                            }
-                            tableMapping.put(sourceTable, buffer);
-                        } else {
-                            tableMapping.get(sourceTable).append(", ").append
-                            (sourceColumn).append(" AS ").append(columnName);
-                        }
-                    }
-                }
-
-                if (tableMapping.containsKey(table)) {
-                    if (tableMapping.size() == 1) {
-                        noTransTables.add(table.getName());
-                        tasksToDo.add("Update table " + table.getName() + " as no source data was found");
-                        continue;
-                    } else {
-                        StringBuffer buffer = new StringBuffer();
-                        if(noMappingForColumn.size() > 0) {
-                            buffer.append("There is no source for the column(s): ");
-                            for (String noMapForCol: noMappingForColumn) {
-                                buffer.append(noMapForCol).append(" ");
-                            }
+            final List<SQLTable> sortedPlayPenTables = new DepthFirstSearch(playPenTableList).getFinishOrder();
+            final Map<String, DatabaseMeta> databaseNames = Collections.synchronizedMap(new LinkedHashMap<String, DatabaseMeta>());
 
-                            tasksToDo.add(buffer.toString() + " for the table " + table.getName());
-                            transMeta.addNote(new NotePadMeta(buffer.toString(), 0, 150, 125, 125));
+            // Tables are populated on this thread first, as populating them
+            // from several threads at once is not safe.
+            for (SQLTable table : tableList) {
+                table.getColumns();
+            }
+            List<Future<TransMeta>> results = new ArrayList<Future<TransMeta>>();
+            ExecutorService executor = createExecutor();
+            try {
+                for (final SQLTable table : tableList) {
+                    results.add(submit(executor, new Callable<TransMeta>() {
+                        public TransMeta call() throws Exception {
+                            if (monitor.isCancelled()) return null;
+                            monitor.setMessage("Creating transformation for " + table.getName());
+                            TransMeta transMeta = createTransformation(
+                                    table, targetDB, sortedPlayPenTables, databaseNames, noTransTables);
+                            incrementProgress();
+                            return transMeta;
                         }
-                    }
-                }
-
-                for (SQLTable sourceTable: tableMapping.keySet()) {
-                    StringBuffer buffer = tableMapping.get(sourceTable);
-                    buffer.append(" FROM " + DDLUtils.toQualifiedName(sourceTable));
+                    }));
                 }
-
-                for (SQLTable sourceTable: tableMapping.keySet()) {
-                    List<String> keys1 = new LinkedList<String>();
-                    List<String> keys2 = new LinkedList<String>();
-                    List<SQLRelationship> exportedKeys = getPlaypenExportedKeys(playPenTableList, sourceTable);
-                    for (SQLRelationship exportedKey : exportedKeys) {
-                        for (ColumnMapping mapping: exportedKey.getMappings()) {
-                            SQLColumn pkCol = mapping.getPkColumn();
-                            SQLColumn fkCol = mapping.getFkColumn();
-                            if(pkCol != null && fkCol!= null) {
-                                keys1.add(pkCol.getName());
-                                keys2.add(fkCol.getName());
-                            }
-                        }
+                for (Future<TransMeta> result : results) {
+                    TransMeta transMeta = getResult(result);
+                    if (transMeta != null) {
+                        transformations.add(transMeta);
                     }
-
-                    keyFields1.add(keys1.toArray(new String[keys1.size()]));
-                    keyFields2.add(keys2.toArray(new String[keys2.size()]));
-                    JDBCDataSource source = sourceTable.getParentDatabase().getDataSource();
-                    DatabaseMeta databaseMeta = addDatabaseConnection(databaseNames, source);
-                    transMeta.addDatabase(databaseMeta);
-
-                    TableInputMeta tableInputMeta = new TableInputMeta();
-                    String stepName = databaseMeta.getName() + ":" + DDLUtils.toQualifiedName(sourceTable);
-                    StepMeta stepMeta = new StepMeta("TableInput", stepName, tableInputMeta);
-                    stepMeta.setDraw(true);
-                    stepMeta.setLocation(inputSteps.size()==0?spacing:(inputSteps.size())*spacing, (inputSteps.size()+1)*spacing);
-                    tableInputMeta.setDatabaseMeta(databaseMeta);
-                    tableInputMeta.setSQL(tableMapping.get(sourceTable).toString());
-                    transMeta.addStep(stepMeta);
-                    //sort the Rows
-                    StepMeta sortedStepMeta = createSortRowsStep(transMeta,stepMeta,keyFields1);
-                    transMeta.addStep(sortedStepMeta);
-                    inputSteps.add(sortedStepMeta);
-                }
-
-                List<StepMeta> mergeSteps = createMergeJoins(settings.getJoinType(), transMeta, inputSteps,keyFields1, keyFields2);
-                StepMeta outputStepMeta = null; 
-                if (settings.isInsertUpdate()) {
-                    InsertUpdateMeta insertUpdateMeta = new InsertUpdateMeta();
-                    insertUpdateMeta.setDefault();
-                    insertUpdateMeta.setDatabaseMeta(targetDatabaseMeta);
-                    insertUpdateMeta.setTableName(table.getName());
-                    insertUpdateMeta.setSchemaName(settings.getSchemaName());
-                    outputStepMeta = new StepMeta("InsertUpdate", "Insert/Update " + table.getName(), insertUpdateMeta);
-
-                } else {
-                    TableOutputMeta tableOutputMeta = new TableOutputMeta();
-                    tableOutputMeta.setDatabaseMeta(targetDatabaseMeta);
-                    tableOutputMeta.setTablename(table.getName());
-                    tableOutputMeta.setSchemaName(settings.getSchemaName());
-                    outputStepMeta = new StepMeta("TableOutput", "Output to " + table.getName(), tableOutputMeta);
-                    
-                }
-                if(outputStepMeta != null) {
-                    outputStepMeta.setDraw(true);
-                    outputStepMeta.setLocation((inputSteps.size()+2)*spacing, (inputSteps.size())*spacing);
-                    transMeta.addStep(outputStepMeta);
                 }
-                if (inputSteps.size() > 1 ) {
-                    TransHopMeta transHopMeta = 
-                            new TransHopMeta(mergeSteps.isEmpty()?inputSteps.get(0):mergeSteps.get(mergeSteps.size()-1), outputStepMeta);
-                    transMeta.addTransHop(transHopMeta);
-                    transformations.add(transMeta);
-                    logger.debug("Added a Trnasformation job for table "+table.getName());
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
                 }
             }
             if (monitor.isCancelled()) {
@@ -453,6 +329,198 @@ public class KettleJob implements Monitorable {
         }
     }
     
+    /**
+     * Builds the transformation that loads the given target table from its
+     * source tables. Returns null if there is nothing to load the table
+     * from, in which case the table may be added to noTransTables. This is
+     * called for several tables at once when {@link #getThreadCount()} is
+     * more than 1, so databaseNames and noTransTables must be synchronized.
+     */
+    private TransMeta createTransformation(SQLTable table, SQLDatabase targetDB, List<SQLTable> playPenTableList,
+            Map<String, DatabaseMeta> databaseNames, List<String> noTransTables) throws SQLObjectException {
+        TransMeta transMeta = new TransMeta();
+        transMeta.setName(table.getName());
+        Map<SQLTable, StringBuffer> tableMapping = new LinkedHashMap<SQLTable, StringBuffer>();
+
+        JDBCDataSource target = targetDB.getDataSource();
+        DatabaseMeta targetDatabaseMeta = addDatabaseConnection(databaseNames, target);
+        transMeta.addDatabase(targetDatabaseMeta);
+
+        List<SQLColumn> columnList = table.getColumns();
+        List<String> noMappingForColumn = new ArrayList<String>();
+        List<StepMeta> inputSteps = new ArrayList<StepMeta>();
+        List<String[]> keyFields1 = new ArrayList<String[]>();
+        List<String[]> keyFields2 = new ArrayList<String[]>();
+        JDBCDataSourceType dsType = targetDB.getDataSource().getParentType();
+        boolean isQuoting = dsType.getSupportsQuotingName();
+        String ddlGeneratorClass = dsType.getDDLGeneratorClass();
+        
+        logger.debug("isQuoting:  " +isQuoting );
+        for (SQLColumn column: columnList) {
+            SQLTable sourceTable;
+            String sourceColumn;
+            
+            String dataType = column.getSourceDataTypeName();
+           
+            if (settings.isTimeStampExcluded() && dataType.equalsIgnoreCase("timestamp")) {
+                continue;
+            }
+            // if quoting and not a PostgresDDLGenerator then adding square brackets for SQLServer
+            String columnName = column.getName();
+            columnName = getUpdatedName(isQuoting, columnName,ddlGeneratorClass);
+            logger.debug(" Quoted columnName: "+ columnName);
+            if (column.getSourceColumn() == null) {
+                /** if we have no source table then we will get nulls as
+                 * placeholder from the target table.
+                 */
+                sourceTable = table;
+                sourceColumn = "null";
+                noMappingForColumn.add(columnName);
+            } else {
+                sourceTable = column.getSourceColumn().getParent();
+                sourceColumn = column.getSourceColumn().getName();
+            }
+            /** if quoting and not a PostgresDDLGenerator then adding square brackets for SQLServer */
+            sourceColumn = getUpdatedName(isQuoting,sourceColumn,ddlGeneratorClass);
+            if(column.getSourceColumn() != null ) {
+                if (!tableMapping.containsKey(sourceTable)) {
+                    List<String> pkCols = new ArrayList<String>();
+                    List<String> fkCols = new ArrayList<String>();
+                    StringBuffer buffer = new StringBuffer();
+                    buffer.append("SELECT ");
+                    buffer.append(sourceColumn);
+                    buffer.append(" AS ").append(columnName);
+                    pkCols.add(sourceColumn);
+                    fkCols.add(sourceColumn);
+                    List<SQLRelationship> exportedKeys = getPlaypenExportedKeys(playPenTableList, sourceTable);
+                    for(SQLRelationship exportedKey : exportedKeys) {
+                        for (ColumnMapping mapping: exportedKey.getMappings()) {
+                            SQLColumn pkCol = mapping.getPkColumn();
+                            if(pkCol != null && !pkCol.getName().isEmpty()) {
+                                String updatedPkColName = getUpdatedName(isQuoting, pkCol.getName(),ddlGeneratorClass);
+                                if(!pkCols.contains(updatedPkColName) ){
+                                    buffer.append(", ").append
+                                    (updatedPkColName).append(" AS ").append(updatedPkColName);
+                                    pkCols.add(updatedPkColName);
+                                }
+                            }
+                        }
+                    }
+                    List<SQLImportedKey> importedKeys = getPlaypenImportedKeys(playPenTableList, sourceTable);
+                    for(SQLImportedKey importedKey : importedKeys) {
+                        SQLRelationship relationShip = importedKey.getRelationship();
+                        for (ColumnMapping mapping: relationShip.getMappings()) {
+                            SQLColumn fkCol = mapping.getFkColumn();
+                            if(fkCol != null && !fkCol.getName().isEmpty()) {
+                                String updatedFkColName = getUpdatedName(isQuoting, fkCol.getName(),ddlGeneratorClass);
+                                if(!fkCols.contains(updatedFkColName) ){
+                                    buffer.append(", ").append
+                                    (updatedFkColName).append(" AS ").append(updatedFkColName);
+                                    fkCols.add(updatedFkColName);
+                                }
+                            }
+                        }
+                    }
+                    tableMapping.put(sourceTable, buffer);
+                } else {
+                    tableMapping.get(sourceTable).append(", ").append
+                    (sourceColumn).append(" AS ").append(columnName);
+                }
+            }
+        }
+
+        if (tableMapping.containsKey(table)) {
+            if (tableMapping.size() == 1) {
+                noTransTables.add(table.getName());
+                tasksToDo.add("Update table " + table.getName() + " as no source data was found");
+                return null;
+            } else {
+                StringBuffer buffer = new StringBuffer();
+                if(noMappingForColumn.size() > 0) {
+                    buffer.append("There is no source for the column(s): ");
+                    for (String noMapForCol: noMappingForColumn) {
+                        buffer.append(noMapForCol).append(" ");
+                    }
+
+                    tasksToDo.add(buffer.toString() + " for the table " + table.getName());
+                    transMeta.addNote(new NotePadMeta(buffer.toString(), 0, 150, 125, 125));
+                }
+            }
+        }
+
+        for (SQLTable sourceTable: tableMapping.keySet()) {
+            StringBuffer buffer = tableMapping.get(sourceTable);
+            buffer.append(" FROM " + DDLUtils.toQualifiedName(sourceTable));
+        }
+
+        for (SQLTable sourceTable: tableMapping.keySet()) {
+            List<String> keys1 = new LinkedList<String>();
+            List<String> keys2 = new LinkedList<String>();
+            List<SQLRelationship> exportedKeys = getPlaypenExportedKeys(playPenTableList, sourceTable);
+            for (SQLRelationship exportedKey : exportedKeys) {
+                for (ColumnMapping mapping: exportedKey.getMappings()) {
+                    SQLColumn pkCol = mapping.getPkColumn();
+                    SQLColumn fkCol = mapping.getFkColumn();
+                    if(pkCol != null && fkCol!= null) {
+                        keys1.add(pkCol.getName());
+                        keys2.add(fkCol.getName());
+                    }
+                }
+            }
+
+            keyFields1.add(keys1.toArray(new String[keys1.size()]));
+            keyFields2.add(keys2.toArray(new String[keys2.size()]));
+            JDBCDataSource source = sourceTable.getParentDatabase().getDataSource();
+            DatabaseMeta databaseMeta = addDatabaseConnection(databaseNames, source);
+            transMeta.addDatabase(databaseMeta);
+
+            TableInputMeta tableInputMeta = new TableInputMeta();
+            String stepName = databaseMeta.getName() + ":" + DDLUtils.toQualifiedName(sourceTable);
+            StepMeta stepMeta = new StepMeta("TableInput", stepName, tableInputMeta);
+            stepMeta.setDraw(true);
+            stepMeta.setLocation(inputSteps.size()==0?spacing:(inputSteps.size())*spacing, (inputSteps.size()+1)*spacing);
+            tableInputMeta.setDatabaseMeta(databaseMeta);
+            tableInputMeta.setSQL(tableMapping.get(sourceTable).toString());
+            transMeta.addStep(stepMeta);
+            //sort the Rows
+            StepMeta sortedStepMeta = createSortRowsStep(transMeta,stepMeta,keyFields1);
+            transMeta.addStep(sortedStepMeta);
+            inputSteps.add(sortedStepMeta);
+        }
+
+        List<StepMeta> mergeSteps = createMergeJoins(settings.getJoinType(), transMeta, inputSteps,keyFields1, keyFields2);
+        StepMeta outputStepMeta = null; 
+        if (settings.isInsertUpdate()) {
+            InsertUpdateMeta insertUpdateMeta = new InsertUpdateMeta();
+            insertUpdateMeta.setDefault();
+            insertUpdateMeta.setDatabaseMeta(targetDatabaseMeta);
+            insertUpdateMeta.setTableName(table.getName());
+            insertUpdateMeta.setSchemaName(settings.getSchemaName());
+            outputStepMeta = new StepMeta("InsertUpdate", "Insert/Update " + table.getName(), insertUpdateMeta);
+
+        } else {
+            TableOutputMeta tableOutputMeta = new TableOutputMeta();
+            tableOutputMeta.setDatabaseMeta(targetDatabaseMeta);
+            tableOutputMeta.setTablename(table.getName());
+            tableOutputMeta.setSchemaName(settings.getSchemaName());
+            outputStepMeta = new StepMeta("TableOutput", "Output to " + table.getName(), tableOutputMeta);
+            
+        }
+        if(outputStepMeta != null) {
+            outputStepMeta.setDraw(true);
+            outputStepMeta.setLocation((inputSteps.size()+2)*spacing, (inputSteps.size())*spacing);
+            transMeta.addStep(outputStepMeta);
+        }
+        if (inputSteps.size() > 1 ) {
+            TransHopMeta transHopMeta = 
+                    new TransHopMeta(mergeSteps.isEmpty()?inputSteps.get(0):mergeSteps.get(mergeSteps.size()-1), outputStepMeta);
+            transMeta.addTransHop(transHopMeta);
+            logger.debug("Added a Trnasformation job for table "+table.getName());
+            return transMeta;
+        }
+        return null;
+    }
+    
     /**
      * Method used to split the big job into multiple sub jobs based on sublist.
      * @param tableList 
@@ -597,12 +665,8 @@ private void jobOutputToXML(List<JobMeta> jmList, JobMeta jm) throws IOException
                 }
             }
             f.createNewFile();
-            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new
-                    FileOutputStream(f), "utf-8"));
-            out.write(outputs.get(f));
-            out.flush();
-            out.close();
-            monitor.setProgress(monitor.getProgress() + 1);
+            writeXML(f, outputs.get(f));
+            incrementProgress();
             
             if (monitor.isCancelled()) {
                 cancel();
@@ -644,12 +708,101 @@ private String getJobFilePath(String jobName) {
         tasksToDo.add("The Kettle job was cancelled so some files may be missing.");
     }
     
+    /**
+     * Returns a pool of {@link #threadCount} threads, or null if the work
+     * should be done on the calling thread.
+     */
+    private ExecutorService createExecutor() {
+        if (threadCount <= 1) return null;
+        return Executors.newFixedThreadPool(threadCount);
+    }
+    
+    /**
+     * Runs the task on the given executor, or right away on this thread if
+     * the executor is null.
+     */
+    private static <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        if (executor == null) {
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+        return executor.submit(task);
+    }
+    
+    /**
+     * Waits for the task and returns its result, rethrowing what the task
+     * threw.
+     */
+    private static <T> T getResult(Future<T> future) throws SQLObjectException, KettleException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLObjectException) throw (SQLObjectException) cause;
+            if (cause instanceof KettleException) throw (KettleException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+    
+    private synchronized void incrementProgress() {
+        monitor.setProgress(monitor.getProgress() + 1);
+    }
+    
+    /**
+     * Writes the XML to the file as UTF-8 through a file channel, encoding
+     * it one buffer at a time instead of copying the whole document into a
+     * byte array first.
+     */
+    private static void writeXML(File file, String xml) throws IOException {
+        CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(xml);
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            CoderResult result;
+            do {
+                result = encoder.encode(in, buffer, true);
+                drain(buffer, channel);
+            } while (result.isOverflow());
+            while (encoder.flush(buffer).isOverflow()) {
+                drain(buffer, channel);
+            }
+            drain(buffer, channel);
+        } finally {
+            out.close();
+        }
+    }
+    
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
     /**
      * This method adds the given data source to the returned database metadata and
      * the databaseNames mapping if it does not already exist in the databaseNames.
      * This method is package private for testing
      */
     DatabaseMeta addDatabaseConnection(Map<String, DatabaseMeta> databaseNames, JDBCDataSource dataSource) throws RuntimeException {
+        synchronized (databaseNames) {
+            return addDatabaseConnectionImpl(databaseNames, dataSource);
+        }
+    }
+    
+    private DatabaseMeta addDatabaseConnectionImpl(Map<String, DatabaseMeta> databaseNames, JDBCDataSource dataSource) throws RuntimeException {
         DatabaseMeta databaseMeta;
         if (!databaseNames.containsKey(dataSource.getName())) {
             try {
@@ -684,17 +837,31 @@ private String getJobFilePath(String jobName) {
      * package private for testing purposes.
      */
     void outputToXML(List<TransMeta> transformations, JobMeta job) throws IOException {
-        Map<File, String> outputs = new LinkedHashMap<File, String>();
+        ExecutorService executor = createExecutor();
+        try {
+            outputToXML(transformations, job, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+    
+    private void outputToXML(List<TransMeta> transformations, JobMeta job, ExecutorService executor) throws IOException {
+        // The transformations are converted to XML on the executor and each
+        // file is written as soon as its XML is ready.
+        Map<File, Future<String>> outputs = new LinkedHashMap<File, Future<String>>();
         
-        for (TransMeta transMeta : transformations) {
+        for (final TransMeta transMeta : transformations) {
             File file = new File(getTransFilePath(transMeta.getName()));
             logger.debug("transformation file: "+file.getAbsolutePath());
             transMeta.setFilename(file.getName());
-            try {
-                outputs.put(file, transMeta.getXML());
-            } catch (KettleException e) {
-                throw new RuntimeException(e);
-            }
+            outputs.put(file, submit(executor, new Callable<String>() {
+                public String call() throws KettleException {
+                    if (monitor.isCancelled()) return null;
+                    return transMeta.getXML();
+                }
+            }));
             if (monitor.isCancelled()) {
                 cancel();
                 return;
@@ -719,7 +886,12 @@ private String getJobFilePath(String jobName) {
             fileName += ".kjb";
         }
         job.setFilename(fileName);
-        outputs.put(new File(fileName), job.getXML());
+        final JobMeta finalJob = job;
+        outputs.put(new File(fileName), submit(executor, new Callable<String>() {
+            public String call() {
+                return finalJob.getXML();
+            }
+        }));
         if (settings.isSplittingJob() && getJob_no() > 0) {
             jobMetaList.add(job);
         }
@@ -744,12 +916,13 @@ private String getJobFilePath(String jobName) {
                     }
                 }
                 f.createNewFile();
-                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new
-                        FileOutputStream(f), "utf-8"));
-                out.write(outputs.get(f));
-                out.flush();
-                out.close();
-                monitor.setProgress(monitor.getProgress() + 1);
+                String xml = getResult(outputs.get(f));
+                if (xml == null || monitor.isCancelled()) {
+                    cancel();
+                    return;
+                }
+                writeXML(f, xml);
+                incrementProgress();
                 
                 if (monitor.isCancelled()) {
                     cancel();
@@ -759,6 +932,10 @@ private String getJobFilePath(String jobName) {
                 tasksToDo.clear();
                 tasksToDo.add("File " + f.getName() + " was not created");
                 throw er;
+            } catch (SQLObjectException e) {
+                throw new RuntimeException(e);
+            } catch (KettleException e) {
+                throw new RuntimeException(e);
             }
         }
     }
@@ -1107,6 +1284,18 @@ private String getJobFilePath(String jobName) {
         settings.setTimeStampExcluded(isTimeStampExcluded);
     }
 
+    /**
+     * The number of transformations built at the same time. See
+     * {@link #threadCount}.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+    
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
     public List<String> getTasksToDo() {
         return tasksToDo;
     }
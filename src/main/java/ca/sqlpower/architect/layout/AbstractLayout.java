@@ -21,11 +21,22 @@ package ca.sqlpower.architect.layout;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
+import org.apache.log4j.Logger;
+
 public abstract class AbstractLayout implements ArchitectLayout {
 
+    private static final Logger logger = Logger.getLogger(AbstractLayout.class);
+
+    /**
+     * The space left between the nodes placed by {@link #layoutOrphans(List)}
+     * and the rest of the layout.
+     */
+    protected static final int ORPHAN_BUFFER = 50;
+
     protected Rectangle frame;
 
     public void setup(Collection<? extends LayoutNode> nodes, Collection<? extends LayoutEdge> edges, Rectangle rect) {
@@ -62,4 +73,26 @@ public abstract class AbstractLayout implements ArchitectLayout {
         return d;
     }
 
+    /**
+     * Places the nodes that have no edges in a grid along the bottom of the
+     * frame, then shrinks the frame so the rest of the layout stays above
+     * them.
+     */
+    protected void layoutOrphans(List<LayoutNode> orphans) {
+        ArchitectGridLayout gl = new ArchitectGridLayout();
+        gl.setup(orphans, Collections.<LayoutEdge>emptyList(), frame);
+        gl.done();
+
+        int maxy = 0;
+        for (LayoutNode tp : orphans) {
+            maxy = Math.max(tp.getY() + tp.getHeight(), maxy);
+        }
+        int orphanStartY = frame.height - maxy;
+        logger.debug("max y is "+maxy+". orphanStartY is "+orphanStartY);
+        for (LayoutNode tp : orphans) {
+            tp.setLocation(tp.getX(), tp.getY() + orphanStartY);
+        }
+        frame.height -= maxy + ORPHAN_BUFFER;
+    }
+
 }
@@ -0,0 +1,588 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.layout;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A force directed layout with the same forces as the
+ * {@link FruchtermanReingoldForceLayout}, but which finds the repulsion
+ * between nodes with a Barnes-Hut quadtree instead of comparing every pair
+ * of nodes. Nodes that are far enough away are grouped into the cells of the
+ * tree and repel as one, so each frame takes O(n log n) time instead of
+ * O(n<sup>2</sup>), which makes this layout usable on models with thousands
+ * of tables.
+ * <p>
+ * The node positions and forces are kept in arrays for the length of a
+ * frame, and the repulsion on each node can be found on several threads at
+ * once. See {@link #setParallelism(int)}.
+ */
+public class BarnesHutForceLayout extends AbstractLayout {
+
+    private static final Logger logger = Logger.getLogger(BarnesHutForceLayout.class);
+
+    /**
+     * The default value of {@link #setTheta(double)}.
+     */
+    public static final double DEFAULT_THETA = 0.8;
+
+    /**
+     * Spacing multiplier, the same as in the Fruchterman-Reingold layout.
+     */
+    private static final double SPACING_MULTIPLIER = 2;
+
+    /**
+     * Scales the repulsion between two nodes, the same as in the
+     * Fruchterman-Reingold layout.
+     */
+    private static final double BASE_REPULSION = .1;
+
+    /**
+     * Nodes further apart than this many empty radii do not repel each other.
+     */
+    private static final double REPULSION_CUTOFF = 5;
+
+    /**
+     * Cells are not split any further than this, so nodes on top of each
+     * other do not split the tree forever.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * The repulsion is only split across threads for at least this many nodes.
+     */
+    private static final int PARALLEL_NODE_THRESHOLD = 256;
+
+    /**
+     * A square area of the quadtree. The sums are over every node in the
+     * cell, so a cell can stand in for all of them when it is far away.
+     */
+    private static class Cell {
+        final double minX;
+        final double minY;
+        final double length;
+        int count;
+        double sumX;
+        double sumY;
+        double sumSize;
+
+        /**
+         * The nodes in a cell that has not been split. This only has more
+         * than one node in it when the cell is too deep to split.
+         */
+        int[] bodies;
+        int bodyCount;
+
+        Cell[] children;
+
+        Cell(double minX, double minY, double length) {
+            this.minX = minX;
+            this.minY = minY;
+            this.length = length;
+        }
+
+        boolean contains(double x, double y) {
+            return x >= minX && x < minX + length && y >= minY && y < minY + length;
+        }
+    }
+
+    private List<LayoutNode> nodes;
+
+    private List<LayoutNode> orphanedTables = new ArrayList<LayoutNode>();
+
+    /**
+     * The index in {@link #nodes} of the tail and head of each edge between
+     * nodes being laid out.
+     */
+    private int[] edgeTails;
+    private int[] edgeHeads;
+
+    /**
+     * The centre of each node at the start of the current frame.
+     */
+    private double[] x;
+    private double[] y;
+
+    /**
+     * The width plus height of each node, which the repulsion depends on.
+     */
+    private double[] size;
+
+    /**
+     * How far each node wants to move in the current frame.
+     */
+    private double[] dispX;
+    private double[] dispY;
+
+    /**
+     * The radius that is kept clear
+     */
+    private double k;
+
+    /**
+     * The maximum movement
+     */
+    private double temp;
+
+    /**
+     *  The number of frames in a row that are considered stopped
+     */
+    private int stoppedFrames;
+
+    /**
+     * The amount of movement at the begining of the frame
+     * or away from the edge of the playpen
+     */
+    private int baseLineJitter;
+
+    /**
+     * Used to be able to stop the algoithm prematurely
+     */
+    private boolean overrideDone;
+
+    private int frameNum = 0;
+
+    private double theta = DEFAULT_THETA;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The threads the repulsion is found on, made on the first frame that
+     * needs them and shut down when the layout is done.
+     */
+    private ForkJoinPool pool;
+
+    public void setup(Collection<? extends LayoutNode> nodes, Collection<? extends LayoutEdge> edges, Rectangle frame) {
+        this.frame = new Rectangle(frame);
+        this.nodes = new ArrayList<LayoutNode>();
+        for (LayoutNode tp : nodes) {
+            if (tp.getOutboundEdges().size() == 0 && tp.getInboundEdges().size() == 0) {
+                orphanedTables.add(tp);
+            } else {
+                this.nodes.add(tp);
+            }
+        }
+
+        int n = this.nodes.size();
+        Map<LayoutNode, Integer> indices = new IdentityHashMap<LayoutNode, Integer>();
+        x = new double[n];
+        y = new double[n];
+        size = new double[n];
+        dispX = new double[n];
+        dispY = new double[n];
+        for (int i = 0; i < n; i++) {
+            LayoutNode tp = this.nodes.get(i);
+            indices.put(tp, i);
+            size[i] = tp.getWidth() + tp.getHeight();
+        }
+
+        List<int[]> edgeIndices = new ArrayList<int[]>();
+        for (LayoutEdge e : edges) {
+            Integer tail = indices.get(e.getTailNode());
+            Integer head = indices.get(e.getHeadNode());
+            if (tail != null && head != null && tail.intValue() != head.intValue()) {
+                edgeIndices.add(new int[] { tail, head });
+            }
+        }
+        edgeTails = new int[edgeIndices.size()];
+        edgeHeads = new int[edgeIndices.size()];
+        for (int i = 0; i < edgeIndices.size(); i++) {
+            edgeTails[i] = edgeIndices.get(i)[0];
+            edgeHeads[i] = edgeIndices.get(i)[1];
+        }
+
+        baseLineJitter = 10;
+        temp = 1000 * nodes.size();
+
+        stoppedFrames = 0;
+        overrideDone = false;
+        k = getEmptyRadius();
+    }
+
+    /**
+     * Checks and sees if the program stops
+     */
+    public boolean isDone() {
+        return stoppedFrames > 5 || (nodes.size() + orphanedTables.size() < 2) || overrideDone;
+    }
+
+    /**
+     * Performs the next step of the spring layout
+     */
+    public void nextFrame() {
+        if (frameNum == 0) {
+            layoutOrphans(orphanedTables);
+        }
+
+        if (!isDone()) {
+            int n = nodes.size();
+            for (int i = 0; i < n; i++) {
+                LayoutNode tp = nodes.get(i);
+                x[i] = tp.getX() + tp.getWidth() / 2.0;
+                y[i] = tp.getY() + tp.getHeight() / 2.0;
+                dispX[i] = Math.round(Math.random() * baseLineJitter - baseLineJitter / 2);
+                dispY[i] = Math.round(Math.random() * baseLineJitter - baseLineJitter / 2);
+            }
+
+            Cell root = buildTree();
+            if (parallelism > 1 && n >= PARALLEL_NODE_THRESHOLD) {
+                repelInParallel(root);
+            } else {
+                repel(root, 0, n);
+            }
+            attract();
+
+            if (move()) {
+                stoppedFrames++;
+            }
+        }
+        temp = temp / 1.1;
+        frameNum++;
+
+        if (isDone()) {
+            shutdownPool();
+        }
+    }
+
+    /**
+     * Builds a quadtree of the node centres, covering all of them.
+     */
+    private Cell buildTree() {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < x.length; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        // one more than the extent so the nodes on the far edges are inside
+        Cell root = new Cell(minX, minY, Math.max(maxX - minX, maxY - minY) + 1);
+        for (int i = 0; i < x.length; i++) {
+            insert(root, i, 0);
+        }
+        return root;
+    }
+
+    private void insert(Cell cell, int i, int depth) {
+        while (true) {
+            cell.count++;
+            cell.sumX += x[i];
+            cell.sumY += y[i];
+            cell.sumSize += size[i];
+            if (cell.children == null) {
+                if (cell.bodyCount == 0 || depth >= MAX_DEPTH) {
+                    addBody(cell, i);
+                    return;
+                }
+                // split the cell and move its node down
+                cell.children = new Cell[4];
+                int old = cell.bodies[0];
+                cell.bodyCount = 0;
+                cell.bodies = null;
+                Cell child = childFor(cell, old);
+                child.count++;
+                child.sumX += x[old];
+                child.sumY += y[old];
+                child.sumSize += size[old];
+                addBody(child, old);
+            }
+            cell = childFor(cell, i);
+            depth++;
+        }
+    }
+
+    private static void addBody(Cell cell, int i) {
+        if (cell.bodies == null) {
+            cell.bodies = new int[1];
+        } else if (cell.bodyCount == cell.bodies.length) {
+            int[] bodies = new int[cell.bodies.length * 2];
+            System.arraycopy(cell.bodies, 0, bodies, 0, cell.bodyCount);
+            cell.bodies = bodies;
+        }
+        cell.bodies[cell.bodyCount++] = i;
+    }
+
+    /**
+     * Returns the child of a split cell the given node belongs in, creating
+     * it if it does not exist yet.
+     */
+    private Cell childFor(Cell cell, int i) {
+        double half = cell.length / 2;
+        int quadrant = 0;
+        if (x[i] >= cell.minX + half) quadrant += 1;
+        if (y[i] >= cell.minY + half) quadrant += 2;
+        if (cell.children[quadrant] == null) {
+            cell.children[quadrant] = new Cell(
+                    cell.minX + (quadrant % 2) * half,
+                    cell.minY + (quadrant / 2) * half,
+                    half);
+        }
+        return cell.children[quadrant];
+    }
+
+    /**
+     * Splits finding the repulsion on every node into a task per slice of
+     * the nodes. Each task only writes the displacements of its own nodes.
+     */
+    private void repelInParallel(final Cell root) {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        int n = x.length;
+        int sliceSize = (n + parallelism * 4 - 1) / (parallelism * 4);
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int start = 0; start < n; start += sliceSize) {
+            final int from = start;
+            final int to = Math.min(n, start + sliceSize);
+            tasks.add(pool.submit(new Runnable() {
+                public void run() {
+                    repel(root, from, to);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Adds the repulsion from every other node to the displacement of the
+     * nodes from index <code>from</code> up to but not including
+     * <code>to</code>.
+     */
+    private void repel(Cell root, int from, int to) {
+        double[] force = new double[2];
+        for (int i = from; i < to; i++) {
+            force[0] = 0;
+            force[1] = 0;
+            repel(root, i, force);
+            dispX[i] += Math.round(force[0]);
+            dispY[i] += Math.round(force[1]);
+        }
+    }
+
+    private void repel(Cell cell, int i, double[] force) {
+        double cutoff = REPULSION_CUTOFF * k;
+
+        // skip cells with no node close enough to repel this one
+        double nearestX = Math.max(cell.minX, Math.min(x[i], cell.minX + cell.length));
+        double nearestY = Math.max(cell.minY, Math.min(y[i], cell.minY + cell.length));
+        double nearX = x[i] - nearestX;
+        double nearY = y[i] - nearestY;
+        if (nearX * nearX + nearY * nearY >= cutoff * cutoff) return;
+
+        if (cell.children == null) {
+            for (int b = 0; b < cell.bodyCount; b++) {
+                int j = cell.bodies[b];
+                if (j != i) {
+                    repel(x[i] - x[j], y[i] - y[j], size[i] + size[j], cutoff, force);
+                }
+            }
+            return;
+        }
+
+        double deltaX = x[i] - cell.sumX / cell.count;
+        double deltaY = y[i] - cell.sumY / cell.count;
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (!cell.contains(x[i], y[i]) && cell.length < theta * distance) {
+            // far enough away to treat the whole cell as one node
+            repel(deltaX, deltaY, cell.sumSize + cell.count * size[i], cutoff, force);
+            return;
+        }
+        for (Cell child : cell.children) {
+            if (child != null) {
+                repel(child, i, force);
+            }
+        }
+    }
+
+    /**
+     * Adds the repulsion between nodes the given distance apart to the force.
+     *
+     * @param tableSizes
+     *            The sum of the width and height of both nodes, or of every
+     *            node in a cell plus the one being pushed once for each of
+     *            them.
+     */
+    private void repel(double deltaX, double deltaY, double tableSizes, double cutoff, double[] force) {
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (distance == 0) {
+            // nodes on top of each other get pushed apart in any direction
+            double angle = Math.random() * 2 * Math.PI;
+            deltaX = Math.cos(angle);
+            deltaY = Math.sin(angle);
+            distance = 1;
+        }
+        if (distance < cutoff) {
+            double repulsion = BASE_REPULSION * tableSizes * (k * k) / (distance * distance);
+            force[0] += deltaX / distance * repulsion;
+            force[1] += deltaY / distance * repulsion;
+        }
+    }
+
+    /**
+     * Pulls the ends of each edge towards each other.
+     */
+    private void attract() {
+        for (int e = 0; e < edgeTails.length; e++) {
+            int v = edgeTails[e];
+            int u = edgeHeads[e];
+            double deltaX = x[v] - x[u];
+            double deltaY = y[v] - y[u];
+            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+            if (dispX[u] == dispX[v] && dispY[u] == dispY[v]) {
+                dispX[v] += (int) (Math.random() + 0.5);
+                dispY[v] += (int) (Math.random() + 0.5);
+            }
+            if (distance == 0) continue;
+            double attraction = (deltaX * deltaX + deltaY * deltaY) / k;
+            double moveX = Math.round(0.5 * (deltaX / distance * attraction));
+            double moveY = Math.round(0.5 * (deltaY / distance * attraction));
+            dispX[v] -= moveX;
+            dispY[v] -= moveY;
+            dispX[u] += moveX;
+            dispY[u] += moveY;
+        }
+    }
+
+    /**
+     * Moves every node by its displacement, limited by the temperature and
+     * the frame. Returns true if no node moved more than a couple of pixels.
+     */
+    private boolean move() {
+        boolean done = true;
+        for (int i = 0; i < nodes.size(); i++) {
+            LayoutNode v = nodes.get(i);
+            double magnitude = Math.sqrt(dispX[i] * dispX[i] + dispY[i] * dispY[i]);
+            int posX = v.getX();
+            int posY = v.getY();
+            if (magnitude > 0) {
+                double limited = Math.min(magnitude, temp);
+                posX += (int) Math.round(dispX[i] / magnitude * limited);
+                posY += (int) Math.round(dispY[i] / magnitude * limited);
+            }
+
+            int xJitter = (int) Math.round(Math.random() * baseLineJitter);
+            int yJitter = (int) Math.round(Math.random() * baseLineJitter);
+            posX = Math.min(Math.max(frame.x + xJitter, posX),
+                    frame.x + frame.width - v.getWidth() - xJitter);
+            posY = Math.min(Math.max(frame.y + yJitter, posY),
+                    frame.y + frame.height - v.getHeight() - yJitter);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Moving table " + v + " to position " + posX + ", " + posY);
+            }
+
+            double dx = posX - v.getX();
+            double dy = posY - v.getY();
+            if (dx * dx + dy * dy > 4) {
+                done = false;
+            }
+            v.setLocation(posX, posY);
+        }
+        return done;
+    }
+
+    /**
+     * The clear radius between two nodes
+     */
+    public double getEmptyRadius() {
+        if (nodes.isEmpty()) return 0;
+        double radius = 0;
+        for (LayoutNode tp : nodes) {
+            radius += tp.getHeight();
+            radius += tp.getWidth();
+        }
+        radius = radius / nodes.size();
+        return radius * SPACING_MULTIPLIER;
+    }
+
+    public void done() {
+        overrideDone = true;
+        shutdownPool();
+    }
+
+    private void shutdownPool() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Returns how far away a cell of the quadtree must be, relative to its
+     * size, before its nodes repel as one. See {@link #setTheta(double)}.
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Sets the ratio of a cell's length to its distance below which all of
+     * the nodes in the cell repel a node as if they were one. Smaller values
+     * are more accurate and slower; 0 compares every pair of nodes in range
+     * like the Fruchterman-Reingold layout does.
+     */
+    public void setTheta(double theta) {
+        if (theta < 0) {
+            throw new IllegalArgumentException("Theta cannot be negative, but was " + theta);
+        }
+        this.theta = theta;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads the repulsion on the nodes is found with
+     * on large layouts. 1 finds it on the thread calling
+     * {@link #nextFrame()}.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, not " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public double getK() {
+        return k;
+    }
+
+    public List<LayoutNode> getNodes() {
+        return nodes;
+    }
+
+    public double getTemp() {
+        return temp;
+    }
+}
@@ -22,7 +22,6 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 
 import org.apache.log4j.Logger;
@@ -67,8 +66,6 @@ public class FruchtermanReingoldForceLayout extends AbstractLayout {
 
     private int frameNum = 0;
     
-    private static final int ORPHAN_BUFFER = 50;
-    
 	public void setup(Collection<? extends LayoutNode> nodes, Collection<? extends LayoutEdge> edges, Rectangle frame) {
 		
 	    this.frame = new Rectangle(frame);
@@ -121,20 +118,7 @@ public class FruchtermanReingoldForceLayout extends AbstractLayout {
 	public void nextFrame() {
         
         if (frameNum == 0) {
-            ArchitectGridLayout gl = new ArchitectGridLayout();
-            gl.setup(orphanedTables, Collections.EMPTY_LIST, frame);
-            gl.done();
-            
-            int maxy = 0;
-            for (LayoutNode tp : orphanedTables) {
-                maxy = Math.max(tp.getY() + tp.getHeight(), maxy);
-            }
-            int orphanStartY = frame.height - maxy;
-            logger.debug("max y is "+maxy+". orphanStartY is "+orphanStartY);
-            for (LayoutNode tp : orphanedTables) {
-                tp.setLocation(tp.getX(), tp.getY() + orphanStartY);
-            }
-            frame.height -= maxy + ORPHAN_BUFFER;
+            layoutOrphans(orphanedTables);
         }
 		
 		HashMap<LayoutNode, Point> displacement;
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.layout;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A copy of the size and location of some layout nodes and the edges between
+ * them, which an {@link ArchitectLayout} can be run against without touching
+ * the real nodes. The copy is made when the snapshot is created, so it has to
+ * be created on the thread that owns the nodes, but the layout can then be
+ * run on any thread. Nothing in here needs a GUI, so scripts can use
+ * {@link #layout(ArchitectLayout, Collection, Collection, Rectangle)} to lay
+ * out diagrams directly.
+ * <p>
+ * Layouts that depend on the nodes or edges being particular classes, such
+ * as the {@link LineStraightenerLayout}, will not do anything useful on a
+ * snapshot.
+ */
+public class LayoutSnapshot {
+
+    private static final Logger logger = Logger.getLogger(LayoutSnapshot.class);
+
+    /**
+     * A layout that has not finished after this many frames is stopped.
+     */
+    private static final int MAX_FRAMES = 10000;
+
+    private static class SnapshotNode extends AbstractLayoutNode {
+        private final String name;
+        private final Rectangle bounds;
+        private final List<LayoutEdge> inbound = new ArrayList<LayoutEdge>();
+        private final List<LayoutEdge> outbound = new ArrayList<LayoutEdge>();
+
+        SnapshotNode(LayoutNode original) {
+            name = original.getNodeName();
+            bounds = original.getBounds();
+        }
+
+        @Override
+        public Rectangle getBounds(Rectangle b) {
+            b.setBounds(bounds);
+            return b;
+        }
+
+        @Override
+        public int getX() {
+            return bounds.x;
+        }
+
+        @Override
+        public int getY() {
+            return bounds.y;
+        }
+
+        @Override
+        public int getWidth() {
+            return bounds.width;
+        }
+
+        @Override
+        public int getHeight() {
+            return bounds.height;
+        }
+
+        @Override
+        public Point getLocation() {
+            return bounds.getLocation();
+        }
+
+        @Override
+        public void setLocation(int x, int y) {
+            bounds.setLocation(x, y);
+        }
+
+        @Override
+        public void setBounds(int x, int y, int width, int height) {
+            bounds.setBounds(x, y, width, height);
+        }
+
+        @Override
+        public List<LayoutEdge> getInboundEdges() {
+            return inbound;
+        }
+
+        @Override
+        public List<LayoutEdge> getOutboundEdges() {
+            return outbound;
+        }
+
+        @Override
+        public String getNodeName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot of " + name; //$NON-NLS-1$
+        }
+    }
+
+    private static class SnapshotEdge implements LayoutEdge {
+        private final SnapshotNode tail;
+        private final SnapshotNode head;
+
+        SnapshotEdge(SnapshotNode tail, SnapshotNode head) {
+            this.tail = tail;
+            this.head = head;
+            tail.outbound.add(this);
+            head.inbound.add(this);
+        }
+
+        public LayoutNode getTailNode() {
+            return tail;
+        }
+
+        public LayoutNode getHeadNode() {
+            return head;
+        }
+    }
+
+    /**
+     * The copy of each node to lay out, in the order they were given.
+     */
+    private final Map<LayoutNode, SnapshotNode> copies = new LinkedHashMap<LayoutNode, SnapshotNode>();
+
+    private final List<SnapshotEdge> edges = new ArrayList<SnapshotEdge>();
+
+    /**
+     * Copies the nodes and the edges between them. Edges to nodes that are
+     * not being laid out are kept, with a copy of the other node that the
+     * layout is not told to move.
+     */
+    public LayoutSnapshot(Collection<? extends LayoutNode> nodes, Collection<? extends LayoutEdge> edges) {
+        for (LayoutNode node : nodes) {
+            copies.put(node, new SnapshotNode(node));
+        }
+        Map<LayoutNode, SnapshotNode> fixed = new IdentityHashMap<LayoutNode, SnapshotNode>();
+        for (LayoutEdge e : edges) {
+            SnapshotNode tail = copyOf(e.getTailNode(), fixed);
+            SnapshotNode head = copyOf(e.getHeadNode(), fixed);
+            this.edges.add(new SnapshotEdge(tail, head));
+        }
+    }
+
+    private SnapshotNode copyOf(LayoutNode node, Map<LayoutNode, SnapshotNode> fixed) {
+        SnapshotNode copy = copies.get(node);
+        if (copy == null) {
+            copy = fixed.get(node);
+            if (copy == null) {
+                copy = new SnapshotNode(node);
+                fixed.put(node, copy);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Runs the layout on the copies until it is done and returns where it
+     * put each of the original nodes. The original nodes are not moved.
+     * Stops early, with the layout in a consistent state, if the thread is
+     * interrupted.
+     *
+     * @param layout
+     *            A layout that has not been set up yet.
+     * @param frame
+     *            The area to lay the nodes out in.
+     */
+    public Map<LayoutNode, Point> run(ArchitectLayout layout, Rectangle frame) {
+        layout.setup(new ArrayList<LayoutNode>(copies.values()), edges, frame);
+        int frames = 0;
+        while (!layout.isDone() && frames < MAX_FRAMES && !Thread.currentThread().isInterrupted()) {
+            layout.nextFrame();
+            frames++;
+        }
+        layout.done();
+        if (logger.isDebugEnabled()) logger.debug("Layout of " + copies.size() + " nodes took " + frames + " frames"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        Map<LayoutNode, Point> locations = new LinkedHashMap<LayoutNode, Point>();
+        for (Map.Entry<LayoutNode, SnapshotNode> e : copies.entrySet()) {
+            locations.put(e.getKey(), e.getValue().getLocation());
+        }
+        return locations;
+    }
+
+    /**
+     * Lays out the nodes on the calling thread and moves them to their new
+     * locations.
+     */
+    public static void layout(ArchitectLayout layout, Collection<? extends LayoutNode> nodes,
+            Collection<? extends LayoutEdge> edges, Rectangle frame) {
+        Map<LayoutNode, Point> locations = new LayoutSnapshot(nodes, edges).run(layout, frame);
+        for (Map.Entry<LayoutNode, Point> e : locations.entrySet()) {
+            e.getKey().setLocation(e.getValue());
+        }
+    }
+}
@@ -113,6 +113,13 @@ public class MondrianXMLReader {
         private Map<String, String>  currentOSessionAtts;
         
         private boolean inOlap;
+
+        /**
+         * The depth of unknown elements the reader is inside of. Nothing is
+         * pushed for an unknown element, so its end and everything in it
+         * must be skipped rather than popping the element around it.
+         */
+        private int unknownDepth;
        
         private final boolean importMode;
         
@@ -141,1379 +148,39 @@ public class MondrianXMLReader {
 	            	inOlap = true;
 	           	}
 	           	if (!inOlap) return;
+	           	if (unknownDepth > 0) {
+	           	    unknownDepth++;
+	           	    return;
+	           	}
 	            
 	            if (qName.equals("olap")) {
 	                currentElement = root;
 	                inOlap = true;
 	            } else if (qName.equals("olap-session")) {
-	                currentOSessionAtts = new HashMap<String, String>();
-	                for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        currentOSessionAtts.put(aname, aval);
-	                }
-	                pushElem = false;
-	                currentElement = null;                  
-	           
-	            } else if (qName.equals("Schema")) {
-                    MondrianModel.Schema elem = new MondrianModel.Schema();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("measuresCaption")) {
-                             
-                                elem.setMeasuresCaption(aval);
-                              
-                        } else if (aname.equals("defaultRole")) {
-                             
-                                elem.setDefaultRole(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Cube")) {
-                    MondrianModel.Cube elem = new MondrianModel.Cube();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("defaultMeasure")) {
-                             
-                                elem.setDefaultMeasure(aval);
-                              
-                        } else if (aname.equals("cache")) {
-                             
-                                elem.setCache(Boolean.valueOf(aval));
-                              
-                        } else if (aname.equals("enabled")) {
-                             
-                                elem.setEnabled(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("VirtualCube")) {
-                    MondrianModel.VirtualCube elem = new MondrianModel.VirtualCube();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("enabled")) {
-                             
-                                elem.setEnabled(Boolean.valueOf(aval));
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("defaultMeasure")) {
-                             
-                                elem.setDefaultMeasure(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CubeUsages")) {
-                    MondrianModel.CubeUsages elem = new MondrianModel.CubeUsages();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CubeUsage")) {
-                    MondrianModel.CubeUsage elem = new MondrianModel.CubeUsage();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("cubeName")) {
-                             
-                                elem.setCubeName(aval);
-                              
-                        } else if (aname.equals("ignoreUnrelatedDimensions")) {
-                             
-                                elem.setIgnoreUnrelatedDimensions(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("VirtualCubeDimension")) {
-                    MondrianModel.VirtualCubeDimension elem = new MondrianModel.VirtualCubeDimension();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("cubeName")) {
-                             
-                                elem.setCubeName(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   handleCubeDimensionAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("VirtualCubeMeasure")) {
-                    MondrianModel.VirtualCubeMeasure elem = new MondrianModel.VirtualCubeMeasure();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("cubeName")) {
-                             
-                                elem.setCubeName(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("visible")) {
-                             
-                                elem.setVisible(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("DimensionUsage")) {
-                    MondrianModel.DimensionUsage elem = new MondrianModel.DimensionUsage();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("source")) {
-                             
-                                elem.setSource(aval);
-                              
-                        } else if (aname.equals("level")) {
-                             
-                                elem.setLevel(aval);
-                              
-                        } else if (aname.equals("usagePrefix")) {
-                             
-                                elem.setUsagePrefix(aval);
-                              
-                        } else {
-			               
-			                   handleCubeDimensionAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Dimension")) {
-                    MondrianModel.Dimension elem = new MondrianModel.Dimension();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("type")) {
-                             
-                                elem.setType(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("usagePrefix")) {
-                             
-                                elem.setUsagePrefix(aval);
-                              
-                        } else {
-			               
-			                   handleCubeDimensionAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Hierarchy")) {
-                    MondrianModel.Hierarchy elem = new MondrianModel.Hierarchy();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("hasAll")) {
-                             
-                                elem.setHasAll(Boolean.valueOf(aval));
-                              
-                        } else if (aname.equals("allMemberName")) {
-                             
-                                elem.setAllMemberName(aval);
-                              
-                        } else if (aname.equals("allMemberCaption")) {
-                             
-                                elem.setAllMemberCaption(aval);
-                              
-                        } else if (aname.equals("allLevelName")) {
-                             
-                                elem.setAllLevelName(aval);
-                              
-                        } else if (aname.equals("primaryKey")) {
-                             
-                                elem.setPrimaryKey(aval);
-                              
-                        } else if (aname.equals("primaryKeyTable")) {
-                             
-                                elem.setPrimaryKeyTable(aval);
-                              
-                        } else if (aname.equals("defaultMember")) {
-                             
-                                elem.setDefaultMember(aval);
-                              
-                        } else if (aname.equals("memberReaderClass")) {
-                             
-                                elem.setMemberReaderClass(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Level")) {
-                    MondrianModel.Level elem = new MondrianModel.Level();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("approxRowCount")) {
-                             
-                                elem.setApproxRowCount(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("table")) {
-                             
-                                elem.setTable(aval);
-                              
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else if (aname.equals("nameColumn")) {
-                             
-                                elem.setNameColumn(aval);
-                              
-                        } else if (aname.equals("ordinalColumn")) {
-                             
-                                elem.setOrdinalColumn(aval);
-                              
-                        } else if (aname.equals("parentColumn")) {
-                             
-                                elem.setParentColumn(aval);
-                              
-                        } else if (aname.equals("nullParentValue")) {
-                             
-                                elem.setNullParentValue(aval);
-                              
-                        } else if (aname.equals("type")) {
-                             
-                                elem.setType(aval);
-                              
-                        } else if (aname.equals("uniqueMembers")) {
-                             
-                                elem.setUniqueMembers(Boolean.valueOf(aval));
-                              
-                        } else if (aname.equals("levelType")) {
-                             
-                                elem.setLevelType(aval);
-                              
-                        } else if (aname.equals("hideMemberIf")) {
-                             
-                                elem.setHideMemberIf(aval);
-                              
-                        } else if (aname.equals("formatter")) {
-                             
-                                elem.setFormatter(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("captionColumn")) {
-                             
-                                elem.setCaptionColumn(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Closure")) {
-                    MondrianModel.Closure elem = new MondrianModel.Closure();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("parentColumn")) {
-                             
-                                elem.setParentColumn(aval);
-                              
-                        } else if (aname.equals("childColumn")) {
-                             
-                                elem.setChildColumn(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Property")) {
-                    MondrianModel.Property elem = new MondrianModel.Property();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else if (aname.equals("type")) {
-                             
-                                elem.setType(aval);
-                              
-                        } else if (aname.equals("formatter")) {
-                             
-                                elem.setFormatter(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Measure")) {
-                    MondrianModel.Measure elem = new MondrianModel.Measure();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else if (aname.equals("datatype")) {
-                             
-                                elem.setDatatype(aval);
-                              
-                        } else if (aname.equals("formatString")) {
-                             
-                                elem.setFormatString(aval);
-                              
-                        } else if (aname.equals("aggregator")) {
-                             
-                                elem.setAggregator(aval);
-                              
-                        } else if (aname.equals("formatter")) {
-                             
-                                elem.setFormatter(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("visible")) {
-                             
-                                elem.setVisible(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CalculatedMember")) {
-                    MondrianModel.CalculatedMember elem = new MondrianModel.CalculatedMember();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("formatString")) {
-                             
-                                elem.setFormatString(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("formula")) {
-                             
-                                elem.setFormula(aval);
-                              
-                        } else if (aname.equals("dimension")) {
-                             
-                                elem.setDimension(aval);
-                              
-                        } else if (aname.equals("visible")) {
-                             
-                                elem.setVisible(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CalculatedMemberProperty")) {
-                    MondrianModel.CalculatedMemberProperty elem = new MondrianModel.CalculatedMemberProperty();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("caption")) {
-                             
-                                elem.setCaption(aval);
-                              
-                        } else if (aname.equals("expression")) {
-                             
-                                elem.setExpression(aval);
-                              
-                        } else if (aname.equals("value")) {
-                             
-                                elem.setValue(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("NamedSet")) {
-                    MondrianModel.NamedSet elem = new MondrianModel.NamedSet();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("formula")) {
-                             
-                                elem.setFormula(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Formula")) {
-                    MondrianModel.Formula elem = new MondrianModel.Formula();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("MemberReaderParameter")) {
-                    MondrianModel.MemberReaderParameter elem = new MondrianModel.MemberReaderParameter();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("value")) {
-                             
-                                elem.setValue(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("View")) {
-                    MondrianModel.View elem = new MondrianModel.View();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("alias")) {
-                             
-                                elem.setAlias(aval);
-                              
-                        } else {
-			               
-			                   handleRelationAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("SQL")) {
-                    MondrianModel.SQL elem = new MondrianModel.SQL();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("dialect")) {
-                             
-                                elem.setDialect(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Join")) {
-                    MondrianModel.Join elem = new MondrianModel.Join();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("leftAlias")) {
-                             
-                                elem.setLeftAlias(aval);
-                              
-                        } else if (aname.equals("leftKey")) {
-                             
-                                elem.setLeftKey(aval);
-                              
-                        } else if (aname.equals("rightAlias")) {
-                             
-                                elem.setRightAlias(aval);
-                              
-                        } else if (aname.equals("rightKey")) {
-                             
-                                elem.setRightKey(aval);
-                              
-                        } else {
-			               
-			                   handleRelationOrJoinAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Table")) {
-                    MondrianModel.Table elem = new MondrianModel.Table();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("schema")) {
-                             
-                                elem.setSchema(aval);
-                              
-                        } else if (aname.equals("alias")) {
-                             
-                                elem.setAlias(aval);
-                              
-                        } else {
-			               
-			                   handleRelationAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("InlineTable")) {
-                    MondrianModel.InlineTable elem = new MondrianModel.InlineTable();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("alias")) {
-                             
-                                elem.setAlias(aval);
-                              
-                        } else {
-			               
-			                   handleRelationAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("ColumnDefs")) {
-                    MondrianModel.ColumnDefs elem = new MondrianModel.ColumnDefs();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("ColumnDef")) {
-                    MondrianModel.ColumnDef elem = new MondrianModel.ColumnDef();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("type")) {
-                             
-                                elem.setType(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Rows")) {
-                    MondrianModel.Rows elem = new MondrianModel.Rows();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Row")) {
-                    MondrianModel.Row elem = new MondrianModel.Row();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Value")) {
-                    MondrianModel.Value elem = new MondrianModel.Value();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggName")) {
-                    MondrianModel.AggName elem = new MondrianModel.AggName();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   handleAggTableAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggPattern")) {
-                    MondrianModel.AggPattern elem = new MondrianModel.AggPattern();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("pattern")) {
-                             
-                                elem.setPattern(aval);
-                              
-                        } else {
-			               
-			                   handleAggTableAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggExclude")) {
-                    MondrianModel.AggExclude elem = new MondrianModel.AggExclude();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("pattern")) {
-                             
-                                elem.setPattern(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("ignorecase")) {
-                             
-                                elem.setIgnorecase(Boolean.valueOf(aval));
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggFactCount")) {
-                    MondrianModel.AggFactCount elem = new MondrianModel.AggFactCount();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleAggColumnNameAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggIgnoreColumn")) {
-                    MondrianModel.AggIgnoreColumn elem = new MondrianModel.AggIgnoreColumn();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleAggColumnNameAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggForeignKey")) {
-                    MondrianModel.AggForeignKey elem = new MondrianModel.AggForeignKey();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("factColumn")) {
-                             
-                                elem.setFactColumn(aval);
-                              
-                        } else if (aname.equals("aggColumn")) {
-                             
-                                elem.setAggColumn(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggLevel")) {
-                    MondrianModel.AggLevel elem = new MondrianModel.AggLevel();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("AggMeasure")) {
-                    MondrianModel.AggMeasure elem = new MondrianModel.AggMeasure();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("column")) {
-                             
-                                elem.setColumn(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Column")) {
-                    MondrianModel.Column elem = new MondrianModel.Column();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("table")) {
-                             
-                                elem.setTable(aval);
-                              
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   handleExpressionAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("KeyExpression")) {
-                    MondrianModel.KeyExpression elem = new MondrianModel.KeyExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("ParentExpression")) {
-                    MondrianModel.ParentExpression elem = new MondrianModel.ParentExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("OrdinalExpression")) {
-                    MondrianModel.OrdinalExpression elem = new MondrianModel.OrdinalExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("NameExpression")) {
-                    MondrianModel.NameExpression elem = new MondrianModel.NameExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CaptionExpression")) {
-                    MondrianModel.CaptionExpression elem = new MondrianModel.CaptionExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("MeasureExpression")) {
-                    MondrianModel.MeasureExpression elem = new MondrianModel.MeasureExpression();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleExpressionViewAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Role")) {
-                    MondrianModel.Role elem = new MondrianModel.Role();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("SchemaGrant")) {
-                    MondrianModel.SchemaGrant elem = new MondrianModel.SchemaGrant();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   handleGrantAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("CubeGrant")) {
-                    MondrianModel.CubeGrant elem = new MondrianModel.CubeGrant();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("cube")) {
-                             
-                                elem.setCube(aval);
-                              
-                        } else {
-			               
-			                   handleGrantAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("DimensionGrant")) {
-                    MondrianModel.DimensionGrant elem = new MondrianModel.DimensionGrant();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("dimension")) {
-                             
-                                elem.setDimension(aval);
-                              
-                        } else {
-			               
-			                   handleGrantAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("HierarchyGrant")) {
-                    MondrianModel.HierarchyGrant elem = new MondrianModel.HierarchyGrant();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("hierarchy")) {
-                             
-                                elem.setHierarchy(aval);
-                              
-                        } else if (aname.equals("topLevel")) {
-                             
-                                elem.setTopLevel(aval);
-                              
-                        } else if (aname.equals("bottomLevel")) {
-                             
-                                elem.setBottomLevel(aval);
-                              
-                        } else if (aname.equals("rollupPolicy")) {
-                             
-                                elem.setRollupPolicy(aval);
-                              
-                        } else {
-			               
-			                   handleGrantAttribute(elem, aname, aval);
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("MemberGrant")) {
-                    MondrianModel.MemberGrant elem = new MondrianModel.MemberGrant();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("member")) {
-                             
-                                elem.setMember(aval);
-                              
-                        } else if (aname.equals("access")) {
-                             
-                                elem.setAccess(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Union")) {
-                    MondrianModel.Union elem = new MondrianModel.Union();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("RoleUsage")) {
-                    MondrianModel.RoleUsage elem = new MondrianModel.RoleUsage();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("roleName")) {
-                             
-                                elem.setRoleName(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("UserDefinedFunction")) {
-                    MondrianModel.UserDefinedFunction elem = new MondrianModel.UserDefinedFunction();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("className")) {
-                             
-                                elem.setClassName(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
-	            } else if (qName.equals("Parameter")) {
-                    MondrianModel.Parameter elem = new MondrianModel.Parameter();
-                    currentElement = elem;
-                    for (int i = 0; i < atts.getLength(); i++) {
+	                currentOSessionAtts = new HashMap<String, String>();
+	                for (int i = 0; i < atts.getLength(); i++) {
                         String aname = atts.getQName(i);
                         String aval = atts.getValue(i);
-                        if (olapIdMap != null && aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        
-                        } else if (aname.equals("name")) {
-                             
-                                elem.setName(aval);
-                              
-                        } else if (aname.equals("description")) {
-                             
-                                elem.setDescription(aval);
-                              
-                        } else if (aname.equals("type")) {
-                             
-                                elem.setType(aval);
-                              
-                        } else if (aname.equals("modifiable")) {
-                             
-                                elem.setModifiable(Boolean.valueOf(aval));
-                              
-                        } else if (aname.equals("defaultValue")) {
-                             
-                                elem.setDefaultValue(aval);
-                              
-                        } else {
-			               
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 
-                        }
-                    }
-            
+                        currentOSessionAtts.put(aname, aval);
+	                }
+	                pushElem = false;
+	                currentElement = null;                  
+	            } else if (ELEMENT_TYPES.containsKey(qName)) {
+	                ElementType type = ELEMENT_TYPES.get(qName);
+	                currentElement = type.create();
+	                for (int i = 0; i < atts.getLength(); i++) {
+	                    String aname = atts.getQName(i);
+	                    String aval = atts.getValue(i);
+	                    if (olapIdMap != null && aname.equals("id")) {
+	                        olapIdMap.put(aval, currentElement);
+	                    } else if (!type.setAttribute(currentElement, aname, aval)) {
+	                        logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+currentElement.getClass()+"\"");
+	                    }
+	                }
 	            } else {
 	                pushElem = false;
 	                currentElement = null;
+	                unknownDepth = 1;
 	                if (inOlap) {
 	                	logger.warn("Unknown element type \"" + qName + "\" at locator: " + locator);
 	                } else {
@@ -1570,6 +237,10 @@ public class MondrianXMLReader {
 
         @Override
         public void endElement(String uri, String localName, String qName) {
+            if (unknownDepth > 0) {
+                unknownDepth--;
+                return;
+            }
             if (context.isEmpty()) return;
         	if (context.peek() instanceof MondrianModel.Value) {
                 ((MondrianModel.Value) context.peek()).setText(text.toString().trim());
@@ -1590,110 +261,1142 @@ public class MondrianXMLReader {
         public void setDocumentLocator(Locator locator) {
             this.locator = locator;
         }
-       
-	    private void handleCubeDimensionAttribute(MondrianModel.CubeDimension elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else if (aname.equals("name")) {
-	            
-	                elem.setName(aval);
-	              
-	        } else if (aname.equals("caption")) {
-	            
-	                elem.setCaption(aval);
-	              
-	        } else if (aname.equals("foreignKey")) {
-	            
-	                elem.setForeignKey(aval);
-	              
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
-
-	    private void handleRelationOrJoinAttribute(MondrianModel.RelationOrJoin elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
-
-	    private void handleRelationAttribute(MondrianModel.Relation elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else {
-	          
-	              handleRelationOrJoinAttribute(elem, aname, aval);
-	            
-	        }
-	    }
+    }
 
-	    private void handleAggTableAttribute(MondrianModel.AggTable elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else if (aname.equals("ignorecase")) {
-	            
-	                elem.setIgnorecase(Boolean.valueOf(aval));
-	              
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
+    /**
+     * Creates the model object for one element type and sets its
+     * attributes, including the ones it inherits. The attribute setters are
+     * picked with a switch on the attribute name, which compiles to a hash
+     * lookup, so reading an element does not compare its name or its
+     * attributes' names with every name the reader knows.
+     */
+    private static abstract class ElementType {
+        abstract OLAPObject create();
 
-	    private void handleAggColumnNameAttribute(MondrianModel.AggColumnName elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else if (aname.equals("column")) {
-	            
-	                elem.setColumn(aval);
-	              
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
-
-	    private void handleExpressionAttribute(MondrianModel.Expression elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
-
-	    private void handleExpressionViewAttribute(MondrianModel.ExpressionView elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else {
-	          
-	              handleExpressionAttribute(elem, aname, aval);
-	            
-	        }
-	    }
+        /**
+         * Sets the named attribute on an object this type created. Returns
+         * false if the element has no such attribute.
+         */
+        abstract boolean setAttribute(OLAPObject o, String aname, String aval);
+    }
 
-	    private void handleGrantAttribute(MondrianModel.Grant elem, String aname, String aval) {
-	        if (false) {
-	        
-	        } else if (aname.equals("access")) {
-	            
-	                elem.setAccess(aval);
-	              
-	        } else {
-	          
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            
-	        }
-	    }
+    /**
+     * The element types the reader knows, by element name.
+     */
+    private static final Map<String, ElementType> ELEMENT_TYPES = new HashMap<String, ElementType>();
+    static {
+        ELEMENT_TYPES.put("Schema", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Schema();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Schema elem = (MondrianModel.Schema) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "measuresCaption":
+                    elem.setMeasuresCaption(aval);
+                    return true;
+                case "defaultRole":
+                    elem.setDefaultRole(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Cube", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Cube();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Cube elem = (MondrianModel.Cube) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "defaultMeasure":
+                    elem.setDefaultMeasure(aval);
+                    return true;
+                case "cache":
+                    elem.setCache(Boolean.valueOf(aval));
+                    return true;
+                case "enabled":
+                    elem.setEnabled(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("VirtualCube", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.VirtualCube();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.VirtualCube elem = (MondrianModel.VirtualCube) o;
+                switch (aname) {
+                case "enabled":
+                    elem.setEnabled(Boolean.valueOf(aval));
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "defaultMeasure":
+                    elem.setDefaultMeasure(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CubeUsages", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CubeUsages();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CubeUsages elem = (MondrianModel.CubeUsages) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CubeUsage", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CubeUsage();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CubeUsage elem = (MondrianModel.CubeUsage) o;
+                switch (aname) {
+                case "cubeName":
+                    elem.setCubeName(aval);
+                    return true;
+                case "ignoreUnrelatedDimensions":
+                    elem.setIgnoreUnrelatedDimensions(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("VirtualCubeDimension", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.VirtualCubeDimension();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.VirtualCubeDimension elem = (MondrianModel.VirtualCubeDimension) o;
+                switch (aname) {
+                case "cubeName":
+                    elem.setCubeName(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "foreignKey":
+                    elem.setForeignKey(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("VirtualCubeMeasure", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.VirtualCubeMeasure();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.VirtualCubeMeasure elem = (MondrianModel.VirtualCubeMeasure) o;
+                switch (aname) {
+                case "cubeName":
+                    elem.setCubeName(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "visible":
+                    elem.setVisible(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("DimensionUsage", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.DimensionUsage();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.DimensionUsage elem = (MondrianModel.DimensionUsage) o;
+                switch (aname) {
+                case "source":
+                    elem.setSource(aval);
+                    return true;
+                case "level":
+                    elem.setLevel(aval);
+                    return true;
+                case "usagePrefix":
+                    elem.setUsagePrefix(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "foreignKey":
+                    elem.setForeignKey(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Dimension", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Dimension();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Dimension elem = (MondrianModel.Dimension) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "type":
+                    elem.setType(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "usagePrefix":
+                    elem.setUsagePrefix(aval);
+                    return true;
+                case "foreignKey":
+                    elem.setForeignKey(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Hierarchy", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Hierarchy();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Hierarchy elem = (MondrianModel.Hierarchy) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "hasAll":
+                    elem.setHasAll(Boolean.valueOf(aval));
+                    return true;
+                case "allMemberName":
+                    elem.setAllMemberName(aval);
+                    return true;
+                case "allMemberCaption":
+                    elem.setAllMemberCaption(aval);
+                    return true;
+                case "allLevelName":
+                    elem.setAllLevelName(aval);
+                    return true;
+                case "primaryKey":
+                    elem.setPrimaryKey(aval);
+                    return true;
+                case "primaryKeyTable":
+                    elem.setPrimaryKeyTable(aval);
+                    return true;
+                case "defaultMember":
+                    elem.setDefaultMember(aval);
+                    return true;
+                case "memberReaderClass":
+                    elem.setMemberReaderClass(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Level", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Level();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Level elem = (MondrianModel.Level) o;
+                switch (aname) {
+                case "approxRowCount":
+                    elem.setApproxRowCount(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "table":
+                    elem.setTable(aval);
+                    return true;
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                case "nameColumn":
+                    elem.setNameColumn(aval);
+                    return true;
+                case "ordinalColumn":
+                    elem.setOrdinalColumn(aval);
+                    return true;
+                case "parentColumn":
+                    elem.setParentColumn(aval);
+                    return true;
+                case "nullParentValue":
+                    elem.setNullParentValue(aval);
+                    return true;
+                case "type":
+                    elem.setType(aval);
+                    return true;
+                case "uniqueMembers":
+                    elem.setUniqueMembers(Boolean.valueOf(aval));
+                    return true;
+                case "levelType":
+                    elem.setLevelType(aval);
+                    return true;
+                case "hideMemberIf":
+                    elem.setHideMemberIf(aval);
+                    return true;
+                case "formatter":
+                    elem.setFormatter(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "captionColumn":
+                    elem.setCaptionColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Closure", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Closure();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Closure elem = (MondrianModel.Closure) o;
+                switch (aname) {
+                case "parentColumn":
+                    elem.setParentColumn(aval);
+                    return true;
+                case "childColumn":
+                    elem.setChildColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Property", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Property();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Property elem = (MondrianModel.Property) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                case "type":
+                    elem.setType(aval);
+                    return true;
+                case "formatter":
+                    elem.setFormatter(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Measure", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Measure();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Measure elem = (MondrianModel.Measure) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                case "datatype":
+                    elem.setDatatype(aval);
+                    return true;
+                case "formatString":
+                    elem.setFormatString(aval);
+                    return true;
+                case "aggregator":
+                    elem.setAggregator(aval);
+                    return true;
+                case "formatter":
+                    elem.setFormatter(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "visible":
+                    elem.setVisible(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CalculatedMember", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CalculatedMember();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CalculatedMember elem = (MondrianModel.CalculatedMember) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "formatString":
+                    elem.setFormatString(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "formula":
+                    elem.setFormula(aval);
+                    return true;
+                case "dimension":
+                    elem.setDimension(aval);
+                    return true;
+                case "visible":
+                    elem.setVisible(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CalculatedMemberProperty", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CalculatedMemberProperty();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CalculatedMemberProperty elem = (MondrianModel.CalculatedMemberProperty) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "caption":
+                    elem.setCaption(aval);
+                    return true;
+                case "expression":
+                    elem.setExpression(aval);
+                    return true;
+                case "value":
+                    elem.setValue(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("NamedSet", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.NamedSet();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.NamedSet elem = (MondrianModel.NamedSet) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "formula":
+                    elem.setFormula(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Formula", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Formula();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Formula elem = (MondrianModel.Formula) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("MemberReaderParameter", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.MemberReaderParameter();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.MemberReaderParameter elem = (MondrianModel.MemberReaderParameter) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "value":
+                    elem.setValue(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("View", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.View();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.View elem = (MondrianModel.View) o;
+                switch (aname) {
+                case "alias":
+                    elem.setAlias(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("SQL", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.SQL();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.SQL elem = (MondrianModel.SQL) o;
+                switch (aname) {
+                case "dialect":
+                    elem.setDialect(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Join", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Join();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Join elem = (MondrianModel.Join) o;
+                switch (aname) {
+                case "leftAlias":
+                    elem.setLeftAlias(aval);
+                    return true;
+                case "leftKey":
+                    elem.setLeftKey(aval);
+                    return true;
+                case "rightAlias":
+                    elem.setRightAlias(aval);
+                    return true;
+                case "rightKey":
+                    elem.setRightKey(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Table", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Table();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Table elem = (MondrianModel.Table) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "schema":
+                    elem.setSchema(aval);
+                    return true;
+                case "alias":
+                    elem.setAlias(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("InlineTable", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.InlineTable();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.InlineTable elem = (MondrianModel.InlineTable) o;
+                switch (aname) {
+                case "alias":
+                    elem.setAlias(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("ColumnDefs", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.ColumnDefs();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.ColumnDefs elem = (MondrianModel.ColumnDefs) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("ColumnDef", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.ColumnDef();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.ColumnDef elem = (MondrianModel.ColumnDef) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "type":
+                    elem.setType(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Rows", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Rows();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Rows elem = (MondrianModel.Rows) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Row", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Row();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Row elem = (MondrianModel.Row) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Value", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Value();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Value elem = (MondrianModel.Value) o;
+                switch (aname) {
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggName", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggName();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggName elem = (MondrianModel.AggName) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "ignorecase":
+                    elem.setIgnorecase(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggPattern", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggPattern();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggPattern elem = (MondrianModel.AggPattern) o;
+                switch (aname) {
+                case "pattern":
+                    elem.setPattern(aval);
+                    return true;
+                case "ignorecase":
+                    elem.setIgnorecase(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggExclude", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggExclude();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggExclude elem = (MondrianModel.AggExclude) o;
+                switch (aname) {
+                case "pattern":
+                    elem.setPattern(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "ignorecase":
+                    elem.setIgnorecase(Boolean.valueOf(aval));
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggFactCount", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggFactCount();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggFactCount elem = (MondrianModel.AggFactCount) o;
+                switch (aname) {
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggIgnoreColumn", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggIgnoreColumn();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggIgnoreColumn elem = (MondrianModel.AggIgnoreColumn) o;
+                switch (aname) {
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggForeignKey", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggForeignKey();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggForeignKey elem = (MondrianModel.AggForeignKey) o;
+                switch (aname) {
+                case "factColumn":
+                    elem.setFactColumn(aval);
+                    return true;
+                case "aggColumn":
+                    elem.setAggColumn(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggLevel", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggLevel();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggLevel elem = (MondrianModel.AggLevel) o;
+                switch (aname) {
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("AggMeasure", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.AggMeasure();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.AggMeasure elem = (MondrianModel.AggMeasure) o;
+                switch (aname) {
+                case "column":
+                    elem.setColumn(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Column", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Column();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Column elem = (MondrianModel.Column) o;
+                switch (aname) {
+                case "table":
+                    elem.setTable(aval);
+                    return true;
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("KeyExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.KeyExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.KeyExpression elem = (MondrianModel.KeyExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("ParentExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.ParentExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.ParentExpression elem = (MondrianModel.ParentExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("OrdinalExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.OrdinalExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.OrdinalExpression elem = (MondrianModel.OrdinalExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("NameExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.NameExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.NameExpression elem = (MondrianModel.NameExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CaptionExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CaptionExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CaptionExpression elem = (MondrianModel.CaptionExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("MeasureExpression", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.MeasureExpression();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.MeasureExpression elem = (MondrianModel.MeasureExpression) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Role", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Role();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Role elem = (MondrianModel.Role) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("SchemaGrant", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.SchemaGrant();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.SchemaGrant elem = (MondrianModel.SchemaGrant) o;
+                switch (aname) {
+                case "access":
+                    elem.setAccess(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("CubeGrant", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.CubeGrant();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.CubeGrant elem = (MondrianModel.CubeGrant) o;
+                switch (aname) {
+                case "cube":
+                    elem.setCube(aval);
+                    return true;
+                case "access":
+                    elem.setAccess(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("DimensionGrant", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.DimensionGrant();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.DimensionGrant elem = (MondrianModel.DimensionGrant) o;
+                switch (aname) {
+                case "dimension":
+                    elem.setDimension(aval);
+                    return true;
+                case "access":
+                    elem.setAccess(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("HierarchyGrant", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.HierarchyGrant();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.HierarchyGrant elem = (MondrianModel.HierarchyGrant) o;
+                switch (aname) {
+                case "hierarchy":
+                    elem.setHierarchy(aval);
+                    return true;
+                case "topLevel":
+                    elem.setTopLevel(aval);
+                    return true;
+                case "bottomLevel":
+                    elem.setBottomLevel(aval);
+                    return true;
+                case "rollupPolicy":
+                    elem.setRollupPolicy(aval);
+                    return true;
+                case "access":
+                    elem.setAccess(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("MemberGrant", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.MemberGrant();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.MemberGrant elem = (MondrianModel.MemberGrant) o;
+                switch (aname) {
+                case "member":
+                    elem.setMember(aval);
+                    return true;
+                case "access":
+                    elem.setAccess(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Union", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Union();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Union elem = (MondrianModel.Union) o;
+                switch (aname) {
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("RoleUsage", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.RoleUsage();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.RoleUsage elem = (MondrianModel.RoleUsage) o;
+                switch (aname) {
+                case "roleName":
+                    elem.setRoleName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("UserDefinedFunction", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.UserDefinedFunction();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.UserDefinedFunction elem = (MondrianModel.UserDefinedFunction) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "className":
+                    elem.setClassName(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
+        ELEMENT_TYPES.put("Parameter", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.Parameter();
+            }
 
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.Parameter elem = (MondrianModel.Parameter) o;
+                switch (aname) {
+                case "name":
+                    elem.setName(aval);
+                    return true;
+                case "description":
+                    elem.setDescription(aval);
+                    return true;
+                case "type":
+                    elem.setType(aval);
+                    return true;
+                case "modifiable":
+                    elem.setModifiable(Boolean.valueOf(aval));
+                    return true;
+                case "defaultValue":
+                    elem.setDefaultValue(aval);
+                    return true;
+                default:
+                    return false;
+                }
+            }
+        });
     }
 }
@@ -125,6 +125,15 @@ public class OLAPSession extends OLAPObject {
         return schema;
     }
     
+    /**
+     * Returns the watcher that keeps this session's schema's references up to
+     * date, which also indexes the schema's objects by name.
+     */
+    @NonProperty
+    public SchemaWatcher getSchemaWatcher() {
+        return schemaWatcher;
+    }
+    
     public boolean allowsChildren() {
         return true;
     }
@@ -388,12 +388,7 @@ public class OLAPUtil {
         if (olapSession == null) {
             throw new IllegalArgumentException("Can't find OLAPSession ancestor: " + cu);
         }
-        for (Cube c : olapSession.getSchema().getCubes()) {
-            if (c.getName().equalsIgnoreCase(cu.getCubeName())) {
-                return c;
-            }
-        }
-        return null;
+        return olapSession.getSchemaWatcher().findCube(cu.getCubeName());
     }
 
     /**
@@ -413,40 +408,26 @@ public class OLAPUtil {
             throw new IllegalArgumentException("Can't find OLAPSession ancestor: " + cubeDim);
         }
 
+        SchemaWatcher index = olapSession.getSchemaWatcher();
         if (cubeDim instanceof Dimension) {
             return (Dimension) cubeDim;
         } else if (cubeDim instanceof DimensionUsage) {
-            String dimName = ((DimensionUsage) cubeDim).getSource();
-            for (Dimension d : olapSession.getSchema().getDimensions()) {
-                if (d.getName().equalsIgnoreCase(dimName)) {
-                    return d;
-                }
-            }
+            return index.findPublicDimension(((DimensionUsage) cubeDim).getSource());
         } else if (cubeDim instanceof VirtualCubeDimension) {
             VirtualCubeDimension vCubeDim = (VirtualCubeDimension) cubeDim;
             if (vCubeDim.getCubeName() == null) {
-                String dimName = vCubeDim.getName();
-                for (Dimension d : olapSession.getSchema().getDimensions()) {
-                    if (d.getName().equalsIgnoreCase(dimName)) {
-                        return d;
-                    }
-                }
+                return index.findPublicDimension(vCubeDim.getName());
             } else {
-                for (Cube c : olapSession.getSchema().getCubes()) {
-                    if (c.getName().equalsIgnoreCase(vCubeDim.getCubeName())) {
-                        for (CubeDimension cd : c.getDimensions()) {
-                            if (cd.getName().equalsIgnoreCase(vCubeDim.getName())) {
-                                if (cd instanceof Dimension) {
-                                    return (Dimension) cd;
-                                } else if (cd instanceof DimensionUsage) {
-                                    DimensionUsage du = (DimensionUsage) cd;
-                                    return findReferencedDimension(du);
-                                } else {
-                                    throw new IllegalStateException("Invalid reference by VirtualCubeDimension: " + vCubeDim);
-                                }
-                            }
-                        }
-                    }
+                CubeDimension cd = index.findCubeDimension(vCubeDim.getCubeName(), vCubeDim.getName());
+                if (cd == null) {
+                    return null;
+                } else if (cd instanceof Dimension) {
+                    return (Dimension) cd;
+                } else if (cd instanceof DimensionUsage) {
+                    DimensionUsage du = (DimensionUsage) cd;
+                    return findReferencedDimension(du);
+                } else {
+                    throw new IllegalStateException("Invalid reference by VirtualCubeDimension: " + vCubeDim);
                 }
             }
         } else {
@@ -459,6 +440,8 @@ public class OLAPUtil {
     /**
      * Checks if the name is unique for an OLAPObject, relies on
      * {@link OLAPObject#getName()} for name comparisons, case insensitive.
+     * Cubes, virtual cubes and dimensions are looked up in the session's
+     * {@link SchemaWatcher} rather than by going through the schema.
      * 
      * @param parent
      *            The object that will be the parent.
@@ -475,30 +458,15 @@ public class OLAPUtil {
             throw new IllegalArgumentException("Can't find OLAPSession ancestor: " + parent);
         }
 
+        SchemaWatcher index = olapSession.getSchemaWatcher();
         if (type == Cube.class) {
-            for (Cube c : olapSession.getSchema().getCubes()) {
-                if (c.getName().equalsIgnoreCase(name)) {
-                    return false;
-                }
-            }
+            return name == null || index.findCube(name) == null;
         } else if (type == Dimension.class && parent instanceof Schema) {
-            for (Dimension d : ((Schema) parent).getDimensions()) {
-                if (d.getName().equalsIgnoreCase(name)) {
-                    return false;
-                }
-            }
-        } else if (type == Dimension.class && parent instanceof Cube) {
-            for (CubeDimension cd : ((Cube) parent).getDimensions()) {
-                if (cd.getName().equalsIgnoreCase(name)) {
-                    return false;
-                }
-            }
+            return name == null || index.findPublicDimension(name) == null;
+        } else if ((type == Dimension.class || type == DimensionUsage.class) && parent instanceof Cube) {
+            return isCubeDimensionNameUnique(index, (Cube) parent, name);
         } else if (type == VirtualCube.class) {
-            for (VirtualCube vCube : olapSession.getSchema().getVirtualCubes()) {
-                if (vCube.getName().equalsIgnoreCase(name)) {
-                    return false;
-                }
-            }
+            return name == null || index.findVirtualCube(name) == null;
         } else if (type == Measure.class) {
             Cube c = (Cube) parent;
             for (Measure m : c.getMeasures()) {
@@ -532,16 +500,16 @@ public class OLAPUtil {
                     return false;
                 }
             }
-        } else if (type == DimensionUsage.class) {
-            Cube c = (Cube) parent;
-            for (CubeDimension cd : c.getDimensions()) {
-                if (cd.getName().equalsIgnoreCase(name)) {
-                    return false;
-                }
-            }
         }
         return true;
     }
+
+    /**
+     * Checks if no CubeDimension in the given Cube has the given name.
+     */
+    private static boolean isCubeDimensionNameUnique(SchemaWatcher index, Cube c, String name) {
+        return name == null || index.findCubeDimension(c, name) == null;
+    }
     
     
     
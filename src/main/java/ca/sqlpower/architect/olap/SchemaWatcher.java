@@ -21,6 +21,7 @@ package ca.sqlpower.architect.olap;
 
 import java.beans.PropertyChangeEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,11 +47,21 @@ import ca.sqlpower.util.TransactionEvent;
  * Dimensions, CubeDimensions, and Cubes to update the referencing
  * DimensionUsages, VirtualCubeDimensions, and CubeUsages. It has a poor
  * assumption that OLAPObjects have unique names within the Schema.
- * 
+ * <p>
+ * The maps it keeps are also a live index of the schema, so the
+ * {@link OLAPUtil} methods that look up objects by name ask the session's
+ * watcher instead of searching the schema. If two objects have the same
+ * name, the index holds the first one in the schema, as a search would
+ * find it.
  */
 public class SchemaWatcher implements SPListener {
 
     private static final Logger logger = Logger.getLogger(SchemaWatcher.class);
+    
+    /**
+     * The schema being watched.
+     */
+    private final Schema schema;
 
     /**
      * Maps Dimension name to object for public Dimensions. Names must be kept
@@ -59,10 +70,12 @@ public class SchemaWatcher implements SPListener {
     private final Map<String, Dimension> publicDimensions = new HashMap<String, Dimension>();
 
     /**
-     * Maps CubeDimension "name" to object, see {@link CubeDimensionKey}. Names
+     * Maps each Cube to its CubeDimensions by name. It is keyed by the Cube
+     * itself rather than its name, so the dimensions of a Cube that shares
+     * its name with another one are never taken for the other Cube's. Names
      * must be kept in lower case.
      */
-    private final Map<CubeDimensionKey, CubeDimension> cubeDimensions = new HashMap<CubeDimensionKey, CubeDimension>();
+    private final Map<Cube, Map<String, CubeDimension>> cubeDimensions = new HashMap<Cube, Map<String, CubeDimension>>();
     
     /**
      * Maps Cube name to object. Names must be kept in lower case.
@@ -90,6 +103,7 @@ public class SchemaWatcher implements SPListener {
     private final Map<CubeDimension, List<VirtualCubeDimension>> vCubeDimensionMap = new HashMap<CubeDimension, List<VirtualCubeDimension>>();
 
     public SchemaWatcher(Schema schema) {
+        this.schema = schema;
         populateNameToObjectMaps(schema);
         populateParentToReferencesMaps(schema);
         
@@ -107,14 +121,13 @@ public class SchemaWatcher implements SPListener {
     private void populateNameToObjectMaps(OLAPObject parent) {
         for (OLAPObject child : parent.getChildren(OLAPObject.class)) {
             if (child instanceof Cube) {
-                cubes.put(child.getName().toLowerCase(), (Cube) child);
+                cubes.putIfAbsent(key(child.getName()), (Cube) child);
             } else if (parent instanceof Cube && child instanceof CubeDimension) {
-                CubeDimensionKey cubeDimKey = new CubeDimensionKey(parent.getName(), child.getName());
-                cubeDimensions.put(cubeDimKey, (CubeDimension) child);
+                dimensionsOf((Cube) parent).putIfAbsent(key(child.getName()), (CubeDimension) child);
             } else if (child instanceof Dimension) {
-                publicDimensions.put(child.getName().toLowerCase(), (Dimension) child);
+                publicDimensions.putIfAbsent(key(child.getName()), (Dimension) child);
             } else if (child instanceof VirtualCube) {
-                vCubes.put(child.getName().toLowerCase(), (VirtualCube) child);
+                vCubes.putIfAbsent(key(child.getName()), (VirtualCube) child);
             }
             
             if (child.allowsChildren()) {
@@ -155,6 +168,164 @@ public class SchemaWatcher implements SPListener {
         }
     }
     
+    /**
+     * Returns the key the name maps are kept by, which is the name in lower
+     * case.
+     */
+    private static String key(String name) {
+        return name == null ? null : name.toLowerCase();
+    }
+
+    /**
+     * Removes the entry for the given object from one of the name maps, if
+     * the object is the one the map holds for that name. If another
+     * candidate has the same name, it takes the removed object's place.
+     * 
+     * @param index
+     *            The name map to remove from.
+     * @param name
+     *            The name the object was indexed under, which may not be its
+     *            current name.
+     * @param obj
+     *            The object to remove.
+     * @param candidates
+     *            The objects that could have the same name, in schema order.
+     */
+    private static <T extends OLAPObject> void unindex(Map<String, T> index, String name, T obj, List<? extends T> candidates) {
+        String key = key(name);
+        if (index.get(key) != obj) return;
+        index.remove(key);
+        for (T candidate : candidates) {
+            if (candidate != obj && equal(key, key(candidate.getName()))) {
+                index.put(key, candidate);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the name map of the given Cube's CubeDimensions in
+     * {@link #cubeDimensions}, adding an empty one if it has none yet.
+     */
+    private Map<String, CubeDimension> dimensionsOf(Cube cube) {
+        Map<String, CubeDimension> dimensions = cubeDimensions.get(cube);
+        if (dimensions == null) {
+            dimensions = new HashMap<String, CubeDimension>();
+            cubeDimensions.put(cube, dimensions);
+        }
+        return dimensions;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the Cube with the given name, ignoring case, or null if the
+     * schema has none.
+     */
+    public Cube findCube(String name) {
+        return cubes.get(key(name));
+    }
+
+    /**
+     * Returns the VirtualCube with the given name, ignoring case, or null if
+     * the schema has none.
+     */
+    public VirtualCube findVirtualCube(String name) {
+        return vCubes.get(key(name));
+    }
+
+    /**
+     * Returns the public Dimension with the given name, ignoring case, or
+     * null if the schema has none.
+     */
+    public Dimension findPublicDimension(String name) {
+        return publicDimensions.get(key(name));
+    }
+
+    /**
+     * Returns the CubeDimension with the given name in the named Cube,
+     * ignoring case, or null if there is none. The Cube is the one
+     * {@link #findCube(String)} returns for the name.
+     */
+    public CubeDimension findCubeDimension(String cubeName, String dimensionName) {
+        Cube cube = findCube(cubeName);
+        return cube == null ? null : findCubeDimension(cube, dimensionName);
+    }
+
+    /**
+     * Returns the CubeDimension with the given name in the given Cube,
+     * ignoring case, or null if there is none.
+     */
+    public CubeDimension findCubeDimension(Cube cube, String dimensionName) {
+        Map<String, CubeDimension> dimensions = cubeDimensions.get(cube);
+        return dimensions == null ? null : dimensions.get(key(dimensionName));
+    }
+
+    /**
+     * Returns the DimensionUsages that reference the given public Dimension.
+     */
+    public List<DimensionUsage> getDimensionUsages(Dimension dim) {
+        return unmodifiable(dimensionUsageMap.get(dim));
+    }
+
+    /**
+     * Returns the CubeUsages that reference the given Cube.
+     */
+    public List<CubeUsage> getCubeUsages(Cube cube) {
+        return unmodifiable(cubeUsageMap.get(cube));
+    }
+
+    /**
+     * Returns the VirtualCubeDimensions that reference the given
+     * CubeDimension.
+     */
+    public List<VirtualCubeDimension> getVirtualCubeDimensions(CubeDimension cd) {
+        return unmodifiable(vCubeDimensionMap.get(cd));
+    }
+
+    private static <T> List<T> unmodifiable(List<T> list) {
+        if (list == null) return Collections.emptyList();
+        return Collections.unmodifiableList(list);
+    }
+    
+    /**
+     * Adds the given CubeDimension of the given Cube to
+     * {@link #cubeDimensions}, and to {@link #dimensionUsageMap} if it is a
+     * DimensionUsage.
+     */
+    private void addCubeDimension(Cube c, CubeDimension cd) {
+        dimensionsOf(c).putIfAbsent(key(cd.getName()), cd);
+        if (cd instanceof DimensionUsage) {
+            addToDimensionUsagesMap((DimensionUsage) cd);
+        }
+    }
+
+    /**
+     * Removes the given DimensionUsage from {@link #dimensionUsageMap}.
+     */
+    private void removeFromDimensionUsagesMap(DimensionUsage du) {
+        for (List<DimensionUsage> dimUsages : dimensionUsageMap.values()) {
+            dimUsages.remove(du);
+        }
+    }
+
+    /**
+     * Removes the VirtualCubeDimensions that reference the given
+     * CubeDimension from their VirtualCubes.
+     */
+    private void removeReferencingVCubeDimensions(CubeDimension cd) {
+        List<VirtualCubeDimension> vCubeDims = vCubeDimensionMap.get(cd);
+        if (vCubeDims != null) {
+            for (VirtualCubeDimension vcd: new ArrayList<VirtualCubeDimension>(vCubeDims)) {
+                VirtualCube vCube = (VirtualCube) vcd.getParent();
+                vCube.removeDimension(vcd);
+            }
+        }
+        vCubeDimensionMap.remove(cd);
+    }
+    
     /**
      * Adds the given DimensionUsage to {@link #dimensionUsageMap}.
      * 
@@ -189,8 +360,7 @@ public class SchemaWatcher implements SPListener {
             cd = publicDimensions.get(vcd.getName().toLowerCase());
         } else {
             // non-public CubeDimension referenced.
-            CubeDimensionKey cubeDimKey = new CubeDimensionKey(vcd.getCubeName(), vcd.getName());
-            cd = cubeDimensions.get(cubeDimKey);
+            cd = findCubeDimension(vcd.getCubeName(), vcd.getName());
         }
 
         if (cd == null) {
@@ -233,29 +403,17 @@ public class SchemaWatcher implements SPListener {
 
     public void childAdded(SPChildEvent e) {
         if (e.getSource() instanceof Cube && e.getChild() instanceof CubeDimension) {
-            Cube c = (Cube) e.getSource();
-            CubeDimension cd = (CubeDimension) e.getChild();
-            cubeDimensions.put(new CubeDimensionKey(c.getName(), cd.getName()), cd);
-
-            if (e.getChild() instanceof DimensionUsage) {
-                DimensionUsage du = (DimensionUsage) e.getChild();
-                addToDimensionUsagesMap(du);
-            }
+            addCubeDimension((Cube) e.getSource(), (CubeDimension) e.getChild());
         } else if (e.getChild() instanceof Dimension) {
             Dimension d = (Dimension) e.getChild();
-            publicDimensions.put(d.getName().toLowerCase(), d);
+            publicDimensions.putIfAbsent(key(d.getName()), d);
         } else if (e.getChild() instanceof Cube) {
             Cube c = (Cube) e.getChild();
-            cubes.put(c.getName().toLowerCase(), c);
+            cubes.putIfAbsent(key(c.getName()), c);
             
             // go through the CubeDimensions within the added Cube.
             for (CubeDimension cd : c.getDimensions()) {
-                cubeDimensions.put(new CubeDimensionKey(c.getName(), cd.getName()), cd);
-
-                if (e.getChild() instanceof DimensionUsage) {
-                    DimensionUsage du = (DimensionUsage) e.getChild();
-                    addToDimensionUsagesMap(du);
-                }
+                addCubeDimension(c, cd);
             }
         } else if (e.getChild() instanceof VirtualCubeDimension) {
             VirtualCubeDimension vcd = (VirtualCubeDimension) e.getChild();
@@ -265,7 +423,10 @@ public class SchemaWatcher implements SPListener {
             addToCubeUsagesMap(cu);
         } else if (e.getChild() instanceof VirtualCube) {
             VirtualCube vc = (VirtualCube) e.getChild();
-            vCubes.put(vc.getName().toLowerCase(), vc);
+            vCubes.putIfAbsent(key(vc.getName()), vc);
+            for (VirtualCubeDimension vcd : vc.getDimensions()) {
+                addToVCubeDimensionsMap(vcd);
+            }
             
             CubeUsages cubeUsages = vc.getCubeUsage();
             
@@ -288,27 +449,17 @@ public class SchemaWatcher implements SPListener {
         if (e.getSource() instanceof Cube && e.getChild() instanceof CubeDimension) {
             CubeDimension cd = (CubeDimension) e.getChild();
             Cube c = (Cube) e.getSource();
-            cubeDimensions.remove(new CubeDimensionKey(c.getName(), cd.getName()));
+            unindex(dimensionsOf(c), cd.getName(), cd, c.getDimensions());
             
             // remove the VirtualCubeDimensions referencing this CubeDimension.
-            List<VirtualCubeDimension> vCubeDims = vCubeDimensionMap.get(cd);
-            if (vCubeDims != null) {
-                for (VirtualCubeDimension vcd: new ArrayList<VirtualCubeDimension>(vCubeDims)) {
-                    VirtualCube vCube = (VirtualCube) vcd.getParent();
-                    vCube.removeDimension(vcd);
-                }
-            }
-            vCubeDimensionMap.remove(cd);
+            removeReferencingVCubeDimensions(cd);
 
             if (e.getChild() instanceof DimensionUsage) {
-                DimensionUsage du = (DimensionUsage) e.getChild();
-                for (List<DimensionUsage> dimUsages : dimensionUsageMap.values()) {
-                    dimUsages.remove(du);
-                }
+                removeFromDimensionUsagesMap((DimensionUsage) e.getChild());
             }
         } else if (e.getChild() instanceof Dimension) {
             Dimension dim = (Dimension) e.getChild();
-            publicDimensions.remove(dim.getName().toLowerCase());
+            unindex(publicDimensions, dim.getName(), dim, schema.getDimensions());
             
             // remove the DimensionUsages referencing this Dimension.
             List<DimensionUsage> dimUsages = dimensionUsageMap.get(dim);
@@ -331,7 +482,7 @@ public class SchemaWatcher implements SPListener {
             vCubeDimensionMap.remove(dim);
         } else if (e.getChild() instanceof Cube) {
             Cube cube = (Cube) e.getChild();
-            cubes.remove(cube.getName().toLowerCase());
+            unindex(cubes, cube.getName(), cube, schema.getCubes());
             
             // remove the CubeUsages referencing this Cube.
             List<CubeUsage> cubeUsages = cubeUsageMap.get(cube);
@@ -343,17 +494,15 @@ public class SchemaWatcher implements SPListener {
             }
             cubeUsageMap.remove(cube);
 
-            // remove the VirtualCubeDimensions referencing CubeDimensions within the Cube.
+            // remove the VirtualCubeDimensions referencing CubeDimensions within
+            // the Cube, and the Cube's own CubeDimensions from the index.
             for (CubeDimension cd : cube.getDimensions()) {
-                List<VirtualCubeDimension> vCubeDims = vCubeDimensionMap.get(cd);
-                if (vCubeDims != null) {
-                    for (VirtualCubeDimension vcd: new ArrayList<VirtualCubeDimension>(vCubeDims)) {
-                        VirtualCube vCube = (VirtualCube) vcd.getParent();
-                        vCube.removeDimension(vcd);
-                    }
+                removeReferencingVCubeDimensions(cd);
+                if (cd instanceof DimensionUsage) {
+                    removeFromDimensionUsagesMap((DimensionUsage) cd);
                 }
-                vCubeDimensionMap.remove(cd);
             }
+            cubeDimensions.remove(cube);
         } else if (e.getChild() instanceof CubeUsage) {
             CubeUsage cu = (CubeUsage) e.getChild();
             for (List<CubeUsage> cubeUsages : cubeUsageMap.values()) {
@@ -361,7 +510,12 @@ public class SchemaWatcher implements SPListener {
             }
         } else if (e.getChild() instanceof VirtualCube) {
             VirtualCube vc = (VirtualCube) e.getChild();
-            vCubes.remove(vc.getName().toLowerCase());
+            unindex(vCubes, vc.getName(), vc, schema.getVirtualCubes());
+            for (VirtualCubeDimension vcd : vc.getDimensions()) {
+                for (List<VirtualCubeDimension> vCubeDims : vCubeDimensionMap.values()) {
+                    vCubeDims.remove(vcd);
+                }
+            }
             
             // CubeUsages are a property of VirtualCube instead of a child. This means
             // OLAPUtil.listenToHierarchy() doesn't pick them up. So we have to listen
@@ -405,12 +559,14 @@ public class SchemaWatcher implements SPListener {
                 SQLPowerUtils.listenToHierarchy(newUsages, this);
             }
         } else if ("name".equals(evt.getPropertyName())) {
-            if (evt.getSource() instanceof Dimension) {
-                Dimension dim = (Dimension) evt.getSource();
+            if (evt.getSource() instanceof VirtualCubeDimension) {
+                // only references other objects by name, nothing to update.
+            } else if (evt.getSource() instanceof CubeDimension) {
+                CubeDimension dim = (CubeDimension) evt.getSource();
                 String oldName = (String) evt.getOldValue();
                 String newName = (String) evt.getNewValue();
 
-                if (dim.getParent() instanceof Schema) {
+                if (dim instanceof Dimension && dim.getParent() instanceof Schema) {
                     // update DimensionUsages referencing this public dimension.
                     List<DimensionUsage> dimUsages = dimensionUsageMap.get(dim);
                     if (dimUsages != null) {
@@ -420,12 +576,13 @@ public class SchemaWatcher implements SPListener {
                         }
                     }
                     
-                    publicDimensions.remove(oldName.toLowerCase());
-                    publicDimensions.put(newName.toLowerCase(), dim);
+                    unindex(publicDimensions, oldName, (Dimension) dim, schema.getDimensions());
+                    publicDimensions.putIfAbsent(key(newName), (Dimension) dim);
                 } else if (dim.getParent() instanceof Cube) {
-                    String cubeName = dim.getParent().getName();
-                    cubeDimensions.remove(new CubeDimensionKey(cubeName, dim.getName()));
-                    cubeDimensions.put(new CubeDimensionKey(cubeName, newName), dim);
+                    Cube cube = (Cube) dim.getParent();
+                    Map<String, CubeDimension> dimensions = dimensionsOf(cube);
+                    unindex(dimensions, oldName, dim, cube.getDimensions());
+                    dimensions.putIfAbsent(key(newName), dim);
                 } else {
                     logger.warn("Unexpected parent of " + dim + " :" + dim.getParent());
                 }
@@ -442,7 +599,8 @@ public class SchemaWatcher implements SPListener {
                 String oldName = (String) evt.getOldValue();
                 String newName = (String) evt.getNewValue();
                 
-                // update VirtualCubeDimensions referencing CubeDimensions of this Cube.
+                // update VirtualCubeDimensions referencing CubeDimensions of
+                // this Cube.
                 for (CubeDimension cubeDim : cube.getDimensions()) {
                     List<VirtualCubeDimension> vCubeDims = vCubeDimensionMap.get(cubeDim);
                     if (vCubeDims != null) {
@@ -460,90 +618,19 @@ public class SchemaWatcher implements SPListener {
                     }
                 }
                 
-                cubes.remove(oldName.toLowerCase());
-                cubes.put(newName.toLowerCase(), cube);
+                unindex(cubes, oldName, cube, schema.getCubes());
+                cubes.putIfAbsent(key(newName), cube);
             } else if (evt.getSource() instanceof VirtualCube) {
                 VirtualCube vCube = (VirtualCube) evt.getSource();
                 String oldName = (String) evt.getOldValue();
                 String newName = (String) evt.getNewValue();
                 
-                vCubes.remove(oldName.toLowerCase());
-                vCubes.put(newName.toLowerCase(), vCube);
+                unindex(vCubes, oldName, vCube, schema.getVirtualCubes());
+                vCubes.putIfAbsent(key(newName), vCube);
             }
         }
     }
     
-    /**
-     * A composite key class that holds the cubeName and name properties in a
-     * VirtualCubeDimension. The cubeName property identifies the name of Cube
-     * that holds the CubeDimension and the name property identifies the name of
-     * the CubeDimenion. Both strings are converted to lower case at
-     * constructor. This will form the key used to find the CubeDimension that a
-     * VirtualCubeDimension is referencing.
-     * 
-     */
-    private class CubeDimensionKey {
-        private final String cubeName;
-        private final String dimensionName;
-
-        public CubeDimensionKey(String cubeName, String dimensionName) {
-            this.cubeName = cubeName.toLowerCase();
-            this.dimensionName = dimensionName.toLowerCase();
-        }
-
-        public String getCubeName() {
-            return cubeName;
-        }
-
-        public String getDimensionName() {
-            return dimensionName;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof CubeDimensionKey)) {
-                return false;
-            }
-
-            if (this == obj) {
-                return true;
-            }
-
-            final CubeDimensionKey other = (CubeDimensionKey) obj;
-            if (getCubeName() == null) {
-                if (other.getCubeName() != null) {
-                    return false;
-                }
-            } else if (!getCubeName().equals(other.getCubeName())) {
-                return false;
-            }
-
-            if (getDimensionName() == null) {
-                if (other.getDimensionName() != null) {
-                    return false;
-                }
-            } else if (!getDimensionName().equals(other.getDimensionName())) {
-                return false;
-            }
-
-            return true;
-        }
-
-        @Override
-        public int hashCode() {
-            final int PRIME = 31;
-            int result = 0;
-            result = PRIME * result + ((getCubeName() == null) ? 0 : getCubeName().hashCode());
-            result = PRIME * result + ((getDimensionName() == null) ? 0 : getDimensionName().hashCode());
-            return result;
-        }
-
-        @Override
-        public String toString() {
-            return getCubeName() + "." + getDimensionName();
-        }
-    }
-    
     public void transactionEnded(TransactionEvent e) {
         //no-op        
     }
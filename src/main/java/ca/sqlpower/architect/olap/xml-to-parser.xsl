@@ -129,6 +129,13 @@ public class MondrianXMLReader {
         private Map&lt;String, String&gt;  currentOSessionAtts;
         
         private boolean inOlap;
+
+        /**
+         * The depth of unknown elements the reader is inside of. Nothing is
+         * pushed for an unknown element, so its end and everything in it
+         * must be skipped rather than popping the element around it.
+         */
+        private int unknownDepth;
        
         private final boolean importMode;
         
@@ -157,6 +164,10 @@ public class MondrianXMLReader {
 	            	inOlap = true;
 	           	}
 	           	if (!inOlap) return;
+	           	if (unknownDepth &gt; 0) {
+	           	    unknownDepth++;
+	           	    return;
+	           	}
 	            
 	            if (qName.equals("olap")) {
 	                currentElement = root;
@@ -170,41 +181,22 @@ public class MondrianXMLReader {
 	                }
 	                pushElem = false;
 	                currentElement = null;                  
-	           <xsl:for-each select="Element">
-	            } else if (qName.equals("<xsl:value-of select="@type"/>")) {
-                    MondrianModel.<xsl:value-of select="@type"/> elem = new MondrianModel.<xsl:value-of select="@type"/>();
-                    currentElement = elem;
-                    for (int i = 0; i &lt; atts.getLength(); i++) {
-                        String aname = atts.getQName(i);
-                        String aval = atts.getValue(i);
-                        if (olapIdMap != null &amp;&amp; aname.equals("id")) {
-                       		olapIdMap.put(aval, elem);
-                        <xsl:for-each select="Attribute">
-                        } else if (aname.equals("<xsl:value-of select="@name"/>")) {
-                             <xsl:choose>
-                              <xsl:when test="@type = 'Boolean'">
-                                elem.set<xsl:call-template name="name-initcap"/>(Boolean.valueOf(aval));
-                              </xsl:when>
-                              <xsl:otherwise>
-                                elem.set<xsl:call-template name="name-initcap"/>(aval);
-                              </xsl:otherwise>
-                            </xsl:choose>
-                        </xsl:for-each>
-                        } else {
-			               <xsl:choose>
-			                 <xsl:when test="@class">
-			                   handle<xsl:value-of select="@class"/>Attribute(elem, aname, aval);
-			                 </xsl:when>
-			                 <xsl:otherwise>
-			                   logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-			                 </xsl:otherwise>
-			               </xsl:choose>
-                        }
-                    }
-            </xsl:for-each>
+	            } else if (ELEMENT_TYPES.containsKey(qName)) {
+	                ElementType type = ELEMENT_TYPES.get(qName);
+	                currentElement = type.create();
+	                for (int i = 0; i &lt; atts.getLength(); i++) {
+	                    String aname = atts.getQName(i);
+	                    String aval = atts.getValue(i);
+	                    if (olapIdMap != null &amp;&amp; aname.equals("id")) {
+	                        olapIdMap.put(aval, currentElement);
+	                    } else if (!type.setAttribute(currentElement, aname, aval)) {
+	                        logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+currentElement.getClass()+"\"");
+	                    }
+	                }
 	            } else {
 	                pushElem = false;
 	                currentElement = null;
+	                unknownDepth = 1;
 	                if (inOlap) {
 	                	logger.warn("Unknown element type \"" + qName + "\" at locator: " + locator);
 	                } else {
@@ -261,6 +253,10 @@ public class MondrianXMLReader {
 
         @Override
         public void endElement(String uri, String localName, String qName) {
+            if (unknownDepth &gt; 0) {
+                unknownDepth--;
+                return;
+            }
             if (context.isEmpty()) return;
         	if (context.peek() instanceof MondrianModel.Value) {
                 ((MondrianModel.Value) context.peek()).setText(text.toString().trim());
@@ -281,38 +277,86 @@ public class MondrianXMLReader {
         public void setDocumentLocator(Locator locator) {
             this.locator = locator;
         }
-       <xsl:apply-templates select="Class"/>
+    }
+
+    /**
+     * Creates the model object for one element type and sets its
+     * attributes, including the ones it inherits. The attribute setters are
+     * picked with a switch on the attribute name, which compiles to a hash
+     * lookup, so reading an element does not compare its name or its
+     * attributes' names with every name the reader knows.
+     */
+    private static abstract class ElementType {
+        abstract OLAPObject create();
+
+        /**
+         * Sets the named attribute on an object this type created. Returns
+         * false if the element has no such attribute.
+         */
+        abstract boolean setAttribute(OLAPObject o, String aname, String aval);
+    }
+
+    /**
+     * The element types the reader knows, by element name.
+     */
+    private static final Map&lt;String, ElementType&gt; ELEMENT_TYPES = new HashMap&lt;String, ElementType&gt;();
+    static {<xsl:for-each select="Element">
+        ELEMENT_TYPES.put("<xsl:value-of select="@type"/>", new ElementType() {
+            OLAPObject create() {
+                return new MondrianModel.<xsl:value-of select="@type"/>();
+            }
+
+            boolean setAttribute(OLAPObject o, String aname, String aval) {
+                MondrianModel.<xsl:value-of select="@type"/> elem = (MondrianModel.<xsl:value-of select="@type"/>) o;
+                switch (aname) {<xsl:for-each select="Attribute"><xsl:call-template name="attribute-case"/></xsl:for-each>
+                <xsl:if test="@class">
+                  <xsl:call-template name="class-attribute-cases">
+                    <xsl:with-param name="class" select="@class"/>
+                    <xsl:with-param name="seen"><xsl:for-each select="Attribute">|<xsl:value-of select="@name"/>|</xsl:for-each></xsl:with-param>
+                  </xsl:call-template>
+                </xsl:if>
+                default:
+                    return false;
+                }
+            }
+        });</xsl:for-each>
     }
 }
 </xsl:template>
 
-<xsl:template match="Class">
-	    private void handle<xsl:value-of select="@class"/>Attribute(MondrianModel.<xsl:value-of select="@class"/> elem, String aname, String aval) {
-	        if (false) {
-	        <xsl:for-each select="Attribute">
-	        } else if (aname.equals("<xsl:value-of select="@name"/>")) {
-	            <xsl:choose>
-	              <xsl:when test="@type = 'Boolean'">
-	                elem.set<xsl:call-template name="name-initcap"/>(Boolean.valueOf(aval));
-	              </xsl:when>
-	              <xsl:otherwise>
-	                elem.set<xsl:call-template name="name-initcap"/>(aval);
-	              </xsl:otherwise>
-	            </xsl:choose>
-	        </xsl:for-each>
-	        } else {
-	          <xsl:choose>
-	            <xsl:when test="@superclass">
-	              handle<xsl:value-of select="@superclass"/>Attribute(elem, aname, aval);
-	            </xsl:when>
-	            <xsl:otherwise>
-	              logger.warn("Skipping unknown attribute \""+aname+"\" of element \""+elem.getClass()+"\"");
-	            </xsl:otherwise>
-	          </xsl:choose>
-	        }
-	    }
+<!--
+  Writes the cases that set each attribute of the given class and its
+  superclasses, leaving out the ones named in $seen, which the element or
+  a subclass already set.
+-->
+<xsl:template name="class-attribute-cases">
+  <xsl:param name="class"/>
+  <xsl:param name="seen"/>
+  <xsl:for-each select="/Model/Class[@class = $class]">
+    <xsl:for-each select="Attribute[not(contains($seen, concat('|', @name, '|')))]">
+      <xsl:call-template name="attribute-case"/>
+    </xsl:for-each>
+    <xsl:if test="@superclass">
+      <xsl:call-template name="class-attribute-cases">
+        <xsl:with-param name="class" select="@superclass"/>
+        <xsl:with-param name="seen">
+          <xsl:value-of select="$seen"/>
+          <xsl:for-each select="Attribute">|<xsl:value-of select="@name"/>|</xsl:for-each>
+        </xsl:with-param>
+      </xsl:call-template>
+    </xsl:if>
+  </xsl:for-each>
 </xsl:template>
 
+<!-- Writes the switch case that sets the current Attribute -->
+<xsl:template name="attribute-case">
+                case "<xsl:value-of select="@name"/>":
+                    <xsl:choose>
+                      <xsl:when test="@type = 'Boolean'">elem.set<xsl:call-template name="name-initcap"/>(Boolean.valueOf(aval));</xsl:when>
+                      <xsl:otherwise>elem.set<xsl:call-template name="name-initcap"/>(aval);</xsl:otherwise>
+                    </xsl:choose>
+                    return true;</xsl:template>
+
 <!-- Returns the initcap version of the "name" attribute of the current element -->
 <xsl:template name="name-initcap">
   <xsl:value-of select="concat(translate(substring(@name,1,1), 'abcdefghijklmnopqrstuvwxyz', 'ABCDEFGHIJKLMNOPQRSTUVWXYZ'), substring(@name, 2))"/>
@@ -44,14 +44,27 @@ public class ColumnProfileResult extends AbstractProfileResult<SQLColumn> {
 
     private static final Logger logger = Logger.getLogger(ColumnProfileResult.class);
 
-    private int distinctValueCount;
+    private long distinctValueCount;
     private Object minValue;
     private Object maxValue;
     private Object avgValue;
     private int minLength;
     private int maxLength;
     private double avgLength;
-    private int nullCount;
+    private long nullCount;
+
+    /**
+     * The half width of the 95% confidence interval around the null count
+     * when it was estimated from a sample, otherwise 0.
+     */
+    private long nullCountErrorBound;
+
+    /**
+     * The half width of the interval around the distinct value count that the
+     * true count is expected to fall in when it was estimated from a sample,
+     * otherwise 0.
+     */
+    private long distinctValueCountErrorBound;
     private List<ColumnValueCount> topTen = new ArrayList<ColumnValueCount>();
     
     /**
@@ -76,6 +89,8 @@ public class ColumnProfileResult extends AbstractProfileResult<SQLColumn> {
         this.minLength = cprToCopy.minLength;
         this.minValue = cprToCopy.minValue;
         this.nullCount = cprToCopy.nullCount;
+        this.nullCountErrorBound = cprToCopy.nullCountErrorBound;
+        this.distinctValueCountErrorBound = cprToCopy.distinctValueCountErrorBound;
         setParent(cprToCopy.getParent());
         for (int i = 0; i < cprToCopy.getValueCount().size(); i++) {
             ColumnValueCount cvc = cprToCopy.getValueCount().get(i);
@@ -112,13 +127,13 @@ public class ColumnProfileResult extends AbstractProfileResult<SQLColumn> {
     }
 
     @Accessor
-    public int getDistinctValueCount() {
+    public long getDistinctValueCount() {
         return distinctValueCount;
     }
 
     @Mutator
-    public void setDistinctValueCount(int distinctValueCount) {
-        int oldVal = this.distinctValueCount;
+    public void setDistinctValueCount(long distinctValueCount) {
+        long oldVal = this.distinctValueCount;
         this.distinctValueCount = distinctValueCount;
         firePropertyChange("distinctValueCount", oldVal, distinctValueCount);
     }
@@ -193,18 +208,42 @@ public class ColumnProfileResult extends AbstractProfileResult<SQLColumn> {
     }
 
     @Accessor
-    public int getNullCount() {
+    public long getNullCount() {
         return nullCount;
     }
 
     @Mutator
-    public void setNullCount(int nullCount) {
-        int oldCount = this.nullCount;
+    public void setNullCount(long nullCount) {
+        long oldCount = this.nullCount;
         this.nullCount = nullCount;
         firePropertyChange("nullCount", oldCount, nullCount);
     }
 
-    public void addValueCount(Object value, int count) {
+    @Accessor
+    public long getNullCountErrorBound() {
+        return nullCountErrorBound;
+    }
+
+    @Mutator
+    public void setNullCountErrorBound(long nullCountErrorBound) {
+        long oldBound = this.nullCountErrorBound;
+        this.nullCountErrorBound = nullCountErrorBound;
+        firePropertyChange("nullCountErrorBound", oldBound, nullCountErrorBound);
+    }
+
+    @Accessor
+    public long getDistinctValueCountErrorBound() {
+        return distinctValueCountErrorBound;
+    }
+
+    @Mutator
+    public void setDistinctValueCountErrorBound(long distinctValueCountErrorBound) {
+        long oldBound = this.distinctValueCountErrorBound;
+        this.distinctValueCountErrorBound = distinctValueCountErrorBound;
+        firePropertyChange("distinctValueCountErrorBound", oldBound, distinctValueCountErrorBound);
+    }
+
+    public void addValueCount(Object value, long count) {
         double per =  count/(double)getParent().getRowCount();
         
         ColumnValueCount columnValueCount;
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.profile;
+
+import java.util.List;
+
+/**
+ * Supplies the column results of a {@link TableProfileResult} that was
+ * created without them, such as one loaded from a project file where the
+ * column results are only read when something asks for them. See
+ * {@link TableProfileResult#setColumnResultLoader(ColumnProfileResultLoader)}.
+ */
+public interface ColumnProfileResultLoader {
+
+    /**
+     * Returns the number of column results this loader will supply.
+     */
+    int getColumnCount();
+
+    /**
+     * Returns the number of column results this loader will supply that do
+     * not have an exception.
+     */
+    int getSuccessfulColumnCount();
+
+    /**
+     * Reads the column results of the given table result. This is called at
+     * most once for each table result, and the results are added to the table
+     * result without firing any events.
+     */
+    List<ColumnProfileResult> loadColumnResults(TableProfileResult result) throws Exception;
+}
@@ -84,7 +84,7 @@ public class ColumnValueCount extends AbstractSPObject {
     }
     
     private final Object value;
-    private final int count;
+    private final long count;
     private final double percent;
 
     /**
@@ -119,7 +119,7 @@ public class ColumnValueCount extends AbstractSPObject {
      */
     @Constructor
     public ColumnValueCount(@ConstructorParameter(propertyName="value") Object value, 
-            @ConstructorParameter(propertyName="count") int count, 
+            @ConstructorParameter(propertyName="count") long count, 
             @ConstructorParameter(propertyName="percent") double percent,
             @ConstructorParameter(propertyName="otherValues") boolean otherValues) {
         setName("New Column Value Count");
@@ -146,7 +146,7 @@ public class ColumnValueCount extends AbstractSPObject {
     }
     
     @Accessor
-    public int getCount() {
+    public long getCount() {
         return count;
     }
     
@@ -186,7 +186,7 @@ public class ColumnValueCount extends AbstractSPObject {
         if (value != null) {
             result = 37 * result + value.hashCode();
         }
-        result = 37 * result + count;
+        result = 37 * result + (int) (count ^ (count >>> 32));
         return result;
     }
 
@@ -75,9 +75,10 @@ public interface ProfileManager extends SPObject {
     /**
      * Creates TableProfileResult objects for each of the tables in the
      * given list, then adds them to this ProfileManager in an unpopulated
-     * state.  Then starts a new worker thread which will populate the results
-     * one after the other.  It is likely that none of the profiles will be
-     * populated yet by the time this method returns.
+     * state.  Then schedules the results to be populated on worker threads,
+     * several at a time as allowed by the default profile settings.  It is
+     * likely that none of the profiles will be populated yet by the time this
+     * method returns.
      */
     public Collection<Future<TableProfileResult>> asynchCreateProfiles(Collection<SQLTable> tables);
 
@@ -94,6 +95,19 @@ public interface ProfileManager extends SPObject {
      *            process of profiling, and also not already finished profiling.
      */
     public Future<TableProfileResult> scheduleProfile(TableProfileResult result);
+
+    /**
+     * Cancels every profile that has been scheduled but has not finished
+     * populating. Profiles that are being populated are asked to stop through
+     * their progress monitors.
+     */
+    public void cancelScheduledProfiles();
+
+    /**
+     * Returns the scheduler that runs this profile manager's profiling jobs.
+     * It can be polled for throughput statistics.
+     */
+    public ProfileScheduler getScheduler();
     
     /**
      * Removes a single TableProfileResult from the List of TableProfileResults
@@ -22,11 +22,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
@@ -147,10 +148,20 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
     private ProfileSettings defaultProfileSettings = new ProfileSettings();
 
     /**
-     * The Profile Executor manages the thread that actually does the work
-     * of creating the profiles.
+     * The Profile Scheduler manages the threads that actually do the work
+     * of creating the profiles. Its limits are kept in sync with the default
+     * profile settings each time a profile is scheduled. A session gives all
+     * of its profile managers the same scheduler, so its per data source
+     * limit holds across them; a manager that is not given one creates its
+     * own the first time it is needed. Null until then.
      */
-    private ExecutorService profileExecutor = Executors.newSingleThreadExecutor();
+    private ProfileScheduler profileScheduler;
+
+    /**
+     * True if {@link #profileScheduler} was created by this manager, in which
+     * case closing this manager shuts it down.
+     */
+    private boolean ownsScheduler;
 
     /**
      * The creator that will be used to create profiles.
@@ -167,7 +178,9 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
      */
     private List<TableProfileCreator> profileCreators = Arrays.asList(
             (TableProfileCreator)new RemoteDatabaseProfileCreator(getDefaultProfileSettings()),
-            new LocalReservoirProfileCreator(getDefaultProfileSettings()));
+            new LocalReservoirProfileCreator(getDefaultProfileSettings()),
+            new StreamingProfileCreator(getDefaultProfileSettings()),
+            new SampledProfileCreator(getDefaultProfileSettings()));
 
     /**
      * A Callable interface which populates a single profile result then returns
@@ -184,6 +197,13 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
      * and these objects cannot be modified by outside classes. When the
      * profiling is one the profiles themselves will be updated on the
      * foreground thread so the object model stays single threaded.
+     * <p>
+     * When the profile settings ask for incremental profiling, the table's
+     * fingerprint is computed first. If it matches the fingerprint of the
+     * table's last profile, and that profile was made by the same kind of
+     * profile creator with the same result settings, that profile's column
+     * results are copied into the new result and the table is not profiled
+     * again.
      */
     private class ProfileResultCallable implements Callable<TableProfileResult> {
         
@@ -200,11 +220,28 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
          */
         private final TableProfileResult tpr;
 
-        ProfileResultCallable(TableProfileResult actualTPR) {
+        /**
+         * A copy of the last profile of the same table that has a
+         * fingerprint, or null if the profile is not incremental or there is
+         * no such profile. The copy's column results belong to the same
+         * copy of the table as {@link #tpr}.
+         */
+        private final TableProfileResult previousTPR;
+
+        /**
+         * @param actualTPR
+         *            The profile result to populate.
+         * @param previous
+         *            The last finished profile of the same table, whose
+         *            results may be reused. Null if the table must be
+         *            profiled regardless of its fingerprint.
+         */
+        ProfileResultCallable(TableProfileResult actualTPR, TableProfileResult previous) {
             if (actualTPR == null) throw new NullPointerException("Can't populate a null profile result!");
             this.actualTPR = actualTPR;
             SQLTable table;
             TableProfileResult tempTPR;
+            TableProfileResult previousTempTPR = null;
             try {
                 SQLTable profileTable = actualTPR.getProfiledObject();
                 table = new SQLTable(profileTable.getParentDatabase(), true);
@@ -226,13 +263,19 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
                 ProfileManager backgroundPM = new ProfileManagerImpl();
                 backgroundPM.setUUID(actualTPR.getParent().getUUID());
                 tempTPR.setParent(backgroundPM);
+                
+                if (previous != null) {
+                    previousTempTPR = new TableProfileResult(previous, table);
+                }
             } catch (Exception e) {
                 //If an exception is thrown during setup define the profile to have an exception on
                 //it and handle appropriately when doing the profile.
                 tempTPR = null;
+                previousTempTPR = null;
                 actualTPR.setException(e);
             }
             tpr = tempTPR;
+            previousTPR = previousTempTPR;
         }
         
         /**
@@ -243,7 +286,34 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
             if (actualTPR.getException() != null) {
                 throw actualTPR.getException();
             }
-            creator.doProfile(tpr);
+            ProfileSettings settings = tpr.getSettings();
+            if (settings != null && settings.isIncrementalProfiling()) {
+                long fingerprintStart = System.currentTimeMillis();
+                String fingerprint = null;
+                try {
+                    fingerprint = TableFingerprint.compute(tpr.getProfiledObject(), settings.getWatermarkColumnName()) +
+                        " " + reuseKey(settings);
+                } catch (Exception e) {
+                    logger.warn("Could not compute the fingerprint of " + tpr.getProfiledObject().getName() +
+                            ", profiling it in full", e);
+                }
+                long fingerprintTime = System.currentTimeMillis() - fingerprintStart;
+                if (fingerprint != null && previousTPR != null && fingerprint.equals(previousTPR.getFingerprint())) {
+                    logger.debug("Table " + tpr.getProfiledObject().getName() + " has not changed, reusing its last profile");
+                    reuseProfile(previousTPR, tpr);
+                    tpr.setQueryCount(1);
+                    tpr.setQueryTime(fingerprintTime);
+                } else {
+                    creator.doProfile(tpr);
+                    if (fingerprint != null) {
+                        tpr.setQueryCount(tpr.getQueryCount() + 1);
+                        tpr.setQueryTime(tpr.getQueryTime() + fingerprintTime);
+                    }
+                }
+                tpr.setFingerprint(fingerprint);
+            } else {
+                creator.doProfile(tpr);
+            }
             Runnable runner = new Runnable() {
                 public void run() {
                     //None of the profiling creates or saves any data source information so an
@@ -281,6 +351,45 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
             
             return actualTPR;
         }
+
+        /**
+         * Returns what, besides the table's fingerprint, must be the same for
+         * a profile to be reused: the kind of profile creator and the
+         * settings that change what it finds, such as the sample percentage.
+         * It is recorded as part of the result's fingerprint.
+         */
+        private String reuseKey(ProfileSettings settings) {
+            return "creator=" + creator.getClass().getName() + " " + settings.describeResultSettings();
+        }
+
+        /**
+         * Populates the given result with copies of the previous result's
+         * column results. The progress monitor and profile events are
+         * updated the same way a profile creator would update them.
+         */
+        private void reuseProfile(TableProfileResult previous, TableProfileResult tpr) {
+            MonitorableImpl pm = (MonitorableImpl) tpr.getProgressMonitor();
+            tpr.begin("Reusing unchanged profile");
+            try {
+                tpr.fireProfileStarted();
+                pm.setMessage(tpr.getProfiledObject().getName());
+                pm.setStarted(true);
+                pm.setFinished(false);
+                tpr.setCreateStartTime(System.currentTimeMillis());
+                tpr.setRowCount(previous.getRowCount());
+                tpr.setSamplePercent(previous.getSamplePercent());
+                tpr.setSampleRowCount(previous.getSampleRowCount());
+                for (ColumnProfileResult cpr : previous.getColumnProfileResults()) {
+                    tpr.addColumnProfileResult(new ColumnProfileResult(cpr, cpr.getProfiledObject()));
+                }
+            } finally {
+                tpr.setCreateEndTime(System.currentTimeMillis());
+                pm.setFinished(true);
+                pm.setStarted(false);
+                tpr.fireProfileFinished();
+            }
+            tpr.commit();
+        }
     }
     
     @Constructor
@@ -344,7 +453,7 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
         addResults(Collections.singletonList(tpr), false);
         
         try {
-            profileExecutor.submit(new ProfileResultCallable(tpr)).get();
+            scheduleProfile(tpr).get();
             assert (tpr.getProgressMonitor().isFinished());
         } catch (InterruptedException ex) {
             logger.info("Profiling was interrupted (likely because this manager is being shut down)");
@@ -355,7 +464,12 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
         return tpr;
     }
 
-    /* docs inherited from interface */
+    /**
+     * Creates and schedules a profile of each of the given tables. The whole
+     * batch is submitted largest table first, so the order holds for the
+     * profiles that start right away as well as for those that have to wait.
+     * The futures are returned in the order of the given tables.
+     */
     public Collection<Future<TableProfileResult>> asynchCreateProfiles(Collection<SQLTable> tables) {
         
         List<TableProfileResult> profiles = new ArrayList<TableProfileResult>();
@@ -365,16 +479,109 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
         
         addResults(profiles, false);
         
+        final Map<TableProfileResult, Long> sizeHints = new HashMap<TableProfileResult, Long>();
+        for (TableProfileResult tpr : profiles) {
+            sizeHints.put(tpr, sizeHint(tpr));
+        }
+        List<TableProfileResult> largestFirst = new ArrayList<TableProfileResult>(profiles);
+        Collections.sort(largestFirst, new Comparator<TableProfileResult>() {
+            public int compare(TableProfileResult o1, TableProfileResult o2) {
+                return sizeHints.get(o2).compareTo(sizeHints.get(o1));
+            }
+        });
+        Map<TableProfileResult, Future<TableProfileResult>> futures =
+            new HashMap<TableProfileResult, Future<TableProfileResult>>();
+        for (TableProfileResult tpr : largestFirst) {
+            futures.put(tpr, scheduleProfile(tpr, sizeHints.get(tpr)));
+        }
+        
         List<Future<TableProfileResult>> results = new ArrayList<Future<TableProfileResult>>();
         for (TableProfileResult tpr : profiles) {
-            results.add(scheduleProfile(tpr));
+            results.add(futures.get(tpr));
         }
         return results;
     }
 
     /* docs inherited from interface */
     public Future<TableProfileResult> scheduleProfile(TableProfileResult result) {
-        return profileExecutor.submit(new ProfileResultCallable(result));
+        return scheduleProfile(result, sizeHint(result));
+    }
+
+    /**
+     * Returns the best estimate there is of the size of the result's table,
+     * which is the largest row count of its earlier profiles.
+     */
+    private long sizeHint(TableProfileResult result) {
+        long sizeHint = 0;
+        for (TableProfileResult previous : getResults(result.getProfiledObject())) {
+            sizeHint = Math.max(sizeHint, previous.getRowCount());
+        }
+        return sizeHint;
+    }
+
+    private Future<TableProfileResult> scheduleProfile(TableProfileResult result, long sizeHint) {
+        ProfileScheduler scheduler = getScheduler();
+        scheduler.setThreadCount(defaultProfileSettings.getThreadCount());
+        scheduler.setMaxConcurrentPerDataSource(defaultProfileSettings.getMaxConcurrentPerDataSource());
+        
+        SQLTable table = result.getProfiledObject();
+        SQLDatabase db = table.getParentDatabase();
+        Object dataSourceKey = db;
+        if (db != null && db.getDataSource() != null) {
+            dataSourceKey = db.getDataSource();
+        }
+        
+        TableProfileResult previous = null;
+        if (result.getSettings() != null && result.getSettings().isIncrementalProfiling()) {
+            previous = findReusableProfile(result);
+        }
+        
+        return scheduler.submit(new ProfileResultCallable(result, previous), result, dataSourceKey, sizeHint);
+    }
+
+    /**
+     * Returns the most recent finished profile of the given result's table
+     * that recorded a fingerprint and did not fail, or null if there is none.
+     */
+    private TableProfileResult findReusableProfile(TableProfileResult result) {
+        TableProfileResult latest = null;
+        for (TableProfileResult previous : getResults(result.getProfiledObject())) {
+            if (previous == result || previous.getFingerprint() == null || previous.getException() != null) continue;
+            if (!previous.getProgressMonitor().isFinished() || previous.getProgressMonitor().isCancelled()) continue;
+            if (latest == null || previous.getCreateStartTime() > latest.getCreateStartTime()) {
+                latest = previous;
+            }
+        }
+        return latest;
+    }
+    
+    /* docs inherited from interface */
+    public void cancelScheduledProfiles() {
+        getScheduler().cancelAll();
+    }
+    
+    /* docs inherited from interface */
+    @NonBound
+    public synchronized ProfileScheduler getScheduler() {
+        if (profileScheduler == null) {
+            profileScheduler = new ProfileScheduler(
+                    defaultProfileSettings.getThreadCount(), defaultProfileSettings.getMaxConcurrentPerDataSource());
+            ownsScheduler = true;
+        }
+        return profileScheduler;
+    }
+
+    /**
+     * Makes this manager run its profiles on the given scheduler, normally
+     * the one of its session, instead of creating one of its own. It must be
+     * set before any profile is scheduled.
+     */
+    @NonBound
+    public synchronized void setScheduler(ProfileScheduler scheduler) {
+        if (profileScheduler != null && profileScheduler != scheduler) {
+            throw new IllegalStateException("This profile manager already has a scheduler");
+        }
+        profileScheduler = scheduler;
     }
     
     /* docs inherited from interface */
@@ -533,8 +740,14 @@ public class ProfileManagerImpl extends AbstractSPObject implements ProfileManag
         }
     }
 
-    public void close() {
-        profileExecutor.shutdown();
+    /**
+     * Shuts down the scheduler if this manager created it. A scheduler that
+     * was given to this manager belongs to its session and keeps running.
+     */
+    public synchronized void close() {
+        if (ownsScheduler) {
+            profileScheduler.shutdown();
+        }
     }
 
     @NonBound
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs table profiling jobs on a fixed size pool of worker threads. Two limits
+ * are enforced: at most {@link #getThreadCount()} profiles run at once overall,
+ * and at most {@link #getMaxConcurrentPerDataSource()} of them run against
+ * the same data source, so a big batch of tables from one database does not
+ * open more connections to it than it can comfortably serve.
+ * <p>
+ * Waiting jobs are started largest first, using the size hint given when the
+ * job was submitted (normally the row count of a previous profile of the same
+ * table). Jobs with equal hints start in the order they were submitted.
+ * <p>
+ * The scheduler also keeps simple throughput statistics for the current batch
+ * of work. A batch starts when a job is submitted while the scheduler is idle.
+ */
+public class ProfileScheduler {
+
+    private static final Logger logger = Logger.getLogger(ProfileScheduler.class);
+
+    /**
+     * A profiling job waiting for, or holding, a slot on its data source.
+     */
+    private class ScheduledProfile extends FutureTask<TableProfileResult> implements Comparable<ScheduledProfile> {
+
+        private final TableProfileResult result;
+        private final Object dataSourceKey;
+        private final long sizeHint;
+        private final long sequence;
+
+        /**
+         * True once this job has been given one of its data source's slots.
+         * Guarded by the scheduler.
+         */
+        private boolean dispatched;
+
+        ScheduledProfile(Callable<TableProfileResult> callable, TableProfileResult result,
+                Object dataSourceKey, long sizeHint, long sequence) {
+            super(callable);
+            this.result = result;
+            this.dataSourceKey = dataSourceKey;
+            this.sizeHint = sizeHint;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(ScheduledProfile o) {
+            if (sizeHint != o.sizeHint) {
+                return sizeHint > o.sizeHint ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            result.getProgressMonitor().setCancelled(true);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * Runs the job on a worker thread. The data source slot is given back
+         * only once the job has really returned, so a job that was cancelled
+         * while running keeps its slot until its query lets go of the
+         * connection.
+         */
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                releaseSlot(this);
+            }
+        }
+
+        @Override
+        protected void done() {
+            jobFinished(this);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private int maxConcurrentPerDataSource;
+
+    /**
+     * The number of dispatched jobs per data source. Guarded by this.
+     */
+    private final Map<Object, Integer> runningCounts = new HashMap<Object, Integer>();
+
+    /**
+     * The jobs that are waiting for a free slot on their data source, largest
+     * first. Guarded by this.
+     */
+    private final Map<Object, PriorityQueue<ScheduledProfile>> waiting =
+        new HashMap<Object, PriorityQueue<ScheduledProfile>>();
+
+    /**
+     * Every job that has been submitted and is not done yet. Guarded by this.
+     */
+    private final List<ScheduledProfile> outstanding = new ArrayList<ScheduledProfile>();
+
+    private long nextSequence;
+
+    private long batchStartTime;
+    private int batchCompletedTables;
+    private long batchCompletedRows;
+    private long lastCompletionTime;
+
+    /**
+     * @param threadCount
+     *            The maximum number of tables that are profiled at once.
+     * @param maxConcurrentPerDataSource
+     *            The maximum number of tables from the same data source that
+     *            are profiled at once.
+     */
+    public ProfileScheduler(int threadCount, int maxConcurrentPerDataSource) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, not " + threadCount);
+        }
+        setMaxConcurrentPerDataSource(maxConcurrentPerDataSource);
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Profiler-" + threadNumber.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the given profiling job.
+     *
+     * @param callable
+     *            The job that populates the result.
+     * @param result
+     *            The result being populated. Cancelling the returned future
+     *            cancels this result's progress monitor.
+     * @param dataSourceKey
+     *            Identifies the data source the table is profiled from. Jobs
+     *            with equal keys share the per data source limit.
+     * @param sizeHint
+     *            An estimate of the size of the table, larger tables start
+     *            first. Use 0 if the size is not known.
+     */
+    public synchronized Future<TableProfileResult> submit(Callable<TableProfileResult> callable,
+            TableProfileResult result, Object dataSourceKey, long sizeHint) {
+        if (outstanding.isEmpty()) {
+            batchStartTime = System.currentTimeMillis();
+            batchCompletedTables = 0;
+            batchCompletedRows = 0;
+        }
+        ScheduledProfile job = new ScheduledProfile(callable, result, dataSourceKey, sizeHint, nextSequence++);
+        outstanding.add(job);
+        Integer running = runningCounts.get(dataSourceKey);
+        if (running == null || running < maxConcurrentPerDataSource) {
+            dispatch(job);
+        } else {
+            PriorityQueue<ScheduledProfile> queue = waiting.get(dataSourceKey);
+            if (queue == null) {
+                queue = new PriorityQueue<ScheduledProfile>();
+                waiting.put(dataSourceKey, queue);
+            }
+            queue.add(job);
+        }
+        return job;
+    }
+
+    /**
+     * Hands the job to the worker pool and takes one of its data source's
+     * slots. Must be called while holding this scheduler's lock.
+     */
+    private void dispatch(ScheduledProfile job) {
+        Integer running = runningCounts.get(job.dataSourceKey);
+        runningCounts.put(job.dataSourceKey, running == null ? 1 : running + 1);
+        job.dispatched = true;
+        executor.execute(job);
+    }
+
+    /**
+     * Forgets the finished (or cancelled) job. A job that is still waiting
+     * for a slot is taken out of its queue. A dispatched job keeps its slot
+     * until {@link #releaseSlot(ScheduledProfile)}.
+     */
+    private synchronized void jobFinished(ScheduledProfile job) {
+        outstanding.remove(job);
+        if (!job.dispatched) {
+            PriorityQueue<ScheduledProfile> queue = waiting.get(job.dataSourceKey);
+            if (queue != null) {
+                queue.remove(job);
+            }
+            return;
+        }
+        if (!job.isCancelled()) {
+            batchCompletedTables++;
+            batchCompletedRows += job.result.getRowCount();
+            lastCompletionTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Releases the job's data source slot once its worker is done with it,
+     * and starts the largest job waiting for that data source, if any.
+     */
+    private synchronized void releaseSlot(ScheduledProfile job) {
+        int running = runningCounts.get(job.dataSourceKey) - 1;
+        if (running == 0) {
+            runningCounts.remove(job.dataSourceKey);
+        } else {
+            runningCounts.put(job.dataSourceKey, running);
+        }
+        PriorityQueue<ScheduledProfile> queue = waiting.get(job.dataSourceKey);
+        if (queue != null) {
+            ScheduledProfile next = queue.poll();
+            if (queue.isEmpty()) {
+                waiting.remove(job.dataSourceKey);
+            }
+            if (next != null) {
+                dispatch(next);
+            }
+        }
+    }
+
+    /**
+     * Cancels every job that has not finished yet. Jobs that are running are
+     * asked to stop through their result's progress monitor.
+     */
+    public void cancelAll() {
+        List<ScheduledProfile> jobs;
+        synchronized (this) {
+            jobs = new ArrayList<ScheduledProfile>(outstanding);
+        }
+        logger.debug("Cancelling " + jobs.size() + " profile jobs");
+        for (ScheduledProfile job : jobs) {
+            job.cancel(false);
+        }
+    }
+
+    /**
+     * Stops accepting new work. Jobs already submitted still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Changes the number of worker threads. Running jobs are not affected.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, not " + threadCount);
+        }
+        if (threadCount > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threadCount);
+            executor.setCorePoolSize(threadCount);
+        } else {
+            executor.setCorePoolSize(threadCount);
+            executor.setMaximumPoolSize(threadCount);
+        }
+    }
+
+    public synchronized int getMaxConcurrentPerDataSource() {
+        return maxConcurrentPerDataSource;
+    }
+
+    /**
+     * Changes the number of tables from one data source that can be profiled
+     * at once. Jobs already started are not affected; waiting jobs will start
+     * as slots free up.
+     */
+    public synchronized void setMaxConcurrentPerDataSource(int maxConcurrentPerDataSource) {
+        if (maxConcurrentPerDataSource < 1) {
+            throw new IllegalArgumentException("The per data source limit must be at least 1, not " +
+                    maxConcurrentPerDataSource);
+        }
+        this.maxConcurrentPerDataSource = maxConcurrentPerDataSource;
+    }
+
+    /**
+     * Returns the number of jobs that have been submitted but are not done.
+     */
+    public synchronized int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    /**
+     * Returns the number of tables profiled per minute in the current (or the
+     * last) batch.
+     */
+    public synchronized double getTablesPerMinute() {
+        double minutes = getBatchElapsedMillis() / 60000.0;
+        return minutes <= 0 ? 0 : batchCompletedTables / minutes;
+    }
+
+    /**
+     * Returns the number of rows profiled per second in the current (or the
+     * last) batch.
+     */
+    public synchronized double getRowsPerSecond() {
+        double seconds = getBatchElapsedMillis() / 1000.0;
+        return seconds <= 0 ? 0 : batchCompletedRows / seconds;
+    }
+
+    private long getBatchElapsedMillis() {
+        if (batchStartTime == 0) return 0;
+        long end = outstanding.isEmpty() ? lastCompletionTime : System.currentTimeMillis();
+        return end - batchStartTime;
+    }
+}
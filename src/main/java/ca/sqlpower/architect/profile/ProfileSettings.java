@@ -65,6 +65,45 @@ public class ProfileSettings extends AbstractSPObject {
 
     private int topNCount = 10;
 
+    /**
+     * The number of tables the profile manager will profile at the same time.
+     */
+    private int threadCount = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of tables from a single data source the profile manager will
+     * profile at the same time. This keeps a large batch of tables from
+     * opening too many connections to one database.
+     */
+    private int maxConcurrentPerDataSource = 2;
+
+    /**
+     * The number of columns the remote database profile creator computes the
+     * aggregates for in one query. 0 means all of the table's columns are
+     * profiled in a single query.
+     */
+    private int columnsPerQuery = 0;
+
+    /**
+     * If true, a table is only profiled again if its fingerprint (see
+     * {@link TableFingerprint}) differs from the one recorded by its last
+     * profile. Otherwise the last profile's column results are reused.
+     */
+    private boolean incrementalProfiling = false;
+
+    /**
+     * The name of the column whose maximum value is part of the fingerprint
+     * of the tables that have it, or null if there is no such column.
+     */
+    private String watermarkColumnName;
+
+    /**
+     * The percentage of each table's rows the sampled profile creator asks the
+     * database to read. The counts it finds in the sample are scaled back up
+     * to the size of the whole table.
+     */
+    private double samplePercent = 1.0;
+
     public ProfileSettings() {
         setName("Profile Settings");
     }
@@ -194,6 +233,105 @@ public class ProfileSettings extends AbstractSPObject {
         setTopNCount(Integer.valueOf(topNCount));
     }
 
+    @Accessor
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    @Mutator
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, not " + threadCount);
+        }
+        int oldCount = this.threadCount;
+        this.threadCount = threadCount;
+        firePropertyChange("threadCount", oldCount, threadCount);
+    }
+
+    @Accessor
+    public int getMaxConcurrentPerDataSource() {
+        return maxConcurrentPerDataSource;
+    }
+
+    @Mutator
+    public void setMaxConcurrentPerDataSource(int maxConcurrentPerDataSource) {
+        if (maxConcurrentPerDataSource < 1) {
+            throw new IllegalArgumentException("The per data source limit must be at least 1, not " +
+                    maxConcurrentPerDataSource);
+        }
+        int oldMax = this.maxConcurrentPerDataSource;
+        this.maxConcurrentPerDataSource = maxConcurrentPerDataSource;
+        firePropertyChange("maxConcurrentPerDataSource", oldMax, maxConcurrentPerDataSource);
+    }
+
+    @Accessor
+    public int getColumnsPerQuery() {
+        return columnsPerQuery;
+    }
+
+    @Mutator
+    public void setColumnsPerQuery(int columnsPerQuery) {
+        if (columnsPerQuery < 0) {
+            throw new IllegalArgumentException("Columns per query cannot be negative, not " + columnsPerQuery);
+        }
+        int oldColumns = this.columnsPerQuery;
+        this.columnsPerQuery = columnsPerQuery;
+        firePropertyChange("columnsPerQuery", oldColumns, columnsPerQuery);
+    }
+
+    @Accessor
+    public boolean isIncrementalProfiling() {
+        return incrementalProfiling;
+    }
+
+    @Mutator
+    public void setIncrementalProfiling(boolean incrementalProfiling) {
+        boolean oldIncremental = this.incrementalProfiling;
+        this.incrementalProfiling = incrementalProfiling;
+        firePropertyChange("incrementalProfiling", oldIncremental, incrementalProfiling);
+    }
+
+    @Accessor
+    public String getWatermarkColumnName() {
+        return watermarkColumnName;
+    }
+
+    @Mutator
+    public void setWatermarkColumnName(String watermarkColumnName) {
+        String oldName = this.watermarkColumnName;
+        this.watermarkColumnName = watermarkColumnName;
+        firePropertyChange("watermarkColumnName", oldName, watermarkColumnName);
+    }
+
+    @Accessor
+    public double getSamplePercent() {
+        return samplePercent;
+    }
+
+    @Mutator
+    public void setSamplePercent(double samplePercent) {
+        if (!(samplePercent > 0 && samplePercent <= 100)) {
+            throw new IllegalArgumentException("The sample percentage must be greater than 0 and at most 100, not " +
+                    samplePercent);
+        }
+        double oldPercent = this.samplePercent;
+        this.samplePercent = samplePercent;
+        firePropertyChange("samplePercent", oldPercent, samplePercent);
+    }
+
+    /**
+     * Describes the settings that change what a profile finds, for telling
+     * whether a profile made with other settings can be reused. The settings
+     * that only change how the work is scheduled are left out.
+     */
+    String describeResultSettings() {
+        return "min=" + findingMin + ",max=" + findingMax + ",avg=" + findingAvg +
+            ",minLength=" + findingMinLength + ",maxLength=" + findingMaxLength +
+            ",avgLength=" + findingAvgLength + ",distinct=" + findingDistinctCount +
+            ",nulls=" + findingNullCount + ",topN=" + (findingTopTen ? topNCount : 0) +
+            ",watermark=" + watermarkColumnName + ",samplePercent=" + samplePercent;
+    }
+
     @Override
     protected boolean removeChildImpl(SPObject child) {
         return false;
@@ -23,7 +23,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -55,6 +59,16 @@ import ca.sqlpower.util.MonitorableImpl;
  * given SQLTable's data source.  See {@link #createProfileFunctions(JDBCDataSourceType)}
  * for details.
  * <p>
+ * To keep the number of passes over the table down, the aggregates of several
+ * columns are computed by a single query. The number of columns per query is
+ * set by {@link ProfileSettings#getColumnsPerQuery()}. If the data source type
+ * has the {@link #SUPPORTS_WINDOW_FUNCTIONS} property set, the most frequent
+ * values of the columns are also fetched by one query, and only the top N
+ * values of each column are sent over the network. That query reads the
+ * table once only if the {@link #SUPPORTS_GROUPING_SETS} property is also
+ * set; otherwise it groups each column separately and reads the table once
+ * per column.
+ * <p>
  * For a profiler better suited for use on large tables, see
  * {@link LocalReservoirProfileCreator}.
  */
@@ -62,12 +76,6 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
 
     private static final Logger logger = Logger.getLogger(RemoteDatabaseProfileCreator.class);
     
-    /**
-     * A map from data type names used in Architect to the database's actual
-     * data type stored in a profile function descriptor.
-     */
-    private Map<String, ProfileFunctionDescriptor> profileFunctionMap;
-    
     /**
      * This class is used to hold the specific start and end to a LENGTH
      * SQL command based on the database in use.
@@ -180,19 +188,62 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
     }
     
     /**
-     * An object to store the string length function for the database.
+     * The platform-specific SQL functions used to profile the tables of one
+     * data source type. A new instance is created for each table profiled so
+     * this profile creator can profile several tables at the same time.
      */
-    private StringLengthSQLFunction stringLengthSQLFunction;
-    
+    protected class PlatformFunctions {
+
+        /**
+         * A map from data type names used in Architect to the database's actual
+         * data type stored in a profile function descriptor.
+         */
+        private final Map<String, ProfileFunctionDescriptor> profileFunctionMap =
+            new HashMap<String, ProfileFunctionDescriptor>();
+        
+        /**
+         * An object to store the string length function for the database.
+         */
+        private StringLengthSQLFunction stringLengthSQLFunction;
+        
+        /**
+         * An object to store the average function for the database.
+         */
+        private AverageSQLFunction averageSQLFunction;
+        
+        /**
+         * An object to store the case when null function for the database.
+         */
+        private CaseWhenNullSQLFunction caseWhenNullSQLFunction;
+    }
+
     /**
-     * An object to store the average function for the database.
+     * The number of queries executed while profiling one table and the time
+     * spent waiting for them. Each table being profiled gets its own instance.
      */
-    private AverageSQLFunction averageSQLFunction;
-    
+    protected static class QueryStats {
+        private int queryCount;
+        private long queryTime;
+    }
+
+    /**
+     * The data source type property that says the platform supports the
+     * SQL:2003 window functions (<code>ROW_NUMBER() OVER (...)</code>). When
+     * it is "true" the most frequent values of several columns are fetched in
+     * one query and only the top N rows of each column are sent back.
+     */
+    public static final String SUPPORTS_WINDOW_FUNCTIONS =
+        RemoteDatabaseProfileCreator.class.getName() + ".supportsWindowFunctions";
+
     /**
-     * An object to store the case when null function for the database.
+     * The data source type property that says the platform supports
+     * <code>GROUP BY GROUPING SETS</code> and the <code>GROUPING()</code>
+     * function. When it and {@link #SUPPORTS_WINDOW_FUNCTIONS} are "true" the
+     * values of all of the columns of a top N query are grouped in a single
+     * pass over the table.
      */
-    private CaseWhenNullSQLFunction caseWhenNullSQLFunction;
+    public static final String SUPPORTS_GROUPING_SETS =
+        RemoteDatabaseProfileCreator.class.getName() + ".supportsGroupingSets";
 
     /**
      * The settings for this profile creator.
@@ -205,34 +256,86 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
     
     public boolean doProfileImpl(TableProfileResult tpr) {
         MonitorableImpl pm = (MonitorableImpl) tpr.getProgressMonitor();
+        QueryStats stats = new QueryStats();
         try {
             
-            doTableProfile(tpr);
+            doTableProfile(tpr, stats);
             
             SQLTable table = tpr.getProfiledObject();
             JDBCDataSourceType dsType = table.getParentDatabase().getDataSource().getParentType();
-            createProfileFunctions(dsType);
+            PlatformFunctions functions = createProfileFunctions(dsType);
+            boolean windowFunctions = Boolean.parseBoolean(dsType.getProperty(SUPPORTS_WINDOW_FUNCTIONS));
+            boolean groupingSets = Boolean.parseBoolean(dsType.getProperty(SUPPORTS_GROUPING_SETS));
+            List<ColumnProfileResult> columnResults = new ArrayList<ColumnProfileResult>();
             for (SQLColumn col : table.getColumns()) {
                 ColumnProfileResult columnResult = new ColumnProfileResult(col);
                 tpr.addColumnProfileResult(columnResult);
-                doColumnProfile(columnResult, pm);
-                pm.setProgress(pm.getProgress() + 1);
+                columnResults.add(columnResult);
+            }
+            
+            int groupSize = settings.getColumnsPerQuery();
+            if (groupSize == 0) {
+                groupSize = Math.max(1, columnResults.size());
+            }
+            for (int start = 0; start < columnResults.size() && !pm.isCancelled(); start += groupSize) {
+                List<ColumnProfileResult> group = 
+                    columnResults.subList(start, Math.min(start + groupSize, columnResults.size()));
+                if (group.size() == 1) {
+                    doColumnProfile(group.get(0), functions, pm, stats);
+                } else {
+                    doColumnGroupProfile(group, functions, windowFunctions, groupingSets, pm, stats);
+                }
+                pm.setProgress(pm.getProgress() + group.size());
             }
 
             return !pm.isCancelled();
             
         } catch (Exception ex) {
             throw new RuntimeException(ex);
+        } finally {
+            tpr.setQueryCount(stats.queryCount);
+            tpr.setQueryTime(stats.queryTime);
+        }
+    }
+
+    /**
+     * Executes the given query and adds it to the given statistics.
+     */
+    private ResultSet executeQuery(Statement stmt, String sql, QueryStats stats) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        try {
+            return stmt.executeQuery(sql);
+        } finally {
+            stats.queryCount++;
+            stats.queryTime += System.currentTimeMillis() - startTime;
         }
     }
     
+    /**
+     * Returns what every profiling query of the given result selects from.
+     * This is normally the table's qualified name, but subclasses may add a
+     * clause that limits the rows the database reads.
+     * 
+     * @param tpr The result being populated.
+     * @param quote The database's identifier quote string.
+     */
+    protected String tableReference(TableProfileResult tpr, String quote) {
+        SQLTable table = tpr.getProfiledObject();
+        return DDLUtils.toQualifiedName(table.getCatalogName(),
+                table.getSchemaName(),
+                table.getName(),
+                quote,
+                quote);
+    }
+    
     /**
      * Performs just the overall table part of the profiling.  No column profiling
      * is performed.
      * 
      * @param tpr The table profile result to populate.
+     * @param stats The statistics the row count query is added to.
      */
-    private void doTableProfile(TableProfileResult tpr) throws SQLException, SQLObjectException {
+    private void doTableProfile(TableProfileResult tpr, QueryStats stats) throws SQLException, SQLObjectException {
         logger.debug("Doing profile for table " + tpr.getProfiledObject());
         MonitorableImpl pm = (MonitorableImpl) tpr.getProgressMonitor();
         pm.setProgress(0);
@@ -251,21 +354,17 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
             StringBuffer sql = new StringBuffer();
             sql.append("SELECT COUNT(*) AS ROW__COUNT");
             sql.append("\nFROM ");
-            sql.append(DDLUtils.toQualifiedName(table.getCatalogName(),
-                    table.getSchemaName(),
-                    table.getName(),
-                    databaseIdentifierQuoteString,
-                    databaseIdentifierQuoteString));
+            sql.append(tableReference(tpr, databaseIdentifierQuoteString));
             stmt = conn.createStatement();
             stmt.setEscapeProcessing(false);
             String lastSQL = sql.toString();
 
             pm.setProgress(pm.getProgress() + 1);
             
-            rs = stmt.executeQuery(lastSQL);
+            rs = executeQuery(stmt, lastSQL, stats);
 
             if (rs.next()) {
-                tpr.setRowCount(rs.getInt("ROW__COUNT"));
+                tpr.setRowCount(rs.getLong("ROW__COUNT"));
             } else {
                 throw new AssertionError("No rows came back from COUNT(*) query!");
             }
@@ -298,9 +397,11 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
      * for col in the RDBMS it's stored in (the data types supported by the various
      * aggregate functions differ by platform).
      * @param col The column to perform the profiling on.
+     * @param functions The SQL functions of the platform <tt>col</tt> is stored in.
      * @param con The connection to use to the database <tt>col</tt> is in.
      * @param pm The progress monitor for this operation.  It will be polled to see if the current
      * profiling operation has been cancelled.  It will not be manipulated in any other way.
+     * @param stats The statistics the executed queries are added to.
      * @throws SQLException If profiling fails.  This is most likely due to an incorrect
      * function descriptor for col's data type, or database connectivity issues.
      */
@@ -308,185 +409,352 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
             ColumnProfileResult cpr,
             ProfileFunctionDescriptor pfd,
             SQLColumn col,
+            PlatformFunctions functions,
             Connection con,
-            Monitorable pm) throws SQLException {
+            Monitorable pm,
+            QueryStats stats) throws SQLException {
 
         logger.debug("Starting execProfileFunctions for " + col);
-        long createStartTime = System.currentTimeMillis();
-        final int i = 0;
+        cpr.setCreateStartTime(System.currentTimeMillis());
+        execAggregateFunctions(Collections.singletonList(cpr), Collections.singletonList(pfd),
+                functions, con, pm, stats);
+        if (settings.isFindingTopTen() && pfd.isCountDist() && !pm.isCancelled()) {
+            execTopNQuery(cpr, con, stats);
+        }
+        cpr.setCreateEndTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Computes the aggregate profile values (distinct count, min, max, average,
+     * lengths and null count) of all of the given columns with a single query.
+     * The columns must all belong to the same table. The aliases of the values
+     * of each column are suffixed with the column's index in the given list.
+     * 
+     * @param cprs The results of the columns to profile.
+     * @param pfds The profile function descriptor of each column, in the same order
+     * as <tt>cprs</tt>.
+     * @param functions The SQL functions of the platform the columns are stored in.
+     * @param con The connection to use to the database the columns are in.
+     * @param pm Polled to see if the current profiling operation has been cancelled.
+     * @param stats The statistics the executed query is added to.
+     * @throws SQLException If the query fails. None of the results will have been
+     * modified in this case.
+     */
+    private void execAggregateFunctions(
+            List<ColumnProfileResult> cprs,
+            List<ProfileFunctionDescriptor> pfds,
+            PlatformFunctions functions,
+            Connection con,
+            Monitorable pm,
+            QueryStats stats) throws SQLException {
+        
         StringBuffer sql = new StringBuffer();
         Statement stmt = null;
         ResultSet rs = null;
         String lastSQL = null;
         String columnName = null;
-        String databaseIdentifierQuoteString = null;
-        cpr.setCreateStartTime(createStartTime);
-        SQLTable table = col.getParent();
-
+        
         try {
-            databaseIdentifierQuoteString = con.getMetaData().getIdentifierQuoteString();
+            String databaseIdentifierQuoteString = con.getMetaData().getIdentifierQuoteString();
             sql.append("SELECT 1");
             int tryCount = 0;
-            if (settings.isFindingDistinctCount() && pfd.isCountDist() ) {
-                sql.append(",\n COUNT(DISTINCT ");
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(col.getName());
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(") AS DISTINCTCOUNT_"+i);
-                tryCount++;
+            for (int i = 0; i < cprs.size(); i++) {
+                SQLColumn col = cprs.get(i).getProfiledObject();
+                ProfileFunctionDescriptor pfd = pfds.get(i);
+                String quotedName = databaseIdentifierQuoteString + col.getName() + databaseIdentifierQuoteString;
+                if (settings.isFindingDistinctCount() && pfd.isCountDist() ) {
+                    sql.append(",\n COUNT(DISTINCT ");
+                    sql.append(quotedName);
+                    sql.append(") AS DISTINCTCOUNT_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingMin() && pfd.isMinValue() ) {
+                    sql.append(",\n MIN(");
+                    sql.append(quotedName);
+                    sql.append(") AS MINVALUE_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingMax() && pfd.isMaxValue() ) {
+                    sql.append(",\n MAX(");
+                    sql.append(quotedName);
+                    sql.append(") AS MAXVALUE_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingAvg() && pfd.isAvgValue() ) {
+                    sql.append(",\n ");
+                    sql.append(functions.averageSQLFunction.getAverageSQLFunction(quotedName));
+                    sql.append(" AS AVGVALUE_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingMinLength() && pfd.isMinLength() ) {
+                    sql.append(",\n MIN(");
+                    sql.append(functions.stringLengthSQLFunction.getStringLengthSQLFunction(quotedName));
+                    sql.append(") AS MINLENGTH_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingMaxLength() && pfd.isMaxLength() ) {
+                    sql.append(",\n MAX(");
+                    sql.append(functions.stringLengthSQLFunction.getStringLengthSQLFunction(quotedName));
+                    sql.append(") AS MAXLENGTH_"+i);
+                    tryCount++;
+                }
+                if (settings.isFindingAvgLength() && pfd.isAvgLength() ) {
+                    sql.append(",\n AVG(");
+                    sql.append(functions.stringLengthSQLFunction.getStringLengthSQLFunction(quotedName));
+                    sql.append(") AS AVGLENGTH_"+i);
+                    tryCount++;
+                }
+                
+                if (settings.isFindingNullCount() && pfd.isSumDecode() ) {
+                    sql.append(",\n SUM(");
+                    sql.append(functions.caseWhenNullSQLFunction.getCaseWhenNullSQLFunction(quotedName, "1"));
+                    sql.append(") AS NULLCOUNT_"+i);
+                    tryCount++;
+                }
             }
-            if (settings.isFindingMin() && pfd.isMinValue() ) {
-                sql.append(",\n MIN(");
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(col.getName());
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(") AS MINVALUE_"+i);
-                tryCount++;
+
+            if (tryCount == 0 || pm.isCancelled()) return;
+            
+            sql.append("\n FROM ");
+            sql.append(tableReference(cprs.get(0).getParent(), databaseIdentifierQuoteString));
+            
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            
+            lastSQL = sql.toString();
+            
+            if (pm.isCancelled()) return;
+            rs = executeQuery(stmt, lastSQL, stats);
+            if (pm.isCancelled()) return;
+            
+            if (!rs.next()) {
+                throw new IllegalStateException("Query executed, but returns no rows:\n" + lastSQL);
             }
-            if (settings.isFindingMax() && pfd.isMaxValue() ) {
-                sql.append(",\n MAX(");
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(col.getName());
-                sql.append(databaseIdentifierQuoteString);
-                sql.append(") AS MAXVALUE_"+i);
-                tryCount++;
+            for (int i = 0; i < cprs.size(); i++) {
+                ColumnProfileResult cpr = cprs.get(i);
+                ProfileFunctionDescriptor pfd = pfds.get(i);
+                if (settings.isFindingDistinctCount() && pfd.isCountDist() ) {
+                    columnName = "DISTINCTCOUNT_"+i;
+                    cpr.setDistinctValueCount(rs.getLong(columnName));
+                }
+                if (settings.isFindingMin() && pfd.isMinValue() ) {
+                    columnName = "MINVALUE_"+i;
+                    cpr.setMinValue(rs.getObject(columnName));
+                }
+                if (settings.isFindingMax() && pfd.isMaxValue() ) {
+                    columnName = "MAXVALUE_"+i;
+                    cpr.setMaxValue(rs.getObject(columnName));
+                }
+                if (settings.isFindingAvg() && pfd.isAvgValue() ) {
+                    columnName = "AVGVALUE_"+i;
+                    cpr.setAvgValue(rs.getObject(columnName));
+                }
+                if (settings.isFindingMinLength() && pfd.isMinLength() ) {
+                    columnName = "MINLENGTH_"+i;
+                    cpr.setMinLength(rs.getInt(columnName));
+                }
+                if (settings.isFindingMaxLength() && pfd.isMaxLength() ) {
+                    columnName = "MAXLENGTH_"+i;
+                    cpr.setMaxLength(rs.getInt(columnName));
+                }
+                if (settings.isFindingAvgLength() && pfd.isAvgLength() ) {
+                    columnName = "AVGLENGTH_"+i;
+                    cpr.setAvgLength(rs.getDouble(columnName));
+                }
+                
+                if (settings.isFindingNullCount() && pfd.isSumDecode() ) {
+                    columnName = "NULLCOUNT_"+i;
+                    cpr.setNullCount(rs.getLong(columnName));
+                }
             }
-            if (settings.isFindingAvg() && pfd.isAvgValue() ) {
-                sql.append(",\n ");
-                sql.append(averageSQLFunction.getAverageSQLFunction(databaseIdentifierQuoteString+
-                        col.getName()+
-                        databaseIdentifierQuoteString));
-                sql.append(" AS AVGVALUE_"+i);
-                tryCount++;
+
+        } catch (SQLException ex) {
+            logger.error("Profiling query failed.  Will throw exception.  Query was:");
+            logger.error(lastSQL);
+            logger.error("Column Name: " + columnName);
+            throw ex;
+        } finally {
+            try {
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            } catch (SQLException ex) {
+                logger.error("Couldn't clean up result set", ex);
             }
-            if (settings.isFindingMinLength() && pfd.isMinLength() ) {
-                sql.append(",\n MIN(");
-                sql.append(stringLengthSQLFunction.getStringLengthSQLFunction(databaseIdentifierQuoteString+
-                        col.getName()+databaseIdentifierQuoteString));
-                sql.append(") AS MINLENGTH_"+i);
-                tryCount++;
+        }
+    }
+
+    /**
+     * Finds the most frequent values of a single column by grouping the table
+     * on that column and reading the largest groups.
+     */
+    private void execTopNQuery(ColumnProfileResult cpr, Connection con, QueryStats stats) throws SQLException {
+        SQLColumn col = cpr.getProfiledObject();
+        Statement stmt = null;
+        ResultSet rs = null;
+        String lastSQL = null;
+        try {
+            String databaseIdentifierQuoteString = con.getMetaData().getIdentifierQuoteString();
+            StringBuffer sql = new StringBuffer();
+            sql.append("SELECT ").append(databaseIdentifierQuoteString);
+            sql.append(col.getName()).append(databaseIdentifierQuoteString);
+            sql.append(" AS MYVALUE, COUNT(*) AS COUNT1 FROM ");
+            sql.append(tableReference(cpr.getParent(), databaseIdentifierQuoteString));
+            sql.append(" GROUP BY ").append(databaseIdentifierQuoteString);
+            sql.append(col.getName()).append(databaseIdentifierQuoteString);
+            sql.append(" ORDER BY COUNT1 DESC");
+
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            lastSQL = sql.toString();
+            rs = executeQuery(stmt, lastSQL, stats);
+            int topNCount = settings.getTopNCount();
+            long topNSum = 0;
+            for (int n = 0; rs.next() && n < topNCount; n++) {
+                long count = rs.getLong("COUNT1");
+                cpr.addValueCount(rs.getObject("MYVALUE"), count);
+                topNSum += count;
             }
-            if (settings.isFindingMaxLength() && pfd.isMaxLength() ) {
-                sql.append(",\n MAX(");
-                sql.append(stringLengthSQLFunction.getStringLengthSQLFunction(databaseIdentifierQuoteString+
-                        col.getName()+databaseIdentifierQuoteString));
-                sql.append(") AS MAXLENGTH_"+i);
-                tryCount++;
+            long remainingCount = cpr.getParent().getRowCount() - topNSum;
+            if (remainingCount > 0) {
+                cpr.addValueCount(ColumnValueCount.OTHER_VALUE_OBJECT, remainingCount);
             }
-            if (settings.isFindingAvgLength() && pfd.isAvgLength() ) {
-                sql.append(",\n AVG(");
-                sql.append(stringLengthSQLFunction.getStringLengthSQLFunction(databaseIdentifierQuoteString+
-                        col.getName()+databaseIdentifierQuoteString));
-                sql.append(") AS AVGLENGTH_"+i);
-                tryCount++;
+        } catch (SQLException ex) {
+            logger.error("Top N query failed.  Will throw exception.  Query was:");
+            logger.error(lastSQL);
+            throw ex;
+        } finally {
+            try {
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            } catch (SQLException ex) {
+                logger.error("Couldn't clean up result set", ex);
             }
+        }
+    }
 
-            if (settings.isFindingNullCount() && pfd.isSumDecode() ) {
-                sql.append(",\n SUM(");
-                sql.append(caseWhenNullSQLFunction.getCaseWhenNullSQLFunction(
-                        databaseIdentifierQuoteString+
-                        col.getName()+
-                        databaseIdentifierQuoteString,
-                "1"));
-                sql.append(") AS NULLCOUNT_"+i);
-                tryCount++;
+    /**
+     * Runs {@link #execTopNQuery(ColumnProfileResult, Connection, QueryStats)}
+     * for each of the given columns. A failure is recorded on the column it
+     * happened to and does not stop the other columns from being profiled.
+     */
+    private void execTopNQueries(List<ColumnProfileResult> cprs, Connection con, Monitorable pm, QueryStats stats) {
+        for (ColumnProfileResult cpr : cprs) {
+            if (pm.isCancelled()) return;
+            try {
+                execTopNQuery(cpr, con, stats);
+            } catch (Exception ex) {
+                cpr.setException(ex);
+                logger.error("Error in Column Profiling", ex);
             }
+        }
+    }
 
-            if ( tryCount > 0 && !pm.isCancelled() ) {
-                sql.append("\n FROM ");
-
-                sql.append(DDLUtils.toQualifiedName(table.getCatalogName(),
-                        table.getSchemaName(),
-                        table.getName(),
-                        databaseIdentifierQuoteString,
-                        databaseIdentifierQuoteString));
-
-                stmt = con.createStatement();
-                stmt.setEscapeProcessing(false);
-
-                lastSQL = sql.toString();
-                
-                if (pm.isCancelled()) return;
-                rs = stmt.executeQuery(lastSQL);
-                if (pm.isCancelled()) return;
-
-                if (rs.next()) {
-                    if (settings.isFindingDistinctCount() && pfd.isCountDist() ) {
-                        columnName = "DISTINCTCOUNT_"+i;
-                        cpr.setDistinctValueCount(rs.getInt(columnName));
-                    }
-                    if (settings.isFindingMin() && pfd.isMinValue() ) {
-                        columnName = "MINVALUE_"+i;
-                        cpr.setMinValue(rs.getObject(columnName));
-                    }
-                    if (settings.isFindingMax() && pfd.isMaxValue() ) {
-                        columnName = "MAXVALUE_"+i;
-                        cpr.setMaxValue(rs.getObject(columnName));
-                    }
-                    if (settings.isFindingAvg() && pfd.isAvgValue() ) {
-                        columnName = "AVGVALUE_"+i;
-                        cpr.setAvgValue(rs.getObject(columnName));
-                    }
-                    if (settings.isFindingMinLength() && pfd.isMinLength() ) {
-                        columnName = "MINLENGTH_"+i;
-                        cpr.setMinLength(rs.getInt(columnName));
-                    }
-                    if (settings.isFindingMaxLength() && pfd.isMaxLength() ) {
-                        columnName = "MAXLENGTH_"+i;
-                        cpr.setMaxLength(rs.getInt(columnName));
-                    }
-                    if (settings.isFindingAvgLength() && pfd.isAvgLength() ) {
-                        columnName = "AVGLENGTH_"+i;
-                        cpr.setAvgLength(rs.getDouble(columnName));
-                    }
-
-                    if (settings.isFindingNullCount() && pfd.isSumDecode() ) {
-                        columnName = "NULLCOUNT_"+i;
-                        cpr.setNullCount(rs.getInt(columnName));
+    /**
+     * Finds the most frequent values of several columns of the same table in
+     * one query using window functions. The columns must all have the same
+     * JDBC type so their values can share one value column. The database
+     * ranks the groups of each column and only returns the top N of each,
+     * instead of every distinct value of every column.
+     * <p>
+     * With grouping sets, the groups of all of the columns come from a single
+     * pass over the table. Without them, the groups of each column come from a
+     * separate GROUP BY combined with UNION ALL: the query is sent once, but
+     * the table is still read once per column.
+     * 
+     * @param groupingSets
+     *            True if the platform supports grouping sets.
+     * @throws SQLException If the query fails. None of the results will have
+     * been modified in this case.
+     */
+    private void execWindowedTopNQuery(List<ColumnProfileResult> cprs, boolean groupingSets,
+            Connection con, QueryStats stats) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        String lastSQL = null;
+        try {
+            String databaseIdentifierQuoteString = con.getMetaData().getIdentifierQuoteString();
+            String fromTable = tableReference(cprs.get(0).getParent(), databaseIdentifierQuoteString);
+            StringBuffer sql = new StringBuffer();
+            sql.append("SELECT COLIDX, MYVALUE, COUNT1 FROM (");
+            sql.append("\n SELECT COLIDX, MYVALUE, COUNT1,");
+            sql.append(" ROW_NUMBER() OVER (PARTITION BY COLIDX ORDER BY COUNT1 DESC) AS RANK1 FROM (");
+            List<String> quotedNames = new ArrayList<String>();
+            for (ColumnProfileResult cpr : cprs) {
+                quotedNames.add(databaseIdentifierQuoteString + 
+                        cpr.getProfiledObject().getName() + databaseIdentifierQuoteString);
+            }
+            if (groupingSets) {
+                // each row of a grouping set has GROUPING() = 0 only for the
+                // column it groups by
+                StringBuffer colIdx = new StringBuffer("CASE");
+                StringBuffer myValue = new StringBuffer("CASE");
+                for (int i = 0; i < quotedNames.size(); i++) {
+                    colIdx.append(" WHEN GROUPING(").append(quotedNames.get(i)).append(") = 0 THEN ").append(i);
+                    myValue.append(" WHEN GROUPING(").append(quotedNames.get(i)).append(") = 0 THEN ")
+                        .append(quotedNames.get(i));
+                }
+                sql.append("\n  SELECT ").append(colIdx).append(" END AS COLIDX,");
+                sql.append("\n  ").append(myValue).append(" END AS MYVALUE, COUNT(*) AS COUNT1");
+                sql.append("\n  FROM ").append(fromTable);
+                sql.append("\n  GROUP BY GROUPING SETS (");
+                for (int i = 0; i < quotedNames.size(); i++) {
+                    if (i > 0) {
+                        sql.append(", ");
                     }
+                    sql.append("(").append(quotedNames.get(i)).append(")");
                 }
-                else {
-                    throw new IllegalStateException("Query executed, but returns no rows:\n" +
-                            lastSQL + "\nColumn Name: " + columnName );
+                sql.append(")");
+            } else {
+                for (int i = 0; i < quotedNames.size(); i++) {
+                    if (i > 0) {
+                        sql.append("\n  UNION ALL");
+                    }
+                    sql.append("\n  SELECT ").append(i).append(" AS COLIDX, ");
+                    sql.append(quotedNames.get(i)).append(" AS MYVALUE, COUNT(*) AS COUNT1");
+                    sql.append(" FROM ").append(fromTable);
+                    sql.append(" GROUP BY ").append(quotedNames.get(i));
                 }
-                rs.close();
-                rs = null;
             }
+            sql.append("\n ) TOPN__GROUPS");
+            sql.append("\n) TOPN__RANKED");
+            sql.append("\nWHERE RANK1 <= ").append(settings.getTopNCount());
+            sql.append("\nORDER BY COLIDX, COUNT1 DESC");
 
-            if (settings.isFindingTopTen() && pfd.isCountDist() && !pm.isCancelled() ) {
-                sql = new StringBuffer();
-                sql.append("SELECT ").append(databaseIdentifierQuoteString);
-                sql.append(col.getName()).append(databaseIdentifierQuoteString);
-                sql.append(" AS MYVALUE, COUNT(*) AS COUNT1 FROM ");
-                sql.append(DDLUtils.toQualifiedName(table.getCatalogName(),
-                        table.getSchemaName(),
-                        table.getName(),
-                        databaseIdentifierQuoteString,
-                        databaseIdentifierQuoteString));
-                sql.append(" GROUP BY ").append(databaseIdentifierQuoteString);
-                sql.append(col.getName()).append(databaseIdentifierQuoteString);
-                sql.append(" ORDER BY COUNT1 DESC");
-
-                lastSQL = sql.toString();
-                rs = stmt.executeQuery(lastSQL);
-                int topNCount = settings.getTopNCount();
-                int topNSum = 0;
-                for (int n = 0; rs.next() && n < topNCount; n++) {
-                    cpr.addValueCount(rs.getObject("MYVALUE"), rs.getInt("COUNT1"));
-                    topNSum += rs.getInt("COUNT1");
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            lastSQL = sql.toString();
+            rs = executeQuery(stmt, lastSQL, stats);
+            
+            List<List<Object>> values = new ArrayList<List<Object>>();
+            List<List<Long>> counts = new ArrayList<List<Long>>();
+            for (int i = 0; i < cprs.size(); i++) {
+                values.add(new ArrayList<Object>());
+                counts.add(new ArrayList<Long>());
+            }
+            while (rs.next()) {
+                int colIndex = rs.getInt("COLIDX");
+                values.get(colIndex).add(rs.getObject("MYVALUE"));
+                counts.get(colIndex).add(rs.getLong("COUNT1"));
+            }
+            
+            for (int i = 0; i < cprs.size(); i++) {
+                ColumnProfileResult cpr = cprs.get(i);
+                long topNSum = 0;
+                for (int n = 0; n < values.get(i).size(); n++) {
+                    cpr.addValueCount(values.get(i).get(n), counts.get(i).get(n));
+                    topNSum += counts.get(i).get(n);
                 }
-                int remainingCount = cpr.getParent().getRowCount() - topNSum;
+                long remainingCount = cpr.getParent().getRowCount() - topNSum;
                 if (remainingCount > 0) {
                     cpr.addValueCount(ColumnValueCount.OTHER_VALUE_OBJECT, remainingCount);
                 }
-                rs.close();
-                rs = null;
             }
-
-            cpr.setCreateEndTime(System.currentTimeMillis());
-
         } catch (SQLException ex) {
-            logger.error("Profiling query failed.  Will throw exception.  Query was:");
+            logger.error("Windowed top N query failed.  Will throw exception.  Query was:");
             logger.error(lastSQL);
             throw ex;
         } finally {
@@ -499,7 +767,6 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
                 logger.error("Couldn't clean up result set", ex);
             }
         }
-
     }
     
     /**
@@ -507,63 +774,161 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
      * the column referenced by <tt>cpr</tt>.
      * 
      * @param cpr The profile result to populate
+     * @param functions The SQL functions of the platform the column is stored in.
      * @param pm The progress monitor.  This progress monitor is only used for checking
      * if the operation is canceled; it is not updated with progress information.
+     * @param stats The statistics the executed queries are added to.
      */
-    protected void doColumnProfile(ColumnProfileResult cpr, MonitorableImpl pm) throws SQLException, SQLObjectException {
+    protected void doColumnProfile(ColumnProfileResult cpr, PlatformFunctions functions, 
+            MonitorableImpl pm, QueryStats stats) throws SQLException, SQLObjectException {
         logger.debug("Doing profile for column " + cpr.getProfiledObject().getName());
         if (pm.isCancelled()) {
             return;
         }
         
         Connection con = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        String lastSQL = null;
         try {
             SQLColumn col = cpr.getProfiledObject();
             SQLDatabase db = col.getParent().getParentDatabase();
             con = db.getConnection();
-            stmt = con.createStatement();
-            stmt.setEscapeProcessing(false);
             
-            ProfileFunctionDescriptor pfd = profileFunctionMap.get(col.getSourceDataTypeName());
             long profileStartTime = System.currentTimeMillis();
-
-            if (pfd == null) {
-                logger.debug(col.getName()+ " Unknown DataType:(" +
-                        col.getSourceDataTypeName() + ").");
-                logger.debug("Known data types are: " + profileFunctionMap.keySet());
-                pfd = discoverProfileFunctionDescriptor(col, con, pm);
-                profileFunctionMap.put(col.getSourceDataTypeName(), pfd);
-            }
+            ProfileFunctionDescriptor pfd = findProfileFunctionDescriptor(col, functions, con, pm, stats);
+            if (pfd == null) return;
 
             try {
-                execProfileFunctions(cpr, pfd, col, con, pm);
+                execProfileFunctions(cpr, pfd, col, functions, con, pm, stats);
             } catch (Exception ex) {
                 cpr.setCreateStartTime(profileStartTime);
                 cpr.setException(ex);
                 cpr.setCreateEndTime(System.currentTimeMillis());
-                logger.error("Error in Column Profiling: "+lastSQL, ex);
+                logger.error("Error in Column Profiling", ex);
             }
 
         } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException ex) {
-                logger.error("Couldn't clean up result set", ex);
+            if (con != null) {
+                con.close();
             }
+        }
+    }
+
+    /**
+     * Profiles several columns of the same table at once. The aggregates of
+     * all of the columns are computed in one query, and if the platform
+     * supports window functions the most frequent values of the columns are
+     * fetched with one query per data type. If a combined query fails, the
+     * columns it covered are profiled one at a time like
+     * {@link #doColumnProfile(ColumnProfileResult, PlatformFunctions, MonitorableImpl, QueryStats)}
+     * so one column the platform can't aggregate doesn't spoil the others.
+     * 
+     * @param cprs The profile results to populate.
+     * @param functions The SQL functions of the platform the columns are stored in.
+     * @param windowFunctions True if the platform supports window functions.
+     * @param groupingSets True if the platform supports grouping sets.
+     * @param pm The progress monitor.  This progress monitor is only used for checking
+     * if the operation is canceled; it is not updated with progress information.
+     * @param stats The statistics the executed queries are added to.
+     */
+    protected void doColumnGroupProfile(List<ColumnProfileResult> cprs, PlatformFunctions functions, 
+            boolean windowFunctions, boolean groupingSets, MonitorableImpl pm, QueryStats stats)
+            throws SQLException, SQLObjectException {
+        logger.debug("Doing profile for " + cprs.size() + " columns of " + 
+                cprs.get(0).getProfiledObject().getParent().getName());
+        if (pm.isCancelled()) {
+            return;
+        }
+        
+        Connection con = null;
+        try {
+            SQLDatabase db = cprs.get(0).getProfiledObject().getParent().getParentDatabase();
+            con = db.getConnection();
+            
+            long profileStartTime = System.currentTimeMillis();
+            List<ProfileFunctionDescriptor> pfds = new ArrayList<ProfileFunctionDescriptor>();
+            for (ColumnProfileResult cpr : cprs) {
+                ProfileFunctionDescriptor pfd = findProfileFunctionDescriptor(cpr.getProfiledObject(), functions, con, pm, stats);
+                if (pfd == null) return;
+                pfds.add(pfd);
+                cpr.setCreateStartTime(profileStartTime);
+            }
+            
             try {
-                if (stmt != null) stmt.close();
+                execAggregateFunctions(cprs, pfds, functions, con, pm, stats);
             } catch (SQLException ex) {
-                logger.error("Couldn't clean up statement", ex);
+                logger.info("Combined profile query failed, profiling the columns one at a time", ex);
+                for (int i = 0; i < cprs.size() && !pm.isCancelled(); i++) {
+                    try {
+                        execAggregateFunctions(cprs.subList(i, i + 1), pfds.subList(i, i + 1), functions, con, pm, stats);
+                    } catch (Exception colEx) {
+                        cprs.get(i).setException(colEx);
+                        logger.error("Error in Column Profiling", colEx);
+                    }
+                }
+            }
+            
+            if (settings.isFindingTopTen() && !pm.isCancelled()) {
+                List<ColumnProfileResult> topNColumns = new ArrayList<ColumnProfileResult>();
+                for (int i = 0; i < cprs.size(); i++) {
+                    if (pfds.get(i).isCountDist() && cprs.get(i).getException() == null) {
+                        topNColumns.add(cprs.get(i));
+                    }
+                }
+                if (windowFunctions) {
+                    Map<Integer, List<ColumnProfileResult>> columnsByType = 
+                        new LinkedHashMap<Integer, List<ColumnProfileResult>>();
+                    for (ColumnProfileResult cpr : topNColumns) {
+                        List<ColumnProfileResult> sameType = columnsByType.get(cpr.getProfiledObject().getType());
+                        if (sameType == null) {
+                            sameType = new ArrayList<ColumnProfileResult>();
+                            columnsByType.put(cpr.getProfiledObject().getType(), sameType);
+                        }
+                        sameType.add(cpr);
+                    }
+                    for (List<ColumnProfileResult> sameType : columnsByType.values()) {
+                        if (pm.isCancelled()) break;
+                        try {
+                            execWindowedTopNQuery(sameType, groupingSets, con, stats);
+                        } catch (SQLException ex) {
+                            logger.info("Windowed top N query failed, falling back to one query per column", ex);
+                            execTopNQueries(sameType, con, pm, stats);
+                        }
+                    }
+                } else {
+                    execTopNQueries(topNColumns, con, pm, stats);
+                }
+            }
+            
+            for (ColumnProfileResult cpr : cprs) {
+                cpr.setCreateEndTime(System.currentTimeMillis());
             }
+            
+        } finally {
             if (con != null) {
                 con.close();
             }
         }
     }
 
+    /**
+     * Returns the profile function descriptor for the given column's data type,
+     * discovering it by trial and error if the platform does not define one.
+     * Returns null if the operation was cancelled during discovery.
+     */
+    private ProfileFunctionDescriptor findProfileFunctionDescriptor(SQLColumn col, PlatformFunctions functions,
+            Connection con, Monitorable pm, QueryStats stats) {
+        ProfileFunctionDescriptor pfd = functions.profileFunctionMap.get(col.getSourceDataTypeName());
+        if (pfd == null) {
+            logger.debug(col.getName()+ " Unknown DataType:(" +
+                    col.getSourceDataTypeName() + ").");
+            logger.debug("Known data types are: " + functions.profileFunctionMap.keySet());
+            pfd = discoverProfileFunctionDescriptor(col, functions, con, pm, stats);
+            if (pfd != null) {
+                functions.profileFunctionMap.put(col.getSourceDataTypeName(), pfd);
+            }
+        }
+        return pfd;
+    }
+
     /**
      * This creates and sets up the map from data type names used in Architect
      * to the database's actual data type stored in a profile function
@@ -578,9 +943,9 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
      * function, and case when null SQL function as they are also database
      * specific.
      */
-    private void createProfileFunctions(JDBCDataSourceType dsType) {
+    private PlatformFunctions createProfileFunctions(JDBCDataSourceType dsType) {
         
-        profileFunctionMap = new HashMap<String, ProfileFunctionDescriptor>();
+        PlatformFunctions functions = new PlatformFunctions();
         logger.debug("The property to retrieve is " + ProfileFunctionDescriptor.class.getName() + "_(number)");
         
         for (int dataTypeCount = 0;; dataTypeCount += 1) {
@@ -588,7 +953,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
             if (dataTypeToParse == null) break;
             
             ProfileFunctionDescriptor pfd = ProfileFunctionDescriptor.parseDescriptorString(dataTypeToParse);
-            profileFunctionMap.put(pfd.getArchitectSpecificName(), pfd);
+            functions.profileFunctionMap.put(pfd.getArchitectSpecificName(), pfd);
         }
         
         logger.debug("The property to retrieve is " + propName(StringLengthSQLFunction.class));
@@ -601,7 +966,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
                 "Current setting for your database is '" + function + "'"
                 );
         }
-        stringLengthSQLFunction = new StringLengthSQLFunction(functionParts[0], functionParts[1]);
+        functions.stringLengthSQLFunction = new StringLengthSQLFunction(functionParts[0], functionParts[1]);
         
         function = dsType.getProperty(propName(AverageSQLFunction.class));
         functionParts = function.split(":");
@@ -612,7 +977,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
                 "Current setting for your database is '" + function + "'"
                 );
         }
-        averageSQLFunction = new AverageSQLFunction(functionParts[0], functionParts[1]);
+        functions.averageSQLFunction = new AverageSQLFunction(functionParts[0], functionParts[1]);
         
         function = dsType.getProperty(propName(CaseWhenNullSQLFunction.class));
         functionParts = function.split(":");
@@ -623,8 +988,9 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
                 "Current setting for your database is '" + function + "'"
                 );
         }
-        caseWhenNullSQLFunction = new CaseWhenNullSQLFunction(functionParts[0], functionParts[1], functionParts[2]);
+        functions.caseWhenNullSQLFunction = new CaseWhenNullSQLFunction(functionParts[0], functionParts[1], functionParts[2]);
         
+        return functions;
     }
 
     /**
@@ -632,11 +998,15 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
      * by trial and error.  This could be extremely time-consuming.
      * 
      * @param col The column to figureout how to profile
+     * @param functions The SQL functions of the platform col is stored in
      * @param conn A connection to col's database
+     * @param pm Polled to see if the discovery has been cancelled
+     * @param stats The statistics the trial queries are added to
      * @return A ProfileFunctionDescriptor that is properly configured for the data
      * type of col.
      */
-    private ProfileFunctionDescriptor discoverProfileFunctionDescriptor(SQLColumn col, Connection conn, Monitorable pm) {
+    private ProfileFunctionDescriptor discoverProfileFunctionDescriptor(SQLColumn col, PlatformFunctions functions,
+            Connection conn, Monitorable pm, QueryStats stats) {
         ProfileFunctionDescriptor pfd = new ProfileFunctionDescriptor(col.getSourceDataTypeName(),
                 col.getType(),false,false,false,false,false,false,false,false);
 
@@ -651,7 +1021,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
         
         try {
             pfd.setCountDist(true);
-            execProfileFunctions(dummy, pfd, col, conn, pm);
+            execProfileFunctions(dummy, pfd, col, functions, conn, pm, stats);
             logger.debug("countDist worked");
         } catch (Exception e) {
             logger.debug("countDist failed", e);
@@ -663,7 +1033,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
         try {
             pfd.setMaxValue(true);
             pfd.setMinValue(true);
-            execProfileFunctions(dummy, pfd, col, conn, pm);
+            execProfileFunctions(dummy, pfd, col, functions, conn, pm, stats);
             logger.debug("min/max worked");
         } catch (Exception e) {
             logger.debug("min/max failed", e);
@@ -675,7 +1045,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
 
         try {
             pfd.setAvgValue(true);
-            execProfileFunctions(dummy, pfd, col, conn, pm);
+            execProfileFunctions(dummy, pfd, col, functions, conn, pm, stats);
             logger.debug("avg worked");
         } catch (Exception e) {
             logger.debug("avg failed", e);
@@ -688,7 +1058,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
             pfd.setMaxLength(true);
             pfd.setMinLength(true);
             pfd.setAvgLength(true);
-            execProfileFunctions(dummy, pfd, col, conn, pm);
+            execProfileFunctions(dummy, pfd, col, functions, conn, pm, stats);
             logger.debug("min/max/avg length worked");
         } catch (Exception e) {
             logger.debug("min/max/avg length failed", e);
@@ -701,7 +1071,7 @@ public class RemoteDatabaseProfileCreator extends AbstractTableProfileCreator {
 
         try {
             pfd.setSumDecode(true);
-            execProfileFunctions(dummy, pfd, col, conn, pm);
+            execProfileFunctions(dummy, pfd, col, functions, conn, pm, stats);
             logger.debug("sumDecode worked");
         } catch (Exception e) {
             logger.debug("sumDecode failed", e);
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.object.ObjectDependentException;
+import ca.sqlpower.sql.JDBCDataSourceType;
+import ca.sqlpower.sqlobject.SQLObjectException;
+
+/**
+ * A profile creator that has the database read only a sample of each table
+ * and scales the counts it finds back up to the size of the whole table. The
+ * queries are the same ones the {@link RemoteDatabaseProfileCreator} runs,
+ * but every table reference is followed by the sampling clause of the data
+ * source type (the {@link #SAMPLE_CLAUSE} property), for example
+ * <code>TABLESAMPLE SYSTEM (: PERCENT)</code> on SQL Server,
+ * <code>SAMPLE (:)</code> on Oracle or <code>WHERE RAND() * 100 &lt; :</code>
+ * on platforms without a native sampling clause. The : is replaced by
+ * {@link ProfileSettings#getSamplePercent()}.
+ * <p>
+ * Every query of one profile has to read the same sample, or the counts of
+ * different queries can't be put together. Where the data source type has a
+ * clause that seeds the sample (the {@link #SAMPLE_SEED_CLAUSE} property, for
+ * example <code>REPEATABLE (:)</code>), it follows the sampling clause with a
+ * seed that is fixed for the profile. The estimate of the distinct values
+ * does not depend on it: the distinct and singleton counts it is made from
+ * come from one query.
+ * <p>
+ * The row count, null counts and most frequent value counts are divided by
+ * the sampling fraction. The null counts get the half width of their 95%
+ * confidence interval as an error bound. The distinct value counts are
+ * estimated from the number of values seen exactly once in the sample
+ * (Charikar et al.'s guaranteed-error estimator); their error bound covers
+ * the range from the number of distinct values in the sample to the number
+ * there would be if every value seen once stood for a whole sampling
+ * fraction's worth of values. The minimum, maximum and average values and
+ * lengths are those of the sample.
+ * <p>
+ * Tables whose sample holds fewer than {@link #MIN_SAMPLE_ROWS} rows are
+ * small enough to be profiled completely, so they are.
+ */
+public class SampledProfileCreator extends RemoteDatabaseProfileCreator {
+
+    private static final Logger logger = Logger.getLogger(SampledProfileCreator.class);
+
+    /**
+     * The data source type property holding the clause that is added after
+     * the table name to sample the table. The : in it is replaced by the
+     * percentage of rows to read.
+     */
+    public static final String SAMPLE_CLAUSE = SampledProfileCreator.class.getName() + ".sampleClause";
+
+    /**
+     * The sampling clause used for data source types that do not define
+     * {@link #SAMPLE_CLAUSE}. This is the SQL:2003 syntax.
+     */
+    public static final String DEFAULT_SAMPLE_CLAUSE = "TABLESAMPLE SYSTEM (:)";
+
+    /**
+     * The data source type property holding the clause that is added after
+     * the sampling clause to make every query of a profile read the same
+     * sample. The : in it is replaced by the seed. Sampling is not seeded if
+     * the data source type has a sampling clause but not this one.
+     */
+    public static final String SAMPLE_SEED_CLAUSE = SampledProfileCreator.class.getName() + ".sampleSeedClause";
+
+    /**
+     * The seed clause used with {@link #DEFAULT_SAMPLE_CLAUSE} for data source
+     * types that define neither property. This is the SQL:2003 syntax.
+     */
+    public static final String DEFAULT_SAMPLE_SEED_CLAUSE = "REPEATABLE (:)";
+
+    /**
+     * Tables whose sample has fewer rows than this are profiled completely
+     * instead of being extrapolated from the sample.
+     */
+    public static final long MIN_SAMPLE_ROWS = 1000;
+
+    /**
+     * The z value of a 95% confidence interval.
+     */
+    private static final double Z_95 = 1.96;
+
+    private final ProfileSettings settings;
+
+    public SampledProfileCreator(ProfileSettings settings) {
+        super(settings);
+        this.settings = settings;
+    }
+
+    @Override
+    public boolean doProfileImpl(TableProfileResult tpr) {
+        tpr.setSamplePercent(settings.getSamplePercent());
+        int extraQueries = 0;
+        long extraTime = 0;
+        if (tpr.isSampled()) {
+            long startTime = System.currentTimeMillis();
+            try {
+                long sampleRows = countSampleRows(tpr);
+                if (sampleRows < MIN_SAMPLE_ROWS) {
+                    logger.debug("Sample of " + tpr.getProfiledObject().getName() + " only has " + sampleRows +
+                            " rows, profiling the whole table");
+                    tpr.setSamplePercent(100);
+                }
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                extraQueries++;
+                extraTime += System.currentTimeMillis() - startTime;
+            }
+        }
+
+        boolean finished = super.doProfileImpl(tpr);
+        tpr.setSampleRowCount(tpr.getRowCount());
+        if (finished && tpr.isSampled()) {
+            long startTime = System.currentTimeMillis();
+            try {
+                extraQueries += extrapolate(tpr);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                extraTime += System.currentTimeMillis() - startTime;
+            }
+        }
+        tpr.setQueryCount(tpr.getQueryCount() + extraQueries);
+        tpr.setQueryTime(tpr.getQueryTime() + extraTime);
+        return finished;
+    }
+
+    /**
+     * Adds the sampling clause to the table name while the given result is
+     * being sampled.
+     */
+    @Override
+    protected String tableReference(TableProfileResult tpr, String quote) {
+        String tableName = super.tableReference(tpr, quote);
+        if (!tpr.isSampled()) {
+            return tableName;
+        }
+        JDBCDataSourceType dsType = tpr.getProfiledObject().getParentDatabase().getDataSource().getParentType();
+        String clause = dsType.getProperty(SAMPLE_CLAUSE);
+        String seedClause = dsType.getProperty(SAMPLE_SEED_CLAUSE);
+        if (clause == null || clause.trim().length() == 0) {
+            clause = DEFAULT_SAMPLE_CLAUSE;
+            if (seedClause == null || seedClause.trim().length() == 0) {
+                seedClause = DEFAULT_SAMPLE_SEED_CLAUSE;
+            }
+        }
+        String reference = tableName + " " + fillIn(dsType, "sampling", clause, tpr.getSamplePercent());
+        if (seedClause != null && seedClause.trim().length() > 0) {
+            reference += " " + fillIn(dsType, "sample seed", seedClause, sampleSeed(tpr));
+        }
+        return reference;
+    }
+
+    /**
+     * Replaces the : in one of the clauses of a data source type.
+     */
+    private static String fillIn(JDBCDataSourceType dsType, String clauseName, String clause, Object value) {
+        String[] clauseParts = clause.split(":");
+        if (clauseParts.length != 2) {
+            throw new RuntimeException(
+                "Configuration error in the " + clauseName + " clause for " + dsType.getName() + ":\n" +
+                "The clause must have exactly one : character in it (eg. 'TABLESAMPLE SYSTEM (:)')\n" +
+                "Current setting for your database is '" + clause + "'"
+                );
+        }
+        return clauseParts[0] + value + clauseParts[1];
+    }
+
+    /**
+     * Returns the seed of the sample of a profile. It only depends on the
+     * result, so every query of the profile, including those run on the copy
+     * of the result that is profiled in the background, reads the same rows,
+     * while each new profile of the table reads a new sample.
+     */
+    static int sampleSeed(TableProfileResult tpr) {
+        return tpr.getUUID().hashCode() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts the rows in a sample of the result's table.
+     */
+    private long countSampleRows(TableProfileResult tpr) throws SQLException, SQLObjectException {
+        Connection con = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        String sql = null;
+        try {
+            con = tpr.getProfiledObject().getParentDatabase().getConnection();
+            String quote = con.getMetaData().getIdentifierQuoteString();
+            sql = "SELECT COUNT(*) AS ROW__COUNT\nFROM " + tableReference(tpr, quote);
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            rs = stmt.executeQuery(sql);
+            if (!rs.next()) {
+                throw new AssertionError("No rows came back from COUNT(*) query!");
+            }
+            return rs.getLong("ROW__COUNT");
+        } catch (SQLException ex) {
+            logger.error("Sample count query failed. Query was:\n" + sql);
+            throw ex;
+        } finally {
+            close(rs, stmt, con);
+        }
+    }
+
+    /**
+     * Scales the counts of a result that was computed from a sample up to the
+     * whole table and sets their error bounds.
+     *
+     * @return The number of queries that were executed.
+     */
+    private int extrapolate(TableProfileResult tpr) throws SQLException, SQLObjectException {
+        double fraction = tpr.getSamplePercent() / 100.0;
+        long sampleRows = tpr.getSampleRowCount();
+        long estimatedRows = Math.round(sampleRows / fraction);
+        tpr.setRowCount(estimatedRows);
+        logger.debug("Extrapolating " + sampleRows + " sampled rows of " + tpr.getProfiledObject().getName() +
+                " to " + estimatedRows);
+
+        int queries = 0;
+        Connection con = null;
+        try {
+            for (ColumnProfileResult cpr : tpr.getColumnProfileResults()) {
+                if (cpr.getException() != null) continue;
+                if (settings.isFindingNullCount()) {
+                    long sampleNulls = cpr.getNullCount();
+                    cpr.setNullCount(Math.round(sampleNulls / fraction));
+                    cpr.setNullCountErrorBound(countErrorBound(sampleNulls, sampleRows, fraction));
+                }
+                if (settings.isFindingDistinctCount()) {
+                    if (con == null) {
+                        con = tpr.getProfiledObject().getParentDatabase().getConnection();
+                    }
+                    try {
+                        long[] valueCounts = countSampleValues(cpr, con);
+                        cpr.setDistinctValueCount(valueCounts[0]);
+                        estimateDistinctValueCount(cpr, valueCounts[1], fraction, estimatedRows);
+                    } catch (SQLException ex) {
+                        logger.warn("Could not estimate the distinct values of " +
+                                cpr.getProfiledObject().getName() + " from its sample", ex);
+                        cpr.setException(ex);
+                    } finally {
+                        queries++;
+                    }
+                }
+                scaleValueCounts(cpr, fraction);
+            }
+        } finally {
+            if (con != null) {
+                con.close();
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Counts the distinct values of the given column in a sample of its
+     * table, and the values among them that appear exactly once. Null is not
+     * counted. Both counts come from the same query so they describe the
+     * same sample even where sampling can't be seeded.
+     *
+     * @return The distinct value count followed by the singleton count.
+     */
+    private long[] countSampleValues(ColumnProfileResult cpr, Connection con) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+        String sql = null;
+        try {
+            String quote = con.getMetaData().getIdentifierQuoteString();
+            String column = quote + cpr.getProfiledObject().getName() + quote;
+            // the sampling clause may be a WHERE clause, so the null group is
+            // left out by counting values rather than by filtering rows
+            sql = "SELECT COUNT(MYVALUE) AS DISTINCT__VALUES," +
+                "\n SUM(CASE WHEN VALUE__COUNT = 1 THEN 1 ELSE 0 END) AS SINGLETONS FROM (" +
+                "\n SELECT " + column + " AS MYVALUE, COUNT(" + column + ") AS VALUE__COUNT" +
+                "\n FROM " + tableReference(cpr.getParent(), quote) +
+                "\n GROUP BY " + column +
+                "\n) SAMPLE__VALUES";
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            rs = stmt.executeQuery(sql);
+            if (!rs.next()) {
+                throw new AssertionError("No rows came back from the sample value count query!");
+            }
+            return new long[] { rs.getLong("DISTINCT__VALUES"), rs.getLong("SINGLETONS") };
+        } catch (SQLException ex) {
+            logger.error("Sample value count query failed. Query was:\n" + sql);
+            throw ex;
+        } finally {
+            close(rs, stmt, null);
+        }
+    }
+
+    /**
+     * Replaces the distinct value count of the sample with an estimate for
+     * the whole table.
+     *
+     * @param cpr
+     *            The column result, holding the distinct count of the sample
+     *            the singletons were counted in.
+     * @param singletons The number of values seen exactly once in the sample.
+     * @param fraction The fraction of the table that was sampled.
+     * @param estimatedRows The estimated row count of the table.
+     */
+    static void estimateDistinctValueCount(ColumnProfileResult cpr, long singletons,
+            double fraction, long estimatedRows) {
+        long sampleDistinct = cpr.getDistinctValueCount();
+        if (singletons > sampleDistinct) {
+            // the platform could not count the distinct values of this column
+            return;
+        }
+        long repeated = sampleDistinct - singletons;
+        long estimate = repeated + Math.round(singletons * Math.sqrt(1 / fraction));
+        long upperBound = Math.min(estimatedRows, repeated + Math.round(singletons / fraction));
+        estimate = Math.min(estimate, upperBound);
+        cpr.setDistinctValueCount(estimate);
+        cpr.setDistinctValueCountErrorBound(Math.max(estimate - sampleDistinct, upperBound - estimate));
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of a count that
+     * is extrapolated from a sample.
+     *
+     * @param sampleCount
+     *            The number of rows in the sample that were counted.
+     * @param sampleRows
+     *            The number of rows in the sample.
+     * @param fraction
+     *            The fraction of the table that was sampled.
+     */
+    static long countErrorBound(long sampleCount, long sampleRows, double fraction) {
+        if (sampleRows == 0) return 0;
+        if (sampleCount == 0 || sampleCount == sampleRows) {
+            // the normal approximation breaks down at the edges, the
+            // "rule of three" gives the 95% bound on the other side instead
+            return Math.round(3 / fraction);
+        }
+        double p = sampleCount / (double) sampleRows;
+        double estimatedRows = sampleRows / fraction;
+        double standardError = Math.sqrt(p * (1 - p) / sampleRows * (1 - fraction));
+        return Math.round(Z_95 * standardError * estimatedRows);
+    }
+
+    /**
+     * Replaces the most frequent value counts of the sample with counts
+     * scaled up to the whole table. The percentages stay the same.
+     */
+    private void scaleValueCounts(ColumnProfileResult cpr, double fraction) {
+        List<ColumnValueCount> sampleCounts = new ArrayList<ColumnValueCount>(cpr.getValueCount());
+        for (ColumnValueCount cvc : sampleCounts) {
+            try {
+                cpr.removeChild(cvc);
+            } catch (ObjectDependentException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        for (ColumnValueCount cvc : sampleCounts) {
+            cpr.addValueCount(new ColumnValueCount(cvc.getValue(), Math.round(cvc.getCount() / fraction),
+                    cvc.getPercent(), cvc.isOtherValues()));
+        }
+    }
+
+    private void close(ResultSet rs, Statement stmt, Connection con) throws SQLException {
+        try {
+            if (rs != null) rs.close();
+        } catch (SQLException ex) {
+            logger.error("Couldn't clean up result set", ex);
+        }
+        try {
+            if (stmt != null) stmt.close();
+        } catch (SQLException ex) {
+            logger.error("Couldn't clean up statement", ex);
+        }
+        if (con != null) {
+            con.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Remote Database (Sampled)";
+    }
+}
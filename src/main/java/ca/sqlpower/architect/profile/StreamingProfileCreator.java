@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.architect.ddl.DDLUtils;
+import ca.sqlpower.architect.profile.sketch.ColumnSketch;
+import ca.sqlpower.architect.profile.sketch.SpaceSavingTopN;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLObjectException;
+import ca.sqlpower.sqlobject.SQLTable;
+import ca.sqlpower.util.MonitorableImpl;
+
+/**
+ * A profile creator that reads every row of the table exactly once and feeds
+ * each value into a per-column {@link ColumnSketch}. Unlike the
+ * {@link LocalReservoirProfileCreator}, no rows are kept in memory: the memory
+ * used depends only on the number of columns and the top N setting, so tables
+ * of any length and width can be profiled.
+ * <p>
+ * The distinct value counts and the most frequent values are estimates (the
+ * distinct count is typically within 1% and the top values are exact for
+ * skewed data), everything else is computed exactly over the whole table.
+ */
+public class StreamingProfileCreator extends AbstractTableProfileCreator {
+
+    private static final Logger logger = Logger.getLogger(StreamingProfileCreator.class);
+
+    /**
+     * The number of values each frequent value sketch monitors for every value
+     * that will be reported in the top N list.
+     */
+    private static final int TOP_N_CAPACITY_FACTOR = 20;
+
+    /**
+     * The smallest frequent value sketch we will create.
+     */
+    private static final int MIN_TOP_N_CAPACITY = 100;
+
+    /**
+     * The cancel flag is checked each time this many rows have been read.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 1000;
+
+    /**
+     * The settings for this profile creator.
+     */
+    private final ProfileSettings settings;
+
+    /**
+     * The number of rows the driver is asked to fetch per round trip.
+     */
+    private int fetchSize = 1000;
+
+    public StreamingProfileCreator(ProfileSettings settings) {
+        if (settings == null) {
+            throw new NullPointerException("Null settings");
+        }
+        this.settings = settings;
+    }
+
+    @Override
+    protected boolean doProfileImpl(TableProfileResult tpr) throws SQLException, SQLObjectException {
+        SQLTable table = tpr.getProfiledObject();
+        List<SQLColumn> columns = table.getColumns();
+
+        MonitorableImpl pm = (MonitorableImpl) tpr.getProgressMonitor();
+        pm.setJobSize(columns.size() + 1);
+        pm.setProgress(1);
+
+        int topNCapacity = 0;
+        if (settings.isFindingTopTen()) {
+            topNCapacity = Math.max(MIN_TOP_N_CAPACITY, settings.getTopNCount() * TOP_N_CAPACITY_FACTOR);
+        }
+        ColumnSketch[] sketches = new ColumnSketch[columns.size()];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new ColumnSketch(ColumnSketch.Kind.forSQLType(columns.get(i).getType()),
+                    topNCapacity, settings.isFindingDistinctCount());
+        }
+
+        long rowCount = 0;
+        Connection con = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            con = table.getParentDatabase().getConnection();
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT ");
+            boolean first = true;
+            for (SQLColumn col : columns) {
+                if (!first) sql.append(", ");
+                sql.append(col.getName());
+                first = false;
+            }
+            sql.append(" FROM ").append(DDLUtils.toQualifiedName(table));
+
+            logger.debug("About to execute profiling query: " + sql);
+            stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            rs = stmt.executeQuery(sql.toString());
+            while (rs.next()) {
+                for (int i = 0; i < sketches.length; i++) {
+                    ColumnSketch sketch = sketches[i];
+                    switch (sketch.getKind()) {
+                    case LONG:
+                        long l = rs.getLong(i + 1);
+                        if (rs.wasNull()) {
+                            sketch.updateNull();
+                        } else {
+                            sketch.updateLong(l);
+                        }
+                        break;
+                    case DOUBLE:
+                        double d = rs.getDouble(i + 1);
+                        if (rs.wasNull()) {
+                            sketch.updateNull();
+                        } else {
+                            sketch.updateDouble(d);
+                        }
+                        break;
+                    default:
+                        sketch.update(rs.getObject(i + 1));
+                    }
+                }
+                rowCount++;
+                if (rowCount % CANCEL_CHECK_INTERVAL == 0 && pm.isCancelled()) {
+                    logger.debug("Profile of " + table.getName() + " cancelled after " + rowCount + " rows");
+                    return false;
+                }
+            }
+            logger.debug("Finished streaming result set. Row count=" + rowCount);
+        } finally {
+            try {
+                if (rs != null) rs.close();
+            } catch (SQLException ex) {
+                logger.error("Failed to close result set. Squishing this exception: ", ex);
+            }
+            try {
+                if (stmt != null) stmt.close();
+            } catch (SQLException ex) {
+                logger.error("Failed to close statement. Squishing this exception: ", ex);
+            }
+            try {
+                if (con != null) con.close();
+            } catch (SQLException ex) {
+                logger.error("Failed to close connection. Squishing this exception: ", ex);
+            }
+        }
+
+        tpr.setRowCount(rowCount);
+        for (int i = 0; i < sketches.length; i++) {
+            pm.setProgress(i + 1);
+            ColumnProfileResult cpr = new ColumnProfileResult(columns.get(i));
+            tpr.addColumnProfileResult(cpr);
+            cpr.setCreateStartTime(System.currentTimeMillis());
+            populateColumnResult(cpr, sketches[i], rowCount);
+            cpr.setCreateEndTime(System.currentTimeMillis());
+        }
+        return true;
+    }
+
+    /**
+     * Copies the contents of the finished sketch into the column's profile
+     * result, honouring the settings for which values to find.
+     */
+    private void populateColumnResult(ColumnProfileResult cpr, ColumnSketch sketch, long rowCount) {
+        if (settings.isFindingAvgLength()) {
+            cpr.setAvgLength(sketch.getAverageLength());
+        }
+        if (settings.isFindingMinLength()) {
+            cpr.setMinLength(sketch.getMinLength());
+        }
+        if (settings.isFindingMaxLength()) {
+            cpr.setMaxLength(sketch.getMaxLength());
+        }
+        if (settings.isFindingAvg()) {
+            cpr.setAvgValue(sketch.getAverage());
+        }
+        if (settings.isFindingMin()) {
+            cpr.setMinValue(sketch.getMinValue());
+        }
+        if (settings.isFindingMax()) {
+            cpr.setMaxValue(sketch.getMaxValue());
+        }
+        if (settings.isFindingNullCount()) {
+            cpr.setNullCount(sketch.getNullCount());
+        }
+        if (settings.isFindingDistinctCount()) {
+            cpr.setDistinctValueCount(sketch.getDistinctCount());
+        }
+        if (sketch.getTopN() != null) {
+            long sumOfTopNCount = 0;
+            for (SpaceSavingTopN.Counter c : sketch.getTopN().getTop(settings.getTopNCount())) {
+                long count = Math.min(c.getCount(), rowCount - sumOfTopNCount);
+                cpr.addValueCount(c.getValue(), count);
+                sumOfTopNCount += count;
+            }
+            cpr.addValueCount(ColumnValueCount.OTHER_VALUE_OBJECT, rowCount - sumOfTopNCount);
+        }
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Streaming Sketch";
+    }
+}
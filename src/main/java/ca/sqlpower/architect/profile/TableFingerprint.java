@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.architect.ddl.DDLUtils;
+import ca.sqlpower.sql.JDBCDataSource;
+import ca.sqlpower.sqlobject.SQLColumn;
+import ca.sqlpower.sqlobject.SQLObjectException;
+import ca.sqlpower.sqlobject.SQLTable;
+
+/**
+ * Computes a cheap fingerprint of a table's contents, used by incremental
+ * profiling to decide whether a table has changed since it was last profiled.
+ * The fingerprint is made of:
+ * <ul>
+ * <li>a hash of the table's column names and types, so a profile is never
+ * reused after the table's structure changes
+ * <li>the row count
+ * <li>the largest value of the watermark column (for example a last updated
+ * timestamp), if one is configured and the table has a column by that name
+ * <li>an aggregate checksum of the whole table, if the data source type
+ * defines one with the {@link #CHECKSUM_SQL_FUNCTION} property
+ * </ul>
+ * All of the values are computed by a single query.
+ * <p>
+ * Two fingerprints are only meaningful when compared as strings; the format
+ * is not meant to be parsed.
+ */
+public class TableFingerprint {
+
+    private static final Logger logger = Logger.getLogger(TableFingerprint.class);
+
+    /**
+     * The data source type property holding an aggregate expression that
+     * checksums every row of a table, for example
+     * <code>CHECKSUM_AGG(BINARY_CHECKSUM(*))</code> on SQL Server.
+     */
+    public static final String CHECKSUM_SQL_FUNCTION = TableFingerprint.class.getName() + ".checksumSQLFunction";
+
+    private TableFingerprint() {
+        // utility class
+    }
+
+    /**
+     * Computes the fingerprint of the given table.
+     *
+     * @param table
+     *            The table to fingerprint. Its parent database must be able to
+     *            hand out connections.
+     * @param watermarkColumnName
+     *            The name of the column whose maximum value changes every time
+     *            a row is added or updated. Ignored if it is null, empty or the
+     *            table has no such column.
+     * @return The fingerprint.
+     */
+    public static String compute(SQLTable table, String watermarkColumnName) throws SQLException, SQLObjectException {
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append("columns=").append(Integer.toHexString(columnSignature(table).hashCode()));
+
+        SQLColumn watermark = null;
+        if (watermarkColumnName != null && watermarkColumnName.trim().length() > 0) {
+            for (SQLColumn col : table.getColumns()) {
+                if (col.getName().equalsIgnoreCase(watermarkColumnName.trim())) {
+                    watermark = col;
+                    break;
+                }
+            }
+        }
+        JDBCDataSource ds = table.getParentDatabase().getDataSource();
+        String checksumFunction = null;
+        if (ds != null && ds.getParentType() != null) {
+            checksumFunction = ds.getParentType().getProperty(CHECKSUM_SQL_FUNCTION);
+            if (checksumFunction != null && checksumFunction.trim().length() == 0) {
+                checksumFunction = null;
+            }
+        }
+
+        Connection con = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        String sql = null;
+        try {
+            con = table.getParentDatabase().getConnection();
+            String quote = con.getMetaData().getIdentifierQuoteString();
+            StringBuilder query = new StringBuilder();
+            query.append("SELECT COUNT(*) AS ROW__COUNT");
+            if (watermark != null) {
+                query.append(", MAX(").append(quote).append(watermark.getName()).append(quote).append(") AS WATERMARK");
+            }
+            if (checksumFunction != null) {
+                query.append(", ").append(checksumFunction).append(" AS CHECKSUM");
+            }
+            query.append("\nFROM ");
+            query.append(DDLUtils.toQualifiedName(table.getCatalogName(),
+                    table.getSchemaName(),
+                    table.getName(),
+                    quote,
+                    quote));
+            sql = query.toString();
+            stmt = con.createStatement();
+            stmt.setEscapeProcessing(false);
+            rs = stmt.executeQuery(sql);
+            if (!rs.next()) {
+                throw new IllegalStateException("No rows came back from the fingerprint query:\n" + sql);
+            }
+            fingerprint.append(";rows=").append(rs.getLong("ROW__COUNT"));
+            if (watermark != null) {
+                fingerprint.append(";watermark=").append(rs.getString("WATERMARK"));
+            }
+            if (checksumFunction != null) {
+                fingerprint.append(";checksum=").append(rs.getString("CHECKSUM"));
+            }
+        } catch (SQLException ex) {
+            logger.error("Fingerprint query failed. Query was:\n" + sql);
+            throw ex;
+        } finally {
+            try {
+                if (rs != null) rs.close();
+            } catch (SQLException ex) {
+                logger.error("Couldn't clean up result set", ex);
+            }
+            try {
+                if (stmt != null) stmt.close();
+            } catch (SQLException ex) {
+                logger.error("Couldn't clean up statement", ex);
+            }
+            if (con != null) {
+                con.close();
+            }
+        }
+        logger.debug("Fingerprint of " + table.getName() + " is " + fingerprint);
+        return fingerprint.toString();
+    }
+
+    /**
+     * Describes the names and types of the given table's columns.
+     */
+    static String columnSignature(SQLTable table) throws SQLObjectException {
+        StringBuilder signature = new StringBuilder();
+        for (SQLColumn col : table.getColumns()) {
+            signature.append(col.getName()).append(':').append(col.getType());
+            signature.append('(').append(col.getPrecision()).append(',').append(col.getScale()).append(");");
+        }
+        return signature.toString();
+    }
+}
@@ -61,7 +61,38 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
 
     private static final Logger logger = Logger.getLogger(TableProfileResult.class);
 
-    private int rowCount;
+    private long rowCount;
+
+    /**
+     * The number of queries executed against the source database to create
+     * this profile.
+     */
+    private int queryCount;
+
+    /**
+     * The number of milliseconds spent executing the queries counted by
+     * {@link #queryCount}.
+     */
+    private long queryTime;
+
+    /**
+     * The fingerprint of the table's contents when it was profiled, or null
+     * if it was not recorded. See {@link TableFingerprint}.
+     */
+    private String fingerprint;
+
+    /**
+     * The percentage of the table's rows the profile was computed from. It is
+     * 100 unless the profile was created from a sample, in which case the
+     * counts in this result and its column results are estimates.
+     */
+    private double samplePercent = 100;
+
+    /**
+     * The number of rows in the sample the profile was computed from, or the
+     * row count if the profile was not sampled.
+     */
+    private long sampleRowCount;
     
     /**
      * The "children" of this profile result: the profile results for the columns
@@ -69,6 +100,12 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
      */
     private List<ColumnProfileResult> columnProfileResults = new ArrayList<ColumnProfileResult>();
 
+    /**
+     * Supplies the column results the first time they are needed, if this
+     * result was created without them. Null once they have been loaded.
+     */
+    private ColumnProfileResultLoader columnResultLoader;
+
     private Monitorable progressMonitor = new MonitorableImpl();
     
     /**
@@ -108,6 +145,11 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
         super(tprToCopy, table);
         setName("New Table Profile");
         this.rowCount = tprToCopy.rowCount;
+        this.queryCount = tprToCopy.queryCount;
+        this.queryTime = tprToCopy.queryTime;
+        this.fingerprint = tprToCopy.fingerprint;
+        this.samplePercent = tprToCopy.samplePercent;
+        this.sampleRowCount = tprToCopy.sampleRowCount;
         this.progressMonitor = tprToCopy.progressMonitor;
         for (SQLColumn col : table.getColumns()) {
             for (ColumnProfileResult cpr : tprToCopy.getColumnProfileResults()) {
@@ -134,17 +176,100 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
      * be realistic until this result has been fully profiled.
      */
     @Accessor
-    public int getRowCount() {
+    public long getRowCount() {
         return rowCount;
     }
 
     @Mutator
-    public void setRowCount(int rowCount) {
-        int oldCount = this.rowCount;
+    public void setRowCount(long rowCount) {
+        long oldCount = this.rowCount;
         this.rowCount = rowCount;
         firePropertyChange("rowCount", oldCount, rowCount);
     }
 
+    /**
+     * Returns the number of queries the profile creator executed against the
+     * source database to populate this result. Profile creators that do not
+     * keep track of their queries leave this at 0.
+     */
+    @Accessor
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    @Mutator
+    public void setQueryCount(int queryCount) {
+        int oldCount = this.queryCount;
+        this.queryCount = queryCount;
+        firePropertyChange("queryCount", oldCount, queryCount);
+    }
+
+    /**
+     * Returns the time in milliseconds spent waiting for the queries counted
+     * by {@link #getQueryCount()}. The rest of {@link #getTimeToCreate()} was
+     * spent connecting and processing results.
+     */
+    @Accessor
+    public long getQueryTime() {
+        return queryTime;
+    }
+
+    @Mutator
+    public void setQueryTime(long queryTime) {
+        long oldTime = this.queryTime;
+        this.queryTime = queryTime;
+        firePropertyChange("queryTime", oldTime, queryTime);
+    }
+
+    /**
+     * Returns the fingerprint of the table's contents taken just before it
+     * was profiled, or null if the profile was not made incrementally.
+     */
+    @Accessor
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Mutator
+    public void setFingerprint(String fingerprint) {
+        String oldFingerprint = this.fingerprint;
+        this.fingerprint = fingerprint;
+        firePropertyChange("fingerprint", oldFingerprint, fingerprint);
+    }
+
+    @Accessor
+    public double getSamplePercent() {
+        return samplePercent;
+    }
+
+    @Mutator
+    public void setSamplePercent(double samplePercent) {
+        double oldPercent = this.samplePercent;
+        this.samplePercent = samplePercent;
+        firePropertyChange("samplePercent", oldPercent, samplePercent);
+    }
+
+    /**
+     * Returns true if the counts in this result were extrapolated from a
+     * sample of the table.
+     */
+    @NonProperty
+    public boolean isSampled() {
+        return samplePercent < 100;
+    }
+
+    @Accessor
+    public long getSampleRowCount() {
+        return sampleRowCount;
+    }
+
+    @Mutator
+    public void setSampleRowCount(long sampleRowCount) {
+        long oldCount = this.sampleRowCount;
+        this.sampleRowCount = sampleRowCount;
+        firePropertyChange("sampleRowCount", oldCount, sampleRowCount);
+    }
+
     /**
      * This printf format string is used in our toString() but is also
      * made public for use in UI controls that need an approximation
@@ -157,13 +282,22 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
         DateFormat df = DateFormat.getDateTimeInstance();
         Date date = new Date(getCreateStartTime());
         int successfulColCount = 0;
-        for (ColumnProfileResult cpr : columnProfileResults) {
-            if (cpr.getException() == null) {
-                successfulColCount++;
+        int colCount;
+        ColumnProfileResultLoader loader = columnResultLoader;
+        if (loader != null) {
+            // don't load the column results just to count them
+            successfulColCount = loader.getSuccessfulColumnCount();
+            colCount = loader.getColumnCount();
+        } else {
+            for (ColumnProfileResult cpr : columnProfileResults) {
+                if (cpr.getException() == null) {
+                    successfulColCount++;
+                }
             }
+            colCount = columnProfileResults.size();
         }
         return String.format(TOSTRING_FORMAT,
-                rowCount, df.format(date), formatCreateTime(), successfulColCount, columnProfileResults.size());
+                rowCount, df.format(date), formatCreateTime(), successfulColCount, colCount);
     }
     
     /**
@@ -211,6 +345,7 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
      */
     @NonProperty
     public List<ColumnProfileResult> getColumnProfileResults() {
+        loadColumnResults();
         return Collections.unmodifiableList(columnProfileResults);
     }
 
@@ -222,6 +357,7 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
      */
     @NonProperty
     public Collection<ColumnProfileResult> getColumnProfileResult(SQLColumn c) {
+        loadColumnResults();
         Collection<ColumnProfileResult> retCollection = new ArrayList<ColumnProfileResult>();
         for (ColumnProfileResult result : columnProfileResults) {
             if (c == result.getProfiledObject()) {
@@ -253,11 +389,55 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
     }
 
     /**
-     * Adds a new column profile result to the end of the result list.
+     * Adds a new column profile result to the end of the result list. This
+     * does not load the column results from the {@link #columnResultLoader};
+     * they are added after the results already there when they are first
+     * asked for.
      */
     public void addColumnProfileResult(ColumnProfileResult profileResult) {
         addColumnProfileResult(profileResult, columnProfileResults.size());
     }
+
+    /**
+     * Makes this result get its column results from the given loader the
+     * first time they are asked for, instead of keeping them in memory from
+     * the start. This is meant for results that have just been created and
+     * don't have any column results yet.
+     */
+    @NonBound
+    public void setColumnResultLoader(ColumnProfileResultLoader loader) {
+        columnResultLoader = loader;
+    }
+
+    /**
+     * Returns true if all of the column results are in memory, false if some
+     * are still waiting on the {@link #columnResultLoader} and will only be
+     * read when {@link #getColumnProfileResults()} is called.
+     */
+    @NonBound
+    public synchronized boolean isColumnResultsLoaded() {
+        return columnResultLoader == null;
+    }
+
+    /**
+     * Adds the column results from the {@link #columnResultLoader}, if there
+     * is one. If they can't be loaded, the problem is recorded as this
+     * result's exception.
+     */
+    private synchronized void loadColumnResults() {
+        ColumnProfileResultLoader loader = columnResultLoader;
+        if (loader == null) return;
+        columnResultLoader = null;
+        try {
+            for (ColumnProfileResult cpr : loader.loadColumnResults(this)) {
+                columnProfileResults.add(cpr);
+                cpr.setParent(this);
+            }
+        } catch (Exception e) {
+            logger.error("Could not load the column profiles of " + getProfiledObject().getName(), e);
+            setException(e);
+        }
+    }
     
     @Override
     protected void addChildImpl(SPObject child, int index) {
@@ -278,6 +458,8 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
     @Override
     protected boolean removeChildImpl(SPObject child) {
         if (child instanceof ColumnProfileResult) {
+            // a result that was never loaded can't be passed in, so there is
+            // no need to load them to find it
             int index = columnProfileResults.indexOf(child);
             if (columnProfileResults.remove(child)) {
                 fireChildRemoved(ColumnProfileResult.class, child, index);
@@ -292,6 +474,13 @@ public class TableProfileResult extends AbstractProfileResult<SQLTable> {
         return allowedChildTypes;
     }
 
+    /**
+     * Returns the column results that are in memory. The ones still waiting
+     * on the {@link #columnResultLoader} are left out so walking the object
+     * hierarchy, for example to listen to it or persist it, doesn't read them
+     * from the project file. Use {@link #getColumnProfileResults()} to get
+     * all of them.
+     */
     @NonProperty
     public List<? extends SPObject> getChildren() {
         List<SPObject> children = new ArrayList<SPObject>();
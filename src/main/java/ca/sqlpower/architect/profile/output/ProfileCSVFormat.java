@@ -93,13 +93,13 @@ public class ProfileCSVFormat implements ProfileFormat {
                     commonData.add(dateFormat.format(date));
                     break;
                 case RECORD_COUNT:
-                    commonData.add(Integer.toString(tpr.getRowCount()));
+                    commonData.add(Long.toString(tpr.getRowCount()));
                     break;
                 case DATA_TYPE:
                     commonData.add(gddl.columnType(c));
                     break;
                 case NULL_COUNT:
-                    commonData.add(Integer.toString(((ColumnProfileResult) result).getNullCount()));
+                    commonData.add(Long.toString(((ColumnProfileResult) result).getNullCount()));
                     break;
                 case PERCENT_NULL:
                     if ( tpr.getRowCount() == 0 )
@@ -109,7 +109,7 @@ public class ProfileCSVFormat implements ProfileFormat {
                             ((ColumnProfileResult) result).getNullCount() / (double)tpr.getRowCount()));
                     break;
                 case UNIQUE_COUNT:
-                    commonData.add(Integer.toString(((ColumnProfileResult) result).getDistinctValueCount()));
+                    commonData.add(Long.toString(((ColumnProfileResult) result).getDistinctValueCount()));
                     break;
                 case PERCENT_UNIQUE:
                     if ( tpr.getRowCount() == 0 )
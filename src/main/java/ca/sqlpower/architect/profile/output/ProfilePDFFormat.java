@@ -711,7 +711,7 @@ public class ProfilePDFFormat implements ProfileFormat {
         SQLColumn col = result.getProfiledObject();
         
 
-        int rowCount = -1;
+        long rowCount = -1;
         if ( tProfile != null && tProfile.getException() == null ) {
             rowCount = tProfile.getRowCount();
         }
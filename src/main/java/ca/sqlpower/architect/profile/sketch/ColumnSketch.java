@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile.sketch;
+
+import java.sql.Types;
+
+/**
+ * Accumulates the profile of a single column one value at a time in bounded
+ * memory. The distinct count, most frequent values and quantiles are kept in
+ * sketches; everything else is a running primitive total. Two sketches of the
+ * same column can be merged, so a column can be profiled in pieces (for
+ * example one piece per partition) and combined at the end.
+ * <p>
+ * Integral and floating point columns have their own update methods that
+ * keep the minimum, maximum and sum as primitives. Only the most frequent
+ * value tracking needs a boxed value for those columns.
+ */
+public class ColumnSketch {
+
+    /**
+     * How the values of a column are read and accumulated.
+     */
+    public enum Kind {
+        /** Integral values, read with getLong() */
+        LONG,
+        /** Approximate numeric values, read with getDouble() */
+        DOUBLE,
+        /** Everything else, read with getObject() */
+        OBJECT;
+
+        /**
+         * Picks the kind for the given {@link Types} constant. Exact decimal
+         * types are read as objects so no precision is lost.
+         */
+        public static Kind forSQLType(int sqlType) {
+            switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LONG;
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return DOUBLE;
+            default:
+                return OBJECT;
+            }
+        }
+    }
+
+    private final Kind kind;
+
+    private final HyperLogLog distinct;
+
+    private final SpaceSavingTopN topN;
+
+    private final TDigest digest;
+
+    private long count;
+    private long nullCount;
+
+    private long numericCount;
+    private double numericSum;
+
+    private long lengthSum;
+    private int minLength = Integer.MAX_VALUE;
+    private int maxLength;
+
+    private long minLong = Long.MAX_VALUE;
+    private long maxLong = Long.MIN_VALUE;
+    private double minDouble = Double.POSITIVE_INFINITY;
+    private double maxDouble = Double.NEGATIVE_INFINITY;
+
+    private Comparable minValue;
+    private Comparable maxValue;
+
+    /**
+     * @param kind
+     *            How the values will be offered to this sketch.
+     * @param topNCapacity
+     *            The number of values the frequent value sketch monitors, or 0
+     *            to not track frequent values at all.
+     * @param trackDistinct
+     *            False to skip distinct value estimation.
+     */
+    public ColumnSketch(Kind kind, int topNCapacity, boolean trackDistinct) {
+        this.kind = kind;
+        this.distinct = trackDistinct ? new HyperLogLog() : null;
+        this.topN = topNCapacity > 0 ? new SpaceSavingTopN(topNCapacity) : null;
+        this.digest = new TDigest();
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void updateNull() {
+        count++;
+        nullCount++;
+        if (distinct != null) distinct.offer(null);
+        if (topN != null) topN.offer(null);
+    }
+
+    public void updateLong(long value) {
+        count++;
+        numericCount++;
+        numericSum += value;
+        if (value < minLong) minLong = value;
+        if (value > maxLong) maxLong = value;
+        updateLength(stringLength(value));
+        if (distinct != null) distinct.offerLong(value);
+        if (topN != null) topN.offer(Long.valueOf(value));
+        digest.add(value);
+    }
+
+    public void updateDouble(double value) {
+        count++;
+        numericCount++;
+        numericSum += value;
+        if (value < minDouble) minDouble = value;
+        if (value > maxDouble) maxDouble = value;
+        updateLength(String.valueOf(value).length());
+        if (distinct != null) distinct.offerDouble(value);
+        if (topN != null) topN.offer(Double.valueOf(value));
+        digest.add(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void update(Object value) {
+        if (value == null) {
+            updateNull();
+            return;
+        }
+        count++;
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            numericCount++;
+            numericSum += d;
+            digest.add(d);
+        }
+        if (value instanceof CharSequence) {
+            updateLength(((CharSequence) value).length());
+        } else {
+            updateLength(String.valueOf(value).length());
+        }
+        if (value instanceof Comparable) {
+            Comparable cval = (Comparable) value;
+            if (minValue == null || cval.compareTo(minValue) < 0) {
+                minValue = cval;
+            }
+            if (maxValue == null || cval.compareTo(maxValue) > 0) {
+                maxValue = cval;
+            }
+        }
+        if (distinct != null) distinct.offer(value);
+        if (topN != null) topN.offer(value);
+    }
+
+    private void updateLength(int length) {
+        lengthSum += length;
+        if (length < minLength) minLength = length;
+        if (length > maxLength) maxLength = length;
+    }
+
+    /**
+     * The number of characters in the decimal representation of the given
+     * value, computed without creating a string.
+     */
+    static int stringLength(long value) {
+        if (value == Long.MIN_VALUE) return 20;
+        int length = 1;
+        if (value < 0) {
+            length++;
+            value = -value;
+        }
+        while (value >= 10) {
+            value /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Folds the given sketch of the same column into this one.
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(ColumnSketch other) {
+        if (other.kind != kind) {
+            throw new IllegalArgumentException("Cannot merge a " + other.kind + " sketch into a " + kind + " sketch");
+        }
+        count += other.count;
+        nullCount += other.nullCount;
+        numericCount += other.numericCount;
+        numericSum += other.numericSum;
+        lengthSum += other.lengthSum;
+        minLength = Math.min(minLength, other.minLength);
+        maxLength = Math.max(maxLength, other.maxLength);
+        minLong = Math.min(minLong, other.minLong);
+        maxLong = Math.max(maxLong, other.maxLong);
+        minDouble = Math.min(minDouble, other.minDouble);
+        maxDouble = Math.max(maxDouble, other.maxDouble);
+        if (other.minValue != null && (minValue == null || other.minValue.compareTo(minValue) < 0)) {
+            minValue = other.minValue;
+        }
+        if (other.maxValue != null && (maxValue == null || other.maxValue.compareTo(maxValue) > 0)) {
+            maxValue = other.maxValue;
+        }
+        if (distinct != null && other.distinct != null) distinct.merge(other.distinct);
+        if (topN != null && other.topN != null) topN.merge(other.topN);
+        digest.merge(other.digest);
+    }
+
+    /**
+     * The number of values offered, including nulls.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * The estimated number of distinct values (null counts as one value), or
+     * -1 if distinct values are not being tracked.
+     */
+    public long getDistinctCount() {
+        return distinct == null ? -1 : distinct.estimate();
+    }
+
+    /**
+     * The average of the numeric values, or null if there were none.
+     */
+    public Double getAverage() {
+        return numericCount == 0 ? null : Double.valueOf(numericSum / numericCount);
+    }
+
+    /**
+     * The average length of the values as strings. Nulls count as length 0.
+     */
+    public double getAverageLength() {
+        return count == 0 ? 0.0 : ((double) lengthSum) / count;
+    }
+
+    public int getMinLength() {
+        return count == nullCount ? 0 : minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * The smallest value seen, or null if there were no non-null comparable
+     * values.
+     */
+    public Object getMinValue() {
+        switch (kind) {
+        case LONG:   return numericCount == 0 ? null : Long.valueOf(minLong);
+        case DOUBLE: return numericCount == 0 ? null : Double.valueOf(minDouble);
+        default:     return minValue;
+        }
+    }
+
+    /**
+     * The largest value seen, or null if there were no non-null comparable
+     * values.
+     */
+    public Object getMaxValue() {
+        switch (kind) {
+        case LONG:   return numericCount == 0 ? null : Long.valueOf(maxLong);
+        case DOUBLE: return numericCount == 0 ? null : Double.valueOf(maxDouble);
+        default:     return maxValue;
+        }
+    }
+
+    /**
+     * Estimates the given quantile of the numeric values in this column.
+     * Returns NaN if the column had no numeric values.
+     */
+    public double getQuantile(double q) {
+        return digest.quantile(q);
+    }
+
+    /**
+     * The frequent value sketch, or null if frequent values are not being
+     * tracked.
+     */
+    public SpaceSavingTopN getTopN() {
+        return topN;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile.sketch;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A HyperLogLog distinct value estimator. The sketch uses a fixed number of
+ * one-byte registers (2^precision of them) no matter how many values are
+ * offered to it, and two sketches with the same precision can be merged to get
+ * the estimate for the union of their inputs.
+ * <p>
+ * For small cardinalities the estimate falls back to linear counting, which is
+ * exact for all practical purposes when the number of distinct values is much
+ * lower than the number of registers.
+ */
+public class HyperLogLog {
+
+    /**
+     * The precision used when none is given. 2^14 registers costs 16kB per
+     * sketch and gives a standard error of about 0.8%.
+     */
+    public static final int DEFAULT_PRECISION = 14;
+
+    /**
+     * The hash used for null values. Null counts as a distinct value, the same
+     * as it does in the other profile creators.
+     */
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision
+     *            The number of bits of the hash used to pick a register. Must
+     *            be between 4 and 18 inclusive.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18, not " + precision);
+        }
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds the given value to this sketch. Values that are equal must hash the
+     * same way, see {@link #hash(Object)}.
+     */
+    public void offer(Object value) {
+        offerHash(hash(value));
+    }
+
+    public void offerLong(long value) {
+        offerHash(mix(value));
+    }
+
+    public void offerDouble(double value) {
+        offerHash(mix(Double.doubleToLongBits(value)));
+    }
+
+    /**
+     * Adds an already hashed value to this sketch. The hash must be well
+     * distributed over all 64 bits.
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the low bit keeps the rank bounded if the remaining bits are all 0
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values offered to this sketch.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0.0;
+        int zeroRegisters = 0;
+        for (byte r : registers) {
+            sum += Math.scalb(1.0, -r);
+            if (r == 0) zeroRegisters++;
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeroRegisters > 0) {
+            estimate = m * Math.log((double) m / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Folds the given sketch into this one. After this call, this sketch
+     * estimates the number of distinct values offered to either sketch.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a sketch of precision " +
+                    other.precision + " into one of precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+        case 16: return 0.673;
+        case 32: return 0.697;
+        case 64: return 0.709;
+        default: return 0.7213 / (1.0 + 1.079 / m);
+        }
+    }
+
+    /**
+     * Computes a 64 bit hash for the given value. Integral numbers hash by
+     * their long value and floating point numbers by their bit pattern so the
+     * primitive offer methods agree with this one.
+     */
+    public static long hash(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            return mix(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof CharSequence) {
+            CharSequence s = (CharSequence) value;
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        } else if (value instanceof Date) {
+            return mix(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            return mix(Arrays.hashCode((byte[]) value));
+        } else {
+            return mix(value.hashCode());
+        }
+    }
+
+    /**
+     * The MurmurHash3 64 bit finalizer. Spreads the entropy of the input over
+     * all bits of the result.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
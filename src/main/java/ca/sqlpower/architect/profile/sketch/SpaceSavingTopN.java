@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile.sketch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent values of a stream using the Space-Saving algorithm
+ * of Metwally, Agrawal and El Abbadi. At most {@link #getCapacity()} values are
+ * kept at once. When a new value arrives and the sketch is full, the least
+ * frequent value is replaced and the new value inherits its count, which is
+ * remembered as the possible overestimate ("error") for the new value.
+ * <p>
+ * Any value whose true frequency is greater than (offered count / capacity) is
+ * guaranteed to be in the sketch, so keeping a capacity of several times the
+ * requested top N gives accurate top N lists for skewed data.
+ */
+public class SpaceSavingTopN {
+
+    /**
+     * One monitored value and its (over)estimated count.
+     */
+    public static class Counter {
+        private Object value;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        Counter(Object value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * The value being counted. Null values are counted like any other.
+         */
+        public Object getValue() {
+            return value == NULL_KEY ? null : value;
+        }
+
+        /**
+         * An upper bound of the number of times this value was offered.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The amount by which {@link #getCount()} may overestimate the true
+         * count.
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return getValue() + "=" + count + " (+/-" + error + ")";
+        }
+    }
+
+    /**
+     * Sorts counters from most to least frequent.
+     */
+    private static final Comparator<Counter> DESCENDING_COUNT = new Comparator<Counter>() {
+        public int compare(Counter o1, Counter o2) {
+            return o1.count > o2.count ? -1 : (o1.count == o2.count ? 0 : 1);
+        }
+    };
+
+    /**
+     * Stands in for null in the counter map so nulls get their own counter.
+     */
+    private static final Object NULL_KEY = new Object();
+
+    private final int capacity;
+
+    private final Map<Object, Counter> counters;
+
+    /**
+     * A binary min-heap of the counters ordered by count, so the least
+     * frequent value can be found and replaced in logarithmic time.
+     */
+    private final Counter[] heap;
+
+    private int size;
+
+    /**
+     * The total number of values offered to this sketch, including merges.
+     */
+    private long offered;
+
+    public SpaceSavingTopN(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, not " + capacity);
+        }
+        this.capacity = capacity;
+        counters = new HashMap<Object, Counter>(capacity * 2);
+        heap = new Counter[capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getOfferedCount() {
+        return offered;
+    }
+
+    public void offer(Object value) {
+        offer(value, 1);
+    }
+
+    public void offer(Object value, long increment) {
+        Object key = (value == null ? NULL_KEY : value);
+        offered += increment;
+        Counter c = counters.get(key);
+        if (c != null) {
+            c.count += increment;
+            siftDown(c.heapIndex);
+        } else if (size < capacity) {
+            c = new Counter(key, increment, 0);
+            counters.put(key, c);
+            c.heapIndex = size;
+            heap[size++] = c;
+            siftUp(c.heapIndex);
+        } else {
+            Counter min = heap[0];
+            counters.remove(min.value);
+            min.value = key;
+            min.error = min.count;
+            min.count += increment;
+            counters.put(key, min);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns the n most frequent values, most frequent first.
+     */
+    public List<Counter> getTop(int n) {
+        List<Counter> all = new ArrayList<Counter>(size);
+        for (int i = 0; i < size; i++) {
+            all.add(heap[i]);
+        }
+        Collections.sort(all, DESCENDING_COUNT);
+        return all.subList(0, Math.min(n, all.size()));
+    }
+
+    /**
+     * Folds the given sketch into this one using the merge rule from Agarwal
+     * et al. ("Mergeable Summaries"): values missing from a full sketch are
+     * assumed to have that sketch's minimum count, then the largest
+     * {@link #getCapacity()} counters of the combined set are kept.
+     */
+    public void merge(SpaceSavingTopN other) {
+        long thisMin = (size == capacity ? heap[0].count : 0);
+        long otherMin = (other.size == other.capacity ? other.heap[0].count : 0);
+
+        Map<Object, Counter> combined = new HashMap<Object, Counter>(counters.size() + other.counters.size());
+        for (Counter c : counters.values()) {
+            Counter oc = other.counters.get(c.value);
+            if (oc != null) {
+                combined.put(c.value, new Counter(c.value, c.count + oc.count, c.error + oc.error));
+            } else {
+                combined.put(c.value, new Counter(c.value, c.count + otherMin, c.error + otherMin));
+            }
+        }
+        for (Counter oc : other.counters.values()) {
+            if (!combined.containsKey(oc.value)) {
+                combined.put(oc.value, new Counter(oc.value, oc.count + thisMin, oc.error + thisMin));
+            }
+        }
+
+        List<Counter> sorted = new ArrayList<Counter>(combined.values());
+        Collections.sort(sorted, DESCENDING_COUNT);
+
+        counters.clear();
+        size = 0;
+        for (Counter c : sorted.subList(0, Math.min(capacity, sorted.size()))) {
+            counters.put(c.value, c);
+            c.heapIndex = size;
+            heap[size++] = c;
+            siftUp(c.heapIndex);
+        }
+        offered += other.offered;
+    }
+
+    private void siftUp(int i) {
+        Counter c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= c.count) break;
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(c, i);
+    }
+
+    private void siftDown(int i) {
+        Counter c = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (c.count <= heap[child].count) break;
+            place(heap[child], i);
+            i = child;
+        }
+        place(c, i);
+    }
+
+    private void place(Counter c, int i) {
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.sqlpower.architect.profile.sketch;
+
+import java.util.Arrays;
+
+/**
+ * A merging t-digest (Dunning and Ertl) for estimating quantiles of a stream
+ * of numbers. Incoming values are buffered and periodically merged into a
+ * sorted list of weighted centroids. Centroids near the tails are kept small,
+ * so extreme quantiles are accurate, while the total number of centroids stays
+ * proportional to the compression factor rather than to the number of values.
+ * <p>
+ * The exact minimum and maximum are tracked separately. All state is held in
+ * primitive arrays.
+ */
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100.0;
+
+    private final double compression;
+
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int bufferCount;
+
+    /**
+     * The total weight of the centroids and the buffer.
+     */
+    private double totalWeight;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("Compression must be at least 10, not " + compression);
+        }
+        this.compression = compression;
+        int initialCentroids = (int) Math.ceil(2 * compression);
+        means = new double[initialCentroids];
+        weights = new double[initialCentroids];
+        int bufferSize = (int) Math.ceil(5 * compression);
+        bufferMeans = new double[bufferSize];
+        bufferWeights = new double[bufferSize];
+    }
+
+    public void add(double value) {
+        add(value, 1.0);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value)) return;
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Folds the given digest into this one.
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+    }
+
+    /**
+     * The number of values added to this digest.
+     */
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    public double getMin() {
+        return totalWeight == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return totalWeight == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Estimates the value at the given quantile.
+     *
+     * @param q
+     *            The quantile, between 0 and 1 inclusive. 0.5 is the median.
+     * @return The estimate, or NaN if no values were added.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, not " + q);
+        }
+        compress();
+        if (centroidCount == 0) return Double.NaN;
+        if (centroidCount == 1) return means[0];
+
+        double index = q * totalWeight;
+        if (index < weights[0] / 2) {
+            // between the minimum and the first centroid
+            return min + (means[0] - min) * (index / (weights[0] / 2));
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + gap > index) {
+                double fraction = (index - cumulative) / gap;
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            cumulative += gap;
+        }
+        double last = weights[centroidCount - 1] / 2;
+        double fraction = Math.min(1.0, (index - cumulative) / last);
+        return means[centroidCount - 1] + fraction * (max - means[centroidCount - 1]);
+    }
+
+    /**
+     * Merges the buffered values into the centroid list.
+     */
+    private void compress() {
+        if (bufferCount == 0) return;
+        sortBuffer();
+
+        int n = centroidCount + bufferCount;
+        double[] mergedMeans = new double[n];
+        double[] mergedWeights = new double[n];
+        int i = 0, j = 0, k = 0;
+        while (i < centroidCount || j < bufferCount) {
+            if (j >= bufferCount || (i < centroidCount && means[i] <= bufferMeans[j])) {
+                mergedMeans[k] = means[i];
+                mergedWeights[k++] = weights[i++];
+            } else {
+                mergedMeans[k] = bufferMeans[j];
+                mergedWeights[k++] = bufferWeights[j++];
+            }
+        }
+        bufferCount = 0;
+
+        centroidCount = 0;
+        double weightSoFar = 0;
+        double currentMean = mergedMeans[0];
+        double currentWeight = mergedWeights[0];
+        for (int m = 1; m < n; m++) {
+            double proposed = currentWeight + mergedWeights[m];
+            double q = (weightSoFar + proposed / 2) / totalWeight;
+            double limit = 4 * totalWeight * q * (1 - q) / compression;
+            if (proposed <= Math.max(1.0, limit)) {
+                currentMean += (mergedMeans[m] - currentMean) * mergedWeights[m] / proposed;
+                currentWeight = proposed;
+            } else {
+                appendCentroid(currentMean, currentWeight);
+                weightSoFar += currentWeight;
+                currentMean = mergedMeans[m];
+                currentWeight = mergedWeights[m];
+            }
+        }
+        appendCentroid(currentMean, currentWeight);
+    }
+
+    private void appendCentroid(double mean, double weight) {
+        if (centroidCount == means.length) {
+            means = Arrays.copyOf(means, centroidCount * 2);
+            weights = Arrays.copyOf(weights, centroidCount * 2);
+        }
+        means[centroidCount] = mean;
+        weights[centroidCount] = weight;
+        centroidCount++;
+    }
+
+    /**
+     * Sorts the buffer by value, keeping each weight with its value. The
+     * buffer is all weight 1 unless another digest was merged in, in which case
+     * the weights are moved to the sorted position of their values.
+     */
+    private void sortBuffer() {
+        boolean allUnitWeight = true;
+        for (int i = 0; i < bufferCount; i++) {
+            if (bufferWeights[i] != 1.0) {
+                allUnitWeight = false;
+                break;
+            }
+        }
+        if (allUnitWeight) {
+            Arrays.sort(bufferMeans, 0, bufferCount);
+            return;
+        }
+        double[] sortedMeans = Arrays.copyOf(bufferMeans, bufferCount);
+        Arrays.sort(sortedMeans);
+        double[] sortedWeights = new double[bufferCount];
+        boolean[] used = new boolean[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            int pos = Arrays.binarySearch(sortedMeans, bufferMeans[i]);
+            // step back to the first equal value, then forward to a free slot
+            while (pos > 0 && sortedMeans[pos - 1] == bufferMeans[i]) pos--;
+            while (used[pos]) pos++;
+            used[pos] = true;
+            sortedWeights[pos] = bufferWeights[i];
+        }
+        System.arraycopy(sortedMeans, 0, bufferMeans, 0, bufferCount);
+        System.arraycopy(sortedWeights, 0, bufferWeights, 0, bufferCount);
+    }
+}
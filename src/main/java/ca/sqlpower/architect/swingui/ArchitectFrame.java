@@ -86,7 +86,7 @@ import ca.sqlpower.architect.UpdateCheckSettings;
 import ca.sqlpower.architect.UserSettings;
 import ca.sqlpower.architect.enterprise.ArchitectClientSideSession;
 import ca.sqlpower.architect.layout.ArchitectLayout;
-import ca.sqlpower.architect.layout.FruchtermanReingoldForceLayout;
+import ca.sqlpower.architect.layout.BarnesHutForceLayout;
 import ca.sqlpower.architect.olap.OLAPSession;
 import ca.sqlpower.architect.swingui.PlayPen.CancelableListener;
 import ca.sqlpower.architect.swingui.action.AboutAction;
@@ -761,8 +761,9 @@ public class ArchitectFrame extends JFrame {
         undoAction = new UndoAction(currentSession, this, currentSession.getUndoManager());
         redoAction = new RedoAction(currentSession, this, currentSession.getUndoManager());
         autoLayoutAction = new AutoLayoutAction(this, Messages.getString("ArchitectFrame.autoLayoutActionName"), Messages.getString("ArchitectFrame.autoLayoutActionDescription"), "auto_layout"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-        autoLayout = new FruchtermanReingoldForceLayout();
+        autoLayout = new BarnesHutForceLayout();
         autoLayoutAction.setLayout(autoLayout);
+        autoLayoutAction.setBackgroundLayoutEnabled(true);
         exportDDLAction = new ExportDDLAction(this);
         
         compareDMAction = new CompareDMAction(this);
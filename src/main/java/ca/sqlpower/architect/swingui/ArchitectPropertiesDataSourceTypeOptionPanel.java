@@ -59,6 +59,8 @@ import ca.sqlpower.architect.profile.RemoteDatabaseProfileCreator;
 import ca.sqlpower.architect.profile.RemoteDatabaseProfileCreator.AverageSQLFunction;
 import ca.sqlpower.architect.profile.RemoteDatabaseProfileCreator.CaseWhenNullSQLFunction;
 import ca.sqlpower.architect.profile.RemoteDatabaseProfileCreator.StringLengthSQLFunction;
+import ca.sqlpower.architect.profile.SampledProfileCreator;
+import ca.sqlpower.architect.profile.TableFingerprint;
 import ca.sqlpower.sql.JDBCDataSourceType;
 import ca.sqlpower.sqlobject.SQLIndex;
 import ca.sqlpower.sqlobject.SQLType;
@@ -267,7 +269,12 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
     private final JTextField averageSQLFunctionField = new JTextField();
     private final JTextField stringLengthSQLFuncField = new JTextField();
     private final JTextField caseWhenNullSQLFuncField = new JTextField();
+    private final JTextField tableChecksumSQLFuncField = new JTextField();
+    private final JTextField sampleClauseField = new JTextField();
+    private final JTextField sampleSeedClauseField = new JTextField();
     private final JCheckBox updatableRSField = new JCheckBox("Supports Updatable Result Sets");
+    private final JCheckBox windowFunctionsCheckBox = new JCheckBox(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.windowFunctionsLabel"));
+    private final JCheckBox groupingSetsCheckBox = new JCheckBox(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.groupingSetsLabel"));
     private final JCheckBox quotesNameCheckBox = new JCheckBox(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.quotingNameLabel"));
     private final JComboBox ddlGeneratorCombo = new JComboBox(KnownDDLGenerators.values());
     
@@ -297,7 +304,12 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
         averageSQLFunctionField.setText("");
         stringLengthSQLFuncField.setText("");
         caseWhenNullSQLFuncField.setText("");
+        tableChecksumSQLFuncField.setText("");
+        sampleClauseField.setText("");
+        sampleSeedClauseField.setText("");
         updatableRSField.setSelected(false);
+        windowFunctionsCheckBox.setSelected(false);
+        groupingSetsCheckBox.setSelected(false);
         quotesNameCheckBox.setVisible(false);
         ddlGeneratorCombo.setSelectedItem(KnownDDLGenerators.GENERIC);
         ddlGeneratorClass = dsType.getDDLGeneratorClass();
@@ -348,6 +360,16 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
                     } else {
                         throw new IllegalStateException("No editor defined for the data source type property " + property);
                     }
+                } else if (property.equals(TableFingerprint.CHECKSUM_SQL_FUNCTION)) {
+                    tableChecksumSQLFuncField.setText(dsType.getProperty(property));
+                } else if (property.equals(SampledProfileCreator.SAMPLE_CLAUSE)) {
+                    sampleClauseField.setText(dsType.getProperty(property));
+                } else if (property.equals(SampledProfileCreator.SAMPLE_SEED_CLAUSE)) {
+                    sampleSeedClauseField.setText(dsType.getProperty(property));
+                } else if (property.equals(RemoteDatabaseProfileCreator.SUPPORTS_WINDOW_FUNCTIONS)) {
+                    windowFunctionsCheckBox.setSelected(Boolean.parseBoolean(dsType.getProperty(property)));
+                } else if (property.equals(RemoteDatabaseProfileCreator.SUPPORTS_GROUPING_SETS)) {
+                    groupingSetsCheckBox.setSelected(Boolean.parseBoolean(dsType.getProperty(property)));
                 } else if (property.contains(SQLIndex.INDEX_TYPE_DESCRIPTOR)) {
                     indexTableModel.addRow(new String[] {dsType.getProperty(property)});
                 } else {
@@ -402,7 +424,7 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
         
         panel.removeAll();
         DefaultFormBuilder fb = new DefaultFormBuilder(new FormLayout("4dlu, pref, 4dlu, pref:grow, 4dlu", 
-                "pref, 4dlu, pref, 4dlu, pref, 2dlu, pref, 2dlu, pref, 4dlu, fill:min:grow, 2dlu, pref, 4dlu, pref, 2dlu, pref,2dlu, pref"));
+                "pref, 4dlu, pref, 4dlu, pref, 2dlu, pref, 2dlu, pref, 2dlu, pref, 2dlu, pref, 2dlu, pref, 4dlu, fill:min:grow, 2dlu, pref, 4dlu, pref, 2dlu, pref,2dlu, pref"));
         fb.nextColumn();
         fb.append(updatableRSField, quotesNameCheckBox);
         fb.nextLine();
@@ -424,6 +446,26 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
         fb.nextLine();
         fb.nextLine();
         fb.nextColumn();
+        fb.append(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.tableChecksumLabel"), tableChecksumSQLFuncField);
+        fb.nextLine();
+        fb.nextLine();
+        fb.nextColumn();
+        fb.append(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.sampleClauseLabel"), sampleClauseField);
+        fb.nextLine();
+        fb.nextLine();
+        fb.nextColumn();
+        fb.append(Messages.getString("ArchitectPropertiesDataSourceTypeOptionPanel.sampleSeedClauseLabel"), sampleSeedClauseField);
+        fb.nextLine();
+        fb.nextLine();
+        fb.nextColumn();
+        fb.append(windowFunctionsCheckBox, 3);
+        fb.nextLine();
+        fb.nextLine();
+        fb.nextColumn();
+        fb.append(groupingSetsCheckBox, 3);
+        fb.nextLine();
+        fb.nextLine();
+        fb.nextColumn();
         fb.append(new JScrollPane(profileFunctionTable), 3);
         fb.nextLine();
         fb.nextLine();
@@ -453,6 +495,11 @@ public class ArchitectPropertiesDataSourceTypeOptionPanel implements DataSourceT
         currentDSType.putProperty(RemoteDatabaseProfileCreator.propName(AverageSQLFunction.class), averageSQLFunctionField.getText());
         currentDSType.putProperty(RemoteDatabaseProfileCreator.propName(StringLengthSQLFunction.class), stringLengthSQLFuncField.getText());
         currentDSType.putProperty(RemoteDatabaseProfileCreator.propName(CaseWhenNullSQLFunction.class), caseWhenNullSQLFuncField.getText());
+        currentDSType.putProperty(RemoteDatabaseProfileCreator.SUPPORTS_WINDOW_FUNCTIONS, String.valueOf(windowFunctionsCheckBox.isSelected()));
+        currentDSType.putProperty(RemoteDatabaseProfileCreator.SUPPORTS_GROUPING_SETS, String.valueOf(groupingSetsCheckBox.isSelected()));
+        currentDSType.putProperty(TableFingerprint.CHECKSUM_SQL_FUNCTION, tableChecksumSQLFuncField.getText());
+        currentDSType.putProperty(SampledProfileCreator.SAMPLE_CLAUSE, sampleClauseField.getText());
+        currentDSType.putProperty(SampledProfileCreator.SAMPLE_SEED_CLAUSE, sampleSeedClauseField.getText());
         
         for (int i = 0; i < profileFunctionTableModel.getProfileFunctionDescriptors().size(); i++) {
             currentDSType.putProperty(ProfileFunctionDescriptor.class.getName() + "_" + i, ProfileFunctionDescriptor.createDescriptorString(profileFunctionTableModel.getProfileFunctionDescriptors().get(i)));
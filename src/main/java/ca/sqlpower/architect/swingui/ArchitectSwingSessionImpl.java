@@ -161,6 +161,7 @@ public class ArchitectSwingSessionImpl implements ArchitectSwingSession {
                         project.setSaveInProgress(true);
                         project.save(finalSeparateThread ? pm : null);
                         success = true;
+                        project.startJournal();
                     } catch (Exception ex) {
                         success = false;
                         ASUtils.showExceptionDialog(
@@ -378,6 +379,25 @@ public class ArchitectSwingSessionImpl implements ArchitectSwingSession {
             playPen.setZoom((Double) d);
             
         }
+        if (sprefs != null) {
+            Object titledBoxZoom = sprefs.getObject(ArchitectSwingUserSettings.PLAYPEN_TITLED_BOX_ZOOM, 
+                    new Double(PlayPen.DEFAULT_TITLED_BOX_ZOOM));
+            Object plainBoxZoom = sprefs.getObject(ArchitectSwingUserSettings.PLAYPEN_PLAIN_BOX_ZOOM, 
+                    new Double(PlayPen.DEFAULT_PLAIN_BOX_ZOOM));
+            if (titledBoxZoom instanceof Double && plainBoxZoom instanceof Double
+                    && (Double) plainBoxZoom >= 0 && (Double) plainBoxZoom <= (Double) titledBoxZoom) {
+                playPen.setLevelOfDetailZooms((Double) titledBoxZoom, (Double) plainBoxZoom);
+            } else {
+                logger.warn("Ignoring invalid level of detail zooms " + titledBoxZoom + ", " + plainBoxZoom); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            Object imageCacheSize = sprefs.getObject(ArchitectSwingUserSettings.PLAYPEN_TABLE_IMAGE_CACHE_SIZE,
+                    new Integer(TablePaneImageCache.DEFAULT_SIZE));
+            if (imageCacheSize instanceof Integer && (Integer) imageCacheSize >= 0) {
+                playPen.setTableImageCacheSize((Integer) imageCacheSize);
+            } else {
+                logger.warn("Ignoring invalid table image cache size " + imageCacheSize); //$NON-NLS-1$
+            }
+        }
         projectModificationWatcher = new ProjectModificationWatcher(playPen);
         
         getRootObject().addSPListener(new AbstractPoolingSPListener() {
@@ -739,6 +759,8 @@ public class ArchitectSwingSessionImpl implements ArchitectSwingSession {
         // XXX this could/should be done by the profile manager with a session closing listener
         delegateSession.getProfileManager().clear();
 
+        getWorkspace().getCriticManager().stopIncrementalCriticism();
+
         fireSessionClosing();
         
         return true;
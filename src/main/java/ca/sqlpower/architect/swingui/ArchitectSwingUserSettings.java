@@ -46,6 +46,15 @@ public class ArchitectSwingUserSettings extends AbstractUserSetting {
     public static final String PLAYPEN_RENDER_ANTIALIASED
     		= "SwingUserSettings.PLAYPEN_RENDER_ANTIALIASED"; //$NON-NLS-1$
 
+    public static final String PLAYPEN_TITLED_BOX_ZOOM
+            = "SwingUserSettings.PLAYPEN_TITLED_BOX_ZOOM"; //$NON-NLS-1$
+
+    public static final String PLAYPEN_PLAIN_BOX_ZOOM
+            = "SwingUserSettings.PLAYPEN_PLAIN_BOX_ZOOM"; //$NON-NLS-1$
+
+    public static final String PLAYPEN_TABLE_IMAGE_CACHE_SIZE
+            = "SwingUserSettings.PLAYPEN_TABLE_IMAGE_CACHE_SIZE"; //$NON-NLS-1$
+
     public static final String SHOW_WELCOMESCREEN
             = "SwingUserSettings.SHOW_WELCOMESCREEN"; //$NON-NLS-1$
 
@@ -39,6 +39,7 @@ import javax.swing.JLabel;
 
 import org.apache.log4j.Logger;
 
+import ca.sqlpower.architect.swingui.PlayPen.LevelOfDetail;
 import ca.sqlpower.swingui.ColourScheme;
 
 /**
@@ -205,6 +206,18 @@ public class BasicRelationshipUI extends RelationshipUI implements java.io.Seria
                 lineEnd.y += getTerminationLength();
             }
 
+            PlayPen pp = r.getPlayPen();
+            if (pp != null && pp.getLevelOfDetail() != LevelOfDetail.FULL) {
+                // zoomed out too far to make out labels or crow's feet
+                containmentPath = new GeneralPath(GeneralPath.WIND_NON_ZERO, 2);
+                containmentPath.moveTo(start.x, start.y);
+                containmentPath.lineTo(end.x, end.y);
+                path = new GeneralPath(containmentPath);
+                g2.setColor(getLineColour(r));
+                g2.draw(path);
+                return;
+            }
+
 			// XXX: could optimise by checking if PK or FK tables have moved
 			containmentPath = new GeneralPath(GeneralPath.WIND_NON_ZERO, 10);
             
@@ -532,15 +545,7 @@ public class BasicRelationshipUI extends RelationshipUI implements java.io.Seria
                         (int)Math.min(fkStringWidth,rotate ? lowest - highest : rightmost - leftmost),
                         fm.getHeight(), rotate);
             }
-			if (!r.isSelected()) {
-				g2.setColor(r.getForegroundColor());
-			} else {
-			    if(r.getForegroundColor().darker().equals(r.getForegroundColor())) {
-			        g2.setColor(ColourScheme.SQLPOWER_ORANGE);
-			    } else {
-			        g2.setColor(r.getForegroundColor().darker());
-			    }
-			}
+			g2.setColor(getLineColour(r));
 
 			Stroke oldStroke = g2.getStroke();
 			
@@ -561,6 +566,20 @@ public class BasicRelationshipUI extends RelationshipUI implements java.io.Seria
 		}
 	}
     
+    /**
+     * Returns the colour the relationship's line is drawn in, which is
+     * darker when it is selected.
+     */
+    private Color getLineColour(Relationship r) {
+        if (!r.isSelected()) {
+            return r.getForegroundColor();
+        } else if (r.getForegroundColor().darker().equals(r.getForegroundColor())) {
+            return ColourScheme.SQLPOWER_ORANGE;
+        } else {
+            return r.getForegroundColor().darker();
+        }
+    }
+
     /**
      * Draws the labels near the relationship.
      */
@@ -29,7 +29,10 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Stroke;
+import java.awt.Transparency;
 import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -40,6 +43,11 @@ import java.util.List;
 import org.apache.log4j.Logger;
 
 import ca.sqlpower.architect.ddl.GenericDDLGenerator;
+import ca.sqlpower.architect.swingui.PlayPen.LevelOfDetail;
+import ca.sqlpower.architect.swingui.event.ItemSelectionEvent;
+import ca.sqlpower.architect.swingui.event.ItemSelectionListener;
+import ca.sqlpower.architect.swingui.event.SelectionEvent;
+import ca.sqlpower.architect.swingui.event.SelectionListener;
 import ca.sqlpower.sqlobject.SQLColumn;
 import ca.sqlpower.sqlobject.SQLObjectException;
 import ca.sqlpower.sqlobject.SQLTable;
@@ -92,6 +100,29 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 	 */
 	protected final Color selectedColor = new Color(204, 204, 255);
 
+	/**
+	 * Drops the cached images of the table pane when it or its columns are
+	 * selected or deselected, as selection does not fire property changes.
+	 */
+	private final SelectionListener selectionListener = new SelectionListener() {
+	    public void itemSelected(SelectionEvent e) {
+	        tablePane.invalidateImage();
+	    }
+	    public void itemDeselected(SelectionEvent e) {
+	        tablePane.invalidateImage();
+	    }
+	};
+
+	private final ItemSelectionListener<SQLTable, SQLColumn> itemSelectionListener =
+	    new ItemSelectionListener<SQLTable, SQLColumn>() {
+	    public void itemsSelected(ItemSelectionEvent<SQLTable, SQLColumn> e) {
+	        tablePane.invalidateImage();
+	    }
+	    public void itemsDeselected(ItemSelectionEvent<SQLTable, SQLColumn> e) {
+	        tablePane.invalidateImage();
+	    }
+	};
+
 	public static PlayPenComponentUI createUI(PlayPenComponent c) {
         return new BasicTablePaneUI();
     }
@@ -99,15 +130,68 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
     public void installUI(PlayPenComponent c) {
 		tablePane = (TablePane) c;
 		tablePane.addSPListener(this);
+		tablePane.addSelectionListener(selectionListener);
+		tablePane.addItemSelectionListener(itemSelectionListener);
     }
 
     public void uninstallUI(PlayPenComponent c) {
 		tablePane = (TablePane) c;
 		tablePane.removeSPListener(this);
+		tablePane.removeSelectionListener(selectionListener);
+		tablePane.removeItemSelectionListener(itemSelectionListener);
+		tablePane.invalidateImage();
     }
 
+    /**
+     * Paints the table pane from the play pen's image of it when possible,
+     * so moving the table or scrolling past it does not draw all of its
+     * text again. The insertion point is only shown while something is
+     * dragged over the table, so the table is drawn directly in that case.
+     */
     public void paint(Graphics2D g) {
-    	paint(g,tablePane);
+        PlayPen pp = tablePane.getPlayPen();
+        if (pp != null && tablePane.getFont() != null
+                && tablePane.getInsertionPoint() == ContainerPane.ITEM_INDEX_NONE
+                && !logger.isDebugEnabled() && pp.getTableImageCache().canCache(g)) {
+            paintFromImage(g, pp.getTableImageCache(), pp.getLevelOfDetail());
+        } else {
+            paint(g, tablePane);
+        }
+    }
+
+    /**
+     * Copies the cached image of the table pane to the graphics at its device
+     * resolution, drawing and caching the image first if there is none.
+     */
+    private void paintFromImage(Graphics2D g, TablePaneImageCache cache, LevelOfDetail detail) {
+        BufferedImage image = cache.get(tablePane, g, detail);
+        if (image == null) {
+            double scale = TablePaneImageCache.imageScale(g);
+            int width = (int) Math.ceil(tablePane.getWidth() * scale);
+            int height = (int) Math.ceil(tablePane.getHeight() * scale);
+            if (width <= 0 || height <= 0) return;
+            image = g.getDeviceConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            Graphics2D imageGraphics = image.createGraphics();
+            try {
+                imageGraphics.setRenderingHints(g.getRenderingHints());
+                imageGraphics.setFont(g.getFont());
+                imageGraphics.scale(scale, scale);
+                paint(imageGraphics, tablePane);
+            } finally {
+                imageGraphics.dispose();
+            }
+            if (!cache.put(tablePane, g, detail, image)) {
+                logger.debug("Table pane image is too large to cache"); //$NON-NLS-1$
+            }
+        }
+        AffineTransform transform = g.getTransform();
+        try {
+            g.setTransform(new AffineTransform());
+            g.drawImage(image, (int) Math.round(transform.getTranslateX()),
+                    (int) Math.round(transform.getTranslateY()), null);
+        } finally {
+            g.setTransform(transform);
+        }
     }
     
     public void paint(Graphics g, TablePane tp) {
@@ -150,6 +234,15 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 	        int width = tp.getWidth() - insets.left - insets.right;
 			int height = tp.getHeight() - insets.top - insets.bottom;
 
+			PlayPen pp = tp.getPlayPen();
+			LevelOfDetail detail = pp == null ? LevelOfDetail.FULL : pp.getLevelOfDetail();
+			if (detail == LevelOfDetail.PLAIN_BOX) {
+			    paintPlainBox(g2, tp, width, height);
+			    g2.setStroke(oldStroke);
+			    g.translate(-insets.left, -insets.top);
+			    return;
+			}
+
 			Font font = tp.getFont();
 			if (font == null) {
 			    // This happens when the table exists but has no visible ancestor.
@@ -195,6 +288,14 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 			if (fontHeight < 0) {
 				throw new IllegalStateException("FontHeight is negative"); //$NON-NLS-1$
 			}
+
+			if (detail == LevelOfDetail.TITLED_BOX) {
+			    // the columns are too small to read at this zoom
+			    paintColumnBox(g2, tp, width, height, fontHeight);
+			    g2.setStroke(oldStroke);
+			    g.translate(-insets.left, -insets.top);
+			    return;
+			}
 			
 			y += GAP + BOX_LINE_THICKNESS + tp.getMargin().top;
 
@@ -235,15 +336,7 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 			    i++;
 			}
 			
-			// draw box around columns
-     		g2.setColor(Color.BLACK);
-			if (tp.isRounded()) {
-	                g2.drawRoundRect(0, fontHeight+GAP, width-BOX_LINE_THICKNESS, 
-	                        height-(fontHeight+GAP+BOX_LINE_THICKNESS), ARC_LENGTH, ARC_LENGTH);
-	            } else {
-	                g2.drawRect(0, fontHeight+GAP, width-BOX_LINE_THICKNESS, 
-	                        height-(fontHeight+GAP+BOX_LINE_THICKNESS));
-	            }
+			paintColumnBox(g2, tp, width, height, fontHeight);
 			if (currentColor != null) {
 				g2.setColor(Color.BLACK);
 			}
@@ -286,6 +379,42 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 		}
 	}
 
+    /**
+     * Draws the box around the columns, below the title.
+     */
+    private void paintColumnBox(Graphics2D g2, TablePane tp, int width, int height, int fontHeight) {
+        g2.setColor(Color.BLACK);
+        if (tp.isRounded()) {
+            g2.drawRoundRect(0, fontHeight+GAP, width-BOX_LINE_THICKNESS, 
+                    height-(fontHeight+GAP+BOX_LINE_THICKNESS), ARC_LENGTH, ARC_LENGTH);
+        } else {
+            g2.drawRect(0, fontHeight+GAP, width-BOX_LINE_THICKNESS, 
+                    height-(fontHeight+GAP+BOX_LINE_THICKNESS));
+        }
+    }
+
+    /**
+     * Draws the whole table as a rectangle in the table's colour, with no
+     * text. Used when the play pen is zoomed out so far that the text could
+     * not be read anyway.
+     */
+    private void paintPlainBox(Graphics2D g2, TablePane tp, int width, int height) {
+        if (tp.selected) {
+            g2.setColor(tp.getBackgroundColor().darker());
+        } else {
+            g2.setColor(tp.getBackgroundColor());
+        }
+        if (tp.isRounded()) {
+            g2.fillRoundRect(0, 0, width, height, ARC_LENGTH, ARC_LENGTH);
+            g2.setColor(Color.BLACK);
+            g2.drawRoundRect(0, 0, width-BOX_LINE_THICKNESS, height-BOX_LINE_THICKNESS, ARC_LENGTH, ARC_LENGTH);
+        } else {
+            g2.fillRect(0, 0, width, height);
+            g2.setColor(Color.BLACK);
+            g2.drawRect(0, 0, width-BOX_LINE_THICKNESS, height-BOX_LINE_THICKNESS);
+        }
+    }
+
     /**
      * Generates the string to be displayed for the given column. Includes the column's name,
      * data type, and any "tags" (such as PK and FK) are enabled in the user prefs.
@@ -452,6 +581,10 @@ public class BasicTablePaneUI extends TablePaneUI implements java.io.Serializabl
 		    // we will get this event again from the model itself
 			return;
 		} 
+		// moving the table is the only other change that does not change its image
+		if (!e.getPropertyName().equals("topLeftCorner")) { //$NON-NLS-1$
+		    tablePane.invalidateImage();
+		}
 		tablePane.revalidate();
 	}
 
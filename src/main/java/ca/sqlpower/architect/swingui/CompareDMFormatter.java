@@ -38,9 +38,11 @@ import javax.swing.text.StyleConstants;
 import org.apache.log4j.Logger;
 
 import ca.sqlpower.architect.ddl.DDLGenerator;
+import ca.sqlpower.architect.ddl.GenericDDLGenerator;
 import ca.sqlpower.architect.ddl.LiquibaseDDLGenerator;
 import ca.sqlpower.architect.ddl.PostgresDDLGenerator;
 import ca.sqlpower.architect.diff.ArchitectDiffException;
+import ca.sqlpower.architect.diff.DiffChunkListener;
 import ca.sqlpower.architect.swingui.CompareDMPanel.SourceOrTargetStuff;
 import ca.sqlpower.architect.swingui.CompareDMSettings.SourceOrTargetSettings;
 import ca.sqlpower.diff.DiffChunk;
@@ -114,17 +116,36 @@ public class CompareDMFormatter {
 
     public void formatForEnglishOutput(List<DiffChunk<SQLObject>> diff,
             List<DiffChunk<SQLObject>> diff1, SQLObject left, SQLObject right) {
-
-
+        EnglishDiffWriter sourceWriter = new EnglishDiffWriter(DIFF_STYLES);
+        EnglishDiffWriter targetWriter = new EnglishDiffWriter(DIFF_STYLES);
         try {
+            for (DiffChunk<SQLObject> chunk : diff) {
+                sourceWriter.diffChunkGenerated(chunk);
+            }
+            for (DiffChunk<SQLObject> chunk : diff1) {
+                targetWriter.diffChunkGenerated(chunk);
+            }
+        } catch (SQLObjectException exp) {
+            ASUtils.showExceptionDialog(session, "StartCompareAction failed", exp);
+            logger.error("StartCompareAction failed", exp);
+            return;
+        }
+        formatForEnglishOutput(sourceWriter, targetWriter, left, right);
+    }
+
+    /**
+     * Shows the English descriptions two writers have built up as a
+     * comparison streamed its diffs to them.
+     */
+    public void formatForEnglishOutput(EnglishDiffWriter sourceWriter,
+            EnglishDiffWriter targetWriter, SQLObject left, SQLObject right) {
 
 
-            DefaultStyledDocument sourceDoc = new DefaultStyledDocument();
-            DefaultStyledDocument targetDoc = new DefaultStyledDocument();
+        try {
 
 
-            sourceDoc = generateEnglishDescription(DIFF_STYLES, convertToDiffInfo(diff));
-            targetDoc = generateEnglishDescription(DIFF_STYLES, convertToDiffInfo(diff1));
+            DefaultStyledDocument sourceDoc = sourceWriter.getDocument();
+            DefaultStyledDocument targetDoc = targetWriter.getDocument();
 
             // get the title string for the compareDMFrame
 
@@ -138,61 +159,44 @@ public class CompareDMFormatter {
             cf.setVisible(true);
 
 
+        } catch (Exception ex) {
+            ASUtils.showExceptionDialog(session, "Unxepected Exception!", ex);
+            logger.error("Unxepected Exception!", ex);
+        }
+    }
+
+    public DDLGenerator formatForSQLOutput(List<DiffChunk<SQLObject>> diff,
+            List<DiffChunk<SQLObject>> diff1, SQLObject left, SQLObject right) {
+        SQLScriptWriter writer;
+        try {
+            writer = new SQLScriptWriter();
+            for (DiffChunk<SQLObject> d : diff) {
+                writer.diffChunkGenerated(d);
+            }
         } catch (SQLObjectException exp) {
             ASUtils.showExceptionDialog(session, "StartCompareAction failed", exp);
             logger.error("StartCompareAction failed", exp);
-        } catch (BadLocationException ex) {
-            ASUtils.showExceptionDialog(session,
-                    "Could not create document for results", ex);
-            logger.error("Could not create document for results", ex);
+            return null;
         } catch (Exception ex) {
             ASUtils.showExceptionDialog(session, "Unxepected Exception!", ex);
             logger.error("Unxepected Exception!", ex);
+            return null;
         }
+        return formatForSQLOutput(writer, left, right);
     }
 
-    public DDLGenerator formatForSQLOutput(List<DiffChunk<SQLObject>> diff,
-            List<DiffChunk<SQLObject>> diff1, SQLObject left, SQLObject right) {
+    /**
+     * Finishes the script a writer has built up as a comparison streamed its
+     * diffs to it, and shows it.
+     * 
+     * @return The generator holding the script, or null if it could not be
+     *         finished.
+     */
+    public DDLGenerator formatForSQLOutput(SQLScriptWriter writer, SQLObject left, SQLObject right) {
         DDLGenerator gen = null;
         try {
             SourceOrTargetStuff source = dmSetting.getSourceStuff();
-
-            if (dmSetting.getOutputFormat().equals(CompareDMSettings.OutputFormat.SQL)) {
-                gen = dmSetting.getDdlGenerator().newInstance();
-                if (gen instanceof PostgresDDLGenerator) {
-                    //setComparingDMForPostgres 'true' to quote the physical name 
-                    gen.setComparingDMForPostgres(true);
-                }
-                SQLCatalog cat = (SQLCatalog) dmSetting.getSourceSettings().getCatalogObject();
-                SQLSchema sch = (SQLSchema) dmSetting.getSourceSettings().getSchemaObject();
-                gen.setTargetCatalog(cat == null ? null : gen.getPhysicalName(cat));
-                gen.setTargetSchema(sch == null ? null : gen.getPhysicalName(sch));
-            } else if (dmSetting.getOutputFormat().equals(CompareDMSettings.OutputFormat.LIQUIBASE)) {
-				gen = new LiquibaseDDLGenerator();
-				LiquibaseDDLGenerator lbgen = (LiquibaseDDLGenerator)gen;
-				lbgen.applySettings(dmSetting.getLiquibaseSettings());
-			} else {
-			    throw new IllegalStateException("Don't know what kind of SQL script to generate");
-			}
-
-            List<DiffChunk<SQLObject>> addRelationships = new ArrayList<DiffChunk<SQLObject>>();
-            List<DiffChunk<SQLObject>> dropRelationships = new ArrayList<DiffChunk<SQLObject>>();
-            List<DiffChunk<SQLObject>> nonRelationship = new ArrayList<DiffChunk<SQLObject>>();
-            for (DiffChunk<SQLObject> d : diff) {
-                if (logger.isDebugEnabled()) logger.debug(d);
-                if (d.getData() instanceof SQLRelationship) {
-                    if (d.getType() == DiffType.LEFTONLY) {
-                        dropRelationships.add(d);
-                    } else if (d.getType() == DiffType.RIGHTONLY) {
-                        addRelationships.add(d);
-                    }
-                } else {
-                    nonRelationship.add(d);
-                }
-            }
-            sqlScriptGenerator(DIFF_STYLES, dropRelationships, gen);
-            sqlScriptGenerator(DIFF_STYLES, nonRelationship, gen);
-            sqlScriptGenerator(DIFF_STYLES, addRelationships, gen);
+            gen = writer.finish();
 
             // get the title string for the compareDMFrame
             String titleString = "Generated SQL Script to turn "+ toTitleText(true, left)
@@ -219,10 +223,6 @@ public class CompareDMFormatter {
         } catch (SQLObjectException exp) {
             ASUtils.showExceptionDialog(session, "StartCompareAction failed", exp);
             logger.error("StartCompareAction failed", exp);
-        } catch (BadLocationException ex) {
-            ASUtils.showExceptionDialog(session,
-                    "Could not create document for results", ex);
-            logger.error("Could not create document for results", ex);
         } catch (Exception ex) {
             ASUtils.showExceptionDialog(session, "Unxepected Exception!", ex);
             logger.error("Unxepected Exception!", ex);
@@ -231,98 +231,244 @@ public class CompareDMFormatter {
 
     }
 
-    private void sqlScriptGenerator(Map<DiffType, AttributeSet> styles, List<DiffChunk<SQLObject>> diff,
-            DDLGenerator gen) throws ArchitectDiffException, SQLException, SQLObjectException, BadLocationException,
-            InstantiationException, IllegalAccessException {
-        for (DiffChunk<SQLObject> chunk : diff) {
-            if (chunk.getType() == DiffType.KEY_CHANGED) {
-                if(chunk.getData() instanceof SQLTable) {
-                    SQLTable t = (SQLTable) chunk.getData();
-                    if (hasKey(t)) {
-                        gen.addPrimaryKey(t);
-                    }
-                }
-            } else if (chunk.getType() == DiffType.DROP_KEY) {
-                if(chunk.getData() instanceof SQLTable) {
-                    SQLTable t = (SQLTable) chunk.getData();
-                    if (hasKey(t)) {
-                        gen.dropPrimaryKey(t);
-                    }
+    /**
+     * Builds a SQL or Liquibase script from the diffs of a comparison as they
+     * arrive. Only the relationships are held back: the ones to drop have to
+     * come before everything else in the script, and the ones to add after
+     * everything else, but the comparison reports relationships after the
+     * tables.
+     */
+    public class SQLScriptWriter implements DiffChunkListener {
+
+        private final GenericDDLGenerator gen;
+
+        private final List<DiffChunk<SQLObject>> addRelationships = new ArrayList<DiffChunk<SQLObject>>();
+        private final List<DiffChunk<SQLObject>> dropRelationships = new ArrayList<DiffChunk<SQLObject>>();
+
+        /**
+         * Creates the generator for the output format in the settings this
+         * formatter was created with.
+         */
+        public SQLScriptWriter() throws InstantiationException, IllegalAccessException {
+            DDLGenerator gen;
+            if (dmSetting.getOutputFormat().equals(CompareDMSettings.OutputFormat.SQL)) {
+                gen = dmSetting.getDdlGenerator().newInstance();
+                if (gen instanceof PostgresDDLGenerator) {
+                    //setComparingDMForPostgres 'true' to quote the physical name 
+                    gen.setComparingDMForPostgres(true);
                 }
-            } else if (chunk.getType() == DiffType.LEFTONLY) {
-                if (chunk.getData() instanceof SQLTable) {
-                    SQLTable t = (SQLTable) chunk.getData();
-                    gen.dropTable(t);
-                } else if (chunk.getData() instanceof SQLColumn) {
-                    SQLColumn c = (SQLColumn) chunk.getData();
-                    gen.dropColumn(c);
-                } else if (chunk.getData() instanceof SQLRelationship) {
-                    SQLRelationship r = (SQLRelationship)chunk.getData();
-                    gen.dropRelationship(r);
-                } else if (chunk.getData() instanceof SQLIndex) {
-                    SQLIndex i = (SQLIndex)chunk.getData();
-                    gen.dropIndex(i);
-                } else {
-                    throw new IllegalStateException("DiffChunk is an unexpected type.");
+                SQLCatalog cat = (SQLCatalog) dmSetting.getSourceSettings().getCatalogObject();
+                SQLSchema sch = (SQLSchema) dmSetting.getSourceSettings().getSchemaObject();
+                gen.setTargetCatalog(cat == null ? null : gen.getPhysicalName(cat));
+                gen.setTargetSchema(sch == null ? null : gen.getPhysicalName(sch));
+            } else if (dmSetting.getOutputFormat().equals(CompareDMSettings.OutputFormat.LIQUIBASE)) {
+                LiquibaseDDLGenerator lbgen = new LiquibaseDDLGenerator();
+                lbgen.applySettings(dmSetting.getLiquibaseSettings());
+                gen = lbgen;
+            } else {
+                throw new IllegalStateException("Don't know what kind of SQL script to generate");
+            }
+            this.gen = (GenericDDLGenerator) gen;
+        }
+
+        public void diffChunkGenerated(DiffChunk<SQLObject> d) throws SQLObjectException {
+            if (logger.isDebugEnabled()) logger.debug(d);
+            if (d.getData() instanceof SQLRelationship) {
+                if (d.getType() == DiffType.LEFTONLY) {
+                    dropRelationships.add(d);
+                } else if (d.getType() == DiffType.RIGHTONLY) {
+                    addRelationships.add(d);
                 }
+            } else {
+                write(d);
+            }
+        }
+
+        /**
+         * Writes the relationship changes and returns the generator holding
+         * the whole script. Nothing should be passed to this writer after
+         * it is finished.
+         */
+        public DDLGenerator finish() throws SQLObjectException {
+            int statementCount = gen.getStatementCount();
+            for (DiffChunk<SQLObject> d : dropRelationships) {
+                write(d);
+            }
+            gen.moveStatementsToStart(statementCount);
+            for (DiffChunk<SQLObject> d : addRelationships) {
+                write(d);
+            }
+            return gen;
+        }
+
+        private void write(DiffChunk<SQLObject> chunk) throws SQLObjectException {
+            try {
+                sqlScriptGenerator(chunk, gen);
+            } catch (SQLException ex) {
+                throw new SQLObjectException("Could not generate SQL for " + chunk, ex);
+            }
+        }
+    }
 
-            } else if (chunk.getType() == DiffType.RIGHTONLY) {
-                if (chunk.getData() instanceof SQLTable) {
-                    SQLTable t = (SQLTable) chunk.getData();
-                    if (t == null ) throw new NullPointerException();
-                    if (t.getObjectType().equals("TABLE")) {
-                        gen.addTable(t);
-                    }
-                } else if (chunk.getData() instanceof SQLColumn) {
-                    SQLColumn c = (SQLColumn) chunk.getData();
-                    gen.addColumn(c);
-                } else if (chunk.getData() instanceof SQLRelationship) {
-                    SQLRelationship r = (SQLRelationship)chunk.getData();
-                    gen.addRelationship(r);
-                } else if (chunk.getData() instanceof SQLIndex) {
-                    SQLIndex i = (SQLIndex)chunk.getData();
-                    gen.addIndex(i);
-                } else {
-                    throw new IllegalStateException("DiffChunk is an unexpected type.");
+    private void sqlScriptGenerator(DiffChunk<SQLObject> chunk, DDLGenerator gen)
+            throws SQLException, SQLObjectException {
+        if (chunk.getType() == DiffType.KEY_CHANGED) {
+            if(chunk.getData() instanceof SQLTable) {
+                SQLTable t = (SQLTable) chunk.getData();
+                if (hasKey(t)) {
+                    gen.addPrimaryKey(t);
                 }
-            } else if (chunk.getType() == DiffType.MODIFIED) {
-                // do nothing because it has not been modified enough (see next case)
-            } else if (chunk.getType() == DiffType.SQL_MODIFIED) {
-                if (chunk.getData() instanceof SQLColumn) {
-                    SQLColumn c = (SQLColumn) chunk.getData();
-                    gen.modifyColumn(c, chunk);
+            }
+        } else if (chunk.getType() == DiffType.DROP_KEY) {
+            if(chunk.getData() instanceof SQLTable) {
+                SQLTable t = (SQLTable) chunk.getData();
+                if (hasKey(t)) {
+                    gen.dropPrimaryKey(t);
                 }
-                for (PropertyChange change : chunk.getPropertyChanges()) {
-                    if (change.getPropertyName().equals("remarks")) {
-                        gen.modifyComment(chunk.getData());
-                        break;
-                    }
+            }
+        } else if (chunk.getType() == DiffType.LEFTONLY) {
+            if (chunk.getData() instanceof SQLTable) {
+                SQLTable t = (SQLTable) chunk.getData();
+                gen.dropTable(t);
+            } else if (chunk.getData() instanceof SQLColumn) {
+                SQLColumn c = (SQLColumn) chunk.getData();
+                gen.dropColumn(c);
+            } else if (chunk.getData() instanceof SQLRelationship) {
+                SQLRelationship r = (SQLRelationship)chunk.getData();
+                gen.dropRelationship(r);
+            } else if (chunk.getData() instanceof SQLIndex) {
+                SQLIndex i = (SQLIndex)chunk.getData();
+                gen.dropIndex(i);
+            } else {
+                throw new IllegalStateException("DiffChunk is an unexpected type.");
+            }
+
+        } else if (chunk.getType() == DiffType.RIGHTONLY) {
+            if (chunk.getData() instanceof SQLTable) {
+                SQLTable t = (SQLTable) chunk.getData();
+                if (t == null ) throw new NullPointerException();
+                if (t.getObjectType().equals("TABLE")) {
+                    gen.addTable(t);
                 }
-            } else if (chunk.getType() == DiffType.SAME) {
-                //do nothing when they're the same
-            } else if (chunk.getType() == DiffType.NAME_CHANGED) {
-                if (chunk.getData() instanceof SQLTable) {
-                    SQLTable newTable = (SQLTable)chunk.getData();
-                    SQLTable oldTable = (SQLTable)chunk.getOriginalData();
-                    gen.renameTable(oldTable, newTable);
-                } else if (chunk.getData() instanceof SQLColumn) {
-                    SQLColumn newCol = (SQLColumn)chunk.getData();
-                    SQLColumn oldCol = (SQLColumn)chunk.getOriginalData();
-                    gen.renameColumn(oldCol, newCol);
-                } else if (chunk.getData() instanceof SQLIndex) {
-                    SQLIndex newIndex = (SQLIndex)chunk.getData();
-                    SQLIndex oldIndex= (SQLIndex)chunk.getOriginalData();
-                    gen.renameIndex(oldIndex, newIndex);
-                } else {
-                    throw new IllegalStateException("DiffChunk is an unexpected type.");
+            } else if (chunk.getData() instanceof SQLColumn) {
+                SQLColumn c = (SQLColumn) chunk.getData();
+                gen.addColumn(c);
+            } else if (chunk.getData() instanceof SQLRelationship) {
+                SQLRelationship r = (SQLRelationship)chunk.getData();
+                gen.addRelationship(r);
+            } else if (chunk.getData() instanceof SQLIndex) {
+                SQLIndex i = (SQLIndex)chunk.getData();
+                gen.addIndex(i);
+            } else {
+                throw new IllegalStateException("DiffChunk is an unexpected type.");
+            }
+        } else if (chunk.getType() == DiffType.MODIFIED) {
+            // do nothing because it has not been modified enough (see next case)
+        } else if (chunk.getType() == DiffType.SQL_MODIFIED) {
+            if (chunk.getData() instanceof SQLColumn) {
+                SQLColumn c = (SQLColumn) chunk.getData();
+                gen.modifyColumn(c, chunk);
+            }
+            for (PropertyChange change : chunk.getPropertyChanges()) {
+                if (change.getPropertyName().equals("remarks")) {
+                    gen.modifyComment(chunk.getData());
+                    break;
                 }
+            }
+        } else if (chunk.getType() == DiffType.SAME) {
+            //do nothing when they're the same
+        } else if (chunk.getType() == DiffType.NAME_CHANGED) {
+            if (chunk.getData() instanceof SQLTable) {
+                SQLTable newTable = (SQLTable)chunk.getData();
+                SQLTable oldTable = (SQLTable)chunk.getOriginalData();
+                gen.renameTable(oldTable, newTable);
+            } else if (chunk.getData() instanceof SQLColumn) {
+                SQLColumn newCol = (SQLColumn)chunk.getData();
+                SQLColumn oldCol = (SQLColumn)chunk.getOriginalData();
+                gen.renameColumn(oldCol, newCol);
+            } else if (chunk.getData() instanceof SQLIndex) {
+                SQLIndex newIndex = (SQLIndex)chunk.getData();
+                SQLIndex oldIndex= (SQLIndex)chunk.getOriginalData();
+                gen.renameIndex(oldIndex, newIndex);
             } else {
-                throw new IllegalStateException("DiffChunk is an invalid type.");
+                throw new IllegalStateException("DiffChunk is an unexpected type.");
             }
+        } else {
+            throw new IllegalStateException("DiffChunk is an invalid type.");
         }
     }
 
 
+    /**
+     * Builds the English description of a comparison in a document as the
+     * comparison streams its diffs to it.
+     */
+    public static class EnglishDiffWriter implements DiffChunkListener {
+
+        private final Map<DiffType, AttributeSet> styles;
+
+        private final DefaultStyledDocument document = new DefaultStyledDocument();
+
+        /**
+         * The objects enclosing the most recent diff, used to work out how
+         * far to indent each diff.
+         */
+        private final List<SQLObject> ancestors = new ArrayList<SQLObject>();
+
+        private int depth = 0;
+
+        public EnglishDiffWriter(Map<DiffType, AttributeSet> styles) {
+            this.styles = styles;
+            ancestors.add(new SQLTable());
+        }
+
+        public void diffChunkGenerated(DiffChunk<SQLObject> chunk) throws SQLObjectException {
+            try {
+                appendEnglishDescription(document, styles, convertToDiffInfo(chunk));
+            } catch (BadLocationException ex) {
+                throw new SQLObjectException("Could not create document for results", ex);
+            }
+        }
+
+        public DefaultStyledDocument getDocument() {
+            return document;
+        }
+
+        private DiffChunk<DiffInfo> convertToDiffInfo(DiffChunk<SQLObject> chunk) {
+            SQLObject data = chunk.getData();
+            String name;
+            if (data instanceof SQLTable && data.getPhysicalName() != null) {
+                name = data.getPhysicalName();
+            } else {
+                name = data.getName();
+            }
+            DiffInfo info = new DiffInfo(data.getClass().getSimpleName().replaceFirst("SQL", ""), name);
+
+
+            // Set the depth property based on the object hierarchy.
+            // If it is a relationship, we ignore depth, and there are only relationships left.
+            if (chunk.getData() instanceof SQLRelationship) {
+                depth = 0;
+            } else if (ancestors.get(depth).allowsChildType(data.getClass())) {
+                ancestors.add(data);
+                depth++;
+            }
+            while (depth > 0 && !ancestors.get(depth - 1).allowsChildType(data.getClass())) {
+                ancestors.remove(depth);
+                depth--;
+            }
+            ancestors.add(depth, data);
+
+
+            info.setDepth(depth);
+            DiffChunk<DiffInfo> newChunk = new DiffChunk<DiffInfo>(info, chunk.getType());
+            for (PropertyChange change : chunk.getPropertyChanges()) {
+                newChunk.addPropertyChange(change);
+            }
+            return newChunk;
+        }
+    }
+
     /**
      * This method generates english descriptions by taking in the diff list
      * and putting the appropiate statements in the returned document.  It will iterate
@@ -340,77 +486,86 @@ public class CompareDMFormatter {
 
 
         for (DiffChunk<DiffInfo> chunk : diff) {
+            appendEnglishDescription(resultDoc, styles, chunk);
+        }
 
-            DiffInfo info = chunk.getData();
+        return resultDoc;
+    }
 
-            if (chunk.getType().equals(DiffType.DROP_KEY)) {
-                //Drop key does will be shown here by a key changed type
-                //Drop key is mainly used in sql script generation.
-                continue;
-            }
+    /**
+     * Appends the english description of one diff to the end of the given
+     * document.
+     */
+    private static void appendEnglishDescription(DefaultStyledDocument resultDoc,
+            Map<DiffType, AttributeSet> styles, DiffChunk<DiffInfo> chunk) throws BadLocationException {
 
-            AttributeSet attributes = styles.get(chunk.getType());
-            MutableAttributeSet boldAttributes = new SimpleAttributeSet(attributes);
-            StyleConstants.setBold(boldAttributes, true);
+        DiffInfo info = chunk.getData();
 
-            String diffTypeEnglish;
-            switch (chunk.getType()) {
-            case LEFTONLY:
-                diffTypeEnglish = "should be removed";
-                break;
+        if (chunk.getType().equals(DiffType.DROP_KEY)) {
+            //Drop key does will be shown here by a key changed type
+            //Drop key is mainly used in sql script generation.
+            return;
+        }
 
-            case MODIFIED:
-            case SQL_MODIFIED:
-                diffTypeEnglish = "should be modified";
-                break;
+        AttributeSet attributes = styles.get(chunk.getType());
+        MutableAttributeSet boldAttributes = new SimpleAttributeSet(attributes);
+        StyleConstants.setBold(boldAttributes, true);
 
-            case SAME:
-                diffTypeEnglish = "needs no changes";
-                break;
+        String diffTypeEnglish;
+        switch (chunk.getType()) {
+        case LEFTONLY:
+            diffTypeEnglish = "should be removed";
+            break;
 
-            case RIGHTONLY:
-                diffTypeEnglish = "should be added";
-                break;
+        case MODIFIED:
+        case SQL_MODIFIED:
+            diffTypeEnglish = "should be modified";
+            break;
 
-            case KEY_CHANGED:
-                diffTypeEnglish = "needs a different primary key";
-                break;
+        case SAME:
+            diffTypeEnglish = "needs no changes";
+            break;
 
+        case RIGHTONLY:
+            diffTypeEnglish = "should be added";
+            break;
 
-            case DROP_KEY:
-                diffTypeEnglish = "needs to drop the source primary key";
-                break;
+        case KEY_CHANGED:
+            diffTypeEnglish = "needs a different primary key";
+            break;
 
-            case NAME_CHANGED:
-                diffTypeEnglish = "should be renamed";
-                break;
 
-            default:
-                diffTypeEnglish = "!UNKNOWN DIFF TYPE!";
-                logger.error("Woops, unknown diff chunk type: "+chunk.getType());
-                break;
-            }
+        case DROP_KEY:
+            diffTypeEnglish = "needs to drop the source primary key";
+            break;
 
-            resultDoc.insertString(
-                    resultDoc.getLength(),
-                    info.toString() + " " + diffTypeEnglish + "\n",
-                    attributes);
+        case NAME_CHANGED:
+            diffTypeEnglish = "should be renamed";
+            break;
 
+        default:
+            diffTypeEnglish = "!UNKNOWN DIFF TYPE!";
+            logger.error("Woops, unknown diff chunk type: "+chunk.getType());
+            break;
+        }
 
-            for (PropertyChange change : chunk.getPropertyChanges()) {
-                logger.debug("Formatting property change");
-                String s = info.getIndent() + "\t" + change.getPropertyName();
-                s += " has been changed from " + change.getOldValue();
-                s += " to " + change.getNewValue() + "\n";
+        resultDoc.insertString(
+                resultDoc.getLength(),
+                info.toString() + " " + diffTypeEnglish + "\n",
+                attributes);
 
 
-                resultDoc.insertString(
-                        resultDoc.getLength(),
-                        s, attributes);
-            }
-        }
+        for (PropertyChange change : chunk.getPropertyChanges()) {
+            logger.debug("Formatting property change");
+            String s = info.getIndent() + "\t" + change.getPropertyName();
+            s += " has been changed from " + change.getOldValue();
+            s += " to " + change.getNewValue() + "\n";
 
-        return resultDoc;
+
+            resultDoc.insertString(
+                    resultDoc.getLength(),
+                    s, attributes);
+        }
     }
 
 //  Generates the proper title text for compareDMFrame or SQLScriptDialog
@@ -476,52 +631,4 @@ public class CompareDMFormatter {
         }
         return false;
     }
-
-
-    private List<DiffChunk<DiffInfo>> convertToDiffInfo(List<DiffChunk<SQLObject>> diff) {
-
-
-        List<DiffChunk<DiffInfo>> newDiff = new ArrayList<DiffChunk<DiffInfo>>();
-        List<SQLObject> ancestors = new ArrayList<SQLObject>();
-        ancestors.add(new SQLTable());
-        int depth = 0;
-        for (DiffChunk<SQLObject> chunk : diff) {
-            SQLObject data = chunk.getData();
-            String name;
-            if (data instanceof SQLTable && data.getPhysicalName() != null) {
-                name = data.getPhysicalName();
-            } else {
-                name = data.getName();
-            }
-            DiffInfo info = new DiffInfo(data.getClass().getSimpleName().replaceFirst("SQL", ""), name);
-
-
-            // Set the depth property based on the object hierarchy.
-            // If it is a relationship, we ignore depth, and there are only relationships left.
-            if (chunk.getData() instanceof SQLRelationship) {
-                depth = 0;
-            } else if (ancestors.get(depth).allowsChildType(data.getClass())) {
-                ancestors.add(data);
-                depth++;
-            }
-            while (depth > 0 && !ancestors.get(depth - 1).allowsChildType(data.getClass())) {
-                ancestors.remove(depth);
-                depth--;
-            }
-            ancestors.add(depth, data);
-
-
-            info.setDepth(depth);
-            DiffChunk<DiffInfo> newChunk = new DiffChunk<DiffInfo>(info, chunk.getType());
-            for (PropertyChange change : chunk.getPropertyChanges()) {
-                newChunk.addPropertyChange(change);
-            }
-            newDiff.add(newChunk);
-        }
-
-
-        return newDiff;
-
-
-    }
 }
@@ -68,7 +68,6 @@ import ca.sqlpower.architect.swingui.CompareDMPanel.SourceOrTargetStuff.CatalogP
 import ca.sqlpower.architect.swingui.CompareDMPanel.SourceOrTargetStuff.SchemaPopulator;
 import ca.sqlpower.architect.swingui.CompareDMSettings.DatastoreType;
 import ca.sqlpower.architect.swingui.CompareDMSettings.SourceOrTargetSettings;
-import ca.sqlpower.diff.DiffChunk;
 import ca.sqlpower.sql.DataSourceCollection;
 import ca.sqlpower.sql.JDBCDataSource;
 import ca.sqlpower.sql.SPDataSource;
@@ -1305,8 +1304,21 @@ public class CompareDMPanel extends JPanel {
 			
 			compareWorker = new SPSwingWorker(session) {
 
-				private List<DiffChunk<SQLObject>> diff;
-				private List<DiffChunk<SQLObject>> diff1;
+				private final CompareDMFormatter dmFormat =
+				    new CompareDMFormatter(session, parentDialog, session.getCompareDMSettings());
+
+				/**
+				 * The script the source diffs are written into, for SQL and
+				 * Liquibase output.
+				 */
+				private CompareDMFormatter.SQLScriptWriter scriptWriter;
+
+				/**
+				 * The descriptions the source and target diffs are written
+				 * into, for English output.
+				 */
+				private CompareDMFormatter.EnglishDiffWriter sourceWriter;
+				private CompareDMFormatter.EnglishDiffWriter targetWriter;
 
 				private String message;
 				
@@ -1322,7 +1334,7 @@ public class CompareDMPanel extends JPanel {
 			        }
 			    }
 				
-				public void doStuff() throws SQLObjectException {
+				public void doStuff() throws Exception {
 	                try {
 	                    if (source.physicalRadio.isSelected()) {
 	                    message = "Refreshing older database";
@@ -1336,13 +1348,31 @@ public class CompareDMPanel extends JPanel {
 	                    target.getDatabase().refresh();
 	                    checkCancelled();
 	                }
-	                setJobSize(sourceComp.getJobSize() + targetComp.getJobSize());
-	                logger.debug("Generating TableDiffs for source");
-	                diff = sourceComp.generateTableDiffs(session);
-	                checkCancelled();
-	                logger.debug("Generating TableDiffs for target");
-	                diff1 = targetComp.generateTableDiffs(session);
-	                checkCancelled();
+	                // The diffs go straight into the output as they are found.
+	                // A script only needs the source diffs.
+	                switch (session.getCompareDMSettings().getOutputFormat()) {
+	                case SQL:
+	                case LIQUIBASE:
+	                    scriptWriter = dmFormat.new SQLScriptWriter();
+	                    setJobSize(sourceComp.getJobSize());
+	                    logger.debug("Generating TableDiffs for source");
+	                    sourceComp.generateTableDiffs(session, scriptWriter);
+	                    checkCancelled();
+	                    break;
+	                case ENGLISH:
+	                    sourceWriter = new CompareDMFormatter.EnglishDiffWriter(CompareDMFormatter.DIFF_STYLES);
+	                    targetWriter = new CompareDMFormatter.EnglishDiffWriter(CompareDMFormatter.DIFF_STYLES);
+	                    setJobSize(sourceComp.getJobSize() + targetComp.getJobSize());
+	                    logger.debug("Generating TableDiffs for source");
+	                    sourceComp.generateTableDiffs(session, sourceWriter);
+	                    checkCancelled();
+	                    logger.debug("Generating TableDiffs for target");
+	                    targetComp.generateTableDiffs(session, targetWriter);
+	                    checkCancelled();
+	                    break;
+	                default:
+	                    throw new IllegalStateException("Don't know what type of output to make");
+	                }
 					message = "Finished";
 					logger.debug("Finished Compare");
 	                } catch (CancellationException e) {
@@ -1365,15 +1395,14 @@ public class CompareDMPanel extends JPanel {
                             return;
                         }
                         logger.debug("cleanup starts"); //$NON-NLS-1$
-                        CompareDMFormatter dmFormat = new CompareDMFormatter(session, parentDialog, session.getCompareDMSettings());                   
                         checkCancelled();
                         switch (session.getCompareDMSettings().getOutputFormat()) {
                         case SQL:
                         case LIQUIBASE:
-                            dmFormat.formatForSQLOutput(diff, diff1, left, right);
+                            dmFormat.formatForSQLOutput(scriptWriter, left, right);
                             break;
                         case ENGLISH:
-                            dmFormat.formatForEnglishOutput(diff, diff1, left, right);
+                            dmFormat.formatForEnglishOutput(sourceWriter, targetWriter, left, right);
                             break;
                         default:
                             throw new IllegalStateException("Don't know what type of output to make");                        
@@ -19,38 +19,55 @@
 
 package ca.sqlpower.architect.swingui;
 
+import java.awt.BorderLayout;
 import java.awt.Cursor;
 import java.awt.Window;
 import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
 import javax.swing.JTree;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.TreePath;
 
+import org.apache.log4j.Logger;
+
 import ca.sqlpower.architect.ArchitectProject;
 import ca.sqlpower.architect.DepthFirstSearch;
 import ca.sqlpower.architect.ddl.DDLGenerator;
 import ca.sqlpower.architect.ddl.DDLStatement;
 import ca.sqlpower.architect.ddl.DDLUtils;
+import ca.sqlpower.architect.etl.DataMoveCheckpoint;
+import ca.sqlpower.architect.etl.ParallelDataMover;
+import ca.sqlpower.architect.etl.ParallelDataMover.ConnectionFactory;
+import ca.sqlpower.architect.etl.ParallelDataMover.TableMove;
+import ca.sqlpower.architect.etl.ParallelDataMover.TableState;
 import ca.sqlpower.architect.swingui.action.DatabaseConnectionManagerAction;
 import ca.sqlpower.architect.swingui.dbtree.DBTreeCellRenderer;
 import ca.sqlpower.architect.swingui.dbtree.DBTreeModel;
 import ca.sqlpower.object.ObjectDependentException;
-import ca.sqlpower.sql.DataMover;
 import ca.sqlpower.sql.DatabaseListChangeEvent;
 import ca.sqlpower.sql.DatabaseListChangeListener;
 import ca.sqlpower.sql.JDBCDataSource;
@@ -61,9 +78,12 @@ import ca.sqlpower.sqlobject.SQLObject;
 import ca.sqlpower.sqlobject.SQLObjectException;
 import ca.sqlpower.sqlobject.SQLObjectRoot;
 import ca.sqlpower.sqlobject.SQLObjectUtils;
+import ca.sqlpower.sqlobject.SQLRelationship;
 import ca.sqlpower.sqlobject.SQLSchema;
 import ca.sqlpower.sqlobject.SQLTable;
+import ca.sqlpower.swingui.ProgressWatcher;
 import ca.sqlpower.swingui.SPSUtils;
+import ca.sqlpower.swingui.SPSwingWorker;
 import ca.sqlpower.util.SQLPowerUtils;
 
 import com.jgoodies.forms.builder.PanelBuilder;
@@ -73,6 +93,15 @@ import com.jgoodies.forms.layout.FormLayout;
 
 public class DataMoverPanel {
     
+    private static final Logger logger = Logger.getLogger(DataMoverPanel.class);
+
+    /**
+     * Where a resumable move records its progress. It is deleted once every
+     * table has been copied.
+     */
+    private static final File CHECKPOINT_FILE =
+        new File(System.getProperty("user.home"), ".architect-data-move.checkpoint"); //$NON-NLS-1$ //$NON-NLS-2$
+    
     /**
      * The panel that holds the UI.
      */
@@ -99,6 +128,53 @@ public class DataMoverPanel {
      */
     private JCheckBox truncateDestinationTableBox;
     
+    /**
+     * The number of tables to copy at the same time.
+     */
+    private JSpinner threadCountSpinner;
+    
+    /**
+     * The fetch size to read source tables with.
+     */
+    private JSpinner fetchSizeSpinner;
+    
+    /**
+     * The number of rows to insert in each JDBC batch.
+     */
+    private JSpinner batchSizeSpinner;
+    
+    /**
+     * The number of rows to insert between commits.
+     */
+    private JSpinner commitIntervalSpinner;
+    
+    /**
+     * The number of rows to copy in each key range, or 0 to copy each table
+     * in one piece.
+     */
+    private JSpinner chunkSizeSpinner;
+    
+    /**
+     * The number of key ranges of one table to copy at the same time.
+     */
+    private JSpinner chunkThreadCountSpinner;
+    
+    /**
+     * Checkbox for recording the move's progress in {@link #CHECKPOINT_FILE}
+     * so an interrupted move can be carried on.
+     */
+    private JCheckBox resumableBox;
+    
+    /**
+     * Shows how many of the tables have been copied while a move is running.
+     */
+    private JProgressBar progressBar;
+    
+    /**
+     * The data mover that is running, or null if no data is being moved.
+     */
+    private ParallelDataMover runningMover;
+    
     /**
      * The session that this Data Mover belongs to. 
      */
@@ -150,7 +226,7 @@ public class DataMoverPanel {
         PanelBuilder pb = new PanelBuilder(
                 new FormLayout(
                         "pref:grow,8dlu,pref:grow", //$NON-NLS-1$
-                        "pref,4dlu,fill:pref:grow,4dlu,pref,4dlu,pref")); //$NON-NLS-1$
+                        "pref,4dlu,fill:pref:grow,4dlu,pref,4dlu,pref,4dlu,pref,4dlu,pref")); //$NON-NLS-1$
         pb.getLayout().addGroupedColumn(1);
         pb.getLayout().addGroupedColumn(3);
         CellConstraints cc = new CellConstraints();
@@ -181,9 +257,40 @@ public class DataMoverPanel {
         pb.add(new JButton(new DatabaseConnectionManagerAction(session)), cc.xy(1, 5));
         pb.add(truncateDestinationTableBox = new JCheckBox(Messages.getString("DataMoverPanel.truncateDestinationTableOption")), cc.xy(3, 5)); //$NON-NLS-1$
 
+        threadCountSpinner = new JSpinner(new SpinnerNumberModel(ParallelDataMover.DEFAULT_THREAD_COUNT, 1, 64, 1));
+        fetchSizeSpinner = new JSpinner(new SpinnerNumberModel(ParallelDataMover.DEFAULT_FETCH_SIZE, 1, null, 100));
+        batchSizeSpinner = new JSpinner(new SpinnerNumberModel(ParallelDataMover.DEFAULT_BATCH_SIZE, 1, null, 100));
+        commitIntervalSpinner = new JSpinner(new SpinnerNumberModel(ParallelDataMover.DEFAULT_COMMIT_INTERVAL, 1, null, 1000));
+        chunkSizeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, null, 10000));
+        chunkThreadCountSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+        resumableBox = new JCheckBox(Messages.getString("DataMoverPanel.resumableOption")); //$NON-NLS-1$
+        resumableBox.setToolTipText(Messages.getString("DataMoverPanel.resumableToolTip")); //$NON-NLS-1$
+        PanelBuilder settings = new PanelBuilder(
+                new FormLayout(
+                        "pref,4dlu,max(50dlu;pref),8dlu,pref,4dlu,max(50dlu;pref)", //$NON-NLS-1$
+                        "pref,4dlu,pref,4dlu,pref,4dlu,pref")); //$NON-NLS-1$
+        settings.addLabel(Messages.getString("DataMoverPanel.threadCountLabel"), cc.xy(1, 1)); //$NON-NLS-1$
+        settings.add(threadCountSpinner, cc.xy(3, 1));
+        settings.addLabel(Messages.getString("DataMoverPanel.fetchSizeLabel"), cc.xy(5, 1)); //$NON-NLS-1$
+        settings.add(fetchSizeSpinner, cc.xy(7, 1));
+        settings.addLabel(Messages.getString("DataMoverPanel.batchSizeLabel"), cc.xy(1, 3)); //$NON-NLS-1$
+        settings.add(batchSizeSpinner, cc.xy(3, 3));
+        settings.addLabel(Messages.getString("DataMoverPanel.commitIntervalLabel"), cc.xy(5, 3)); //$NON-NLS-1$
+        settings.add(commitIntervalSpinner, cc.xy(7, 3));
+        settings.addLabel(Messages.getString("DataMoverPanel.chunkSizeLabel"), cc.xy(1, 5)); //$NON-NLS-1$
+        settings.add(chunkSizeSpinner, cc.xy(3, 5));
+        settings.addLabel(Messages.getString("DataMoverPanel.chunkThreadCountLabel"), cc.xy(5, 5)); //$NON-NLS-1$
+        settings.add(chunkThreadCountSpinner, cc.xy(7, 5));
+        settings.add(resumableBox, cc.xyw(1, 7, 7));
+        pb.add(settings.getPanel(), cc.xyw(1, 7, 3));
+        
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        pb.add(progressBar, cc.xyw(1, 9, 3));
+
         pb.add(ButtonBarFactory.buildOKCancelBar(
                     new JButton(okAction), new JButton(cancelAction)),
-               cc.xyw(1, 7, 3));
+               cc.xyw(1, 11, 3));
         
         pb.setDefaultDialogBorder();
         panel = pb.getPanel();
@@ -221,6 +328,7 @@ public class DataMoverPanel {
     
     private Action okAction = new AbstractAction(Messages.getString("DataMoverPanel.okButton")) { //$NON-NLS-1$
         public void actionPerformed(ActionEvent e) {
+            if (runningMover != null) return;
             try {
                 panel.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
                 doDataMove();
@@ -234,6 +342,11 @@ public class DataMoverPanel {
 
     private Action cancelAction = new AbstractAction(Messages.getString("DataMoverPanel.cancelButton")) { //$NON-NLS-1$
         public void actionPerformed(ActionEvent e) {
+            if (runningMover != null) {
+                // stop the move, but leave the panel up to show what was copied
+                runningMover.setCancelled(true);
+                return;
+            }
             try {
                 Window w = SPSUtils.getWindowInHierarchy(panel);
                 if (w != null) w.dispose();
@@ -247,10 +360,15 @@ public class DataMoverPanel {
         return panel;
     }
     
+    /**
+     * Prepares the selected tables on the Swing thread, asking the user about
+     * any destination tables that have to be created, and then copies their
+     * data in the background with a {@link ParallelDataMover}. Tables that
+     * reference each other are copied in foreign key order; the rest are
+     * copied at the same time.
+     */
     public void doDataMove() throws SQLException, SQLObjectException {
         final TreePath[] sourcePaths = sourceTree.getSelectionPaths();
-        int tableCount = 0;
-        int rowCount = 0;
         
         List<SQLTable> sourceTables = new ArrayList<SQLTable>();
         for (TreePath sourcePath : sourcePaths) {
@@ -259,29 +377,134 @@ public class DataMoverPanel {
         
         DepthFirstSearch dfs = new DepthFirstSearch(sourceTables);
         
+        final ParallelDataMover mover = new ParallelDataMover();
+        mover.setTruncatingDestinationTable(truncateDestinationTableBox.isSelected());
+        mover.setThreadCount(((Number) threadCountSpinner.getValue()).intValue());
+        mover.setFetchSize(((Number) fetchSizeSpinner.getValue()).intValue());
+        mover.setBatchSize(((Number) batchSizeSpinner.getValue()).intValue());
+        mover.setCommitInterval(((Number) commitIntervalSpinner.getValue()).intValue());
+        mover.setChunkSize(((Number) chunkSizeSpinner.getValue()).intValue());
+        mover.setChunkThreadCount(((Number) chunkThreadCountSpinner.getValue()).intValue());
+        
+        Map<SQLTable, TableMove> moves = new HashMap<SQLTable, TableMove>();
         for (SQLTable sourceTable : dfs.getFinishOrder()) {
-            int thisCount = moveSingleTable(sourceTable);
-            if (thisCount == -1) {
+            if (!prepareTable(sourceTable, mover, moves)) {
                 int choice = JOptionPane.showConfirmDialog(panel, Messages.getString("DataMoverPanel.continueCopyingRemainingTablesOption")); //$NON-NLS-1$
                 if (choice != JOptionPane.YES_OPTION) {
-                    break;
+                    return;
                 }
+            }
+        }
+        
+        // The same edges the depth first search follows
+        for (Map.Entry<SQLTable, TableMove> entry : moves.entrySet()) {
+            for (SQLRelationship r : entry.getKey().getExportedKeys()) {
+                TableMove fkMove = moves.get(r.getFkTable());
+                if (fkMove != null) {
+                    fkMove.addDependency(entry.getValue());
+                }
+            }
+        }
+        
+        try {
+            if (resumableBox.isSelected()) {
+                mover.setCheckpoint(new DataMoveCheckpoint(CHECKPOINT_FILE));
+            } else if (CHECKPOINT_FILE.exists() && !CHECKPOINT_FILE.delete()) {
+                logger.warn("Could not delete old checkpoint " + CHECKPOINT_FILE); //$NON-NLS-1$
+            }
+        } catch (IOException ex) {
+            ASUtils.showExceptionDialog(session, Messages.getString("DataMoverPanel.failedToMoveData"), ex); //$NON-NLS-1$
+            return;
+        }
+        
+        runningMover = mover;
+        okAction.setEnabled(false);
+        ProgressWatcher.watchProgress(progressBar, mover);
+        SPSwingWorker worker = new SPSwingWorker(session) {
+            @Override
+            public void doStuff() throws Exception {
+                DataMoveCheckpoint checkpoint = mover.getCheckpoint();
+                try {
+                    mover.run();
+                } finally {
+                    if (checkpoint != null) {
+                        checkpoint.close();
+                    }
+                }
+                if (checkpoint != null) {
+                    for (TableMove table : mover.getTables()) {
+                        if (table.getState() != TableState.FINISHED) return;
+                    }
+                    checkpoint.delete();
+                }
+            }
+            
+            @Override
+            public void cleanup() throws Exception {
+                runningMover = null;
+                okAction.setEnabled(isSourceTreeSelectionValid() && isDestTreeSelectionValid());
+                if (getDoStuffException() != null) {
+                    ASUtils.showExceptionDialog(session, Messages.getString("DataMoverPanel.failedToMoveData"), getDoStuffException()); //$NON-NLS-1$
+                    return;
+                }
+                showResults(mover);
+            }
+        };
+        new Thread(worker).start();
+    }
+
+    /**
+     * Tells the user how many rows were copied into each table, and how
+     * quickly, and which tables failed or were skipped.
+     */
+    private void showResults(ParallelDataMover mover) {
+        DecimalFormat secondsFormat = new DecimalFormat("0.0"); //$NON-NLS-1$
+        DecimalFormat rateFormat = new DecimalFormat("0"); //$NON-NLS-1$
+        int tableCount = 0;
+        StringBuilder details = new StringBuilder();
+        for (TableMove table : mover.getTables()) {
+            String line;
+            if (table.getState() == TableState.FINISHED) {
+                tableCount++;
+                line = Messages.getString(table.isResumed() ?
+                        "DataMoverPanel.tableCopyResumed" : "DataMoverPanel.tableCopyResult", //$NON-NLS-1$ //$NON-NLS-2$
+                        table.getSourceQualifiedName(),
+                        String.valueOf(table.getRowCount()),
+                        secondsFormat.format(table.getElapsedTime() / 1000.0),
+                        rateFormat.format(table.getRowsPerSecond()));
+            } else if (table.getState() == TableState.FAILED) {
+                line = Messages.getString("DataMoverPanel.tableCopyFailed", //$NON-NLS-1$
+                        table.getSourceQualifiedName(), String.valueOf(table.getFailure().getMessage()));
             } else {
-                tableCount += 1;
-                rowCount += thisCount;
+                line = Messages.getString("DataMoverPanel.tableCopySkipped", //$NON-NLS-1$
+                        table.getSourceQualifiedName(), table.getSkipReason());
             }
+            logger.info(line);
+            details.append(line).append("\n"); //$NON-NLS-1$
         }
-        JOptionPane.showMessageDialog(panel, Messages.getString("DataMoverPanel.dataCopyResults", String.valueOf(tableCount), String.valueOf(rowCount))); //$NON-NLS-1$
+        JTextArea detailsArea = new JTextArea(details.toString(), Math.min(15, mover.getTables().size()), 60);
+        detailsArea.setEditable(false);
+        JPanel resultsPanel = new JPanel(new BorderLayout(0, 6));
+        resultsPanel.add(new JLabel(Messages.getString("DataMoverPanel.dataCopyResults", //$NON-NLS-1$
+                String.valueOf(tableCount), String.valueOf(mover.getTotalRowCount()))), BorderLayout.NORTH);
+        resultsPanel.add(new JScrollPane(detailsArea), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(panel, resultsPanel);
     }
     
     /**
-     * Moves the data from the table identified by 
-     * @param sourceTable
-     * @return The number of rows moved, or -1 if the user cancelled the operation.
+     * Sets up the copy of one table, creating the destination table first
+     * if the user agrees to it, and adds it to the given mover.
+     * 
+     * @param sourceTable The table to copy.
+     * @param mover The mover to add the table to.
+     * @param moves Each table added to the mover, by source table. The new table is added to it.
+     * @return False if the user cancelled the operation, true otherwise
+     * (including when the user chose to skip this table).
      * @throws SQLException
      * @throws SQLObjectException
      */
-    private int moveSingleTable(final SQLTable sourceTable) throws SQLException, SQLObjectException {
+    private boolean prepareTable(final SQLTable sourceTable, ParallelDataMover mover, 
+            Map<SQLTable, TableMove> moves) throws SQLException, SQLObjectException {
         final SQLDatabase sourceDB = SQLPowerUtils.getAncestor(sourceTable, SQLDatabase.class);
         
         final TreePath destPath = destTree.getSelectionPath();
@@ -350,15 +573,15 @@ public class DataMoverPanel {
                             JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE,
                             null, new String[] { "Skip", "Abort" }, "Skip");
                     if (choice == 0) {
-                        return 0; // copied 0 rows
+                        return true; // skip this table
                     } else {
-                        return -1; // abort
+                        return false; // abort
                     }
                 } else {
                     int choice = JOptionPane.showConfirmDialog(
                             panel,
                             Messages.getString("DataMoverPanel.destinationTableDoesNotExist", destQualifiedName));
-                    if (choice != JOptionPane.YES_OPTION) return -1;
+                    if (choice != JOptionPane.YES_OPTION) return false;
                 }
                 
                 // check for common problems
@@ -396,17 +619,19 @@ public class DataMoverPanel {
                 }
             }
             
-            DataMover mover = new DataMover(destCon, sourceCon);
-            mover.setCreatingDestinationTable(false);
-            mover.setTruncatingDestinationTable(truncateDestinationTableBox.isSelected());
-            mover.setDebug(true);  // when true, debug data goes to System.out
-
-//            JOptionPane.showMessageDialog(panel,
-//                    "About to copy\n"+sourceQualifiedName+"\nto\n"+destQualifiedName);
-            
-            int count = mover.copyTable(destQualifiedName, sourceQualifiedName);
-            
-            return count;
+            TableMove move = mover.addTable(
+                    connectionsTo(sourceDB), sourceQualifiedName,
+                    connectionsTo(destDB), destQualifiedName);
+            for (SQLColumn col : sourceTable.getColumns()) {
+                if (col.isPrimaryKey()) {
+                    move.setKeyColumn(col.getName());
+                    break;
+                }
+            }
+            move.setCheckpointKey(sourceDB.getDataSource().getName() + ":" + sourceQualifiedName + //$NON-NLS-1$
+                    " -> " + destDB.getDataSource().getName() + ":" + destQualifiedName); //$NON-NLS-1$ //$NON-NLS-2$
+            moves.put(sourceTable, move);
+            return true;
         } catch (InstantiationException ex) {
             throw new RuntimeException("Couldn't create DDL Generator", ex); //$NON-NLS-1$
         } catch (IllegalAccessException ex) {
@@ -419,6 +644,24 @@ public class DataMoverPanel {
         }
     }
 
+    /**
+     * Returns a connection factory that borrows connections from the given
+     * database's pool.
+     */
+    private static ConnectionFactory connectionsTo(final SQLDatabase db) {
+        return new ConnectionFactory() {
+            public Connection createConnection() throws SQLException {
+                try {
+                    return db.getConnection();
+                } catch (SQLObjectException e) {
+                    SQLException ex = new SQLException(e.getMessage());
+                    ex.initCause(e);
+                    throw ex;
+                }
+            }
+        };
+    }
+
     /**
      * Returns true if the source DB Tree selections are valid for the copy
      * table data process. That is, everything that is selected in the source
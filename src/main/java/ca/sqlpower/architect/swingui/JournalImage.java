@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The workspace as a {@link ProjectJournal} has recorded it, kept up to date
+ * from the same persist calls that are written to the journal. The journal
+ * writes its snapshots from this copy on its own thread, so starting a new
+ * journal doesn't have to read the workspace on the thread that edits it.
+ * <p>
+ * Only what a snapshot needs is kept: each object's parent and type, its
+ * place among the children of its parent that have the same type, and the
+ * last value of each of its properties. This class is not thread safe.
+ */
+class JournalImage {
+
+    private static final Logger logger = Logger.getLogger(JournalImage.class);
+
+    private static final String METHOD = "method"; //$NON-NLS-1$
+    private static final String UUID = "uuid"; //$NON-NLS-1$
+    private static final String PARENT_UUID = "parentUUID"; //$NON-NLS-1$
+    private static final String TYPE = "type"; //$NON-NLS-1$
+    private static final String INDEX = "index"; //$NON-NLS-1$
+    private static final String PROPERTY_NAME = "propertyName"; //$NON-NLS-1$
+    private static final String NEW_VALUE = "newValue"; //$NON-NLS-1$
+    private static final String BEGIN = "begin"; //$NON-NLS-1$
+    private static final String COMMIT = "commit"; //$NON-NLS-1$
+    private static final String PERSIST_OBJECT = "persistObject"; //$NON-NLS-1$
+    private static final String PERSIST_PROPERTY = "persistProperty"; //$NON-NLS-1$
+    private static final String CHANGE_PROPERTY = "changeProperty"; //$NON-NLS-1$
+    private static final String REMOVE_OBJECT = "removeObject"; //$NON-NLS-1$
+
+    private static class Node {
+        final String uuid;
+        final Object parentUUID;
+        final String type;
+        Node parent;
+        final List<Node> children = new ArrayList<Node>();
+
+        /**
+         * The last persistProperty call of each property, by property name.
+         */
+        final Map<String, JSONObject> properties = new LinkedHashMap<String, JSONObject>();
+
+        Node(String uuid, Object parentUUID, String type) {
+            this.uuid = uuid;
+            this.parentUUID = parentUUID;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+    /**
+     * The workspace, or null until a snapshot has been applied.
+     */
+    private Node root;
+
+    /**
+     * Applies one transaction, or a whole snapshot, to this image.
+     */
+    public void apply(JSONArray transaction) throws JSONException {
+        for (int i = 0; i < transaction.length(); i++) {
+            JSONObject message = transaction.getJSONObject(i);
+            String method = message.getString(METHOD);
+            if (method.equals(PERSIST_OBJECT)) {
+                persistObject(message);
+            } else if (method.equals(PERSIST_PROPERTY) || method.equals(CHANGE_PROPERTY)) {
+                persistProperty(message);
+            } else if (method.equals(REMOVE_OBJECT)) {
+                Node node = nodes.get(message.getString(UUID));
+                if (node != null) {
+                    remove(node);
+                }
+            }
+            // begin and commit don't change anything, and rolled back
+            // transactions are never sent to the journal
+        }
+    }
+
+    private void persistObject(JSONObject message) throws JSONException {
+        String uuid = message.getString(UUID);
+        Node old = nodes.get(uuid);
+        if (old != null) {
+            remove(old);
+        }
+        Object parentUUID = message.get(PARENT_UUID);
+        Node node = new Node(uuid, parentUUID, message.getString(TYPE));
+        if (parentUUID instanceof String) {
+            Node parent = nodes.get(parentUUID);
+            if (parent == null) {
+                logger.warn("The journal has no parent " + parentUUID + " for " + uuid + ", leaving it out of the snapshot"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                return;
+            }
+            insert(parent, node, message.getInt(INDEX));
+        } else {
+            if (root != null) {
+                remove(root);
+            }
+            root = node;
+        }
+        nodes.put(uuid, node);
+    }
+
+    /**
+     * Adds a child in front of the child that is at the given index among the
+     * children of the same type, or after the last of them.
+     */
+    private static void insert(Node parent, Node child, int index) {
+        int position = parent.children.size();
+        int sameType = 0;
+        for (int i = 0; i < parent.children.size(); i++) {
+            if (parent.children.get(i).type.equals(child.type)) {
+                if (sameType == index) {
+                    position = i;
+                    break;
+                }
+                sameType++;
+                position = i + 1;
+            }
+        }
+        parent.children.add(position, child);
+        child.parent = parent;
+    }
+
+    private void remove(Node node) {
+        if (node.parent != null) {
+            node.parent.children.remove(node);
+        } else if (node == root) {
+            root = null;
+        }
+        forget(node);
+    }
+
+    private void forget(Node node) {
+        nodes.remove(node.uuid);
+        for (Node child : node.children) {
+            forget(child);
+        }
+    }
+
+    private void persistProperty(JSONObject message) throws JSONException {
+        Node node = nodes.get(message.getString(UUID));
+        if (node == null) return;
+        String propertyName = message.getString(PROPERTY_NAME);
+        JSONObject property = new JSONObject();
+        property.put(METHOD, PERSIST_PROPERTY);
+        property.put(UUID, node.uuid);
+        property.put(PROPERTY_NAME, propertyName);
+        property.put(TYPE, message.get(TYPE));
+        property.put(NEW_VALUE, message.has(NEW_VALUE) ? message.get(NEW_VALUE) : JSONObject.NULL);
+        node.properties.put(propertyName, property);
+    }
+
+    /**
+     * Returns the persist calls that rebuild the workspace in an empty
+     * session, as one transaction.
+     */
+    public JSONArray toSnapshot() throws JSONException {
+        JSONArray snapshot = new JSONArray();
+        snapshot.put(transactionMessage(BEGIN));
+        if (root != null) {
+            write(root, 0, snapshot);
+        }
+        snapshot.put(transactionMessage(COMMIT));
+        return snapshot;
+    }
+
+    private static void write(Node node, int index, JSONArray snapshot) throws JSONException {
+        JSONObject persist = new JSONObject();
+        persist.put(METHOD, PERSIST_OBJECT);
+        persist.put(PARENT_UUID, node.parentUUID);
+        persist.put(TYPE, node.type);
+        persist.put(UUID, node.uuid);
+        persist.put(INDEX, index);
+        snapshot.put(persist);
+        for (JSONObject property : node.properties.values()) {
+            snapshot.put(property);
+        }
+        Map<String, Integer> typeCounts = new HashMap<String, Integer>();
+        for (Node child : node.children) {
+            Integer count = typeCounts.get(child.type);
+            int childIndex = count == null ? 0 : count;
+            typeCounts.put(child.type, childIndex + 1);
+            write(child, childIndex, snapshot);
+        }
+    }
+
+    private static JSONObject transactionMessage(String method) throws JSONException {
+        JSONObject message = new JSONObject();
+        message.put(UUID, JSONObject.NULL);
+        message.put(METHOD, method);
+        return message;
+    }
+}
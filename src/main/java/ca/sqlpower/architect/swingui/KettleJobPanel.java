@@ -113,6 +113,11 @@ public class KettleJobPanel implements DataEntryPanel {
      */
     private JSpinner splitSpinner;
     
+    /**
+     * The number of transformations to build at the same time.
+     */
+    private JSpinner threadCountSpinner;
+    
     /**
      * This field allows the user to specify an absolute path to where the file should be
      * saved if the kettle job is to be saved as a file in XML format.
@@ -401,6 +406,7 @@ public class KettleJobPanel implements DataEntryPanel {
             defaultJoinType.addItem(MergeJoinMeta.join_types[joinType]);
         }
         defaultJoinType.setSelectedIndex(settings.getKettleJoinType());
+        threadCountSpinner = new JSpinner(new SpinnerNumberModel(settings.getThreadCount(), 1, 64, 1));
         
         FormLayout formLayout = new FormLayout("10dlu, 2dlu, pref, 4dlu," + //1-4 //$NON-NLS-1$
                 "0:grow, 4dlu, pref", //5-7 //$NON-NLS-1$
@@ -430,6 +436,10 @@ public class KettleJobPanel implements DataEntryPanel {
         builder.append(Messages.getString("KettleJobPanel.defaultJoinTypeLabel")); //$NON-NLS-1$
         builder.append(defaultJoinType);
         builder.nextLine();
+        builder.append(""); //$NON-NLS-1$
+        builder.append(Messages.getString("KettleJobPanel.threadCountLabel")); //$NON-NLS-1$
+        builder.append(threadCountSpinner);
+        builder.nextLine();
         builder.appendSeparator();
         builder.append(""); //$NON-NLS-1$
         builder.append(Messages.getString("KettleJobPanel.outputTypeLabel")); //$NON-NLS-1$
@@ -552,6 +562,7 @@ public class KettleJobPanel implements DataEntryPanel {
         settings.setTimeStampExcluded(timeStampCheckBox.isSelected());
         settings.setSplittingJob(splitJobCheckBox.isSelected());
         settings.setIsInsertUpdate(insertUpdateRadioButton.isSelected());
+        settings.setThreadCount(((Number) threadCountSpinner.getValue()).intValue());
         if(splitJobCheckBox.isSelected()) {
             settings.setSplitJobNo((Integer)splitSpinner.getValue());
         }
@@ -18,15 +18,34 @@
  */
 package ca.sqlpower.architect.swingui;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.Timer;
 
+import org.apache.log4j.Logger;
+
 import ca.sqlpower.architect.layout.ArchitectLayout;
+import ca.sqlpower.architect.layout.LayoutEdge;
+import ca.sqlpower.architect.layout.LayoutNode;
+import ca.sqlpower.architect.layout.LayoutSnapshot;
 
 public class LayoutAnimator implements ActionListener {
 
+    private static final Logger logger = Logger.getLogger(LayoutAnimator.class);
+
+    /**
+     * How long the nodes take to slide to the locations found by a
+     * background layout, in milliseconds.
+     */
+    private static final int TWEEN_MILLIS = 600;
+
 	private PlayPen pp;
 	private Timer timer;
 	private ArchitectLayout layout;
@@ -67,6 +86,115 @@ public class LayoutAnimator implements ActionListener {
 	        throw new RuntimeException(t);
 	    }
 	}
+
+    /**
+     * Runs the layout to completion on a background thread against a copy of
+     * the nodes, instead of one frame per timer tick on the event dispatch
+     * thread. Once it is done the nodes are moved to their new locations in
+     * a single undoable edit, sliding there if animation is enabled. The
+     * layout must not have been set up yet.
+     */
+    public void startBackgroundLayout(Collection<? extends LayoutNode> nodes,
+            Collection<? extends LayoutEdge> edges, final Rectangle frame) {
+        final LayoutSnapshot snapshot = new LayoutSnapshot(nodes, edges);
+        final ArchitectSwingSession session = pp.getSession();
+        session.runInBackground(new Runnable() {
+            public void run() {
+                try {
+                    long start = System.currentTimeMillis();
+                    final Map<LayoutNode, Point> locations = snapshot.run(layout, frame);
+                    if (logger.isDebugEnabled()) logger.debug("Background layout took " + (System.currentTimeMillis() - start) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$
+                    session.runInForeground(new Runnable() {
+                        public void run() {
+                            moveTo(locations);
+                        }
+                    });
+                } catch (final Throwable t) {
+                    session.runInForeground(new Runnable() {
+                        public void run() {
+                            throw new RuntimeException("Error doing auto layout", t); //$NON-NLS-1$
+                        }
+                    });
+                }
+            }
+        }, "Auto layout"); //$NON-NLS-1$
+    }
+
+    /**
+     * Moves the nodes to the given locations in one compound edit and
+     * transaction. Nodes that were removed from the play pen while the
+     * layout was running are left alone.
+     */
+    private void moveTo(Map<LayoutNode, Point> locations) {
+        final List<LayoutNode> moving = new ArrayList<LayoutNode>();
+        final List<Point> from = new ArrayList<Point>();
+        final List<Point> to = new ArrayList<Point>();
+        for (Map.Entry<LayoutNode, Point> e : locations.entrySet()) {
+            LayoutNode node = e.getKey();
+            if (node instanceof PlayPenComponent && ((PlayPenComponent) node).getParent() == null) {
+                continue;
+            }
+            moving.add(node);
+            from.add(node.getLocation());
+            to.add(e.getValue());
+        }
+
+        pp.startCompoundEdit("Auto Layout"); //$NON-NLS-1$
+        pp.getContentPane().begin("Auto layout"); //$NON-NLS-1$
+        if (!animationEnabled) {
+            try {
+                moveBetween(moving, from, to, 1.0);
+            } catch (RuntimeException ex) {
+                pp.getContentPane().rollback("Error doing auto layout"); //$NON-NLS-1$
+                pp.endCompoundEdit("Layout failed"); //$NON-NLS-1$
+                throw ex;
+            }
+            finishMove();
+            return;
+        }
+
+        final int steps = Math.max(1, framesPerSecond * TWEEN_MILLIS / 1000);
+        timer = new Timer((int) (1.0 / ((double) framesPerSecond) * 1000.0), null);
+        timer.addActionListener(new ActionListener() {
+            private int step = 0;
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    step++;
+                    double progress = (double) step / steps;
+                    // ease in and out so the tables do not jump at the ends
+                    moveBetween(moving, from, to, progress * progress * (3 - 2 * progress));
+                    if (step >= steps) {
+                        timer.stop();
+                        finishMove();
+                    } else {
+                        pp.revalidate();
+                    }
+                } catch (RuntimeException ex) {
+                    timer.stop();
+                    pp.getContentPane().rollback("Error doing auto layout"); //$NON-NLS-1$
+                    pp.endCompoundEdit("Layout failed"); //$NON-NLS-1$
+                    throw ex;
+                }
+            }
+        });
+        timer.start();
+    }
+
+    private static void moveBetween(List<LayoutNode> nodes, List<Point> from, List<Point> to, double progress) {
+        for (int i = 0; i < nodes.size(); i++) {
+            Point start = from.get(i);
+            Point end = to.get(i);
+            nodes.get(i).setLocation(
+                    (int) Math.round(start.x + (end.x - start.x) * progress),
+                    (int) Math.round(start.y + (end.y - start.y) * progress));
+        }
+    }
+
+    private void finishMove() {
+        pp.endCompoundEdit("Layout finished"); //$NON-NLS-1$
+        pp.getContentPane().commit();
+        pp.revalidate();
+    }
     
 	public ArchitectLayout getLayout() {
 		return layout;
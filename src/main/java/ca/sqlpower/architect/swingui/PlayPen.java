@@ -183,6 +183,40 @@ public class PlayPen extends JPanel
 						RUBBERBAND_MOVE}
 	private MouseModeType mouseMode = MouseModeType.IDLE;
 
+	/**
+	 * How much of each component is drawn. Components are drawn with less
+	 * detail as the play pen is zoomed out, since the detail can't be read
+	 * at small sizes and drawing it for thousands of tables is slow.
+	 */
+	public enum LevelOfDetail {
+	    /**
+	     * Everything is drawn.
+	     */
+	    FULL,
+	    /**
+	     * Tables are drawn as boxes with only their title and relationships
+	     * as straight lines.
+	     */
+	    TITLED_BOX,
+	    /**
+	     * Tables are drawn as filled rectangles with no text and relationships
+	     * as straight lines.
+	     */
+	    PLAIN_BOX
+	}
+
+	/**
+	 * The default zoom below which components are drawn at
+	 * {@link LevelOfDetail#TITLED_BOX}.
+	 */
+	public static final double DEFAULT_TITLED_BOX_ZOOM = 0.4;
+
+	/**
+	 * The default zoom below which components are drawn at
+	 * {@link LevelOfDetail#PLAIN_BOX}.
+	 */
+	public static final double DEFAULT_PLAIN_BOX_ZOOM = 0.15;
+
 	/**
 	 * The cursor manager for this play pen.
 	 */
@@ -398,37 +432,19 @@ public class PlayPen extends JPanel
 	        }
 	    }
 
-	    Rectangle bounds = new Rectangle();
 	    AffineTransform backup = g2.getTransform();
 	    g2.scale(zoom, zoom);
 	    AffineTransform zoomedOrigin = g2.getTransform();
 
-	    List<PlayPenComponent> relationshipsLast = new ArrayList<PlayPenComponent>();
-	    List<Relationship> relations = contentPane.getChildren(Relationship.class);
-	    List<UsageComponent> usages = contentPane.getChildren(UsageComponent.class);
-	    relationshipsLast.addAll(contentPane.getAllChildren());
-	    relationshipsLast.removeAll(relations);
-	    relationshipsLast.addAll(relations);
-	    relationshipsLast.removeAll(usages);	  
-	    relationshipsLast.addAll(usages);
-	    
-	    // counting down so visual z-order matches click detection z-order
-	    for (int i = relationshipsLast.size() - 1; i >= 0; i--) {
-	        PlayPenComponent c = relationshipsLast.get(i);
-	        c.getBounds(bounds);
-	        //expanding width and height by 1 as lines have 0 width or height when vertical/horizontal
-	        if ( g2.hitClip(bounds.x, bounds.y, bounds.width + 1, bounds.height + 1)) {
-	            if (logger.isDebugEnabled()) logger.debug("Painting visible component "+c); //$NON-NLS-1$
-	            g2.translate(c.getLocation().x, c.getLocation().y);
-	            Font g2Font = g2.getFont();
-	            c.paint(g2);
-	            g2.setFont(g2Font);
-	            g2.setTransform(zoomedOrigin);
-	        } else {
-	            if (logger.isDebugEnabled()) logger.debug("paint: SKIPPING "+c); //$NON-NLS-1$
-	            logger.debug(" skipped bounds are: x=" + bounds.x + " y=" + bounds.y + " width=" + bounds.width + " height=" + bounds.height);
-	            logger.debug(" clipping rectangle: x=" + g2.getClipBounds().x + " y=" + g2.getClipBounds().y + " width=" + g2.getClipBounds().width + " height=" + g2.getClipBounds().height);
-	        }
+	    // the content pane only returns the components touching the clip, with
+	    // relationships under tables so visual z-order matches click detection z-order
+	    for (PlayPenComponent c : contentPane.getComponentsToPaint(g2.getClipBounds())) {
+	        if (logger.isDebugEnabled()) logger.debug("Painting visible component "+c); //$NON-NLS-1$
+	        g2.translate(c.getLocation().x, c.getLocation().y);
+	        Font g2Font = g2.getFont();
+	        c.paint(g2);
+	        g2.setFont(g2Font);
+	        g2.setTransform(zoomedOrigin);
 	    }
 
 	    if (rubberBand != null && !rubberBand.isEmpty()) {
@@ -573,6 +589,28 @@ public class PlayPen extends JPanel
      */
     private boolean paintingEnabled = true;
 
+    /**
+     * Below this zoom components are drawn at {@link LevelOfDetail#TITLED_BOX}.
+     */
+    private double titledBoxZoom = DEFAULT_TITLED_BOX_ZOOM;
+
+    /**
+     * Below this zoom components are drawn at {@link LevelOfDetail#PLAIN_BOX}.
+     */
+    private double plainBoxZoom = DEFAULT_PLAIN_BOX_ZOOM;
+
+    /**
+     * If false everything is drawn in full detail at every zoom. Play pens
+     * used for printing turn this off.
+     */
+    private boolean levelOfDetailEnabled = true;
+
+    /**
+     * Images of the table panes as they were last painted, so they do not
+     * have to be drawn again when the play pen scrolls or they are dragged.
+     */
+    private final TablePaneImageCache tableImageCache = new TablePaneImageCache();
+
 	private boolean normalizing;
 
     /**
@@ -667,6 +705,10 @@ public class PlayPen extends JPanel
 		this(session);
 		logger.debug("Copying PlayPen@" + System.identityHashCode(pp) + " into " + System.identityHashCode(this));
 		this.antialiasSetting = pp.antialiasSetting;
+		this.titledBoxZoom = pp.titledBoxZoom;
+		this.plainBoxZoom = pp.plainBoxZoom;
+		this.levelOfDetailEnabled = pp.levelOfDetailEnabled;
+		this.tableImageCache.setSize(pp.tableImageCache.getSize());
 				
 		this.setFont(pp.getFont());
 		this.setForeground(pp.getForeground());
@@ -1069,6 +1111,8 @@ public class PlayPen extends JPanel
 		        }
 			}
 			this.firePropertyChange("zoom", oldZoom, newZoom); //$NON-NLS-1$
+			// the images at the old zoom are unlikely to be used again soon
+			tableImageCache.clear();
 			this.revalidate();
 			this.repaint();
 		}
@@ -1091,6 +1135,77 @@ public class PlayPen extends JPanel
 	    return antialiasSetting == RenderingHints.VALUE_ANTIALIAS_ON;
 	}
 
+	/**
+	 * Returns how much detail components should draw at the current zoom.
+	 */
+	public LevelOfDetail getLevelOfDetail() {
+	    if (!levelOfDetailEnabled || zoom >= titledBoxZoom) {
+	        return LevelOfDetail.FULL;
+	    } else if (zoom >= plainBoxZoom) {
+	        return LevelOfDetail.TITLED_BOX;
+	    } else {
+	        return LevelOfDetail.PLAIN_BOX;
+	    }
+	}
+
+	/**
+	 * Sets the zoom levels at which components start to be drawn with less
+	 * detail.
+	 * 
+	 * @param titledBoxZoom
+	 *            Below this zoom tables are drawn with only their title and
+	 *            relationships as straight lines.
+	 * @param plainBoxZoom
+	 *            Below this zoom tables are drawn as plain rectangles. Must
+	 *            not be more than titledBoxZoom.
+	 */
+	public void setLevelOfDetailZooms(double titledBoxZoom, double plainBoxZoom) {
+	    if (plainBoxZoom < 0 || plainBoxZoom > titledBoxZoom) {
+	        throw new IllegalArgumentException("The plain box zoom " + plainBoxZoom +  //$NON-NLS-1$
+	                " must be between 0 and the titled box zoom " + titledBoxZoom); //$NON-NLS-1$
+	    }
+	    this.titledBoxZoom = titledBoxZoom;
+	    this.plainBoxZoom = plainBoxZoom;
+	    this.repaint();
+	}
+
+	public double getTitledBoxZoom() {
+	    return titledBoxZoom;
+	}
+
+	public double getPlainBoxZoom() {
+	    return plainBoxZoom;
+	}
+
+	/**
+	 * Turns reduced detail at low zoom levels on or off. See
+	 * {@link #getLevelOfDetail()}.
+	 */
+	public void setLevelOfDetailEnabled(boolean levelOfDetailEnabled) {
+	    this.levelOfDetailEnabled = levelOfDetailEnabled;
+	    this.repaint();
+	}
+
+	public boolean isLevelOfDetailEnabled() {
+	    return levelOfDetailEnabled;
+	}
+
+	/**
+	 * Sets how much memory, in kilobytes, can be used to keep images of the
+	 * table panes for faster repainting. A size of 0 turns the images off.
+	 */
+	public void setTableImageCacheSize(int kilobytes) {
+	    tableImageCache.setSize(kilobytes);
+	}
+
+	public int getTableImageCacheSize() {
+	    return tableImageCache.getSize();
+	}
+
+	TablePaneImageCache getTableImageCache() {
+	    return tableImageCache;
+	}
+
 	public PlayPenContentPane getContentPane() {
 		return contentPane;
 	}
@@ -3494,6 +3609,8 @@ public class PlayPen extends JPanel
     }
     
     public void updateTablePanes() {
+        // the display settings that changed apply to every table
+        tableImageCache.clear();
         for (TablePane tp : contentPane.getChildren(TablePane.class)) {
             tp.updateHiddenColumns();
             tp.updateNameDisplay();
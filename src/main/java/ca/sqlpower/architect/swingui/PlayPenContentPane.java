@@ -19,13 +19,16 @@
 package ca.sqlpower.architect.swingui;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +55,14 @@ import ca.sqlpower.sqlobject.SQLDatabase;
 public class PlayPenContentPane extends AbstractSPObject {
     private static final Logger logger = Logger.getLogger(PlayPenContentPane.class);
 
+    /**
+     * Points within this many pixels of a component's bounds are checked
+     * against the component when hit testing. This covers the selection
+     * fuzziness of relationships and usages, which can be clicked slightly
+     * outside of their bounds.
+     */
+    private static final int HIT_TOLERANCE = 8;
+
     /**
      * Defines an absolute ordering of the child types of this class.
      * 
@@ -114,9 +125,12 @@ public class PlayPenContentPane extends AbstractSPObject {
 
         @Override
         public void propertyChanged(PropertyChangeEvent evt) {
-            if ((evt.getPropertyName().equals("topLeftCorner") || 
-                    evt.getPropertyName().equals("lengths")) && playPen != null) {
-                playPen.revalidate();
+            if (evt.getPropertyName().equals("topLeftCorner") || 
+                    evt.getPropertyName().equals("lengths")) {
+                spatialIndex.update((PlayPenComponent) evt.getSource());
+                if (playPen != null) {
+                    playPen.revalidate();
+                }
             }
         }
 
@@ -139,6 +153,20 @@ public class PlayPenContentPane extends AbstractSPObject {
      */
     private final Map<Object, ModelBadge> badges = new HashMap<Object, ModelBadge>();
 
+    /**
+     * Every component and badge in this content pane by its bounds, kept up
+     * to date by {@link #componentBoundChanges}. Painting and hit testing use
+     * it so they only look at the components near where they are working.
+     */
+    private final PlayPenSpatialIndex spatialIndex = new PlayPenSpatialIndex();
+
+    /**
+     * The position of each component and badge in the painting order, lowest
+     * first: components, then badges, then relationships, then usages. Null
+     * when a child has been added or removed since it was last calculated.
+     */
+    private Map<PlayPenComponent, Integer> zOrder;
+
     /**
      * @param modelContainer
      *            Must be either a SQLDatabase or OLAPSession and must not be
@@ -231,7 +259,10 @@ public class PlayPenContentPane extends AbstractSPObject {
      */
     @NonBound
     public PlayPenComponent getComponentAt(Point p) {
-        for (PlayPenComponent ppc : getAllChildren()) {
+        List<PlayPenComponent> candidates = spatialIndex.query(new Rectangle(
+                p.x - HIT_TOLERANCE, p.y - HIT_TOLERANCE, HIT_TOLERANCE * 2 + 1, HIT_TOLERANCE * 2 + 1));
+        Collections.sort(candidates, zOrderComparator(false));
+        for (PlayPenComponent ppc : candidates) {
             if (ppc.contains(p)) {
                 return ppc;
             }
@@ -239,6 +270,67 @@ public class PlayPenContentPane extends AbstractSPObject {
         return null;
     }
 
+    /**
+     * Returns the components and badges whose bounds touch the given region,
+     * in the order they should be painted. The component at the bottom comes
+     * first and relationships and usages are painted under everything else.
+     * This is the reverse of the order {@link #getComponentAt(Point)} checks
+     * components in, so the component that is clicked on is the one on top.
+     * 
+     * @param region
+     *            The region to find components in. If null every component
+     *            and badge is returned.
+     */
+    @NonBound
+    public List<PlayPenComponent> getComponentsToPaint(Rectangle region) {
+        List<PlayPenComponent> found;
+        if (region == null) {
+            found = new ArrayList<PlayPenComponent>(getAllChildren());
+        } else {
+            found = spatialIndex.query(region);
+        }
+        Collections.sort(found, zOrderComparator(true));
+        return found;
+    }
+
+    /**
+     * Returns a comparator that orders components by their position in
+     * {@link #zOrder}, recalculating it first if needed.
+     * 
+     * @param bottomFirst
+     *            True to put the components that are painted first at the
+     *            start, false to put the components on top at the start.
+     */
+    private Comparator<PlayPenComponent> zOrderComparator(final boolean bottomFirst) {
+        if (zOrder == null) {
+            zOrder = new IdentityHashMap<PlayPenComponent, Integer>();
+            List<PlayPenComponent> usages = new ArrayList<PlayPenComponent>();
+            for (PlayPenComponent c : components) {
+                zOrder.put(c, zOrder.size());
+            }
+            for (PlayPenComponent c : badges.values()) {
+                zOrder.put(c, zOrder.size());
+            }
+            for (PlayPenComponent c : dependentComponents) {
+                if (c instanceof UsageComponent) {
+                    usages.add(c);
+                } else {
+                    zOrder.put(c, zOrder.size());
+                }
+            }
+            for (PlayPenComponent c : usages) {
+                zOrder.put(c, zOrder.size());
+            }
+        }
+        final Map<PlayPenComponent, Integer> order = zOrder;
+        return new Comparator<PlayPenComponent>() {
+            public int compare(PlayPenComponent o1, PlayPenComponent o2) {
+                int diff = order.get(o1) - order.get(o2);
+                return bottomFirst ? -diff : diff;
+            }
+        };
+    }
+
     @NonBound
     public int getFirstDependentComponentIndex() {
         return components.size();
@@ -287,6 +379,8 @@ public class PlayPenContentPane extends AbstractSPObject {
             ppc.addSelectionListener(getPlayPen());
         }
         ppc.addSPListener(componentBoundChanges);
+        spatialIndex.add(ppc);
+        zOrder = null;
         ppc.connect();
         fireChildAdded(ppc.getClass(), ppc, pos);
         ppc.revalidate();
@@ -306,10 +400,13 @@ public class PlayPenContentPane extends AbstractSPObject {
         }
         if (!removed)
             return false;
+        spatialIndex.remove((PlayPenComponent) child);
+        zOrder = null;
         fireChildRemoved(child.getClass(), child, index);
         child.setParent(null);
         if (getPlayPen() != null) {
             ((PlayPenComponent) child).removeSelectionListener(getPlayPen());
+            getPlayPen().getTableImageCache().invalidate((PlayPenComponent) child);
         }
         child.removeSPListener(componentBoundChanges);
         if (playPen != null) {
@@ -457,6 +554,9 @@ public class PlayPenContentPane extends AbstractSPObject {
      */
     public void removeModelBadge(ModelBadge badge) {
         badges.remove(badge.getSubject());
+        badge.removeSPListener(componentBoundChanges);
+        spatialIndex.remove(badge);
+        zOrder = null;
         badge.cleanup();
     }
 
@@ -467,7 +567,14 @@ public class PlayPenContentPane extends AbstractSPObject {
      */
     public void addModelBadge(ModelBadge badge) {
         badge.setParent(PlayPenContentPane.this);
-        badges.put(badge.getSubject(), badge);
+        ModelBadge oldBadge = badges.put(badge.getSubject(), badge);
+        if (oldBadge != null) {
+            oldBadge.removeSPListener(componentBoundChanges);
+            spatialIndex.remove(oldBadge);
+        }
+        badge.addSPListener(componentBoundChanges);
+        spatialIndex.add(badge);
+        zOrder = null;
     }
 
     /**
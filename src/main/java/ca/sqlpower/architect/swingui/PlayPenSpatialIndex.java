@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A quadtree of the bounds of the components in a play pen, so painting and
+ * hit testing only have to look at the components near the area they are
+ * interested in instead of every component in the play pen.
+ * <p>
+ * Each component is stored in the smallest node that completely contains its
+ * bounds. Large components such as long relationships stay near the root,
+ * small ones like table panes sink towards the leaves. The tree grows to
+ * cover components placed outside of it.
+ * <p>
+ * The index does not watch the components itself. Whoever owns it must call
+ * {@link #update(PlayPenComponent)} whenever a component's bounds change.
+ */
+class PlayPenSpatialIndex {
+
+    private static final Logger logger = Logger.getLogger(PlayPenSpatialIndex.class);
+
+    /**
+     * A node is split into quadrants when more than this many components are
+     * stored in it.
+     */
+    private static final int MAX_NODE_SIZE = 8;
+
+    /**
+     * Nodes are not split below this width or height.
+     */
+    private static final int MIN_NODE_LENGTH = 32;
+
+    /**
+     * The size of the area covered when the index is created.
+     */
+    private static final int INITIAL_LENGTH = 4096;
+
+    private static class Node {
+        final Rectangle area;
+        final List<PlayPenComponent> components = new ArrayList<PlayPenComponent>();
+        Node[] quadrants;
+
+        Node(Rectangle area) {
+            this.area = area;
+        }
+    }
+
+    private Node root = new Node(new Rectangle(0, 0, INITIAL_LENGTH, INITIAL_LENGTH));
+
+    /**
+     * The bounds each component was indexed with, which may be out of date
+     * until the component is updated.
+     */
+    private final Map<PlayPenComponent, Rectangle> indexedBounds = new IdentityHashMap<PlayPenComponent, Rectangle>();
+
+    /**
+     * The node each component is stored in.
+     */
+    private final Map<PlayPenComponent, Node> indexedNodes = new IdentityHashMap<PlayPenComponent, Node>();
+
+    /**
+     * Adds the component to the index at its current bounds. If it is
+     * already in the index it is moved to its current bounds.
+     */
+    public void add(PlayPenComponent c) {
+        if (indexedNodes.containsKey(c)) {
+            remove(c);
+        }
+        Rectangle bounds = boundsOf(c);
+        if (!root.area.contains(bounds)) {
+            grow(bounds);
+        }
+        indexedBounds.put(c, bounds);
+        insert(root, c, bounds);
+    }
+
+    /**
+     * Moves the component to its current bounds. Components that are not in
+     * the index are ignored.
+     */
+    public void update(PlayPenComponent c) {
+        Rectangle old = indexedBounds.get(c);
+        if (old == null) return;
+        Rectangle bounds = boundsOf(c);
+        if (bounds.equals(old)) return;
+        Node node = indexedNodes.get(c);
+        if (node.area.contains(bounds) && (node.quadrants == null || quadrantFor(node, bounds) == null)) {
+            // still belongs in the same node
+            indexedBounds.put(c, bounds);
+            return;
+        }
+        add(c);
+    }
+
+    /**
+     * Removes the component from the index.
+     */
+    public void remove(PlayPenComponent c) {
+        Node node = indexedNodes.remove(c);
+        indexedBounds.remove(c);
+        if (node != null) {
+            node.components.remove(c);
+        }
+    }
+
+    public void clear() {
+        root = new Node(new Rectangle(0, 0, INITIAL_LENGTH, INITIAL_LENGTH));
+        indexedBounds.clear();
+        indexedNodes.clear();
+    }
+
+    public int size() {
+        return indexedNodes.size();
+    }
+
+    /**
+     * Returns the components whose indexed bounds intersect the region, in
+     * no particular order.
+     */
+    public List<PlayPenComponent> query(Rectangle region) {
+        List<PlayPenComponent> found = new ArrayList<PlayPenComponent>();
+        query(root, region, found);
+        return found;
+    }
+
+    private void query(Node node, Rectangle region, List<PlayPenComponent> found) {
+        for (PlayPenComponent c : node.components) {
+            if (indexedBounds.get(c).intersects(region)) {
+                found.add(c);
+            }
+        }
+        if (node.quadrants != null) {
+            for (Node quadrant : node.quadrants) {
+                if (quadrant.area.intersects(region)) {
+                    query(quadrant, region, found);
+                }
+            }
+        }
+    }
+
+    private void insert(Node node, PlayPenComponent c, Rectangle bounds) {
+        while (true) {
+            if (node.quadrants != null) {
+                Node quadrant = quadrantFor(node, bounds);
+                if (quadrant != null) {
+                    node = quadrant;
+                    continue;
+                }
+            }
+            node.components.add(c);
+            indexedNodes.put(c, node);
+            if (node.quadrants == null && node.components.size() > MAX_NODE_SIZE
+                    && node.area.width / 2 >= MIN_NODE_LENGTH && node.area.height / 2 >= MIN_NODE_LENGTH) {
+                split(node);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Divides the node into quadrants and moves the components that fit
+     * completely in one of them down.
+     */
+    private void split(Node node) {
+        Rectangle a = node.area;
+        int halfWidth = a.width / 2;
+        int halfHeight = a.height / 2;
+        node.quadrants = new Node[] {
+                new Node(new Rectangle(a.x, a.y, halfWidth, halfHeight)),
+                new Node(new Rectangle(a.x + halfWidth, a.y, a.width - halfWidth, halfHeight)),
+                new Node(new Rectangle(a.x, a.y + halfHeight, halfWidth, a.height - halfHeight)),
+                new Node(new Rectangle(a.x + halfWidth, a.y + halfHeight, a.width - halfWidth, a.height - halfHeight))
+        };
+        List<PlayPenComponent> components = new ArrayList<PlayPenComponent>(node.components);
+        node.components.clear();
+        for (PlayPenComponent c : components) {
+            insert(node, c, indexedBounds.get(c));
+        }
+    }
+
+    private static Node quadrantFor(Node node, Rectangle bounds) {
+        for (Node quadrant : node.quadrants) {
+            if (quadrant.area.contains(bounds)) {
+                return quadrant;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the tree with one that also covers the given bounds, doubling
+     * its size until it does so the tree does not have to be rebuilt each
+     * time a component is dragged a little further out.
+     */
+    private void grow(Rectangle bounds) {
+        Rectangle area = new Rectangle(root.area);
+        while (!area.contains(bounds)) {
+            if (bounds.x < area.x) area.x -= area.width;
+            if (bounds.y < area.y) area.y -= area.height;
+            area.width *= 2;
+            area.height *= 2;
+        }
+        if (logger.isDebugEnabled()) logger.debug("Growing index from " + root.area + " to " + area); //$NON-NLS-1$ //$NON-NLS-2$
+        Map<PlayPenComponent, Rectangle> components = new IdentityHashMap<PlayPenComponent, Rectangle>(indexedBounds);
+        root = new Node(area);
+        indexedNodes.clear();
+        for (Map.Entry<PlayPenComponent, Rectangle> e : components.entrySet()) {
+            insert(root, e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Returns the component's bounds made one pixel wider and taller, as
+     * horizontal and vertical lines have no width or height.
+     */
+    private static Rectangle boundsOf(PlayPenComponent c) {
+        Rectangle r = c.getBounds();
+        r.width++;
+        r.height++;
+        return r;
+    }
+}
@@ -111,6 +111,8 @@ public class PrintPanel extends JPanel implements DataEntryPanel, Pageable, Prin
 		
         // don't need this playpen to be interactive or respond to SQLObject changes
         pp.destroy();
+        // printouts are scaled down to fit pages but should still show every column
+        pp.setLevelOfDetailEnabled(false);
 
         previewPanel = new PrintPreviewPanel();
 		add(previewPanel);
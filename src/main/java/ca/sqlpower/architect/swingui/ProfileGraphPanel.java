@@ -122,7 +122,7 @@ public class ProfileGraphPanel {
      */
     private JLabel invalidResultsLabel;
 
-    private int rowCount;
+    private long rowCount;
 
     private ChartPanel chartPanel;
 
@@ -138,7 +138,7 @@ public class ProfileGraphPanel {
 
     private ColumnProfileResult columnProfileResult;
 
-    public ProfileGraphPanel(ProfilePanel panel, int rowCount) {
+    public ProfileGraphPanel(ProfilePanel panel, long rowCount) {
         this.profilePanel = panel;
         this.rowCount = rowCount;
 
@@ -320,13 +320,24 @@ public class ProfileGraphPanel {
         notesField.setText(cr.getNotes());
     }
 
+    /**
+     * Formats a count, followed by its error bound if it was estimated from a
+     * sample.
+     */
+    private static String formatCount(long count, long errorBound, boolean sampled) {
+        if (sampled) {
+            return count + " \u00b1 " + errorBound; //$NON-NLS-1$
+        }
+        return Long.toString(count);
+    }
+
     /**
      * Subroutine of {@link #displayProfile(ColumnProfileResult)}.
      */
     private void displayValidProfile(final ColumnProfileResult cr) {
         TableProfileResult tr = (TableProfileResult) cr.getParent();
         rowCount = tr.getRowCount();
-        rowCountDisplay.setText(Integer.toString(rowCount));
+        rowCountDisplay.setText(Long.toString(rowCount));
 
         StringBuffer sb = new StringBuffer();
         SQLColumn c = cr.getProfiledObject();
@@ -338,11 +349,11 @@ public class ProfileGraphPanel {
         nullableLabel.setText(Boolean.toString(c.isDefinitelyNullable()));
 
         chartPanel.setChart(createTopNChart(cr, rowCount));
-        nullCountLabel.setText(Integer.toString(cr.getNullCount()));
-        int nullsInRecords = cr.getNullCount();
+        nullCountLabel.setText(formatCount(cr.getNullCount(), cr.getNullCountErrorBound(), tr.isSampled()));
+        long nullsInRecords = cr.getNullCount();
         double ratio = rowCount > 0 ? nullsInRecords * 100D / rowCount : 0;
         nullPercentLabel.setText(format(ratio));
-        uniqueCountLabel.setText(Integer.toString(cr.getDistinctValueCount()));
+        uniqueCountLabel.setText(formatCount(cr.getDistinctValueCount(), cr.getDistinctValueCountErrorBound(), tr.isSampled()));
         double uniqueRatio = rowCount > 0 ? cr.getDistinctValueCount() * 100D / rowCount : 0;
         uniquePercentLabel.setText(format(uniqueRatio));
         minLengthLabel.setText(Integer.toString(cr.getMinLength()));
@@ -374,7 +385,7 @@ public class ProfileGraphPanel {
         freqValueTable.initColumnSizes();
     }
 
-    public static JFreeChart createTopNChart(ColumnProfileResult cr, int rowCount) {
+    public static JFreeChart createTopNChart(ColumnProfileResult cr, long rowCount) {
         JFreeChart chart;
         List<ColumnValueCount> valueCounts = cr.getValueCount();
         SQLColumn col = cr.getProfiledObject();
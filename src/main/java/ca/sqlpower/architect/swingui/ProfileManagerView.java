@@ -49,12 +49,14 @@ import javax.swing.KeyStroke;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.Scrollable;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 
 import org.apache.log4j.Logger;
 
 import ca.sqlpower.architect.profile.ProfileManager;
 import ca.sqlpower.architect.profile.ProfileResult;
+import ca.sqlpower.architect.profile.ProfileScheduler;
 import ca.sqlpower.architect.profile.TableProfileResult;
 import ca.sqlpower.architect.profile.event.ProfileChangeEvent;
 import ca.sqlpower.architect.profile.event.ProfileChangeListener;
@@ -93,6 +95,16 @@ public class ProfileManagerView extends JPanel implements ProfileChangeListener,
 
     private final JLabel statusText;
 
+    /**
+     * Shows the profiling throughput of the profile manager's scheduler.
+     */
+    private final JLabel throughputText;
+
+    /**
+     * Refreshes {@link #throughputText} while this view is showing.
+     */
+    private final Timer throughputTimer;
+
     private final SearchTextField searchText;
     
     private final PageListener pageListener;
@@ -409,6 +421,12 @@ public class ProfileManagerView extends JPanel implements ProfileChangeListener,
         }           
     };
     
+    private Action stopAllAction = new AbstractAction(Messages.getString("ProfileManagerView.stopAllActionName")) { //$NON-NLS-1$
+        public void actionPerformed(ActionEvent e) {
+            pm.cancelScheduledProfiles();
+        }
+    };
+    
     private Action deleteAllAction = new AbstractAction(Messages.getString("ProfileManagerView.deleteAllActionName")) { //$NON-NLS-1$
         public void actionPerformed(ActionEvent e) {
             int confirm = JOptionPane.showConfirmDialog(scrollPane,
@@ -506,6 +524,17 @@ public class ProfileManagerView extends JPanel implements ProfileChangeListener,
         statusText = new JLabel();
         updateStatus();
         bottomPanel.add(statusText);
+        
+        throughputText = new JLabel();
+        bottomPanel.add(throughputText);
+        throughputTimer = new Timer(1000, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                updateThroughput();
+            }
+        });
+        updateThroughput();
+        
+        bottomPanel.add(new JButton(stopAllAction));
         bottomPanel.add(new JButton(deleteAllAction));
 
         JButton closeButton = new JButton(Messages.getString("ProfileManagerView.closeButton")); //$NON-NLS-1$
@@ -534,6 +563,31 @@ public class ProfileManagerView extends JPanel implements ProfileChangeListener,
                                             totalNumber));
     }
     
+    /**
+     * Shows the tables per minute and rows per second of the current (or last)
+     * batch of profiles, and enables the stop action while profiles are
+     * waiting or running.
+     */
+    private void updateThroughput() {
+        ProfileScheduler scheduler = pm.getScheduler();
+        stopAllAction.setEnabled(scheduler.getOutstandingCount() > 0);
+        throughputText.setText(String.format(Messages.getString("ProfileManagerView.throughputStatus"), //$NON-NLS-1$
+                scheduler.getTablesPerMinute(),
+                scheduler.getRowsPerSecond()));
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        throughputTimer.start();
+    }
+    
+    @Override
+    public void removeNotify() {
+        throughputTimer.stop();
+        super.removeNotify();
+    }
+    
     /**
      * Called when the resultListPanel selection change.
      */
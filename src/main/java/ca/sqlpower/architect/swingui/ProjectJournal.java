@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import ca.sqlpower.architect.ArchitectSession;
+import ca.sqlpower.architect.enterprise.ArchitectPersisterSuperConverter;
+import ca.sqlpower.architect.enterprise.ArchitectSessionPersister;
+import ca.sqlpower.architect.profile.TableProfileResult;
+import ca.sqlpower.dao.MessageSender;
+import ca.sqlpower.dao.SPPersistenceException;
+import ca.sqlpower.dao.SPPersisterListener;
+import ca.sqlpower.dao.json.SPJSONMessageDecoder;
+import ca.sqlpower.dao.json.SPJSONPersister;
+import ca.sqlpower.swingui.event.SessionLifecycleEvent;
+import ca.sqlpower.swingui.event.SessionLifecycleListener;
+import ca.sqlpower.util.SQLPowerUtils;
+
+/**
+ * Keeps a journal of the changes made to a project since it was last saved,
+ * so the changes can be recovered if the application stops without saving
+ * them. The journal is a file next to the project file, named by adding
+ * {@link #JOURNAL_SUFFIX} to the project file's name. It holds one line for
+ * each transaction, in the same JSON form that server projects are sent to
+ * the server in, and it is only ever appended to. The first transaction is a
+ * snapshot of the whole project, so the journal can be replayed into an
+ * empty session the same way a server project is loaded. The only thing
+ * still read from the project file is the column profile results that were
+ * left in it when the project was opened, which are named in the journal's
+ * first line.
+ * <p>
+ * A project that matches its file has nothing to recover, so the journal
+ * isn't written until the first change is committed. That change takes the
+ * first snapshot, which is the only time the journal reads the workspace
+ * itself. After that, changes are written to the journal on a background
+ * thread as each transaction is committed, so recording a change costs
+ * about as much as the change itself. The writer thread also applies each
+ * transaction to a {@link JournalImage}, its own copy of the workspace, and
+ * later snapshots are written from that copy. Once the journal has grown
+ * well past the size of its snapshot, a new snapshot is written and the
+ * journal is started over with it. Saving the project also starts a new
+ * journal, and closing the session deletes it.
+ * <p>
+ * Only the project's workspace is journaled. Settings that are not part of
+ * the workspace, such as the DDL generator and the compare settings, are
+ * not recovered.
+ */
+public class ProjectJournal implements MessageSender<JSONObject> {
+
+    private static final Logger logger = Logger.getLogger(ProjectJournal.class);
+
+    /**
+     * Added to the name of a project file to make the name of its journal.
+     */
+    public static final String JOURNAL_SUFFIX = ".journal"; //$NON-NLS-1$
+
+    private static final int JOURNAL_VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    /**
+     * The journal is compacted once it is this many times the length of the
+     * snapshot it starts with...
+     */
+    private static final int COMPACT_RATIO = 2;
+
+    /**
+     * ...and at least this long.
+     */
+    private static final long MIN_COMPACT_LENGTH = 1024 * 1024;
+
+    /**
+     * The journal is forced to the disk at most this often, in milliseconds.
+     */
+    private static final long FORCE_INTERVAL = 1000;
+
+    private final ArchitectSwingSession session;
+
+    /**
+     * Writes the journal. All of the fields below that are only used on this
+     * thread are marked as such.
+     */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Project journal writer"); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /**
+     * Turns the changes to the workspace into persist calls, which
+     * {@link #jsonPersister} turns into JSON and sends to this journal.
+     */
+    private final SPPersisterListener listener;
+
+    private final SPJSONPersister jsonPersister;
+
+    /**
+     * The persist calls of the transaction being recorded.
+     */
+    private JSONArray transaction = new JSONArray();
+
+    /**
+     * Set when the journal can't be written, after which nothing more is
+     * recorded.
+     */
+    private volatile boolean failed;
+
+    /**
+     * True once the listener has been added to the workspace.
+     */
+    private boolean listening;
+
+    /**
+     * True once the first snapshot has been taken from the workspace. Until
+     * then, the journal is only written when the first change is committed.
+     */
+    private boolean snapshotTaken;
+
+    /**
+     * The project file and header the first snapshot will be written with,
+     * from the last call to {@link #start(File, boolean)} before it.
+     */
+    private File pendingProjectFile;
+
+    private JSONObject pendingHeader;
+
+    /**
+     * True once the journal has been closed, after which it can't be
+     * started again.
+     */
+    private boolean closed;
+
+    /**
+     * The project file the journal is for. Only used on the writer thread.
+     */
+    private File projectFile;
+
+    /**
+     * The journal's copy of the workspace. Only used on the writer thread.
+     */
+    private final JournalImage image = new JournalImage();
+
+    /**
+     * The first line of the journal being appended to. Only used on the
+     * writer thread.
+     */
+    private JSONObject header;
+
+    /**
+     * The UUIDs of the table profile results whose column results were left
+     * in the project file when the first snapshot was taken, so the snapshot
+     * doesn't have them. Only used on the writer thread.
+     */
+    private JSONArray deferredProfiles = new JSONArray();
+
+    /**
+     * The journal file being appended to, or null if no snapshot has been
+     * written yet. Only used on the writer thread.
+     */
+    private FileOutputStream out;
+
+    /**
+     * The length of the journal. Only used on the writer thread.
+     */
+    private long length;
+
+    /**
+     * The length of the journal right after its snapshot was written. Only
+     * used on the writer thread.
+     */
+    private long snapshotLength;
+
+    /**
+     * When the journal was last forced to the disk. Only used on the writer
+     * thread.
+     */
+    private long lastForce;
+
+    public ProjectJournal(ArchitectSwingSession session) {
+        this.session = session;
+        jsonPersister = new SPJSONPersister(this);
+        listener = new SPPersisterListener(jsonPersister,
+                new ArchitectPersisterSuperConverter(session.getDataSources(), session.getWorkspace()));
+    }
+
+    /**
+     * Returns the journal file of the given project file.
+     */
+    public static File journalFileFor(File projectFile) {
+        return new File(projectFile.getParentFile(), projectFile.getName() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Starts a new journal for the project, which has just been loaded from
+     * or saved to the given file. This can be called again each time the
+     * project is saved, even if it is saved to a different file. This must
+     * be called on the thread that makes changes to the workspace.
+     * <p>
+     * Until the first snapshot is taken, this only removes old journals,
+     * unless the project already has changes its file doesn't, in which case
+     * the snapshot is taken now. After that, a new journal is queued to be
+     * written from the journal's own copy of the workspace.
+     *
+     * @param projectFile
+     *            The file the project was opened from or saved to.
+     * @param changed
+     *            True if the project doesn't match the file, such as when it
+     *            was recovered from a journal.
+     */
+    public synchronized void start(final File projectFile, boolean changed) {
+        if (failed || closed) return;
+        final JSONObject newHeader = makeHeader(projectFile);
+        if (!listening) {
+            SQLPowerUtils.listenToHierarchy(session.getWorkspace(), listener);
+            session.addSessionLifecycleListener(new SessionLifecycleListener<ArchitectSession>() {
+                public void sessionClosing(SessionLifecycleEvent<ArchitectSession> e) {
+                    close();
+                }
+
+                public void sessionOpening(SessionLifecycleEvent<ArchitectSession> e) {
+                }
+            });
+            listening = true;
+        }
+        if (snapshotTaken) {
+            writer.execute(new Runnable() {
+                public void run() {
+                    try {
+                        writeSnapshot(projectFile, newHeader, false, image.toSnapshot().toString());
+                    } catch (JSONException e) {
+                        fail(e);
+                    }
+                }
+            });
+        } else if (changed) {
+            takeSnapshot(projectFile, newHeader);
+        } else {
+            pendingProjectFile = projectFile;
+            pendingHeader = newHeader;
+            writer.execute(new Runnable() {
+                public void run() {
+                    // a journal left from before was either recovered or
+                    // turned down, and the project matches its file now
+                    if (ProjectJournal.this.projectFile != null) {
+                        journalFileFor(ProjectJournal.this.projectFile).delete();
+                    }
+                    journalFileFor(projectFile).delete();
+                    ProjectJournal.this.projectFile = projectFile;
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops recording changes and deletes the journal. The project is either
+     * saved or its changes are being thrown away.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (listening) {
+            SQLPowerUtils.unlistenToHierarchy(session.getWorkspace(), listener);
+            listening = false;
+        }
+        writer.execute(new Runnable() {
+            public void run() {
+                closeJournal();
+                if (projectFile != null) {
+                    journalFileFor(projectFile).delete();
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    /**
+     * Waits until everything queued so far has been written, or the journal
+     * has finished closing. For tests.
+     */
+    void waitForWrites() throws Exception {
+        if (writer.isShutdown()) {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } else {
+            writer.submit(new Runnable() {
+                public void run() {
+                    // nothing to do
+                }
+            }).get();
+        }
+    }
+
+    // ------ MessageSender ------
+
+    public synchronized void send(JSONObject content) {
+        transaction.put(content);
+    }
+
+    /**
+     * Queues the transaction that was just committed to be appended to the
+     * journal.
+     */
+    public synchronized void flush() {
+        if (transaction.length() == 0) return;
+        if (!snapshotTaken) {
+            // the snapshot is taken after the change, so it holds it
+            transaction = new JSONArray();
+            if (!failed && !closed) {
+                takeSnapshot(pendingProjectFile, pendingHeader);
+            }
+            return;
+        }
+        // the persister makes new messages for each call, so the finished
+        // transaction is left to the writer thread
+        final JSONArray finished = transaction;
+        final String line = transaction.toString();
+        transaction = new JSONArray();
+        if (failed) return;
+        writer.execute(new Runnable() {
+            public void run() {
+                append(line, finished);
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        transaction = new JSONArray();
+    }
+
+    // ------ snapshots ------
+
+    /**
+     * Records the whole workspace as one transaction and queues it to start
+     * a new journal and the journal's copy of the workspace. This is the only
+     * part of the journal that reads the workspace, so it runs on the thread
+     * that owns it, and only once. The project doesn't match its file any
+     * more by the time this is called.
+     * <p>
+     * Column profile results that are still in the project file are not
+     * loaded for the snapshot. The table results they belong to are listed
+     * in the journal's header instead.
+     */
+    private void takeSnapshot(final File projectFile, final JSONObject header) {
+        snapshotTaken = true;
+        final JSONArray deferred = new JSONArray();
+        for (TableProfileResult result : session.getProfileManager().getResults()) {
+            if (!result.isColumnResultsLoaded()) {
+                deferred.put(result.getUUID());
+            }
+        }
+        final JSONArray snapshot = new JSONArray();
+        SPJSONPersister snapshotPersister = new SPJSONPersister(new MessageSender<JSONObject>() {
+            public void send(JSONObject content) {
+                snapshot.put(content);
+            }
+
+            public void flush() {
+                // the whole snapshot is written once it has been taken
+            }
+
+            public void clear() {
+                // a snapshot is never rolled back
+            }
+        });
+        new SPPersisterListener(snapshotPersister,
+                new ArchitectPersisterSuperConverter(session.getDataSources(), session.getWorkspace()))
+            .persistObject(session.getWorkspace(), 0);
+
+        writer.execute(new Runnable() {
+            public void run() {
+                try {
+                    image.apply(snapshot);
+                } catch (JSONException e) {
+                    fail(e);
+                    return;
+                }
+                deferredProfiles = deferred;
+                writeSnapshot(projectFile, header, true, snapshot.toString());
+            }
+        });
+    }
+
+    /**
+     * Returns the first line of a journal for the given project file, which
+     * ties the journal to the version of the file it was started from.
+     * {@link #writeSnapshot(File, JSONObject, boolean, String)} adds the rest.
+     */
+    private static JSONObject makeHeader(File projectFile) {
+        try {
+            JSONObject h = new JSONObject();
+            h.put("journalVersion", JOURNAL_VERSION); //$NON-NLS-1$
+            h.put("projectModified", projectFile.lastModified()); //$NON-NLS-1$
+            h.put("projectLength", projectFile.length()); //$NON-NLS-1$
+            return h;
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes a new journal that starts with the given snapshot, and replaces
+     * the old journal with it. Runs on the writer thread.
+     *
+     * @param changed
+     *            True if the snapshot holds changes the project file doesn't
+     *            have, so the journal is worth recovering even if nothing is
+     *            appended to it.
+     */
+    private void writeSnapshot(File newProjectFile, JSONObject newHeader, boolean changed, String snapshot) {
+        if (failed) return;
+        File journalFile = journalFileFor(newProjectFile);
+        File tempFile = new File(journalFile.getParentFile(), "tmp___" + journalFile.getName()); //$NON-NLS-1$
+        try {
+            newHeader.put("unsavedChanges", changed); //$NON-NLS-1$
+            newHeader.put("deferredProfiles", deferredProfiles); //$NON-NLS-1$
+            FileOutputStream tempOut = new FileOutputStream(tempFile);
+            try {
+                tempOut.write((newHeader + "\n" + snapshot + "\n").getBytes(UTF8)); //$NON-NLS-1$ //$NON-NLS-2$
+                tempOut.getChannel().force(false);
+            } finally {
+                tempOut.close();
+            }
+            closeJournal();
+            if (projectFile != null && !projectFile.equals(newProjectFile)) {
+                journalFileFor(projectFile).delete();
+            }
+            journalFile.delete();
+            if (!tempFile.renameTo(journalFile)) {
+                throw new IOException("Couldn't rename " + tempFile + " to " + journalFile); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            projectFile = newProjectFile;
+            header = newHeader;
+            out = new FileOutputStream(journalFile, true);
+            length = journalFile.length();
+            snapshotLength = length;
+            lastForce = System.currentTimeMillis();
+            logger.debug("Started journal " + journalFile + " with a " + length + " byte snapshot"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        } catch (IOException e) {
+            fail(e);
+        } catch (JSONException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Appends one transaction to the journal and applies it to the journal's
+     * copy of the workspace, and starts the journal over from that copy if
+     * the journal has grown enough since the last snapshot. Runs on the
+     * writer thread.
+     */
+    private void append(String line, JSONArray transaction) {
+        if (failed || out == null) return;
+        try {
+            byte[] bytes = (line + "\n").getBytes(UTF8); //$NON-NLS-1$
+            out.write(bytes);
+            length += bytes.length;
+            long now = System.currentTimeMillis();
+            if (now - lastForce >= FORCE_INTERVAL) {
+                out.getChannel().force(false);
+                lastForce = now;
+            }
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        try {
+            image.apply(transaction);
+            if (length > Math.max(MIN_COMPACT_LENGTH, snapshotLength * COMPACT_RATIO)) {
+                writeSnapshot(projectFile, header, true, image.toSnapshot().toString());
+            }
+        } catch (JSONException e) {
+            fail(e);
+        }
+    }
+
+    private void closeJournal() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("Couldn't close the project journal", e); //$NON-NLS-1$
+        }
+        out = null;
+    }
+
+    /**
+     * Stops the journal after it couldn't be written. The project can still
+     * be edited and saved, but its changes can't be recovered.
+     */
+    private void fail(Exception e) {
+        logger.error("Couldn't write the project journal, changes will not be recoverable until the project is saved", e); //$NON-NLS-1$
+        failed = true;
+        closeJournal();
+    }
+
+    // ------ recovery ------
+
+    /**
+     * Returns true if the given project file has a journal with changes in
+     * it that were not saved to the file. Journals made from another
+     * version of the file are ignored.
+     */
+    public static boolean hasUnsavedChanges(File projectFile) {
+        File journalFile = journalFileFor(projectFile);
+        if (!journalFile.isFile()) return false;
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(journalFile));
+            try {
+                JSONObject header = new JSONObject(readHeader(in));
+                if (header.getInt("journalVersion") != JOURNAL_VERSION //$NON-NLS-1$
+                        || header.getLong("projectModified") != projectFile.lastModified() //$NON-NLS-1$
+                        || header.getLong("projectLength") != projectFile.length()) { //$NON-NLS-1$
+                    return false;
+                }
+                if (header.optBoolean("unsavedChanges")) return true; //$NON-NLS-1$
+                // there are changes if a whole line follows the snapshot
+                int lines = 0;
+                int b;
+                while (lines < 2 && (b = in.read()) != -1) {
+                    if (b == '\n') lines++;
+                }
+                return lines == 2;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            logger.warn("Couldn't read the project journal " + journalFile, e); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /**
+     * Rebuilds a project from its journal in the given session, which must
+     * be empty. A transaction that was only partly written when the
+     * application stopped is left out. Column profile results the journal
+     * left in the project file are read from the file, and left out if they
+     * can't be.
+     */
+    public static void replay(File journalFile, ArchitectSwingSession session) throws IOException, SPPersistenceException {
+        ArchitectSessionPersister sessionPersister = new ArchitectSessionPersister(
+                "journal", session.getWorkspace(), //$NON-NLS-1$
+                new ArchitectPersisterSuperConverter(session.getDataSources(), session.getWorkspace()));
+        sessionPersister.setWorkspaceContainer(session);
+        SPJSONMessageDecoder decoder = new SPJSONMessageDecoder(sessionPersister);
+
+        Reader in = new InputStreamReader(new BufferedInputStream(new FileInputStream(journalFile)), UTF8);
+        try {
+            String header = readLine(in);
+            if (header == null) {
+                throw new IOException("The project journal " + journalFile + " is empty"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            int count = 0;
+            String line;
+            while ((line = readLine(in)) != null) {
+                decoder.decode(line);
+                count++;
+            }
+            logger.info("Replayed " + count + " transactions from " + journalFile); //$NON-NLS-1$ //$NON-NLS-2$
+            loadDeferredProfiles(journalFile, header, session);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the column profile results named in a journal's header from the
+     * project file the journal belongs to.
+     */
+    private static void loadDeferredProfiles(File journalFile, String header, ArchitectSwingSession session) {
+        String name = journalFile.getName();
+        File projectFile = new File(journalFile.getParentFile(),
+                name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+        try {
+            JSONArray deferred = new JSONObject(header).optJSONArray("deferredProfiles"); //$NON-NLS-1$
+            if (deferred == null || deferred.length() == 0) return;
+            Set<String> uuids = new HashSet<String>();
+            for (int i = 0; i < deferred.length(); i++) {
+                uuids.add(deferred.getString(i));
+            }
+            List<TableProfileResult> results = new ArrayList<TableProfileResult>();
+            for (TableProfileResult result : session.getProfileManager().getResults()) {
+                if (uuids.contains(result.getUUID()) && result.getProfiledObject() != null) {
+                    results.add(result);
+                }
+            }
+            if (results.isEmpty()) return;
+            InputStream in = new BufferedInputStream(new FileInputStream(projectFile));
+            try {
+                session.getProjectLoader().loadColumnProfileResults(in, results);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            logger.error("Couldn't read the column profile results of the recovered project from " + projectFile, e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the first line of a journal a byte at a time, so the stream is
+     * left right after it. The header is plain ASCII.
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads one line, or returns null at the end of the file or if the last
+     * line was not finished.
+     */
+    private static String readLine(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while ((ch = in.read()) != -1) {
+            if (ch == '\n') {
+                return sb.toString();
+            }
+            sb.append((char) ch);
+        }
+        return null;
+    }
+}
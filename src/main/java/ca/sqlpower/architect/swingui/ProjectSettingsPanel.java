@@ -57,6 +57,41 @@ public class ProjectSettingsPanel extends JPanel implements DataEntryPanel {
      * A profile manager setting: How many "top n" values to store.
      */
     private JTextField numberOfFreqValues;
+
+    /**
+     * A profile manager setting: How many tables are profiled at once.
+     */
+    private JTextField profileThreadCount;
+
+    /**
+     * A profile manager setting: How many tables from the same data source
+     * are profiled at once.
+     */
+    private JTextField profileMaxPerDataSource;
+
+    /**
+     * A profile manager setting: How many columns the remote database profile
+     * creator profiles in one query.
+     */
+    private JTextField profileColumnsPerQuery;
+
+    /**
+     * A profile manager setting: The percentage of each table's rows the
+     * sampled profile creator reads.
+     */
+    private JTextField profileSamplePercent;
+
+    /**
+     * A profile manager setting: Whether tables that have not changed since
+     * their last profile are skipped.
+     */
+    private JCheckBox profileIncrementally;
+
+    /**
+     * A profile manager setting: The column whose largest value tells if a
+     * table has changed when profiling incrementally.
+     */
+    private JTextField profileWatermarkColumn;
     
     /**
      * A profile manager setting: Which profile creator to use.
@@ -105,6 +140,24 @@ public class ProjectSettingsPanel extends JPanel implements DataEntryPanel {
         
         fb.append(Messages.getString("ProjectSettingsPanel.profileMode"), profileMode = new JComboBox(session.getProfileManager().getProfileCreators().toArray())); //$NON-NLS-1$
         fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileThreadCount"), profileThreadCount = new JTextField("",6)); //$NON-NLS-1$
+        fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileMaxPerDataSource"), profileMaxPerDataSource = new JTextField("",6)); //$NON-NLS-1$
+        fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileColumnsPerQuery"), profileColumnsPerQuery = new JTextField("",6)); //$NON-NLS-1$
+        fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileSamplePercent"), profileSamplePercent = new JTextField("",6)); //$NON-NLS-1$
+        fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileIncrementally"), profileIncrementally = new JCheckBox()); //$NON-NLS-1$
+        fb.nextLine();
+        
+        fb.append(Messages.getString("ProjectSettingsPanel.profileWatermarkColumn"), profileWatermarkColumn = new JTextField("",12)); //$NON-NLS-1$
+        fb.nextLine();
         fb.appendUnrelatedComponentsGapRow();
         fb.nextLine();
        
@@ -187,6 +240,13 @@ public class ProjectSettingsPanel extends JPanel implements DataEntryPanel {
         logger.debug("Reverting project options"); //$NON-NLS-1$
         numberOfFreqValues.setText(String.valueOf(session.getProfileManager().getDefaultProfileSettings().getTopNCount()));
         profileMode.setSelectedItem(session.getProfileManager().getCreator());
+        profileThreadCount.setText(String.valueOf(session.getProfileManager().getDefaultProfileSettings().getThreadCount()));
+        profileMaxPerDataSource.setText(String.valueOf(session.getProfileManager().getDefaultProfileSettings().getMaxConcurrentPerDataSource()));
+        profileColumnsPerQuery.setText(String.valueOf(session.getProfileManager().getDefaultProfileSettings().getColumnsPerQuery()));
+        profileSamplePercent.setText(String.valueOf(session.getProfileManager().getDefaultProfileSettings().getSamplePercent()));
+        profileIncrementally.setSelected(session.getProfileManager().getDefaultProfileSettings().isIncrementalProfiling());
+        String watermarkColumn = session.getProfileManager().getDefaultProfileSettings().getWatermarkColumnName();
+        profileWatermarkColumn.setText(watermarkColumn == null ? "" : watermarkColumn); //$NON-NLS-1$
 		saveEntireSource.setSelected(session.isSavingEntireSource());
         if (session.getRelationshipLinesDirect()) {
             directRelationships.setSelected(true);
@@ -247,6 +307,28 @@ public class ProjectSettingsPanel extends JPanel implements DataEntryPanel {
         
         session.getProfileManager().setCreator((TableProfileCreator) profileMode.getSelectedItem());
         
+        try {
+            if (profileThreadCount.getText().length() > 0) {
+                session.getProfileManager().getDefaultProfileSettings().setThreadCount(Integer.valueOf(profileThreadCount.getText()));
+            }
+            if (profileMaxPerDataSource.getText().length() > 0) {
+                session.getProfileManager().getDefaultProfileSettings().setMaxConcurrentPerDataSource(Integer.valueOf(profileMaxPerDataSource.getText()));
+            }
+            if (profileColumnsPerQuery.getText().length() > 0) {
+                session.getProfileManager().getDefaultProfileSettings().setColumnsPerQuery(Integer.valueOf(profileColumnsPerQuery.getText()));
+            }
+            if (profileSamplePercent.getText().length() > 0) {
+                session.getProfileManager().getDefaultProfileSettings().setSamplePercent(Double.valueOf(profileSamplePercent.getText()));
+            }
+        } catch (IllegalArgumentException e) {
+            ASUtils.showExceptionDialogNoReport(this,
+                    "Number Format Error", e); //$NON-NLS-1$
+        }
+        session.getProfileManager().getDefaultProfileSettings().setIncrementalProfiling(profileIncrementally.isSelected());
+        String watermarkColumn = profileWatermarkColumn.getText().trim();
+        session.getProfileManager().getDefaultProfileSettings().setWatermarkColumnName(
+                watermarkColumn.length() == 0 ? null : watermarkColumn);
+        
         if (directRelationships.isSelected()) {
             settings.setRelationshipLinesDirect(true);
         } else {
@@ -20,7 +20,9 @@ package ca.sqlpower.architect.swingui;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -38,6 +40,7 @@ import java.util.TreeMap;
 
 import javax.swing.JOptionPane;
 import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.digester.AbstractObjectCreationFactory;
@@ -49,6 +52,7 @@ import org.xml.sax.SAXException;
 
 import ca.sqlpower.architect.ArchitectSession;
 import ca.sqlpower.architect.ArchitectVersion;
+import ca.sqlpower.architect.BinaryProjectWriter;
 import ca.sqlpower.architect.ProjectLoader;
 import ca.sqlpower.architect.UnclosableInputStream;
 import ca.sqlpower.architect.ProjectSettings.ColumnVisibility;
@@ -98,6 +102,7 @@ import ca.sqlpower.util.UserPrompter;
 import ca.sqlpower.util.UserPrompter.UserPromptOptions;
 import ca.sqlpower.util.UserPrompter.UserPromptResponse;
 import ca.sqlpower.util.UserPrompterFactory.UserPromptType;
+import ca.sqlpower.xml.UnescapingSaxParser;
 import ca.sqlpower.xml.XMLHelper;
 
 /**
@@ -153,6 +158,12 @@ public class SwingUIProjectLoader extends ProjectLoader {
      */
     private ProgressMonitor pm;
 
+    /**
+     * Records the changes made since the project was last loaded or saved,
+     * or null if it hasn't been started. See {@link #startJournal()}.
+     */
+    private ProjectJournal journal;
+
     /**
      * Sets up a new project file load/save object for the given session.
      * 
@@ -184,6 +195,42 @@ public class SwingUIProjectLoader extends ProjectLoader {
     public void load(InputStream in, DataSourceCollection<? extends SPDataSource> dataSources) throws IOException, SQLObjectException {
         load(in, dataSources, null);
     }
+
+    /**
+     * Starts recording the changes made to the project in a
+     * {@link ProjectJournal} next to the project file, or starts the journal
+     * over if it is already running. This should be called each time the
+     * project has been opened from or saved to its file. Projects without a
+     * file and server projects are not journaled.
+     */
+    public void startJournal() {
+        if (file == null || getSession().isEnterpriseSession()) return;
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    startJournal();
+                }
+            });
+            return;
+        }
+        startJournalWhileLoading();
+    }
+
+    /**
+     * Starts the journal on the calling thread, which must be the only
+     * thread changing the project. A project that was just opened starts it
+     * this way on the thread that loaded it, before the project is shown, so
+     * no change is missed. The journal only reads the workspace once it has
+     * changed, which is right away if the project was recovered rather than
+     * read from its file.
+     */
+    public void startJournalWhileLoading() {
+        if (file == null || getSession().isEnterpriseSession()) return;
+        if (journal == null) {
+            journal = new ProjectJournal(getSession());
+        }
+        journal.start(file, isModified());
+    }
     
     // ------------- READING THE PROJECT FILE ---------------
 
@@ -246,7 +293,29 @@ public class SwingUIProjectLoader extends ProjectLoader {
 
     protected Digester setupDigester() throws ParserConfigurationException, SAXException {
         Digester d = super.setupDigester();
-        
+        addGUIRules(d);
+        return d;
+    }
+
+    /**
+     * The play pens and the other GUI settings are not read by the streaming
+     * reader in {@link ProjectLoader}, so they are always read by these
+     * digester rules.
+     */
+    @Override
+    protected Digester setupSupplementalDigester() throws ParserConfigurationException, SAXException {
+        Digester d = new Digester(new UnescapingSaxParser());
+        d.setValidating(false);
+        d.push(getSession());
+        addGUIRules(d);
+        return d;
+    }
+
+    /**
+     * Adds the rules for the parts of the project file that only the Swing
+     * session has.
+     */
+    private void addGUIRules(Digester d) {
         PrintSettingsFactory printSettingsFactory = new PrintSettingsFactory();
         d.addFactoryCreate("*/print-settings", printSettingsFactory);
         d.addSetProperties("*/print-settings");
@@ -312,8 +381,6 @@ public class SwingUIProjectLoader extends ProjectLoader {
         
         UsageComponentFactory usageCompFactory = new UsageComponentFactory();
         d.addFactoryCreate("*/play-pen/usage-comp", usageCompFactory); //$NON-NLS-1$
-
-        return d;
     }
     
     private class OLAPPlayPenFactory extends AbstractObjectCreationFactory {
@@ -814,7 +881,12 @@ public class SwingUIProjectLoader extends ProjectLoader {
         String encoding = "UTF-8"; //$NON-NLS-1$
         try {
             // If creating this temp file fails, feed the user back a more explanatory message
-            out = new PrintWriter(tempFile,encoding);
+            if (isBinaryFormat()) {
+                out = new PrintWriter(new BinaryProjectWriter(
+                        new BufferedOutputStream(new FileOutputStream(tempFile))));
+            } else {
+                out = new PrintWriter(tempFile,encoding);
+            }
         } catch (IOException e) {
             throw new SQLObjectException(Messages.getString("SwingUIProject.cannotCreateOutputFile") + e, e); //$NON-NLS-1$
         }
@@ -904,6 +976,13 @@ public class SwingUIProjectLoader extends ProjectLoader {
             ioo.indent--;
             ioo.println(out, "</architect-project>"); //$NON-NLS-1$
             
+            // PrintWriter swallows the exceptions of the writer under it,
+            // including the binary writer's when it finishes the file
+            out.close();
+            if (out.checkError()) {
+                throw new IOException(Messages.getString("SwingUIProject.errorWritingProject")); //$NON-NLS-1$
+            }
+            
             setModified(false);
             for (OLAPEditSession oSession : getSession().getOLAPEditSessions()) {
                 oSession.saveNotify();
@@ -1335,6 +1414,15 @@ public class SwingUIProjectLoader extends ProjectLoader {
             ioo.print(out, "<table-profile-result"); //$NON-NLS-1$
             printCommonItems(out, tableResult, profiledObjectId);
             ioo.niprint(out, " rowCount=\"" + tableResult.getRowCount() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            ioo.niprint(out, " queryCount=\"" + tableResult.getQueryCount() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            ioo.niprint(out, " queryTime=\"" + tableResult.getQueryTime() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            if (tableResult.getFingerprint() != null) {
+                ioo.niprint(out, " fingerprint=\"" + SQLPowerUtils.escapeXML(tableResult.getFingerprint()) + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (tableResult.isSampled()) {
+                ioo.niprint(out, " samplePercent=\"" + tableResult.getSamplePercent() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                ioo.niprint(out, " sampleRowCount=\"" + tableResult.getSampleRowCount() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            }
             ioo.niprint(out, " UUID=\"" + tableResult.getUUID() + "\"");
             ioo.niprintln(out, ">"); //$NON-NLS-1$
             ioo.indent++;
@@ -1357,6 +1445,10 @@ public class SwingUIProjectLoader extends ProjectLoader {
                 ioo.niprint(out, " maxLength=\"" + cpr.getMaxLength() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
                 ioo.niprint(out, " nullCount=\"" + cpr.getNullCount() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
                 ioo.niprint(out, " distinctValueCount=\"" + cpr.getDistinctValueCount() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                if (tableResult.isSampled()) {
+                    ioo.niprint(out, " nullCountErrorBound=\"" + cpr.getNullCountErrorBound() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                    ioo.niprint(out, " distinctValueCountErrorBound=\"" + cpr.getDistinctValueCountErrorBound() + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                }
                 ioo.niprint(out, " UUID=\"" + cpr.getUUID() + "\"");
                 ioo.niprintln(out, ">"); //$NON-NLS-1$
 
@@ -442,6 +442,7 @@ public class TablePane extends ContainerPane<SQLTable, SQLColumn> {
 	}
 
 	public void updateHiddenColumns() {
+	    invalidateImage();
 	    hiddenColumns.clear();
 	    ArchitectSwingSession session = getPlayPen().getSession();
 	    ColumnVisibility choice = session.getColumnVisibility();
@@ -635,6 +636,7 @@ public class TablePane extends ContainerPane<SQLTable, SQLColumn> {
             columnHighlight.put(column, new ArrayList<Color>());
         }
         columnHighlight.get(column).add(colour);
+        invalidateImage();
         repaint(); // XXX: should constrain repaint region to column i
     }
 
@@ -645,9 +647,21 @@ public class TablePane extends ContainerPane<SQLTable, SQLColumn> {
      */
     public void removeColumnHighlight(SQLColumn column, Color colour) {
         columnHighlight.get(column).remove(colour);
+        invalidateImage();
         repaint();
     }
 
+    /**
+     * Drops the images of this table pane kept by the play pen, for changes
+     * to its appearance that do not fire a property change.
+     */
+    void invalidateImage() {
+        PlayPen pp = getPlayPen();
+        if (pp != null) {
+            pp.getTableImageCache().invalidate(this);
+        }
+    }
+
     /**
      * Returns the current highlight colour for a particular column.
      *
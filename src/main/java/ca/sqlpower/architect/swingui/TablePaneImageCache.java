@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2008, SQL Power Group Inc.
+ *
+ * This file is part of Power*Architect.
+ *
+ * Power*Architect is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Power*Architect is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.sqlpower.architect.swingui;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsDevice;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import ca.sqlpower.architect.swingui.PlayPen.LevelOfDetail;
+
+/**
+ * Holds images of table panes as they were last painted, so scrolling and
+ * dragging can copy the image to the screen instead of drawing all of the
+ * table's text again. Each table pane can have one image per scale it is
+ * painted at, which lets the play pen and the navigator share the cache.
+ * <p>
+ * The images are kept in least recently used order and the oldest ones are
+ * dropped once they take up more memory than the size of the cache. Images
+ * are not watched for changes; the table pane's UI must call
+ * {@link #invalidate(PlayPenComponent)} whenever the table's appearance
+ * changes.
+ */
+class TablePaneImageCache {
+
+    private static final Logger logger = Logger.getLogger(TablePaneImageCache.class);
+
+    /**
+     * The size of a new cache, in kilobytes.
+     */
+    public static final int DEFAULT_SIZE = 32 * 1024;
+
+    /**
+     * Scales closer together than this share an image.
+     */
+    private static final double SCALE_RESOLUTION = 1000.0;
+
+    private static class Key {
+        final PlayPenComponent component;
+        final long scaleBucket;
+        final LevelOfDetail detail;
+        final Object antialiasing;
+
+        Key(PlayPenComponent component, long scaleBucket, LevelOfDetail detail, Object antialiasing) {
+            this.component = component;
+            this.scaleBucket = scaleBucket;
+            this.detail = detail;
+            this.antialiasing = antialiasing;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return component == other.component && scaleBucket == other.scaleBucket
+                && detail == other.detail
+                && (antialiasing == null ? other.antialiasing == null : antialiasing.equals(other.antialiasing));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(component);
+            result = 31 * result + (int) (scaleBucket ^ (scaleBucket >>> 32));
+            result = 31 * result + (detail == null ? 0 : detail.hashCode());
+            result = 31 * result + (antialiasing == null ? 0 : antialiasing.hashCode());
+            return result;
+        }
+    }
+
+    /**
+     * The cached images, least recently used first.
+     */
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+
+    /**
+     * The keys of the images of each component, so a component's images can
+     * be dropped without looking at every image in the cache.
+     */
+    private final Map<PlayPenComponent, List<Key>> keysByComponent = new IdentityHashMap<PlayPenComponent, List<Key>>();
+
+    /**
+     * The maximum number of bytes of images to keep. See {@link #setSize(int)}.
+     */
+    private long maxBytes;
+
+    private long usedBytes;
+
+    public TablePaneImageCache() {
+        setSize(DEFAULT_SIZE);
+    }
+
+    /**
+     * Returns true if components painted to the given graphics can be drawn
+     * from images. Only plain scaling and moving on screen qualifies; printing
+     * and exporting to image files always draw the components directly so
+     * they stay as sharp as the output allows.
+     */
+    public boolean canCache(Graphics2D g) {
+        if (maxBytes == 0) return false;
+        if (g.getDeviceConfiguration().getDevice().getType() != GraphicsDevice.TYPE_RASTER_SCREEN) return false;
+        AffineTransform transform = g.getTransform();
+        int type = transform.getType();
+        return (type & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) == 0
+            && transform.getScaleX() > 0;
+    }
+
+    /**
+     * Returns the scale an image for the given graphics would be drawn at.
+     * Close scales are rounded to the same value so they can share an image.
+     */
+    public static double imageScale(Graphics2D g) {
+        return scaleBucket(g.getTransform().getScaleX()) / SCALE_RESOLUTION;
+    }
+
+    private static long scaleBucket(double scale) {
+        return Math.round(scale * SCALE_RESOLUTION);
+    }
+
+    /**
+     * Returns the image of the component for the graphics' scale and
+     * rendering settings, or null if there is none.
+     */
+    public BufferedImage get(PlayPenComponent c, Graphics2D g, LevelOfDetail detail) {
+        return images.get(key(c, g, detail));
+    }
+
+    /**
+     * Stores an image of the component for the graphics' scale and rendering
+     * settings. Returns false if the image is too large for the cache, in
+     * which case it is not stored.
+     */
+    public boolean put(PlayPenComponent c, Graphics2D g, LevelOfDetail detail, BufferedImage image) {
+        long bytes = bytesOf(image);
+        if (bytes > maxBytes / 4) {
+            return false;
+        }
+        Key key = key(c, g, detail);
+        BufferedImage old = images.put(key, image);
+        if (old != null) {
+            usedBytes -= bytesOf(old);
+        } else {
+            List<Key> keys = keysByComponent.get(c);
+            if (keys == null) {
+                keys = new ArrayList<Key>(2);
+                keysByComponent.put(c, keys);
+            }
+            keys.add(key);
+        }
+        usedBytes += bytes;
+        trim();
+        return true;
+    }
+
+    /**
+     * Drops every image of the component. This must be called whenever the
+     * component would paint differently than it did before.
+     */
+    public void invalidate(PlayPenComponent c) {
+        List<Key> keys = keysByComponent.remove(c);
+        if (keys == null) return;
+        for (Key key : keys) {
+            BufferedImage image = images.remove(key);
+            if (image != null) {
+                usedBytes -= bytesOf(image);
+            }
+        }
+    }
+
+    /**
+     * Drops every image in the cache.
+     */
+    public void clear() {
+        images.clear();
+        keysByComponent.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Sets the amount of memory the images can take up, in kilobytes. A size
+     * of 0 turns caching off.
+     */
+    public void setSize(int kilobytes) {
+        if (kilobytes < 0) {
+            throw new IllegalArgumentException("The image cache size cannot be negative but was " + kilobytes); //$NON-NLS-1$
+        }
+        maxBytes = kilobytes * 1024L;
+        trim();
+    }
+
+    public int getSize() {
+        return (int) (maxBytes / 1024);
+    }
+
+    /**
+     * Returns the number of bytes taken up by the images in the cache.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of images in the cache.
+     */
+    public int getImageCount() {
+        return images.size();
+    }
+
+    /**
+     * Drops the least recently used images until the images fit in the cache.
+     */
+    private void trim() {
+        Iterator<Map.Entry<Key, BufferedImage>> it = images.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Key, BufferedImage> e = it.next();
+            it.remove();
+            usedBytes -= bytesOf(e.getValue());
+            List<Key> keys = keysByComponent.get(e.getKey().component);
+            keys.remove(e.getKey());
+            if (keys.isEmpty()) {
+                keysByComponent.remove(e.getKey().component);
+            }
+        }
+        if (logger.isDebugEnabled()) logger.debug(images.size() + " images using " + usedBytes + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static Key key(PlayPenComponent c, Graphics2D g, LevelOfDetail detail) {
+        return new Key(c, scaleBucket(g.getTransform().getScaleX()), detail,
+                g.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+    }
+
+    private static long bytesOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+}
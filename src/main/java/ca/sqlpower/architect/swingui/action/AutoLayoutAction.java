@@ -45,6 +45,12 @@ public class AutoLayoutAction extends AbstractArchitectAction {
 
 	private boolean animationEnabled = true;
 
+	/**
+	 * If true the layout is run to completion on a background thread before
+	 * any node moves. See {@link LayoutAnimator#startBackgroundLayout}.
+	 */
+	private boolean backgroundLayoutEnabled = false;
+
 	private ArchitectLayout layout;
 
 	private int framesPerSecond = 25;
@@ -108,11 +114,15 @@ public class AutoLayoutAction extends AbstractArchitectAction {
 
 
         Rectangle layoutArea = new Rectangle(layoutAreaOffset, layout.getNewArea(nodes));
-        layout.setup(nodes, edges, layoutArea);
         LayoutAnimator anim = new LayoutAnimator(getPlaypen(), layout);
         anim.setAnimationEnabled(animationEnabled);
         anim.setFramesPerSecond(framesPerSecond);
-        anim.startAnimation();
+        if (backgroundLayoutEnabled) {
+            anim.startBackgroundLayout(nodes, edges, layoutArea);
+        } else {
+            layout.setup(nodes, edges, layoutArea);
+            anim.startAnimation();
+        }
         
         Clip clip;
         try {
@@ -154,6 +164,14 @@ public class AutoLayoutAction extends AbstractArchitectAction {
 		this.animationEnabled = animationEnabled;
 	}
 
+	public boolean isBackgroundLayoutEnabled() {
+	    return backgroundLayoutEnabled;
+	}
+
+	public void setBackgroundLayoutEnabled(boolean backgroundLayoutEnabled) {
+	    this.backgroundLayoutEnabled = backgroundLayoutEnabled;
+	}
+
 	public ArchitectLayout getLayout() {
 		return layout;
 	}
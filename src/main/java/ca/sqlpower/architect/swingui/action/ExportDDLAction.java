@@ -41,6 +41,7 @@ import ca.sqlpower.architect.ddl.ConflictResolver;
 import ca.sqlpower.architect.ddl.DDLGenerator;
 import ca.sqlpower.architect.ddl.DDLStatement;
 import ca.sqlpower.architect.ddl.critic.CriticFix;
+import ca.sqlpower.architect.ddl.critic.CriticManager;
 import ca.sqlpower.architect.ddl.critic.Criticism;
 import ca.sqlpower.architect.ddl.critic.CriticismBucket;
 import ca.sqlpower.architect.ddl.critic.CriticFix.FixType;
@@ -101,8 +102,10 @@ public class ExportDDLAction extends AbstractArchitectAction {
              * generateAndDisplayDDL method.
              */
             private void checkErrorsAndGenerateDDL(final DDLGenerator ddlg) {
-                List<Criticism> criticisms = getSession().getWorkspace().getCriticManager().
-                    criticize(ddlg.getClass());
+                CriticManager criticManager = getSession().getWorkspace().getCriticManager();
+                // after the first export only the objects edited since are criticized again
+                criticManager.startIncrementalCriticism();
+                List<Criticism> criticisms = criticManager.criticize(ddlg.getClass());
                 if (criticisms.isEmpty()) {
                     try {
                         generateAndDisplayDDL(ddlPanel, ddlg);
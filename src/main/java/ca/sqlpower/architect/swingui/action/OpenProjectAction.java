@@ -31,6 +31,7 @@ import java.io.InterruptedIOException;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
 import javax.swing.ProgressMonitorInputStream;
 
@@ -40,11 +41,13 @@ import ca.sqlpower.architect.swingui.ASUtils;
 import ca.sqlpower.architect.swingui.ArchitectFrame;
 import ca.sqlpower.architect.swingui.ArchitectSwingSession;
 import ca.sqlpower.architect.swingui.ArchitectSwingSessionContext;
+import ca.sqlpower.architect.swingui.ProjectJournal;
 import ca.sqlpower.architect.swingui.dbtree.DBTreeModel;
 import ca.sqlpower.sqlobject.SQLObjectException;
 import ca.sqlpower.swingui.RecentMenu;
 import ca.sqlpower.swingui.SPSUtils;
 import ca.sqlpower.swingui.SPSwingWorker;
+import ca.sqlpower.util.MonitorableImpl;
 
 public class OpenProjectAction extends AbstractArchitectAction {
 
@@ -141,6 +144,12 @@ public class OpenProjectAction extends AbstractArchitectAction {
 
         private final File file;
 
+        /**
+         * The journal to recover the project from instead of reading the
+         * file, or null to read the file.
+         */
+        private final File journal;
+
         private final RecentMenu recent;
 
         private final ArchitectSwingSession openingSession;
@@ -188,12 +197,23 @@ public class OpenProjectAction extends AbstractArchitectAction {
             // "unowned" dialogs like this one.
             in = new BufferedInputStream(new ProgressMonitorInputStream(openingSession.getArchitectFrame(),
                     Messages.getString("OpenProjectAction.reading") + file.getName(), new FileInputStream(file))); //$NON-NLS-1$
+
+            if (ProjectJournal.hasUnsavedChanges(file) && JOptionPane.showConfirmDialog(
+                    openingSession.getArchitectFrame(),
+                    Messages.getString("OpenProjectAction.recoverUnsavedChanges", file.getName()), //$NON-NLS-1$
+                    Messages.getString("OpenProjectAction.recoverUnsavedChangesDialogTitle"), //$NON-NLS-1$
+                    JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                journal = ProjectJournal.journalFileFor(file);
+            } else {
+                journal = null;
+            }
         }
         
         public LoadFileWorker(InputStream in, ArchitectSwingSession newSession, ArchitectSwingSession openingSession) {
             super(newSession);
             this.context = newSession.getContext();
             file = null;
+            journal = null;
             this.recent = newSession.getRecentMenu();
             this.openingSession = openingSession;
 
@@ -204,8 +224,30 @@ public class OpenProjectAction extends AbstractArchitectAction {
 
         @Override
         public void doStuff() throws Exception {
-            session.getProjectLoader().load(in, session.getDataSources(), openingSession);
-            session.getProjectLoader().setFile(file);
+            if (file != null && openingSession != null && openingSession.getStatusInformation() != null) {
+                MonitorableImpl monitor = openingSession.getStatusInformation().createProgressMonitor();
+                monitor.setJobSize((int) Math.min(file.length(), Integer.MAX_VALUE));
+                monitor.setMessage(Messages.getString("OpenProjectAction.reading") + file.getName()); //$NON-NLS-1$
+                monitor.setProgress(0);
+                session.getProjectLoader().setLoadMonitor(monitor);
+            }
+            if (journal != null) {
+                session.getUndoManager().setLoading(true);
+                try {
+                    ProjectJournal.replay(journal, session);
+                } finally {
+                    session.getUndoManager().setLoading(false);
+                }
+                session.getProjectLoader().setFile(file);
+                session.getProjectLoader().setModified(true);
+            } else {
+                session.getProjectLoader().setLazyProfileFile(file);
+                session.getProjectLoader().load(in, session.getDataSources(), openingSession);
+                session.getProjectLoader().setFile(file);
+            }
+            // nothing else changes the project until it is shown, so the
+            // journal can start listening here without missing a change
+            session.getProjectLoader().startJournalWhileLoading();
         }
 
         @Override
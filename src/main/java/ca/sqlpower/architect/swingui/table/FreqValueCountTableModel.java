@@ -56,7 +56,7 @@ public class FreqValueCountTableModel extends AbstractTableModel {
     @Override
     public Class<?> getColumnClass(int column) {
         if (column == 0) {
-            return Integer.class;
+            return Long.class;
         } else if (column == 1) {
             return BigDecimal.class;
         } else if (column == 2) {
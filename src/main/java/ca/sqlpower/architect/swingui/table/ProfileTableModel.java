@@ -139,7 +139,7 @@ public class ProfileTableModel extends AbstractTableModel implements CleanupTabl
     private static Object getColumnValueFromProfile(ProfileColumn column,
              ColumnProfileResult columnProfile) {
         SQLColumn col = columnProfile.getProfiledObject();
-        int rowCount = columnProfile.getParent().getRowCount();
+        long rowCount = columnProfile.getParent().getRowCount();
 
         switch(column) {
         case DATABASE:
@@ -242,15 +242,15 @@ public class ProfileTableModel extends AbstractTableModel implements CleanupTabl
         case RUNDATE:
             return Long.class;
         case RECORD_COUNT:
-            return Integer.class;
+            return Long.class;
         case DATA_TYPE:
             return String.class;
         case NULL_COUNT:
-            return Integer.class;
+            return Long.class;
         case PERCENT_NULL:
             return BigDecimal.class;
         case UNIQUE_COUNT:
-            return Integer.class;
+            return Long.class;
         case PERCENT_UNIQUE:
             return BigDecimal.class;
         case MIN_LENGTH: